@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.powsybl.cgmes.model.CgmesModel;
+import com.powsybl.cgmes.model.triplestore.CgmesModelTripleStore;
+import com.powsybl.triplestore.api.PropertyBag;
+import com.powsybl.triplestore.api.TripleStoreFactory;
+
+/**
+ * Models used by the benchmarks, built through the setters of the
+ * interpreted model as in the Kron admittance tests. The network has a line,
+ * a two winding transformer with a phase tap changer and a three winding
+ * transformer.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class BenchmarkModels {
+
+    static final String CIM_16_NAMESPACE = "http://iec.ch/TC57/2013/CIM-schema-cim16#";
+    static final String LINE             = "1T";
+    static final String XFMR2            = "T2";
+    static final String XFMR3            = "123";
+
+    private BenchmarkModels() {
+    }
+
+    static CgmesModel emptyCgmes() {
+        return new CgmesModelTripleStore(CIM_16_NAMESPACE, TripleStoreFactory.create());
+    }
+
+    static InterpretedModel kron(CgmesModel cgmes) {
+        double sbase = 100.0;
+        double vbase = 400.0;
+        double zpu = sbase / Math.pow(vbase, 2);
+
+        Map<String, PropertyBag> nodeParameters = new HashMap<>();
+        node(nodeParameters, "Slack", 1.0 * vbase, 0.0, -37.685531, 13.094454);
+        node(nodeParameters, "1", 1.00982854 * vbase, Math.toDegrees(-0.03386869), 24.0, 102.0);
+        node(nodeParameters, "2", 1.08423359 * vbase, Math.toDegrees(-0.04845154), 0.0, 0.0);
+        node(nodeParameters, "3", 1.06519040 * vbase, Math.toDegrees(-0.04950536), 13.0, 5.0);
+        node(nodeParameters, "T", 1.06499392 * vbase, Math.toDegrees(-0.04813391), 0.0, 0.0);
+
+        Map<String, List<String>> equipmentsInNode = new HashMap<>();
+        Map<String, PropertyBag> lineParameters = new HashMap<>();
+        line(lineParameters, equipmentsInNode, "LSlack1", "Slack", "1", 0.0052 / zpu, 0.089 / zpu, 0.01 * zpu);
+        line(lineParameters, equipmentsInNode, LINE, "1", "T", 0.0075 / zpu, 0.064 / zpu, 0.53 * zpu);
+        line(lineParameters, equipmentsInNode, "T3", "T", "3", 0.0037 / zpu, 0.01 / zpu, 0.21 * zpu);
+
+        Map<String, PropertyBag> transformerParameters = new HashMap<>();
+        PropertyBag xfmr2 = transformer(transformerParameters, equipmentsInNode, XFMR2, "T", "2", null);
+        transformerEnd(xfmr2, 1, 0.0016 / zpu, 0.091 / zpu, 0.39 * zpu);
+        transformerEnd(xfmr2, 2, 0.0, 0.0, 0.0);
+        xfmr2.put("ptype1", "phasetapchangersymmetrical");
+        xfmr2.put("pls1", "1");
+        xfmr2.put("phs1", "33");
+        xfmr2.put("pns1", "17");
+        xfmr2.put("pstep1", "17");
+        xfmr2.put("psvi1", "1.5");
+        xfmr2.put("pac2", "0");
+        PropertyBag xfmr3 = transformer(transformerParameters, equipmentsInNode, XFMR3, "1", "2", "3");
+        transformerEnd(xfmr3, 1, 0.0016 / zpu, 0.091 / zpu, 0.39 * zpu);
+        transformerEnd(xfmr3, 2, 0.0, 0.0, 0.0);
+        transformerEnd(xfmr3, 3, 0.0, 0.0, 0.0);
+
+        List<List<String>> joinedNodes = new ArrayList<>();
+        Map<List<String>, Boolean> isolatedNodes = new HashMap<>();
+        nodeParameters.keySet().forEach(n -> {
+            List<String> joinNodes = new ArrayList<>();
+            joinNodes.add(n);
+            joinedNodes.add(joinNodes);
+            isolatedNodes.put(joinNodes, !equipmentsInNode.containsKey(n));
+        });
+
+        InterpretedModel model = new InterpretedModel(cgmes);
+        model.setNodeParameters(nodeParameters);
+        model.setJoinedNodes(joinedNodes);
+        model.setLineParameters(lineParameters);
+        model.setTransformerParameters(transformerParameters);
+        model.setEquipmentsInNode(equipmentsInNode);
+        model.setIsolatedNodes(isolatedNodes);
+        return model;
+    }
+
+    static int line(InterpretedModel model, String id) {
+        return Arrays.asList(model.compiledModel().lineIds).indexOf(id);
+    }
+
+    static int transformer(InterpretedModel model, String id) {
+        return Arrays.asList(model.compiledModel().transformerIds).indexOf(id);
+    }
+
+    private static void node(Map<String, PropertyBag> nodeParameters, String id, double v, double angle, double p,
+            double q) {
+        PropertyBag node = new PropertyBag(NODE_PROPERTIES);
+        node.put("v", Double.toString(v));
+        node.put("angle", Double.toString(angle));
+        node.put("p", Double.toString(p));
+        node.put("q", Double.toString(q));
+        node.put("nominalV", "400.0");
+        nodeParameters.put(id, node);
+    }
+
+    private static void line(Map<String, PropertyBag> lineParameters, Map<String, List<String>> equipmentsInNode,
+            String id, String nodeId1, String nodeId2, double r, double x, double bch) {
+        PropertyBag line = new PropertyBag(LINE_PROPERTIES);
+        line.put("r", Double.toString(r));
+        line.put("x", Double.toString(x));
+        line.put("bch", Double.toString(bch));
+        terminal(line, equipmentsInNode, id, 1, nodeId1);
+        terminal(line, equipmentsInNode, id, 2, nodeId2);
+        lineParameters.put(id, line);
+    }
+
+    private static PropertyBag transformer(Map<String, PropertyBag> transformerParameters,
+            Map<String, List<String>> equipmentsInNode, String id, String nodeId1, String nodeId2, String nodeId3) {
+        PropertyBag transformer = new PropertyBag(new ArrayList<>());
+        terminal(transformer, equipmentsInNode, id, 1, nodeId1);
+        terminal(transformer, equipmentsInNode, id, 2, nodeId2);
+        if (nodeId3 != null) {
+            terminal(transformer, equipmentsInNode, id, 3, nodeId3);
+        }
+        transformerParameters.put(id, transformer);
+        return transformer;
+    }
+
+    private static void transformerEnd(PropertyBag transformer, int end, double r, double x, double b) {
+        transformer.put("r" + end, Double.toString(r));
+        transformer.put("x" + end, Double.toString(x));
+        transformer.put("b" + end, Double.toString(b));
+        transformer.put("g" + end, Double.toString(0.0));
+        transformer.put("ratedU" + end, Double.toString(400.0));
+    }
+
+    private static void terminal(PropertyBag equipment, Map<String, List<String>> equipmentsInNode, String id,
+            int end, String nodeId) {
+        equipment.put("terminal" + end, nodeId);
+        equipment.put("connected" + end, Boolean.toString(true));
+        equipmentsInNode.computeIfAbsent(nodeId, z -> new ArrayList<>()).add(id);
+    }
+
+    private static final List<String> NODE_PROPERTIES = Arrays.asList("v", "nominalV", "angle", "p", "q");
+    private static final List<String> LINE_PROPERTIES = Arrays.asList("r", "x", "bch", "terminal1", "terminal2",
+            "connected1", "connected2");
+}
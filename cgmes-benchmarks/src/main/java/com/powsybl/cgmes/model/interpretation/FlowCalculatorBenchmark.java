@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Flows of each kind of branch. A flow calculator is created for each
+ * branch, as the interpretation does.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FlowCalculatorBenchmark {
+
+    @Setup
+    public void setUp() {
+        model = BenchmarkModels.kron(BenchmarkModels.emptyCgmes());
+        config = new CgmesEquipmentModelMapping();
+        line = BenchmarkModels.line(model, BenchmarkModels.LINE);
+        xfmr2 = BenchmarkModels.transformer(model, BenchmarkModels.XFMR2);
+        xfmr3 = BenchmarkModels.transformer(model, BenchmarkModels.XFMR3);
+    }
+
+    @Benchmark
+    public FlowCalculator forLine() {
+        FlowCalculator calcFlow = new FlowCalculator(model);
+        calcFlow.forLine(line, config);
+        return calcFlow;
+    }
+
+    @Benchmark
+    public FlowCalculator forTwoWindingTransformer() {
+        FlowCalculator calcFlow = new FlowCalculator(model);
+        calcFlow.forTwoWindingTransformer(xfmr2, config);
+        return calcFlow;
+    }
+
+    @Benchmark
+    public FlowCalculator forThreeWindingTransformer() {
+        FlowCalculator calcFlow = new FlowCalculator(model);
+        calcFlow.forThreeWindingTransformer(xfmr3, config);
+        return calcFlow;
+    }
+
+    private InterpretedModel           model;
+    private CgmesEquipmentModelMapping config;
+    private int                        line;
+    private int                        xfmr2;
+    private int                        xfmr3;
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.powsybl.cgmes.model.CgmesModel;
+
+/**
+ * Interpretation of a whole model for all the model mapping configurations.
+ * The model is given through the setters, so it is not loaded again from
+ * the triple store in each invocation.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ModelInterpretationBenchmark {
+
+    @Param({"false", "true"})
+    public boolean nodalAdmittance;
+
+    @Setup
+    public void setUp() {
+        cgmes = BenchmarkModels.emptyCgmes();
+        model = BenchmarkModels.kron(cgmes);
+    }
+
+    @Benchmark
+    public InterpretationResult interpret() {
+        ModelInterpretation interpretation = new ModelInterpretation(cgmes);
+        interpretation.setInputModel(model);
+        interpretation.setNodalAdmittance(nodalAdmittance);
+        interpretation.interpretInputModel();
+        return interpretation.getInterpretation();
+    }
+
+    private CgmesModel       cgmes;
+    private InterpretedModel model;
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.powsybl.cgmes.model.CgmesModel;
+
+/**
+ * Interpretation of synthetic models of increasing size for all the model
+ * mapping configurations. Each invocation takes seconds for the biggest
+ * models, so they are measured one at a time.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class ScalingBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int buses;
+
+    @Param({"false", "true"})
+    public boolean nodalAdmittance;
+
+    @Setup
+    public void setUp() {
+        cgmes = BenchmarkModels.emptyCgmes();
+        model = new SyntheticModelGenerator(SEED).generate(cgmes, buses);
+    }
+
+    @Benchmark
+    public InterpretationResult interpret() {
+        ModelInterpretation interpretation = new ModelInterpretation(cgmes);
+        interpretation.setInputModel(model);
+        interpretation.setNodalAdmittance(nodalAdmittance);
+        interpretation.interpretInputModel();
+        return interpretation.getInterpretation();
+    }
+
+    private CgmesModel       cgmes;
+    private InterpretedModel model;
+
+    private static final long SEED = 1L;
+}
@@ -0,0 +1,360 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.powsybl.cgmes.model.CgmesModel;
+import com.powsybl.triplestore.api.PropertyBag;
+import com.powsybl.triplestore.api.PropertyBags;
+
+/**
+ * Synthetic interpreted models of any size, built through the setters of the
+ * interpreted model. The same seed and parameters always give the same model.
+ * <p>
+ * Buses have a nominal voltage of 400, 220 or 110 kV. They are connected in a
+ * random tree, by lines when both buses have the same nominal voltage and by
+ * two winding transformers otherwise, and then meshed with more lines and
+ * with three winding transformers joining one bus of each voltage level. Some
+ * buses are made of two nodes joined by a zero impedance branch, equipment is
+ * connected to any of them. Transformers have ratio and phase tap changers,
+ * tabular or defined by their step increments.
+ * <p>
+ * Node injections are the opposite of the flows calculated from the generated
+ * voltages with the default model mapping, so the balances of that
+ * configuration close.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class SyntheticModelGenerator {
+
+    SyntheticModelGenerator(long seed) {
+        this.seed = seed;
+        meshedLines = 0.2;
+        xfmr3s = 0.01;
+        joinedBuses = 0.05;
+        ratioTapChangers = 0.5;
+        phaseTapChangers = 0.1;
+        tabularTapChangers = 0.5;
+    }
+
+    // Lines added to the tree for each bus
+    void setMeshedLines(double meshedLines) {
+        this.meshedLines = meshedLines;
+    }
+
+    // Three winding transformers for each bus
+    void setXfmr3s(double xfmr3s) {
+        this.xfmr3s = xfmr3s;
+    }
+
+    // Fraction of buses made of two joined nodes
+    void setJoinedBuses(double joinedBuses) {
+        this.joinedBuses = joinedBuses;
+    }
+
+    // Fractions of transformer ends with a ratio or a phase tap changer
+    void setRatioTapChangers(double ratioTapChangers) {
+        this.ratioTapChangers = ratioTapChangers;
+    }
+
+    void setPhaseTapChangers(double phaseTapChangers) {
+        this.phaseTapChangers = phaseTapChangers;
+    }
+
+    // Fraction of tap changers defined by a table
+    void setTabularTapChangers(double tabularTapChangers) {
+        this.tabularTapChangers = tabularTapChangers;
+    }
+
+    InterpretedModel generate(CgmesModel cgmes, int buses) {
+        random = new Random(seed);
+        nodeParameters = new HashMap<>(buses * 2);
+        lineParameters = new HashMap<>(buses * 2);
+        transformerParameters = new HashMap<>();
+        equipmentsInNode = new HashMap<>(buses * 2);
+        joinedNodes = new ArrayList<>(buses);
+        isolatedNodes = new HashMap<>(buses * 2);
+
+        generateBuses(buses);
+        generateTree(buses);
+        generateMeshedLines(buses);
+        generateXfmr3s(buses);
+
+        InterpretedModel model = new InterpretedModel(cgmes);
+        model.setNodeParameters(nodeParameters);
+        model.setJoinedNodes(joinedNodes);
+        model.setLineParameters(lineParameters);
+        model.setTransformerParameters(transformerParameters);
+        model.setEquipmentsInNode(equipmentsInNode);
+        model.setIsolatedNodes(isolatedNodes);
+        model.setTapChangerTablePoints(tablePoints("RatioTapChangerTable", false),
+                tablePoints("PhaseTapChangerTable", true));
+        balanceInjections(model);
+        return model;
+    }
+
+    private void generateBuses(int buses) {
+        busNominalV = new double[buses];
+        busAngle = new double[buses];
+        busesOfLevel = new ArrayList<>();
+        for (int l = 0; l < NOMINAL_VOLTAGES.length; l++) {
+            busesOfLevel.add(new ArrayList<>());
+        }
+        for (int b = 0; b < buses; b++) {
+            int level = random.nextInt(NOMINAL_VOLTAGES.length);
+            busesOfLevel.get(level).add(b);
+            busNominalV[b] = NOMINAL_VOLTAGES[level];
+            // Angle 0 is considered a bad voltage, all angles are set again along the tree
+            busAngle[b] = FIRST_BUS_ANGLE;
+            double v = busNominalV[b] * (0.95 + 0.1 * random.nextDouble());
+            List<String> bus = new ArrayList<>(2);
+            bus.add(node(v, busNominalV[b]));
+            if (random.nextDouble() < joinedBuses) {
+                bus.add(node(v, busNominalV[b]));
+            }
+            joinedNodes.add(bus);
+            isolatedNodes.put(bus, Boolean.TRUE);
+        }
+    }
+
+    private String node(double v, double nominalV) {
+        String id = "N" + nodeParameters.size();
+        PropertyBag node = new PropertyBag(NODE_PROPERTIES);
+        node.put("v", Double.toString(v));
+        node.put("angle", Double.toString(FIRST_BUS_ANGLE));
+        node.put("p", "0.0");
+        node.put("q", "0.0");
+        node.put("nominalV", Double.toString(nominalV));
+        nodeParameters.put(id, node);
+        return id;
+    }
+
+    private void generateTree(int buses) {
+        for (int b = 1; b < buses; b++) {
+            int parent = random.nextInt(b);
+            // Angles change a few degrees along the tree
+            double angle = busAngle[parent] + random.nextDouble() * 4.0 - 2.0;
+            busAngle[b] = angle == 0.0 ? FIRST_BUS_ANGLE : angle;
+            for (String n : joinedNodes.get(b)) {
+                nodeParameters.get(n).put("angle", Double.toString(busAngle[b]));
+            }
+            if (busNominalV[b] == busNominalV[parent]) {
+                line(parent, b);
+            } else {
+                xfmr2(parent, b);
+            }
+        }
+    }
+
+    private void generateMeshedLines(int buses) {
+        int lines = (int) (buses * meshedLines);
+        for (int k = 0; k < lines; k++) {
+            List<Integer> level = busesOfLevel.get(random.nextInt(busesOfLevel.size()));
+            if (level.size() < 2) {
+                continue;
+            }
+            int bus1 = level.get(random.nextInt(level.size()));
+            int bus2 = level.get(random.nextInt(level.size()));
+            if (bus1 != bus2) {
+                line(bus1, bus2);
+            }
+        }
+    }
+
+    private void generateXfmr3s(int buses) {
+        int xfmr3Count = (int) (buses * xfmr3s);
+        for (List<Integer> level : busesOfLevel) {
+            if (level.isEmpty()) {
+                return;
+            }
+        }
+        for (int k = 0; k < xfmr3Count; k++) {
+            int[] bus = new int[NOMINAL_VOLTAGES.length];
+            for (int l = 0; l < bus.length; l++) {
+                List<Integer> level = busesOfLevel.get(l);
+                bus[l] = level.get(random.nextInt(level.size()));
+            }
+            xfmr3(bus[0], bus[1], bus[2]);
+        }
+    }
+
+    private void line(int bus1, int bus2) {
+        String id = "L" + lineParameters.size();
+        double zbase = busNominalV[bus1] * busNominalV[bus1] / 100.0;
+        PropertyBag line = new PropertyBag(LINE_PROPERTIES);
+        line.put("r", Double.toString((0.001 + 0.009 * random.nextDouble()) * zbase));
+        line.put("x", Double.toString((0.01 + 0.09 * random.nextDouble()) * zbase));
+        line.put("bch", Double.toString((0.01 + 0.5 * random.nextDouble()) / zbase));
+        terminal(line, id, 1, bus1);
+        terminal(line, id, 2, bus2);
+        lineParameters.put(id, line);
+    }
+
+    private void xfmr2(int bus1, int bus2) {
+        String id = "T" + transformerParameters.size();
+        PropertyBag transformer = new PropertyBag(new ArrayList<>());
+        transformerEnd(transformer, 1, busNominalV[bus1], true);
+        transformerEnd(transformer, 2, busNominalV[bus2], false);
+        terminal(transformer, id, 1, bus1);
+        terminal(transformer, id, 2, bus2);
+        transformerParameters.put(id, transformer);
+    }
+
+    private void xfmr3(int bus1, int bus2, int bus3) {
+        String id = "T" + transformerParameters.size();
+        PropertyBag transformer = new PropertyBag(new ArrayList<>());
+        transformerEnd(transformer, 1, busNominalV[bus1], true);
+        transformerEnd(transformer, 2, busNominalV[bus2], true);
+        transformerEnd(transformer, 3, busNominalV[bus3], true);
+        terminal(transformer, id, 1, bus1);
+        terminal(transformer, id, 2, bus2);
+        terminal(transformer, id, 3, bus3);
+        transformerParameters.put(id, transformer);
+    }
+
+    private void transformerEnd(PropertyBag transformer, int end, double ratedU, boolean impedance) {
+        double zbase = ratedU * ratedU / 100.0;
+        transformer.put("r" + end, Double.toString(impedance ? 0.002 * zbase : 0.0));
+        transformer.put("x" + end, Double.toString(impedance ? (0.05 + 0.1 * random.nextDouble()) * zbase : 0.0));
+        transformer.put("b" + end, Double.toString(impedance ? -0.001 / zbase : 0.0));
+        transformer.put("g" + end, Double.toString(impedance ? 0.0002 / zbase : 0.0));
+        transformer.put("ratedU" + end, Double.toString(ratedU * (0.95 + 0.1 * random.nextDouble())));
+        if (random.nextDouble() < ratioTapChangers) {
+            ratioTapChanger(transformer, end);
+        }
+        if (random.nextDouble() < phaseTapChangers) {
+            phaseTapChanger(transformer, end);
+        }
+    }
+
+    private void ratioTapChanger(PropertyBag transformer, int end) {
+        transformer.put("rstep" + end, Integer.toString(1 + random.nextInt(STEPS)));
+        if (random.nextDouble() < tabularTapChangers) {
+            transformer.put("RatioTapChangerTable" + end, "RTCT" + random.nextInt(TABLES));
+        } else {
+            transformer.put("rls" + end, "1");
+            transformer.put("rhs" + end, Integer.toString(STEPS));
+            transformer.put("rns" + end, Integer.toString(NEUTRAL_STEP));
+            transformer.put("rsvi" + end, Double.toString(0.5 + random.nextDouble()));
+        }
+    }
+
+    private void phaseTapChanger(PropertyBag transformer, int end) {
+        transformer.put("pstep" + end, Integer.toString(1 + random.nextInt(STEPS)));
+        transformer.put("pls" + end, "1");
+        transformer.put("phs" + end, Integer.toString(STEPS));
+        transformer.put("pns" + end, Integer.toString(NEUTRAL_STEP));
+        if (random.nextDouble() < tabularTapChangers) {
+            transformer.put("ptype" + end, "phasetapchangertabular");
+            transformer.put("PhaseTapChangerTable" + end, "PTCT" + random.nextInt(TABLES));
+        } else if (random.nextBoolean()) {
+            transformer.put("ptype" + end, "phasetapchangersymmetrical");
+            transformer.put("psvi" + end, Double.toString(0.5 + random.nextDouble()));
+        } else {
+            transformer.put("ptype" + end, "phasetapchangerasymmetrical");
+            transformer.put("psvi" + end, Double.toString(0.5 + random.nextDouble()));
+            transformer.put("pwca" + end, Double.toString(60.0 + 30.0 * random.nextDouble()));
+        }
+    }
+
+    // Equipment is connected to any node of the bus
+    private void terminal(PropertyBag equipment, String id, int end, int bus) {
+        List<String> nodes = joinedNodes.get(bus);
+        String nodeId = nodes.get(random.nextInt(nodes.size()));
+        equipment.put("terminal" + end, nodeId);
+        equipment.put("connected" + end, Boolean.toString(true));
+        equipmentsInNode.computeIfAbsent(nodeId, z -> new ArrayList<>()).add(id);
+        isolatedNodes.put(nodes, Boolean.FALSE);
+    }
+
+    private PropertyBags tablePoints(String tableProperty, boolean phase) {
+        PropertyBags points = new PropertyBags();
+        for (int t = 0; t < TABLES; t++) {
+            String table = (phase ? "PTCT" : "RTCT") + t;
+            double ratioIncrement = 0.002 + 0.008 * random.nextDouble();
+            double angleIncrement = 0.5 + random.nextDouble();
+            for (int step = 1; step <= STEPS; step++) {
+                PropertyBag point = new PropertyBag(POINT_PROPERTIES);
+                point.put(tableProperty, table);
+                point.put("step", Integer.toString(step));
+                point.put("ratio", Double.toString(phase ? 1.0 : 1.0 + (step - NEUTRAL_STEP) * ratioIncrement));
+                point.put("angle", Double.toString(phase ? (step - NEUTRAL_STEP) * angleIncrement : 0.0));
+                point.put("r", "0.0");
+                point.put("x", Double.toString((step - NEUTRAL_STEP) * 0.1));
+                point.put("g", "0.0");
+                point.put("b", "0.0");
+                points.add(point);
+            }
+        }
+        return points;
+    }
+
+    private static void balanceInjections(InterpretedModel model) {
+        CompiledModel compiled = model.compiledModel();
+        CgmesEquipmentModelMapping config = new CgmesEquipmentModelMapping();
+        FlowCalculator[] branchFlows = new FlowCalculator[compiled.numLines() + compiled.numTransformers()];
+        Map<String, PropertyBag> nodes = compiled.nodeParameters();
+        for (int n = 0; n < compiled.numNodes(); n++) {
+            double p = 0.0;
+            double q = 0.0;
+            for (int k = compiled.incidenceStart[n]; k < compiled.incidenceStart[n + 1]; k++) {
+                int equipment = compiled.incidentEquipment[k];
+                FlowCalculator calcFlow = branchFlows[equipment];
+                if (calcFlow == null) {
+                    calcFlow = new FlowCalculator(model);
+                    calcFlow.forBranch(equipment, config);
+                    branchFlows[equipment] = calcFlow;
+                }
+                if (calcFlow.getCalculated()) {
+                    int end = calcFlow.end(n);
+                    p -= calcFlow.getP(end);
+                    q -= calcFlow.getQ(end);
+                }
+            }
+            PropertyBag node = nodes.get(compiled.nodeIds[n]);
+            node.put("p", Double.toString(p));
+            node.put("q", Double.toString(q));
+        }
+        model.setNodeParameters(nodes);
+    }
+
+    private final long                   seed;
+    private double                       meshedLines;
+    private double                       xfmr3s;
+    private double                       joinedBuses;
+    private double                       ratioTapChangers;
+    private double                       phaseTapChangers;
+    private double                       tabularTapChangers;
+    private Random                       random;
+    private double[]                     busNominalV;
+    private double[]                     busAngle;
+    private List<List<Integer>>          busesOfLevel;
+    private Map<String, PropertyBag>     nodeParameters;
+    private Map<String, PropertyBag>     lineParameters;
+    private Map<String, PropertyBag>     transformerParameters;
+    private Map<String, List<String>>    equipmentsInNode;
+    private List<List<String>>           joinedNodes;
+    private Map<List<String>, Boolean>   isolatedNodes;
+
+    private static final double[]     NOMINAL_VOLTAGES = {400.0, 220.0, 110.0};
+    private static final double       FIRST_BUS_ANGLE  = 0.5;
+    private static final int          TABLES           = 10;
+    private static final int          STEPS            = 33;
+    private static final int          NEUTRAL_STEP     = 17;
+    private static final List<String> NODE_PROPERTIES  = Arrays.asList("v", "nominalV", "angle", "p", "q");
+    private static final List<String> LINE_PROPERTIES  = Arrays.asList("r", "x", "bch", "terminal1", "terminal2",
+            "connected1", "connected2");
+    private static final List<String> POINT_PROPERTIES = Arrays.asList("step", "ratio", "angle", "r", "x", "g", "b");
+}
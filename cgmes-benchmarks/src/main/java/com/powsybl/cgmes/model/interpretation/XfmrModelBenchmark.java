@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.powsybl.cgmes.model.interpretation.XfmrUtilities.TapChangerData;
+
+/**
+ * Interpretation of transformers and of their phase tap changers.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class XfmrModelBenchmark {
+
+    @Param({"phasetapchangersymmetrical", "phasetapchangerasymmetrical"})
+    public String ptype;
+
+    @Setup
+    public void setUp() {
+        InterpretedModel interpretedModel = BenchmarkModels.kron(BenchmarkModels.emptyCgmes());
+        model = interpretedModel.compiledModel();
+        tapChangerTables = interpretedModel.tapChangerTables();
+        config = new CgmesEquipmentModelMapping();
+        xfmr2 = BenchmarkModels.transformer(interpretedModel, BenchmarkModels.XFMR2);
+        xfmr3 = BenchmarkModels.transformer(interpretedModel, BenchmarkModels.XFMR3);
+    }
+
+    @Benchmark
+    public Xfmr2Model xfmr2Interpret() {
+        Xfmr2Model xfmr2Model = new Xfmr2Model(tapChangerTables, model, xfmr2, config);
+        xfmr2Model.interpret();
+        return xfmr2Model;
+    }
+
+    @Benchmark
+    public Xfmr3Model xfmr3Interpret() {
+        Xfmr3Model xfmr3Model = new Xfmr3Model(tapChangerTables, model, xfmr3, config);
+        xfmr3Model.interpret();
+        return xfmr3Model;
+    }
+
+    @Benchmark
+    public TapChangerData getPhaseTapChanger() {
+        return XfmrUtilities.getPhaseTapChanger(ptype, 21.0, 1.0, 33.0, 17.0, 1.5, 60.0, 0.0, null);
+    }
+
+    private CompiledModel              model;
+    private TapChangerTables           tapChangerTables;
+    private CgmesEquipmentModelMapping config;
+    private int                        xfmr2;
+    private int                        xfmr3;
+}
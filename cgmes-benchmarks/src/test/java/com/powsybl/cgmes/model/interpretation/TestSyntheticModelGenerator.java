@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.powsybl.cgmes.model.CgmesModel;
+import com.powsybl.cgmes.model.interpretation.InterpretationResult.ValidationData;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestSyntheticModelGenerator {
+
+    private static final int    BUSES             = 200;
+    private static final double BALANCE_TOLERANCE = 1.0e-6;
+
+    @Test
+    public void sameModelForSameSeedTest() {
+        InterpretedModel model1 = generator(1).generate(CGMES, BUSES);
+        InterpretedModel model2 = generator(1).generate(CGMES, BUSES);
+        Assert.assertTrue(sameModel(model1, model2));
+        Assert.assertFalse(sameModel(model1, generator(2).generate(CGMES, BUSES)));
+    }
+
+    // The injections close the balance of every node with the default configuration
+    @Test
+    public void defaultConfigurationBalancedTest() {
+        for (boolean nodalAdmittance : new boolean[] {false, true}) {
+            ModelInterpretation interpretation = new ModelInterpretation(CGMES);
+            interpretation.setInputModel(generator(1).generate(CGMES, BUSES));
+            interpretation.setNodalAdmittance(nodalAdmittance);
+            interpretation.setWorstNodes(0);
+            interpretation.interpretInputModel();
+            InterpretationResult result = interpretation.getInterpretation();
+
+            CgmesEquipmentModelMapping defaultConfig = new CgmesEquipmentModelMapping();
+            int defaults = 0;
+            for (Map.Entry<CgmesEquipmentModelMapping, ValidationData> e : result.validationDataForAllModelMapping
+                    .entrySet()) {
+                if (e.getKey().alternativesChanged(defaultConfig) == 0) {
+                    Assert.assertEquals(0.0, e.getValue().getBalance(), BALANCE_TOLERANCE);
+                    defaults++;
+                }
+            }
+            Assert.assertEquals(1, defaults);
+            Assert.assertEquals(0.0, result.error, BALANCE_TOLERANCE);
+        }
+    }
+
+    private static SyntheticModelGenerator generator(long seed) {
+        SyntheticModelGenerator generator = new SyntheticModelGenerator(seed);
+        // More three winding transformers and joined buses than the default, so a small model has them
+        generator.setXfmr3s(0.05);
+        generator.setJoinedBuses(0.2);
+        return generator;
+    }
+
+    private static boolean sameModel(InterpretedModel model1, InterpretedModel model2) {
+        CompiledModel compiled1 = model1.compiledModel();
+        CompiledModel compiled2 = model2.compiledModel();
+        if (compiled1.numNodes() != compiled2.numNodes()
+                || compiled1.numLines() != compiled2.numLines()
+                || compiled1.numTransformers() != compiled2.numTransformers()
+                || !model1.getJoinedNodes().equals(model2.getJoinedNodes())) {
+            return false;
+        }
+        for (String n : compiled1.nodeIds) {
+            if (!model1.getNodeParameters(n).equals(model2.getNodeParameters(n))) {
+                return false;
+            }
+        }
+        for (int k = 0; k < compiled1.numLines(); k++) {
+            if (!model1.getLineParameters("L" + k).equals(model2.getLineParameters("L" + k))) {
+                return false;
+            }
+        }
+        for (int k = 0; k < compiled1.numTransformers(); k++) {
+            if (!model1.getTransformerParameters("T" + k).equals(model2.getTransformerParameters("T" + k))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final CgmesModel CGMES = BenchmarkModels.emptyCgmes();
+}
@@ -0,0 +1,461 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.DoubleSummaryStatistics;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.powsybl.triplestore.api.PropertyBag;
+
+/**
+ * Balance of the joined buses for one model mapping configuration, held in
+ * columns: one row per bus, with the bus index in the joined bus list of the
+ * compiled model, the balance, a bitset of flags and the number of lines and
+ * transformers. The node ids of a bus are not copied, they are shared with the
+ * compiled model.
+ *
+ * All the buses are kept when the number of worst nodes is 0. Otherwise only
+ * the given number of worst buses with an error above the tolerance are kept,
+ * as many with bad voltage as without it, selected with bounded heaps. The
+ * counters and errors of the reports are accumulated over all the buses as
+ * they are added, and the columns are complete once the kept buses are sorted.
+ *
+ * The map view of previous versions, with a property bag of strings per bus,
+ * is built on demand while it is iterated.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class BalanceColumns {
+
+    private static final double BALANCE_TOLERANCE = 1.0;
+
+    static final int CALCULATED  = 1;
+    static final int ISOLATED    = 2;
+    static final int BAD_VOLTAGE = 4;
+
+    BalanceColumns(List<List<String>> buses, int worstNodes) {
+        this.buses = buses;
+        this.worstNodes = worstNodes;
+        // When selecting, the last row is a scratch row for the bus being added
+        int rows = worstNodes == 0 ? buses.size() : (int) Math.min(2L * worstNodes, buses.size()) + 1;
+        bus = new int[rows];
+        balanceP = new double[rows];
+        balanceQ = new double[rows];
+        flags = new byte[rows];
+        lines = new short[rows];
+        xfmr2s = new short[rows];
+        xfmr3s = new short[rows];
+        size = 0;
+        worstBad = new int[worstNodes];
+        worstBadVoltage = new int[worstNodes];
+        numWorstBad = 0;
+        numWorstBadVoltage = 0;
+        badErrors = new DoubleSummaryStatistics();
+        badVoltageErrors = new DoubleSummaryStatistics();
+        totalErrors = new DoubleSummaryStatistics();
+    }
+
+    static BalanceColumns empty() {
+        BalanceColumns balanceColumns = new BalanceColumns(Collections.emptyList(), 0);
+        balanceColumns.complete();
+        return balanceColumns;
+    }
+
+    // Counts do not reach the short range in real networks, they are saturated if they do
+    void add(int b, double p, double q, int nodeFlags, int nodeLines, int nodeXfmr2s, int nodeXfmr3s) {
+        bus[size] = b;
+        balanceP[size] = p;
+        balanceQ[size] = q;
+        flags[size] = (byte) nodeFlags;
+        lines[size] = saturated(nodeLines);
+        xfmr2s[size] = saturated(nodeXfmr2s);
+        xfmr3s[size] = saturated(nodeXfmr3s);
+        accumulate(size);
+        if (worstNodes == 0) {
+            size++;
+        } else if (isCalculated(size) && error(size) > BALANCE_TOLERANCE) {
+            if (isBadVoltage(size)) {
+                numWorstBadVoltage = select(worstBadVoltage, numWorstBadVoltage);
+            } else {
+                numWorstBad = select(worstBad, numWorstBad);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    List<String> nodes(int row) {
+        return buses.get(bus[row]);
+    }
+
+    double balanceP(int row) {
+        return balanceP[row];
+    }
+
+    double balanceQ(int row) {
+        return balanceQ[row];
+    }
+
+    double error(int row) {
+        return Math.abs(balanceP[row]) + Math.abs(balanceQ[row]);
+    }
+
+    boolean isCalculated(int row) {
+        return (flags[row] & CALCULATED) != 0;
+    }
+
+    boolean isIsolated(int row) {
+        return (flags[row] & ISOLATED) != 0;
+    }
+
+    boolean isBadVoltage(int row) {
+        return (flags[row] & BAD_VOLTAGE) != 0;
+    }
+
+    int lines(int row) {
+        return lines[row];
+    }
+
+    int xfmr2s(int row) {
+        return xfmr2s[row];
+    }
+
+    int xfmr3s(int row) {
+        return xfmr3s[row];
+    }
+
+    // Rows are reordered from the largest to the smallest error, buses with the same error keep their order.
+    // No bus can be added after
+    void complete() {
+        Integer[] order = new Integer[size];
+        for (int k = 0; k < size; k++) {
+            order[k] = k;
+        }
+        Arrays.sort(order, (k1, k2) -> worse(k2, k1) ? 1 : worse(k1, k2) ? -1 : 0);
+        permute(order);
+        badNodes = (int) badErrors.getCount();
+        badNodesError = badErrors.getSum();
+        badVoltageNodes = (int) badVoltageErrors.getCount();
+        badVoltageNodesError = badVoltageErrors.getSum();
+        totalError = totalErrors.getSum();
+    }
+
+    int totalNodes() {
+        return totalNodes;
+    }
+
+    int isolatedNodes() {
+        return isolatedNodes;
+    }
+
+    int notCalculatedNodes() {
+        return notCalculatedNodes;
+    }
+
+    int okNodes() {
+        return okNodes;
+    }
+
+    int badNodes() {
+        return badNodes;
+    }
+
+    double badNodesError() {
+        return badNodesError;
+    }
+
+    int badVoltageNodes() {
+        return badVoltageNodes;
+    }
+
+    double badVoltageNodesError() {
+        return badVoltageNodesError;
+    }
+
+    // Error of the calculated buses that are not isolated
+    double totalError() {
+        return totalError;
+    }
+
+    // The node ids of each kept bus are written with it
+    void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int k = 0; k < size; k++) {
+            List<String> nodes = nodes(k);
+            out.writeInt(nodes.size());
+            for (String node : nodes) {
+                out.writeUTF(node);
+            }
+            out.writeDouble(balanceP[k]);
+            out.writeDouble(balanceQ[k]);
+            out.writeByte(flags[k]);
+            out.writeShort(lines[k]);
+            out.writeShort(xfmr2s[k]);
+            out.writeShort(xfmr3s[k]);
+        }
+        out.writeInt(totalNodes);
+        out.writeInt(isolatedNodes);
+        out.writeInt(notCalculatedNodes);
+        out.writeInt(okNodes);
+        out.writeInt(badNodes);
+        out.writeDouble(badNodesError);
+        out.writeInt(badVoltageNodes);
+        out.writeDouble(badVoltageNodesError);
+        out.writeDouble(totalError);
+    }
+
+    static BalanceColumns read(DataInput in) throws IOException {
+        int rows = in.readInt();
+        List<List<String>> buses = new ArrayList<>(rows);
+        double[] p = new double[rows];
+        double[] q = new double[rows];
+        byte[] f = new byte[rows];
+        short[] l = new short[rows];
+        short[] x2 = new short[rows];
+        short[] x3 = new short[rows];
+        for (int k = 0; k < rows; k++) {
+            int numNodes = in.readInt();
+            List<String> nodes = new ArrayList<>(numNodes);
+            for (int n = 0; n < numNodes; n++) {
+                nodes.add(in.readUTF());
+            }
+            buses.add(nodes);
+            p[k] = in.readDouble();
+            q[k] = in.readDouble();
+            f[k] = in.readByte();
+            l[k] = in.readShort();
+            x2[k] = in.readShort();
+            x3[k] = in.readShort();
+        }
+        // Rows are read already sorted, each one with its own bus
+        BalanceColumns balanceColumns = new BalanceColumns(buses, 0);
+        for (int k = 0; k < rows; k++) {
+            balanceColumns.bus[k] = k;
+        }
+        balanceColumns.size = rows;
+        System.arraycopy(p, 0, balanceColumns.balanceP, 0, rows);
+        System.arraycopy(q, 0, balanceColumns.balanceQ, 0, rows);
+        System.arraycopy(f, 0, balanceColumns.flags, 0, rows);
+        System.arraycopy(l, 0, balanceColumns.lines, 0, rows);
+        System.arraycopy(x2, 0, balanceColumns.xfmr2s, 0, rows);
+        System.arraycopy(x3, 0, balanceColumns.xfmr3s, 0, rows);
+        balanceColumns.totalNodes = in.readInt();
+        balanceColumns.isolatedNodes = in.readInt();
+        balanceColumns.notCalculatedNodes = in.readInt();
+        balanceColumns.okNodes = in.readInt();
+        balanceColumns.badNodes = in.readInt();
+        balanceColumns.badNodesError = in.readDouble();
+        balanceColumns.badVoltageNodes = in.readInt();
+        balanceColumns.badVoltageNodesError = in.readDouble();
+        balanceColumns.totalError = in.readDouble();
+        return balanceColumns;
+    }
+
+    Map<List<String>, PropertyBag> asMap() {
+        return new AbstractMap<List<String>, PropertyBag>() {
+
+            @Override
+            public Set<Map.Entry<List<String>, PropertyBag>> entrySet() {
+                return new AbstractSet<Map.Entry<List<String>, PropertyBag>>() {
+
+                    @Override
+                    public Iterator<Map.Entry<List<String>, PropertyBag>> iterator() {
+                        return new Iterator<Map.Entry<List<String>, PropertyBag>>() {
+
+                            @Override
+                            public boolean hasNext() {
+                                return row < size;
+                            }
+
+                            @Override
+                            public Map.Entry<List<String>, PropertyBag> next() {
+                                if (!hasNext()) {
+                                    throw new NoSuchElementException();
+                                }
+                                int k = row++;
+                                return new AbstractMap.SimpleImmutableEntry<>(nodes(k), propertyBag(k));
+                            }
+
+                            private int row = 0;
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+        };
+    }
+
+    PropertyBag propertyBag(int row) {
+        PropertyBag pb = new PropertyBag(PROPERTY_NAMES);
+        pb.put("balanceP", Double.toString(balanceP[row]));
+        pb.put("balanceQ", Double.toString(balanceQ[row]));
+        pb.put("calculated", Boolean.toString(isCalculated(row)));
+        pb.put("badVoltage", Boolean.toString(isBadVoltage(row)));
+        pb.put("isolated", Boolean.toString(isIsolated(row)));
+        pb.put("line", Integer.toString(lines[row]));
+        pb.put("xfmr2", Integer.toString(xfmr2s[row]));
+        pb.put("xfmr3", Integer.toString(xfmr3s[row]));
+        return pb;
+    }
+
+    // Errors are summed with compensation, as the sum of a stream of doubles
+    private void accumulate(int row) {
+        totalNodes++;
+        if (isIsolated(row)) {
+            isolatedNodes++;
+        }
+        if (!isCalculated(row)) {
+            if (!isIsolated(row)) {
+                notCalculatedNodes++;
+            }
+            return;
+        }
+        double error = error(row);
+        if (!isIsolated(row)) {
+            totalErrors.accept(error);
+        }
+        if (error <= BALANCE_TOLERANCE) {
+            okNodes++;
+        } else if (error > BALANCE_TOLERANCE) {
+            if (isBadVoltage(row)) {
+                badVoltageErrors.accept(error);
+            } else {
+                badErrors.accept(error);
+            }
+        }
+    }
+
+    // The heap has the best of the kept rows at its root. The scratch row takes its place if it is worse
+    private int select(int[] heap, int heapSize) {
+        if (heapSize < worstNodes) {
+            int k = heapSize;
+            heap[k] = size++;
+            while (k > 0 && worse(heap[(k - 1) / 2], heap[k])) {
+                swap(heap, k, (k - 1) / 2);
+                k = (k - 1) / 2;
+            }
+            return heapSize + 1;
+        }
+        if (worse(size, heap[0])) {
+            copy(size, heap[0]);
+            int k = 0;
+            while (true) {
+                int best = k;
+                int left = 2 * k + 1;
+                int right = left + 1;
+                if (left < heapSize && worse(heap[best], heap[left])) {
+                    best = left;
+                }
+                if (right < heapSize && worse(heap[best], heap[right])) {
+                    best = right;
+                }
+                if (best == k) {
+                    break;
+                }
+                swap(heap, k, best);
+                k = best;
+            }
+        }
+        return heapSize;
+    }
+
+    // Larger errors first, then buses in the order they were added
+    private boolean worse(int row1, int row2) {
+        int c = Double.compare(error(row1), error(row2));
+        return c > 0 || c == 0 && bus[row1] < bus[row2];
+    }
+
+    private static void swap(int[] heap, int k1, int k2) {
+        int t = heap[k1];
+        heap[k1] = heap[k2];
+        heap[k2] = t;
+    }
+
+    private void copy(int from, int to) {
+        bus[to] = bus[from];
+        balanceP[to] = balanceP[from];
+        balanceQ[to] = balanceQ[from];
+        flags[to] = flags[from];
+        lines[to] = lines[from];
+        xfmr2s[to] = xfmr2s[from];
+        xfmr3s[to] = xfmr3s[from];
+    }
+
+    private void permute(Integer[] order) {
+        int[] bus0 = bus.clone();
+        double[] balanceP0 = balanceP.clone();
+        double[] balanceQ0 = balanceQ.clone();
+        byte[] flags0 = flags.clone();
+        short[] lines0 = lines.clone();
+        short[] xfmr2s0 = xfmr2s.clone();
+        short[] xfmr3s0 = xfmr3s.clone();
+        for (int k = 0; k < size; k++) {
+            int from = order[k];
+            bus[k] = bus0[from];
+            balanceP[k] = balanceP0[from];
+            balanceQ[k] = balanceQ0[from];
+            flags[k] = flags0[from];
+            lines[k] = lines0[from];
+            xfmr2s[k] = xfmr2s0[from];
+            xfmr3s[k] = xfmr3s0[from];
+        }
+    }
+
+    private static short saturated(int count) {
+        return (short) Math.min(count, Short.MAX_VALUE);
+    }
+
+    private final List<List<String>>      buses;
+    private final int[]                   bus;
+    private final double[]                balanceP;
+    private final double[]                balanceQ;
+    private final byte[]                  flags;
+    private final short[]                 lines;
+    private final short[]                 xfmr2s;
+    private final short[]                 xfmr3s;
+    private final int                     worstNodes;
+    private int                           size;
+    private final int[]                   worstBad;
+    private final int[]                   worstBadVoltage;
+    private int                           numWorstBad;
+    private int                           numWorstBadVoltage;
+    private int                           totalNodes;
+    private int                           isolatedNodes;
+    private int                           notCalculatedNodes;
+    private int                           okNodes;
+    private int                           badNodes;
+    private double                        badNodesError;
+    private int                           badVoltageNodes;
+    private double                        badVoltageNodesError;
+    private double                        totalError;
+    private final DoubleSummaryStatistics badErrors;
+    private final DoubleSummaryStatistics badVoltageErrors;
+    private final DoubleSummaryStatistics totalErrors;
+
+    private static final List<String> PROPERTY_NAMES = Collections.unmodifiableList(
+            Arrays.asList("balanceP", "balanceQ", "calculated", "line", "xfmr2", "xfmr3"));
+}
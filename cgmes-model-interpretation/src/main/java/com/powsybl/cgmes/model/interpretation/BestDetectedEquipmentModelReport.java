@@ -34,7 +34,7 @@ public class BestDetectedEquipmentModelReport {
     public void report(Map<String, InterpretationResult> interpretations) throws IOException {
         Map<String, DetectedEquipmentModel> allDetectedModelData = new HashMap<>();
         prepareData(interpretations, allDetectedModelData);
-        writeReport(allDetectedModelData);
+        writeReport(allDetectedModelData, interpretations.size());
     }
 
     private void prepareData(Map<String, InterpretationResult> interpretations,
@@ -100,13 +100,14 @@ public class BestDetectedEquipmentModelReport {
         });
     }
 
-    private void writeReport(Map<String, DetectedEquipmentModel> allDetectedModelData) throws IOException {
+    private void writeReport(Map<String, DetectedEquipmentModel> allDetectedModelData, int models)
+            throws IOException {
         DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
         LocalDateTime dateTime = LocalDateTime.now();
         String formattedDateTime = dateTime.format(dateFormatter);
-        try (BufferedWriter w = Files.newBufferedWriter(
-                output.resolve("CGMESDetectedEquipmentModelReport." + formattedDateTime + ".csv"),
-                StandardCharsets.UTF_8)) {
+        Object event = InterpretationEvents.beginReport();
+        Path file = output.resolve("CGMESDetectedEquipmentModelReport." + formattedDateTime + ".csv");
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
 
             TableFormatterConfig config = new TableFormatterConfig(Locale.US, ',', "-", true, false);
             CsvTableFormatterFactory factory = new CsvTableFormatterFactory();
@@ -144,6 +145,7 @@ public class BestDetectedEquipmentModelReport {
                 }
             });
         }
+        InterpretationEvents.reportWritten(event, "best detected equipment model", file, models);
     }
 
     private final Path  output;
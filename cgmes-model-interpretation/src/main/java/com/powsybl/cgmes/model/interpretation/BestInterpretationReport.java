@@ -25,8 +25,6 @@ import com.powsybl.commons.io.table.TableFormatterConfig;
 
 public class BestInterpretationReport {
 
-    private static final double BALANCE_TOLERANCE = 1.0;
-
     public BestInterpretationReport(Path output) {
         this.output = output;
     }
@@ -48,9 +46,9 @@ public class BestInterpretationReport {
         DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
         LocalDateTime dateTime = LocalDateTime.now();
         String formattedDateTime = dateTime.format(dateFormatter);
-        try (BufferedWriter w = Files.newBufferedWriter(
-                output.resolve("CGMESModelInterpretationReport." + formattedDateTime + ".csv"),
-                StandardCharsets.UTF_8)) {
+        Object event = InterpretationEvents.beginReport();
+        Path file = output.resolve("CGMESModelInterpretationReport." + formattedDateTime + ".csv");
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
             TableFormatterConfig config = new TableFormatterConfig(Locale.US, ',', "-", true, false);
             CsvTableFormatterFactory factory = new CsvTableFormatterFactory();
             Column[] columns = new Column[] {
@@ -74,6 +72,7 @@ public class BestInterpretationReport {
                 generateModelReport(e.getKey(), e.getValue(), formatter);
             });
         }
+        InterpretationEvents.reportWritten(event, "best interpretation", file, interpretations.size());
     }
 
     private void generateModelReport(String model, InterpretationResult interpretation, TableFormatter formatter) {
@@ -113,39 +112,15 @@ public class BestInterpretationReport {
     private void interpretationReport(String model, CgmesEquipmentModelMapping mappingConfiguration,
             ValidationData validationData, TableFormatter formatter) throws IOException {
 
-        long totalNodes = validationData.balanceData.values().size();
-        long notCalculatedNodes = validationData.balanceData.entrySet().stream()
-                .filter(entry -> !entry.getValue().asBoolean("calculated", false)
-                        && !entry.getValue().asBoolean("isolated", false))
-                .count();
-        long okNodes = validationData.balanceData.values().stream().filter(pb -> pb.asBoolean("calculated", false))
-                .filter(pb -> (Math.abs(pb.asDouble("balanceP"))
-                        + Math.abs(pb.asDouble("balanceQ"))) <= BALANCE_TOLERANCE)
-                .count();
-        long badNodes = validationData.balanceData.values().stream()
-                .filter(pb -> pb.asBoolean("calculated", false) && !pb.asBoolean("badVoltage", false))
-                .filter(pb -> (Math.abs(pb.asDouble("balanceP"))
-                        + Math.abs(pb.asDouble("balanceQ"))) > BALANCE_TOLERANCE)
-                .count();
-        long isolatedNodes = validationData.balanceData.values().stream().filter(pb -> pb.asBoolean("isolated", false))
-                .count();
-        long badVoltageNodes = validationData.balanceData.values().stream()
-                .filter(pb -> pb.asBoolean("calculated", false) && pb.asBoolean("badVoltage", false))
-                .filter(pb -> (Math.abs(pb.asDouble("balanceP"))
-                        + Math.abs(pb.asDouble("balanceQ"))) > BALANCE_TOLERANCE)
-                .count();
-        double badNodesError = validationData.balanceData.values().stream()
-                .filter(pb -> pb.asBoolean("calculated", false) && !pb.asBoolean("badVoltage", false))
-                .filter(pb -> (Math.abs(pb.asDouble("balanceP"))
-                        + Math.abs(pb.asDouble("balanceQ"))) > BALANCE_TOLERANCE)
-                .map(pb -> Math.abs(pb.asDouble("balanceP")) + Math.abs(pb.asDouble("balanceQ")))
-                .mapToDouble(Double::doubleValue).sum();
-        double badVoltageNodesError = validationData.balanceData.values().stream()
-                .filter(pb -> pb.asBoolean("calculated", false) && pb.asBoolean("badVoltage", false))
-                .filter(pb -> (Math.abs(pb.asDouble("balanceP"))
-                        + Math.abs(pb.asDouble("balanceQ"))) > BALANCE_TOLERANCE)
-                .map(pb -> Math.abs(pb.asDouble("balanceP")) + Math.abs(pb.asDouble("balanceQ")))
-                .mapToDouble(Double::doubleValue).sum();
+        BalanceColumns balanceColumns = validationData.balanceColumns;
+        long totalNodes = balanceColumns.totalNodes();
+        long notCalculatedNodes = balanceColumns.notCalculatedNodes();
+        long okNodes = balanceColumns.okNodes();
+        long badNodes = balanceColumns.badNodes();
+        long isolatedNodes = balanceColumns.isolatedNodes();
+        long badVoltageNodes = balanceColumns.badVoltageNodes();
+        double badNodesError = balanceColumns.badNodesError();
+        double badVoltageNodesError = balanceColumns.badVoltageNodesError();
 
         try {
             formatter
@@ -7,30 +7,65 @@
 
 package com.powsybl.cgmes.model.interpretation;
 
-import org.apache.commons.math3.complex.Complex;
-
 /**
  * @author José Antonio Marqués <marquesja at aia.es>
  * @author Marcos de Miguel <demiguelm at aia.es>
  */
 class BranchAdmittanceMatrix {
 
-    public void calculateAdmittance(double r, double x, double a1, double angleDegrees1, Complex ysh1, double a2, double angleDegrees2, Complex ysh2) {
-        double angle1 = Math.toRadians(angleDegrees1);
-        double angle2 = Math.toRadians(angleDegrees2);
-        Complex aA1 = new Complex(a1 * Math.cos(angle1), a1 * Math.sin(angle1));
-        Complex aA2 = new Complex(a2 * Math.cos(angle2), a2 * Math.sin(angle2));
-
-        Complex z = new Complex(r, x);
-        y11 = z.reciprocal().add(ysh1).divide(aA1.conjugate().multiply(aA1));
-        y12 = z.reciprocal().negate().divide(aA1.conjugate().multiply(aA2));
-        y21 = z.reciprocal().negate().divide(aA2.conjugate().multiply(aA1));
-        y22 = z.reciprocal().add(ysh2).divide(aA2.conjugate().multiply(aA2));
+    BranchAdmittanceMatrix() {
+        complex = new ComplexKernel();
+    }
+
+    // Phase shifts are given by the cosine and sine of their angles
+    public void calculateAdmittance(double r, double x, double a1, double angle1Cos, double angle1Sin, double ysh1Re,
+            double ysh1Im, double a2, double angle2Cos, double angle2Sin, double ysh2Re, double ysh2Im) {
+        double a1Re = a1 * angle1Cos;
+        double a1Im = a1 * angle1Sin;
+        double a2Re = a2 * angle2Cos;
+        double a2Im = a2 * angle2Sin;
+
+        ComplexKernel c = complex;
+        c.reciprocal(r, x);
+        double yRe = c.re;
+        double yIm = c.im;
+
+        c.add(yRe, yIm, ysh1Re, ysh1Im);
+        double nRe = c.re;
+        double nIm = c.im;
+        c.multiply(a1Re, -a1Im, a1Re, a1Im);
+        c.divide(nRe, nIm, c.re, c.im);
+        y11Re = c.re;
+        y11Im = c.im;
+
+        c.multiply(a1Re, -a1Im, a2Re, a2Im);
+        c.divide(-yRe, -yIm, c.re, c.im);
+        y12Re = c.re;
+        y12Im = c.im;
+
+        c.multiply(a2Re, -a2Im, a1Re, a1Im);
+        c.divide(-yRe, -yIm, c.re, c.im);
+        y21Re = c.re;
+        y21Im = c.im;
+
+        c.add(yRe, yIm, ysh2Re, ysh2Im);
+        nRe = c.re;
+        nIm = c.im;
+        c.multiply(a2Re, -a2Im, a2Re, a2Im);
+        c.divide(nRe, nIm, c.re, c.im);
+        y22Re = c.re;
+        y22Im = c.im;
     }
 
-    Complex y11;
-    Complex y12;
-    Complex y21;
-    Complex y22;
+    double y11Re;
+    double y11Im;
+    double y12Re;
+    double y12Im;
+    double y21Re;
+    double y21Im;
+    double y22Re;
+    double y22Im;
 
+    // Reused by all the calculations of the matrix
+    private final ComplexKernel complex;
 }
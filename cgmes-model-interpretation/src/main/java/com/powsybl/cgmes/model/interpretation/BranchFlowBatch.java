@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+/**
+ * Flows at both ends of a batch of branches, Sft = Vf conj(y11 Vf + y12 Vt) and
+ * Stf = Vt conj(y21 Vf + y22 Vt), calculated in one sweep over arrays of real
+ * and imaginary parts.
+ * <p>
+ * The sweep is a plain loop without branches or calls, that the JIT compiler
+ * can unroll and vectorize. Branches with NaN or infinite values are then
+ * calculated again with the special value rules of {@link ComplexKernel}, so
+ * the flows are the same as the ones of {@link FlowCalculator}.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class BranchFlowBatch {
+
+    BranchFlowBatch(int capacity) {
+        y11Re = new double[capacity];
+        y11Im = new double[capacity];
+        y12Re = new double[capacity];
+        y12Im = new double[capacity];
+        y21Re = new double[capacity];
+        y21Im = new double[capacity];
+        y22Re = new double[capacity];
+        y22Im = new double[capacity];
+        v1Re = new double[capacity];
+        v1Im = new double[capacity];
+        v2Re = new double[capacity];
+        v2Im = new double[capacity];
+        p1 = new double[capacity];
+        q1 = new double[capacity];
+        p2 = new double[capacity];
+        q2 = new double[capacity];
+        complex = new ComplexKernel();
+    }
+
+    int add(BranchAdmittanceMatrix y, double vfRe, double vfIm, double vtRe, double vtIm) {
+        int k = size++;
+        y11Re[k] = y.y11Re;
+        y11Im[k] = y.y11Im;
+        y12Re[k] = y.y12Re;
+        y12Im[k] = y.y12Im;
+        y21Re[k] = y.y21Re;
+        y21Im[k] = y.y21Im;
+        y22Re[k] = y.y22Re;
+        y22Im[k] = y.y22Im;
+        v1Re[k] = vfRe;
+        v1Im[k] = vfIm;
+        v2Re[k] = vtRe;
+        v2Im[k] = vtIm;
+        return k;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void calculate() {
+        for (int k = 0; k < size; k++) {
+            // Current from each end, with the operations of ComplexKernel in the same order
+            double iftRe = y12Re[k] * v2Re[k] - y12Im[k] * v2Im[k] + (y11Re[k] * v1Re[k] - y11Im[k] * v1Im[k]);
+            double iftIm = y12Re[k] * v2Im[k] + y12Im[k] * v2Re[k] + (y11Re[k] * v1Im[k] + y11Im[k] * v1Re[k]);
+            double itfRe = y21Re[k] * v1Re[k] - y21Im[k] * v1Im[k] + (y22Re[k] * v2Re[k] - y22Im[k] * v2Im[k]);
+            double itfIm = y21Re[k] * v1Im[k] + y21Im[k] * v1Re[k] + (y22Re[k] * v2Im[k] + y22Im[k] * v2Re[k]);
+
+            // S = conj(I) V
+            p1[k] = iftRe * v1Re[k] + iftIm * v1Im[k];
+            q1[k] = iftRe * v1Im[k] - iftIm * v1Re[k];
+            p2[k] = itfRe * v2Re[k] + itfIm * v2Im[k];
+            q2[k] = itfRe * v2Im[k] - itfIm * v2Re[k];
+        }
+        for (int k = 0; k < size; k++) {
+            if (!isFinite(p1[k]) || !isFinite(q1[k]) || !isFinite(p2[k]) || !isFinite(q2[k])) {
+                calculateSpecialValues(k);
+            }
+        }
+    }
+
+    // A NaN or infinite value in the inputs or in any intermediate result always reaches the flows
+    private void calculateSpecialValues(int k) {
+        flow(y12Re[k], y12Im[k], v2Re[k], v2Im[k], y11Re[k], y11Im[k], v1Re[k], v1Im[k]);
+        p1[k] = complex.re;
+        q1[k] = complex.im;
+        flow(y21Re[k], y21Im[k], v1Re[k], v1Im[k], y22Re[k], y22Im[k], v2Re[k], v2Im[k]);
+        p2[k] = complex.re;
+        q2[k] = complex.im;
+    }
+
+    // conj(ya va + yb vb) vb
+    private void flow(double yaRe, double yaIm, double vaRe, double vaIm, double ybRe, double ybIm, double vbRe,
+            double vbIm) {
+        complex.multiply(yaRe, yaIm, vaRe, vaIm);
+        double iRe = complex.re;
+        double iIm = complex.im;
+        complex.multiply(ybRe, ybIm, vbRe, vbIm);
+        complex.add(iRe, iIm, complex.re, complex.im);
+        complex.conjugate();
+        complex.multiply(complex.re, complex.im, vbRe, vbIm);
+    }
+
+    private static boolean isFinite(double x) {
+        return !Double.isNaN(x) && !Double.isInfinite(x);
+    }
+
+    double p1(int k) {
+        return p1[k];
+    }
+
+    double q1(int k) {
+        return q1[k];
+    }
+
+    double p2(int k) {
+        return p2[k];
+    }
+
+    double q2(int k) {
+        return q2[k];
+    }
+
+    private final double[]      y11Re;
+    private final double[]      y11Im;
+    private final double[]      y12Re;
+    private final double[]      y12Im;
+    private final double[]      y21Re;
+    private final double[]      y21Im;
+    private final double[]      y22Re;
+    private final double[]      y22Im;
+    private final double[]      v1Re;
+    private final double[]      v1Im;
+    private final double[]      v2Re;
+    private final double[]      v2Im;
+    private final double[]      p1;
+    private final double[]      q1;
+    private final double[]      p2;
+    private final double[]      q2;
+    private final ComplexKernel complex;
+    private int                 size;
+}
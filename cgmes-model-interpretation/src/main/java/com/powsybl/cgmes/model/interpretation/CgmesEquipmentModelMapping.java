@@ -137,6 +137,42 @@ class CgmesEquipmentModelMapping {
         this.xfmr3PhaseAngleClock = xfmr3PhaseAngleClock;
     }
 
+    // Two configurations with the same mapping of an equipment class give the same models for it
+
+    boolean sameLineMapping(CgmesEquipmentModelMapping other) {
+        return lineBshunt == other.lineBshunt && lineRatio0 == other.lineRatio0;
+    }
+
+    boolean sameXfmr2Mapping(CgmesEquipmentModelMapping other) {
+        return xfmr2Ratio0 == other.xfmr2Ratio0 && xfmr2RatioPhase == other.xfmr2RatioPhase
+                && xfmr2Ptc2Negate == other.xfmr2Ptc2Negate && xfmr2YShunt == other.xfmr2YShunt
+                && xfmr2PhaseAngleClock == other.xfmr2PhaseAngleClock && xfmr2Pac2Negate == other.xfmr2Pac2Negate;
+    }
+
+    boolean sameXfmr3Mapping(CgmesEquipmentModelMapping other) {
+        return xfmr3Ratio0StarBusSide == other.xfmr3Ratio0StarBusSide
+                && xfmr3RatioPhaseStarBusSide == other.xfmr3RatioPhaseStarBusSide
+                && xfmr3YShunt == other.xfmr3YShunt && xfmr3PhaseAngleClock == other.xfmr3PhaseAngleClock;
+    }
+
+    // Number of mapping alternatives that are not the same as in the other configuration
+    int alternativesChanged(CgmesEquipmentModelMapping other) {
+        int changed = 0;
+        changed += lineBshunt == other.lineBshunt ? 0 : 1;
+        changed += lineRatio0 == other.lineRatio0 ? 0 : 1;
+        changed += xfmr2Ratio0 == other.xfmr2Ratio0 ? 0 : 1;
+        changed += xfmr2RatioPhase == other.xfmr2RatioPhase ? 0 : 1;
+        changed += xfmr2Ptc2Negate == other.xfmr2Ptc2Negate ? 0 : 1;
+        changed += xfmr2YShunt == other.xfmr2YShunt ? 0 : 1;
+        changed += xfmr2PhaseAngleClock == other.xfmr2PhaseAngleClock ? 0 : 1;
+        changed += xfmr2Pac2Negate == other.xfmr2Pac2Negate ? 0 : 1;
+        changed += xfmr3Ratio0StarBusSide == other.xfmr3Ratio0StarBusSide ? 0 : 1;
+        changed += xfmr3RatioPhaseStarBusSide == other.xfmr3RatioPhaseStarBusSide ? 0 : 1;
+        changed += xfmr3YShunt == other.xfmr3YShunt ? 0 : 1;
+        changed += xfmr3PhaseAngleClock == other.xfmr3PhaseAngleClock ? 0 : 1;
+        return changed;
+    }
+
     public int length() {
         return toString().length();
     }
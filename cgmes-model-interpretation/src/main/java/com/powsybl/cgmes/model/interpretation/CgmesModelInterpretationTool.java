@@ -8,12 +8,17 @@
 package com.powsybl.cgmes.model.interpretation;
 
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 
 import com.google.auto.service.AutoService;
+import com.powsybl.cgmes.model.interpretation.InterpretationMetrics.Measure;
+import com.powsybl.cgmes.model.interpretation.InterpretationMetrics.Phase;
 import com.powsybl.tools.Command;
 import com.powsybl.tools.Tool;
 import com.powsybl.tools.ToolRunningContext;
@@ -25,9 +30,21 @@ import com.powsybl.tools.ToolRunningContext;
 @AutoService(Tool.class)
 public class CgmesModelInterpretationTool implements Tool {
 
-    private static final String INPUT_PATH    = "input-path";
-    private static final String INPUT_PATTERN = "input-pattern";
-    private static final String OUTPUT_PATH   = "output-path";
+    private static final String INPUT_PATH       = "input-path";
+    private static final String INPUT_PATTERN    = "input-pattern";
+    private static final String OUTPUT_PATH      = "output-path";
+    private static final String BOUNDARY_PATH    = "boundary-path";
+    private static final String THREADS          = "threads";
+    private static final String CONFIG_THREADS   = "config-threads";
+    private static final String NODAL_ADMITTANCE = "nodal-admittance";
+    private static final String MAPPING_SEARCH   = "mapping-search";
+    private static final String PRUNING          = "pruning";
+    private static final String WORST_NODES      = "worst-nodes";
+    private static final String CACHE_PATH       = "cache-path";
+    private static final String CACHE_MAX_SIZE   = "cache-max-size";
+    private static final String CACHE_MAX_AGE    = "cache-max-age";
+    private static final String METRICS_PATH     = "metrics-path";
+    private static final String METRICS_FORMAT   = "metrics-format";
 
     @Override
     public Command getCommand() {
@@ -52,6 +69,40 @@ public class CgmesModelInterpretationTool implements Tool {
                         .argName("INPUT_PATTERN").required().build());
                 options.addOption(Option.builder().longOpt(OUTPUT_PATH).desc("the output path").hasArg()
                         .argName("OUTPUT_PATH").required().build());
+                options.addOption(Option.builder().longOpt(BOUNDARY_PATH)
+                        .desc("the boundary set of the models that do not include it, loaded once").hasArg()
+                        .argName("BOUNDARY_PATH").build());
+                options.addOption(Option.builder().longOpt(THREADS)
+                        .desc("number of models interpreted at the same time").hasArg().argName("THREADS").build());
+                options.addOption(Option.builder().longOpt(CONFIG_THREADS)
+                        .desc("number of threads used to evaluate the model mapping configurations of each model")
+                        .hasArg().argName("CONFIG_THREADS").build());
+                options.addOption(Option.builder().longOpt(NODAL_ADMITTANCE)
+                        .desc("calculate the flows from the nodal admittance matrix of each model").build());
+                options.addOption(Option.builder().longOpt(MAPPING_SEARCH)
+                        .desc("number of best model mappings to search over all the mapping alternatives")
+                        .hasArg().argName("MAPPING_SEARCH").build());
+                options.addOption(Option.builder().longOpt(PRUNING)
+                        .desc("number of best configurations evaluated completely, the others are abandoned early")
+                        .hasArg().argName("PRUNING").build());
+                options.addOption(Option.builder().longOpt(WORST_NODES)
+                        .desc("number of worst nodes kept for each configuration, 0 to keep all the nodes")
+                        .hasArg().argName("WORST_NODES").build());
+                options.addOption(Option.builder().longOpt(CACHE_PATH)
+                        .desc("folder where interpretations are kept to be reused for unchanged models")
+                        .hasArg().argName("CACHE_PATH").build());
+                options.addOption(Option.builder().longOpt(CACHE_MAX_SIZE)
+                        .desc("maximum size of the cache in MB, least recently used interpretations are evicted")
+                        .hasArg().argName("CACHE_MAX_SIZE").build());
+                options.addOption(Option.builder().longOpt(CACHE_MAX_AGE)
+                        .desc("days an interpretation is kept in the cache since it was last used")
+                        .hasArg().argName("CACHE_MAX_AGE").build());
+                options.addOption(Option.builder().longOpt(METRICS_PATH)
+                        .desc("file where the time, allocated bytes and elements of each phase are written")
+                        .hasArg().argName("METRICS_PATH").build());
+                options.addOption(Option.builder().longOpt(METRICS_FORMAT)
+                        .desc("format of the metrics file, json (default) or prometheus")
+                        .hasArg().argName("METRICS_FORMAT").build());
                 return options;
             }
 
@@ -72,9 +123,48 @@ public class CgmesModelInterpretationTool implements Tool {
         String inputPath = line.getOptionValue(INPUT_PATH);
         String inputPattern = line.getOptionValue(INPUT_PATTERN);
         String outputPath = line.getOptionValue(OUTPUT_PATH);
+        int configThreads = Integer.parseInt(line.getOptionValue(CONFIG_THREADS, "1"));
 
-        CgmesModelsInterpretation cgmesFlowValidation = new CgmesModelsInterpretation(inputPath);
-        new InterpretationsReport(Paths.get(outputPath)).report(cgmesFlowValidation.reviewAll(inputPattern));
+        CgmesModelsInterpretation cgmesFlowValidation = new CgmesModelsInterpretation(inputPath,
+                line.getOptionValue(BOUNDARY_PATH));
+        cgmesFlowValidation.setThreads(Integer.parseInt(line.getOptionValue(THREADS, "1")));
+        cgmesFlowValidation.setConfigThreads(configThreads);
+        cgmesFlowValidation.setNodalAdmittance(line.hasOption(NODAL_ADMITTANCE));
+        cgmesFlowValidation.setMappingSearch(Integer.parseInt(line.getOptionValue(MAPPING_SEARCH, "0")));
+        cgmesFlowValidation.setPruning(Integer.parseInt(line.getOptionValue(PRUNING, "0")));
+        cgmesFlowValidation.setWorstNodes(Integer.parseInt(line.getOptionValue(WORST_NODES, "5")));
+        if (line.hasOption(CACHE_PATH)) {
+            InterpretationCache cache = new InterpretationCache(Paths.get(line.getOptionValue(CACHE_PATH)));
+            if (line.hasOption(CACHE_MAX_SIZE)) {
+                cache.setMaxSize(Long.parseLong(line.getOptionValue(CACHE_MAX_SIZE)) * 1024 * 1024);
+            }
+            if (line.hasOption(CACHE_MAX_AGE)) {
+                cache.setMaxAge(Duration.ofDays(Long.parseLong(line.getOptionValue(CACHE_MAX_AGE))));
+            }
+            cgmesFlowValidation.setCache(cache);
+        }
+        MetricsReport.Format metricsFormat = metricsFormat(line.getOptionValue(METRICS_FORMAT, "json"));
+
+        Map<String, InterpretationResult> interpretations = cgmesFlowValidation.reviewAll(inputPattern);
+        InterpretationMetrics catalogMetrics = new InterpretationMetrics();
+        Measure measure = catalogMetrics.start(Phase.REPORT);
+        new InterpretationsReport(Paths.get(outputPath)).report(interpretations);
+        measure.stop(interpretations.size());
+        if (line.hasOption(METRICS_PATH)) {
+            new MetricsReport(Paths.get(line.getOptionValue(METRICS_PATH)), metricsFormat)
+                    .report(cgmesFlowValidation.getMetrics(), catalogMetrics);
+        }
+    }
+
+    private static MetricsReport.Format metricsFormat(String format) {
+        switch (format.toLowerCase(Locale.ROOT)) {
+            case "json":
+                return MetricsReport.Format.JSON;
+            case "prometheus":
+                return MetricsReport.Format.PROMETHEUS;
+            default:
+                throw new IllegalArgumentException("Invalid metrics format " + format);
+        }
     }
 
 }
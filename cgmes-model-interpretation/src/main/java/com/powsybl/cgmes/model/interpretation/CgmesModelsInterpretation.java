@@ -10,15 +10,21 @@ package com.powsybl.cgmes.model.interpretation;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.powsybl.cgmes.model.CgmesModel;
 import com.powsybl.cgmes.model.CgmesModelFactory;
+import com.powsybl.cgmes.model.interpretation.InterpretationMetrics.Measure;
+import com.powsybl.cgmes.model.interpretation.InterpretationMetrics.Phase;
+import com.powsybl.cgmes.model.triplestore.CgmesModelTripleStore;
 import com.powsybl.cgmes.tools.Catalog;
+import com.powsybl.commons.datasource.DataSource;
+import com.powsybl.triplestore.api.PropertyBags;
 import com.powsybl.triplestore.api.TripleStoreFactory;
 
 /**
@@ -27,6 +33,8 @@ import com.powsybl.triplestore.api.TripleStoreFactory;
  */
 public class CgmesModelsInterpretation extends Catalog {
 
+    private static final String BOUNDARY_FILES = ".*_(EQ|TP)_BD.*";
+
     public CgmesModelsInterpretation(String sdata) {
         this(sdata, null);
     }
@@ -34,39 +42,168 @@ public class CgmesModelsInterpretation extends Catalog {
     public CgmesModelsInterpretation(String sdata, String sboundary) {
         super(sdata);
         boundary = sboundary == null ? null : Paths.get(sboundary);
-        exceptions = new HashMap<>();
+        exceptions = new ConcurrentHashMap<>();
+        metrics = new ConcurrentHashMap<>();
+        threads = 1;
+        configThreads = 1;
+        nodalAdmittance = false;
+        bestMappings = 0;
+        pruning = 0;
+        worstNodes = 5;
+    }
+
+    // Number of models interpreted at the same time, each one with its own configuration threads
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads " + threads);
+        }
+        this.threads = threads;
+    }
+
+    public void setConfigThreads(int configThreads) {
+        if (configThreads < 1) {
+            throw new IllegalArgumentException("Invalid number of configuration threads " + configThreads);
+        }
+        this.configThreads = configThreads;
+    }
+
+    public void setNodalAdmittance(boolean nodalAdmittance) {
+        this.nodalAdmittance = nodalAdmittance;
+    }
+
+    public void setMappingSearch(int bestMappings) {
+        if (bestMappings < 0) {
+            throw new IllegalArgumentException("Invalid number of best model mappings " + bestMappings);
+        }
+        this.bestMappings = bestMappings;
+    }
+
+    public void setPruning(int pruning) {
+        if (pruning < 0) {
+            throw new IllegalArgumentException("Invalid number of configurations to keep " + pruning);
+        }
+        this.pruning = pruning;
+    }
+
+    public void setWorstNodes(int worstNodes) {
+        if (worstNodes < 0) {
+            throw new IllegalArgumentException("Invalid number of worst nodes " + worstNodes);
+        }
+        this.worstNodes = worstNodes;
+    }
+
+    // Results of models already interpreted with the same inputs are taken from the cache
+    public void setCache(InterpretationCache cache) {
+        this.cache = cache;
     }
 
     public Map<String, InterpretationResult> reviewAll(String pattern) throws IOException {
-        Map<String, InterpretationResult> interpretations = new HashMap<>();
+        // Exceptions and metrics are the ones of this review only
+        exceptions.clear();
+        metrics.clear();
+        Map<String, InterpretationResult> interpretations = new ConcurrentHashMap<>();
         reviewAll(pattern, p -> {
             try {
                 LOG.info("case {}", modelName(p));
-                ModelInterpretation modelInterpretation = new ModelInterpretation(load(p));
-                modelInterpretation.interpret();
-                interpretations.put(modelName(p), modelInterpretation.getInterpretation());
+                String key = cache == null ? null : cache.key(p, boundary, settings());
+                InterpretationResult cached = cache == null ? null : cache.get(key);
+                if (cached != null) {
+                    LOG.info("case {} unchanged, cached interpretation {}", modelName(p), key);
+                    interpretations.put(modelName(p), cached);
+                    return;
+                }
+                InterpretationMetrics modelMetrics = new InterpretationMetrics();
+                Object loaded = InterpretationEvents.beginModelLoad(modelName(p));
+                CgmesModel cgmes = load(p, modelMetrics);
+                ModelInterpretation modelInterpretation = new ModelInterpretation(cgmes);
+                modelInterpretation.setModelName(modelName(p));
+                modelInterpretation.setThreads(configThreads);
+                modelInterpretation.setNodalAdmittance(nodalAdmittance);
+                modelInterpretation.setMappingSearch(bestMappings);
+                modelInterpretation.setPruning(pruning);
+                modelInterpretation.setWorstNodes(worstNodes);
+                modelInterpretation.loadInputModel();
+                InterpretationEvents.modelLoaded(loaded, modelName(p), modelInterpretation.numNodes(),
+                        () -> triples(cgmes));
+                modelInterpretation.interpretInputModel();
+                InterpretationResult interpretation = modelInterpretation.getInterpretation();
+                modelMetrics.add(modelInterpretation.getMetrics());
+                metrics.put(modelName(p), modelMetrics);
+                if (cache != null) {
+                    cache.put(key, interpretation);
+                }
+                interpretations.put(modelName(p), interpretation);
             } catch (Exception x) {
                 exceptions.put(modelName(p), x);
                 LOG.warn(x.getMessage());
+                InterpretationEvents.modelFailed(modelName(p), x);
             }
-        });
-        return interpretations;
+        }, threads);
+        if (cache != null) {
+            cache.evict();
+        }
+        // Models are returned sorted by name, whatever the order they were interpreted in
+        return new TreeMap<>(interpretations);
+    }
+
+    // Settings that change the results of a model, the number of threads does not
+    private String settings() {
+        return String.join(",",
+                "nodalAdmittance=" + nodalAdmittance,
+                "mappingSearch=" + bestMappings,
+                "pruning=" + pruning,
+                "worstNodes=" + worstNodes);
     }
 
+    // Exceptions of the models that could not be interpreted in the last review
     public Map<String, Exception> getExceptions() {
         return exceptions;
     }
 
-    private CgmesModel load(Path p) {
+    // Metrics of the models interpreted in the last review, cached ones are not included
+    public Map<String, InterpretationMetrics> getMetrics() {
+        return new TreeMap<>(metrics);
+    }
+
+    // Models that come with their own boundary files use them instead of the shared boundary
+    private CgmesModel load(Path p, InterpretationMetrics modelMetrics) throws IOException {
+        Measure measure = modelMetrics.start(Phase.PARSE);
         String impl = TripleStoreFactory.defaultImplementation();
-        if (boundary == null) {
-            return CgmesModelFactory.create(dataSource(p), impl);
-        } else {
-            return CgmesModelFactory.create(dataSource(p), dataSource(boundary), impl);
+        DataSource ds = dataSource(p);
+        CgmesModel cgmes = CgmesModelFactory.create(ds, impl);
+        if (boundary != null && ds.listNames(BOUNDARY_FILES).isEmpty()) {
+            sharedBoundary(impl).attachTo(cgmes);
+        }
+        measure.stop(ds.listNames(".*").size());
+        return cgmes;
+    }
+
+    // Only counted when the loaded event is recorded, it is a query over all the graphs
+    private static long triples(CgmesModel cgmes) {
+        PropertyBags count = ((CgmesModelTripleStore) cgmes)
+                .query("SELECT (COUNT(*) AS ?triples) WHERE { GRAPH ?graph { ?s ?p ?o } }");
+        return count.isEmpty() ? 0 : (long) count.get(0).asDouble("triples");
+    }
+
+    // The boundary is parsed the first time a model needs it, and only once
+    private synchronized SharedBoundary sharedBoundary(String impl) {
+        if (sharedBoundary == null) {
+            LOG.info("boundary {}", boundary);
+            sharedBoundary = new SharedBoundary(dataSource(boundary), impl);
         }
+        return sharedBoundary;
     }
 
-    private final Path             boundary;
-    private Map<String, Exception> exceptions;
-    private static final Logger    LOG = LoggerFactory.getLogger(CgmesModelsInterpretation.class);
+    private final Path                         boundary;
+    private Map<String, Exception>             exceptions;
+    private Map<String, InterpretationMetrics> metrics;
+    private int                                threads;
+    private int                                configThreads;
+    private boolean                            nodalAdmittance;
+    private int                                bestMappings;
+    private int                                pruning;
+    private int                                worstNodes;
+    private InterpretationCache                cache;
+    private SharedBoundary                     sharedBoundary;
+    private static final Logger                LOG = LoggerFactory.getLogger(CgmesModelsInterpretation.class);
 }
@@ -0,0 +1,632 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.powsybl.cgmes.model.interpretation.XfmrUtilities.TapChangerData;
+import com.powsybl.triplestore.api.PropertyBag;
+
+/**
+ * Int-indexed snapshot of an interpreted model. Nodes, lines and transformers
+ * are numbered densely and their parameters are held in primitive arrays, so
+ * the interpretation does not parse property values while it runs.
+ *
+ * Equipment is numbered in a single space: lines first, then transformers.
+ * The equipment incident to each node is stored in compressed sparse row form.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class CompiledModel {
+
+    static final int R                          = 0;
+    static final int X                          = 1;
+    static final int B                          = 2;
+    static final int G                          = 3;
+    static final int RATED_U                    = 4;
+    static final int RNS                        = 5;
+    static final int RSVI                       = 6;
+    static final int RSTEP                      = 7;
+    static final int RLS                        = 8;
+    static final int RHS                        = 9;
+    static final int PNS                        = 10;
+    static final int PSVI                       = 11;
+    static final int PSTEP                      = 12;
+    static final int PLS                        = 13;
+    static final int PHS                        = 14;
+    static final int X_STEP_MIN                 = 15;
+    static final int X_STEP_MAX                 = 16;
+    static final int PWCA                       = 17;
+    static final int PSPSI                      = 18;
+    static final int STEP_PHASE_SHIFT_INCREMENT = 19;
+    static final int END_FIELDS                 = 20;
+
+    static final int NO_INDEX = -1;
+
+    private static final String[] END_FIELD_NAMES = {"r", "x", "b", "g", "ratedU", "rns", "rsvi", "rstep", "rls",
+        "rhs", "pns", "psvi", "pstep", "pls", "phs", "xStepMin", "xStepMax", "pwca", "pspsi", "stepPhaseShiftIncrement"};
+
+    private CompiledModel(int numNodes, int numLines, int numTransformers) {
+        nodeIds = new String[numNodes];
+        nodeIndex = new HashMap<>(numNodes * 2);
+        v = new double[numNodes];
+        angle = new double[numNodes];
+        vRe = new double[numNodes];
+        vIm = new double[numNodes];
+        p = new double[numNodes];
+        q = new double[numNodes];
+        nominalV = new double[numNodes];
+
+        lineIds = new String[numLines];
+        lineIndex = new HashMap<>(numLines * 2);
+        lineR = new double[numLines];
+        lineX = new double[numLines];
+        lineBch = new double[numLines];
+        lineNode = new int[numLines * 2];
+        lineConnected = new boolean[numLines * 2];
+
+        transformerIds = new String[numTransformers];
+        transformerIndex = new HashMap<>(numTransformers * 2);
+        xfmr3 = new boolean[numTransformers];
+        transformerEnd = new double[numTransformers * 3 * END_FIELDS];
+        transformerNode = new int[numTransformers * 3];
+        transformerConnected = new boolean[numTransformers * 3];
+        phaseAngleClock = new int[numTransformers * 3];
+        ratioRegulatingControl = new boolean[numTransformers * 3];
+        phaseRegulatingControl = new boolean[numTransformers * 3];
+        phaseTapChangerType = new String[numTransformers * 3];
+        ratioTapChangerTable = new String[numTransformers * 3];
+        phaseTapChangerTable = new String[numTransformers * 3];
+    }
+
+    static CompiledModel compile(Map<String, PropertyBag> nodeParameters, Map<String, PropertyBag> lineParameters,
+            Map<String, PropertyBag> transformerParameters, Map<String, List<String>> equipmentsInNode,
+            List<List<String>> joinedNodes, Map<List<String>, Boolean> isolatedNodes) {
+        Map<String, PropertyBag> nodes = orEmpty(nodeParameters);
+        Map<String, PropertyBag> lines = orEmpty(lineParameters);
+        Map<String, PropertyBag> transformers = orEmpty(transformerParameters);
+        CompiledModel m = new CompiledModel(nodes.size(), lines.size(), transformers.size());
+
+        int n = 0;
+        for (Map.Entry<String, PropertyBag> e : nodes.entrySet()) {
+            PropertyBag node = e.getValue();
+            m.nodeIds[n] = e.getKey();
+            m.nodeIndex.put(e.getKey(), n);
+            m.v[n] = node.asDouble("v");
+            m.angle[n] = node.asDouble("angle");
+            // Voltage phasors are calculated once, branch flows do not need trigonometry
+            double angleRadians = Math.toRadians(m.angle[n]);
+            m.vRe[n] = m.v[n] * Math.cos(angleRadians);
+            m.vIm[n] = m.v[n] * Math.sin(angleRadians);
+            m.p[n] = node.asDouble("p");
+            m.q[n] = node.asDouble("q");
+            m.nominalV[n] = node.asDouble("nominalV");
+            n++;
+        }
+
+        Map<String, Integer> equipmentIndex = new HashMap<>();
+        int l = 0;
+        for (Map.Entry<String, PropertyBag> e : lines.entrySet()) {
+            PropertyBag line = e.getValue();
+            m.lineIds[l] = e.getKey();
+            m.lineIndex.put(e.getKey(), l);
+            m.lineR[l] = line.asDouble("r");
+            m.lineX[l] = line.asDouble("x");
+            m.lineBch[l] = line.asDouble("bch");
+            for (int end = 1; end <= 2; end++) {
+                m.lineNode[l * 2 + end - 1] = m.nodeIndex(line.get("terminal" + end));
+                m.lineConnected[l * 2 + end - 1] = line.asBoolean("connected" + end, false);
+            }
+            equipmentIndex.put(e.getKey(), l);
+            l++;
+        }
+
+        int t = 0;
+        for (Map.Entry<String, PropertyBag> e : transformers.entrySet()) {
+            PropertyBag transformer = e.getValue();
+            m.transformerIds[t] = e.getKey();
+            m.transformerIndex.put(e.getKey(), t);
+            for (int end = 1; end <= 3; end++) {
+                int k = t * 3 + end - 1;
+                for (int f = 0; f < END_FIELDS; f++) {
+                    double defaultValue = f == RATED_U ? Double.NaN : 0.0;
+                    m.transformerEnd[k * END_FIELDS + f] = transformer.asDouble(END_FIELD_NAMES[f] + end, defaultValue);
+                }
+                m.transformerNode[k] = m.nodeIndex(transformer.get("terminal" + end));
+                m.transformerConnected[k] = transformer.asBoolean("connected" + end, false);
+                m.phaseAngleClock[k] = transformer.asInt("pac" + end, 0);
+                m.ratioRegulatingControl[k] = transformer.asBoolean("ratioRegulatingControlEnabled" + end, false);
+                m.phaseRegulatingControl[k] = transformer.asBoolean("phaseRegulatingControlEnabled" + end, false);
+                m.phaseTapChangerType[k] = transformer.get("ptype" + end);
+                m.ratioTapChangerTable[k] = transformer.get("RatioTapChangerTable" + end);
+                m.phaseTapChangerTable[k] = transformer.get("PhaseTapChangerTable" + end);
+            }
+            // A transformer is interpreted as a three winding one only when its third end has a known node
+            m.xfmr3[t] = m.transformerNode[t * 3 + 2] != NO_INDEX;
+            if (!equipmentIndex.containsKey(e.getKey())) {
+                equipmentIndex.put(e.getKey(), lines.size() + t);
+            }
+            t++;
+        }
+
+        m.compileIncidence(orEmpty(equipmentsInNode), equipmentIndex);
+        m.compileBuses(joinedNodes == null ? Collections.emptyList() : joinedNodes, orEmpty(isolatedNodes));
+        return m;
+    }
+
+    private void compileIncidence(Map<String, List<String>> equipmentsInNode, Map<String, Integer> equipmentIndex) {
+        int numNodes = nodeIds.length;
+        incidenceStart = new int[numNodes + 1];
+        for (int n = 0; n < numNodes; n++) {
+            List<String> equipments = equipmentsInNode.get(nodeIds[n]);
+            incidenceStart[n + 1] = incidenceStart[n] + (equipments == null ? 0 : equipments.size());
+        }
+        incidentEquipment = new int[incidenceStart[numNodes]];
+        for (int n = 0; n < numNodes; n++) {
+            List<String> equipments = equipmentsInNode.get(nodeIds[n]);
+            if (equipments == null) {
+                continue;
+            }
+            int k = incidenceStart[n];
+            for (String id : equipments) {
+                incidentEquipment[k++] = equipmentIndex.getOrDefault(id, NO_INDEX);
+            }
+        }
+        hasEquipment = new boolean[numNodes];
+        for (int n = 0; n < numNodes; n++) {
+            hasEquipment[n] = equipmentsInNode.containsKey(nodeIds[n]);
+        }
+    }
+
+    private void compileBuses(List<List<String>> joinedNodes, Map<List<String>, Boolean> isolatedNodes) {
+        buses = joinedNodes;
+        busStart = new int[joinedNodes.size() + 1];
+        busIsolated = new boolean[joinedNodes.size()];
+        int b = 0;
+        for (List<String> bus : joinedNodes) {
+            busStart[b + 1] = busStart[b] + bus.size();
+            Boolean isolated = isolatedNodes.get(bus);
+            busIsolated[b] = isolated != null && isolated;
+            b++;
+        }
+        busNode = new int[busStart[joinedNodes.size()]];
+        int k = 0;
+        for (List<String> bus : joinedNodes) {
+            for (String node : bus) {
+                busNode[k++] = nodeIndex(node);
+            }
+        }
+    }
+
+    // Arrays are written as they are, see ModelSnapshot
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(nodeIds.length);
+        out.writeInt(lineIds.length);
+        out.writeInt(transformerIds.length);
+
+        ModelSnapshot.writeStrings(out, nodeIds);
+        ModelSnapshot.writeDoubles(out, v);
+        ModelSnapshot.writeDoubles(out, angle);
+        ModelSnapshot.writeDoubles(out, vRe);
+        ModelSnapshot.writeDoubles(out, vIm);
+        ModelSnapshot.writeDoubles(out, p);
+        ModelSnapshot.writeDoubles(out, q);
+        ModelSnapshot.writeDoubles(out, nominalV);
+
+        ModelSnapshot.writeInts(out, incidenceStart);
+        ModelSnapshot.writeInts(out, incidentEquipment);
+        ModelSnapshot.writeBooleans(out, hasEquipment);
+
+        ModelSnapshot.writeStrings(out, lineIds);
+        ModelSnapshot.writeDoubles(out, lineR);
+        ModelSnapshot.writeDoubles(out, lineX);
+        ModelSnapshot.writeDoubles(out, lineBch);
+        ModelSnapshot.writeInts(out, lineNode);
+        ModelSnapshot.writeBooleans(out, lineConnected);
+
+        ModelSnapshot.writeStrings(out, transformerIds);
+        ModelSnapshot.writeBooleans(out, xfmr3);
+        ModelSnapshot.writeDoubles(out, transformerEnd);
+        ModelSnapshot.writeInts(out, transformerNode);
+        ModelSnapshot.writeBooleans(out, transformerConnected);
+        ModelSnapshot.writeInts(out, phaseAngleClock);
+        ModelSnapshot.writeBooleans(out, ratioRegulatingControl);
+        ModelSnapshot.writeBooleans(out, phaseRegulatingControl);
+        ModelSnapshot.writeStrings(out, phaseTapChangerType);
+        ModelSnapshot.writeStrings(out, ratioTapChangerTable);
+        ModelSnapshot.writeStrings(out, phaseTapChangerTable);
+
+        ModelSnapshot.writeStringLists(out, buses);
+        ModelSnapshot.writeInts(out, busStart);
+        ModelSnapshot.writeInts(out, busNode);
+        ModelSnapshot.writeBooleans(out, busIsolated);
+    }
+
+    static CompiledModel read(ByteBuffer buffer) {
+        int numNodes = ModelSnapshot.readCount(buffer);
+        int numLines = ModelSnapshot.readCount(buffer);
+        int numTransformers = ModelSnapshot.readCount(buffer);
+        CompiledModel m = new CompiledModel(numNodes, numLines, numTransformers);
+
+        ModelSnapshot.readStrings(buffer, m.nodeIds);
+        for (int n = 0; n < numNodes; n++) {
+            m.nodeIndex.put(m.nodeIds[n], n);
+        }
+        ModelSnapshot.readDoubles(buffer, m.v);
+        ModelSnapshot.readDoubles(buffer, m.angle);
+        ModelSnapshot.readDoubles(buffer, m.vRe);
+        ModelSnapshot.readDoubles(buffer, m.vIm);
+        ModelSnapshot.readDoubles(buffer, m.p);
+        ModelSnapshot.readDoubles(buffer, m.q);
+        ModelSnapshot.readDoubles(buffer, m.nominalV);
+
+        m.incidenceStart = ModelSnapshot.readInts(buffer, new int[numNodes + 1]);
+        m.incidentEquipment = ModelSnapshot.readInts(buffer, new int[ModelSnapshot.peekLength(buffer)]);
+        m.hasEquipment = ModelSnapshot.readBooleans(buffer, new boolean[numNodes]);
+
+        ModelSnapshot.readStrings(buffer, m.lineIds);
+        for (int l = 0; l < numLines; l++) {
+            m.lineIndex.put(m.lineIds[l], l);
+        }
+        ModelSnapshot.readDoubles(buffer, m.lineR);
+        ModelSnapshot.readDoubles(buffer, m.lineX);
+        ModelSnapshot.readDoubles(buffer, m.lineBch);
+        ModelSnapshot.readInts(buffer, m.lineNode);
+        ModelSnapshot.readBooleans(buffer, m.lineConnected);
+
+        ModelSnapshot.readStrings(buffer, m.transformerIds);
+        for (int t = 0; t < numTransformers; t++) {
+            m.transformerIndex.put(m.transformerIds[t], t);
+        }
+        ModelSnapshot.readBooleans(buffer, m.xfmr3);
+        ModelSnapshot.readDoubles(buffer, m.transformerEnd);
+        ModelSnapshot.readInts(buffer, m.transformerNode);
+        ModelSnapshot.readBooleans(buffer, m.transformerConnected);
+        ModelSnapshot.readInts(buffer, m.phaseAngleClock);
+        ModelSnapshot.readBooleans(buffer, m.ratioRegulatingControl);
+        ModelSnapshot.readBooleans(buffer, m.phaseRegulatingControl);
+        ModelSnapshot.readStrings(buffer, m.phaseTapChangerType);
+        ModelSnapshot.readStrings(buffer, m.ratioTapChangerTable);
+        ModelSnapshot.readStrings(buffer, m.phaseTapChangerTable);
+
+        m.buses = ModelSnapshot.readStringLists(buffer);
+        int numBuses = m.buses.size();
+        m.busStart = ModelSnapshot.readInts(buffer, new int[numBuses + 1]);
+        m.busNode = ModelSnapshot.readInts(buffer, new int[ModelSnapshot.peekLength(buffer)]);
+        m.busIsolated = ModelSnapshot.readBooleans(buffer, new boolean[numBuses]);
+        m.checkIndexes();
+        return m;
+    }
+
+    // Offsets and indexes read from a snapshot are used as array indexes by all the evaluations
+    private void checkIndexes() {
+        checkStarts(incidenceStart, incidentEquipment.length, "incidence");
+        checkIndexes(incidentEquipment, lineIds.length + transformerIds.length, "incident equipment");
+        checkIndexes(lineNode, nodeIds.length, "line node");
+        checkIndexes(transformerNode, nodeIds.length, "transformer node");
+        checkStarts(busStart, busNode.length, "bus");
+        checkIndexes(busNode, nodeIds.length, "bus node");
+        for (int b = 0; b < buses.size(); b++) {
+            if (busStart[b + 1] - busStart[b] != buses.get(b).size()) {
+                throw new IllegalArgumentException("Invalid number of nodes of bus " + b);
+            }
+        }
+    }
+
+    private static void checkStarts(int[] starts, int end, String name) {
+        if (starts[0] != 0 || starts[starts.length - 1] != end) {
+            throw new IllegalArgumentException("Invalid " + name + " start or end");
+        }
+        for (int k = 1; k < starts.length; k++) {
+            if (starts[k] < starts[k - 1]) {
+                throw new IllegalArgumentException("Invalid " + name + " start " + k);
+            }
+        }
+    }
+
+    private static void checkIndexes(int[] indexes, int size, String name) {
+        for (int k = 0; k < indexes.length; k++) {
+            if (indexes[k] != NO_INDEX && (indexes[k] < 0 || indexes[k] >= size)) {
+                throw new IllegalArgumentException("Invalid " + name + " index " + indexes[k]);
+            }
+        }
+    }
+
+    private static <K, V> Map<K, V> orEmpty(Map<K, V> map) {
+        return map == null ? Collections.emptyMap() : map;
+    }
+
+    int nodeIndex(String id) {
+        if (id == null) {
+            return NO_INDEX;
+        }
+        return nodeIndex.getOrDefault(id, NO_INDEX);
+    }
+
+    int lineIndex(String id) {
+        if (id == null) {
+            return NO_INDEX;
+        }
+        return lineIndex.getOrDefault(id, NO_INDEX);
+    }
+
+    int transformerIndex(String id) {
+        if (id == null) {
+            return NO_INDEX;
+        }
+        return transformerIndex.getOrDefault(id, NO_INDEX);
+    }
+
+    static int requireNode(int n, String message) {
+        if (n == NO_INDEX) {
+            throw new NullPointerException(message);
+        }
+        return n;
+    }
+
+    int numNodes() {
+        return nodeIds.length;
+    }
+
+    int numLines() {
+        return lineIds.length;
+    }
+
+    int numTransformers() {
+        return transformerIds.length;
+    }
+
+    int numBuses() {
+        return busIsolated.length;
+    }
+
+    boolean isLine(int equipment) {
+        return equipment < lineIds.length;
+    }
+
+    int transformerOf(int equipment) {
+        return equipment - lineIds.length;
+    }
+
+    int lineNode(int line, int end) {
+        return lineNode[line * 2 + end - 1];
+    }
+
+    boolean lineConnected(int line, int end) {
+        return lineConnected[line * 2 + end - 1];
+    }
+
+    double transformerEnd(int transformer, int end, int field) {
+        return transformerEnd[(transformer * 3 + end - 1) * END_FIELDS + field];
+    }
+
+    int transformerNode(int transformer, int end) {
+        return transformerNode[transformer * 3 + end - 1];
+    }
+
+    boolean transformerConnected(int transformer, int end) {
+        return transformerConnected[transformer * 3 + end - 1];
+    }
+
+    int phaseAngleClock(int transformer, int end) {
+        return phaseAngleClock[transformer * 3 + end - 1];
+    }
+
+    boolean ratioRegulatingControl(int transformer, int end) {
+        return ratioRegulatingControl[transformer * 3 + end - 1];
+    }
+
+    boolean phaseRegulatingControl(int transformer, int end) {
+        return phaseRegulatingControl[transformer * 3 + end - 1];
+    }
+
+    String phaseTapChangerType(int transformer, int end) {
+        return phaseTapChangerType[transformer * 3 + end - 1];
+    }
+
+    String ratioTapChangerTable(int transformer, int end) {
+        return ratioTapChangerTable[transformer * 3 + end - 1];
+    }
+
+    String phaseTapChangerTable(int transformer, int end) {
+        return phaseTapChangerTable[transformer * 3 + end - 1];
+    }
+
+    /**
+     * Phase tap changers of the transformer ends, indexed as the ends. They
+     * only depend on the model and its tap changer tables, they are compiled
+     * once, before the configurations are evaluated, and read by all of them.
+     */
+    TapChangerData[] phaseTapChangers(TapChangerTables tapChangerTables) {
+        if (phaseTapChangersTables != tapChangerTables) {
+            TapChangerData[] compiled = new TapChangerData[transformerIds.length * 3];
+            for (int t = 0; t < transformerIds.length; t++) {
+                // Ends of two winding transformers read their own step phase shift increment field,
+                // only their second end can have its angle negated
+                int stepPhaseShiftIncrementField = xfmr3[t] ? STEP_PHASE_SHIFT_INCREMENT : PSPSI;
+                for (int end = 1; end <= (xfmr3[t] ? 3 : 2); end++) {
+                    compiled[t * 3 + end - 1] = XfmrUtilities.getPhaseTapChanger(this, t, end,
+                            stepPhaseShiftIncrementField, tapChangerTables, !xfmr3[t] && end == 2);
+                }
+            }
+            phaseTapChangers = compiled;
+            phaseTapChangersTables = tapChangerTables;
+        }
+        return phaseTapChangers;
+    }
+
+    // Adapters to the property bag views of the model
+
+    PropertyBag nodeParameters(int n) {
+        PropertyBag node = new PropertyBag(Arrays.asList("v", "angle", "p", "q", "nominalV"));
+        put(node, "v", v[n]);
+        put(node, "angle", angle[n]);
+        put(node, "p", p[n]);
+        put(node, "q", q[n]);
+        put(node, "nominalV", nominalV[n]);
+        return node;
+    }
+
+    PropertyBag lineParameters(int l) {
+        PropertyBag line = new PropertyBag(Arrays.asList("r", "x", "bch"));
+        put(line, "r", lineR[l]);
+        put(line, "x", lineX[l]);
+        put(line, "bch", lineBch[l]);
+        for (int end = 1; end <= 2; end++) {
+            putNode(line, "terminal" + end, lineNode(l, end));
+            line.put("connected" + end, Boolean.toString(lineConnected(l, end)));
+        }
+        return line;
+    }
+
+    PropertyBag transformerParameters(int t) {
+        PropertyBag transformer = new PropertyBag(new ArrayList<>());
+        for (int end = 1; end <= 3; end++) {
+            for (int f = 0; f < END_FIELDS; f++) {
+                put(transformer, END_FIELD_NAMES[f] + end, transformerEnd(t, end, f));
+            }
+            transformer.put("pac" + end, Integer.toString(phaseAngleClock(t, end)));
+            transformer.put("ratioRegulatingControlEnabled" + end, Boolean.toString(ratioRegulatingControl(t, end)));
+            transformer.put("phaseRegulatingControlEnabled" + end, Boolean.toString(phaseRegulatingControl(t, end)));
+            putString(transformer, "ptype" + end, phaseTapChangerType(t, end));
+            putString(transformer, "RatioTapChangerTable" + end, ratioTapChangerTable(t, end));
+            putString(transformer, "PhaseTapChangerTable" + end, phaseTapChangerTable(t, end));
+            putNode(transformer, "terminal" + end, transformerNode(t, end));
+            transformer.put("connected" + end, Boolean.toString(transformerConnected(t, end)));
+        }
+        return transformer;
+    }
+
+    Map<String, PropertyBag> nodeParameters() {
+        Map<String, PropertyBag> nodes = new LinkedHashMap<>();
+        for (int n = 0; n < nodeIds.length; n++) {
+            nodes.put(nodeIds[n], nodeParameters(n));
+        }
+        return nodes;
+    }
+
+    Map<String, PropertyBag> lineParameters() {
+        Map<String, PropertyBag> lines = new LinkedHashMap<>();
+        for (int l = 0; l < lineIds.length; l++) {
+            lines.put(lineIds[l], lineParameters(l));
+        }
+        return lines;
+    }
+
+    Map<String, PropertyBag> transformerParameters() {
+        Map<String, PropertyBag> transformers = new LinkedHashMap<>();
+        for (int t = 0; t < transformerIds.length; t++) {
+            transformers.put(transformerIds[t], transformerParameters(t));
+        }
+        return transformers;
+    }
+
+    Map<String, List<String>> equipmentsInNode() {
+        Map<String, List<String>> equipmentsInNode = new LinkedHashMap<>();
+        for (int n = 0; n < nodeIds.length; n++) {
+            if (!hasEquipment[n]) {
+                continue;
+            }
+            List<String> ids = new ArrayList<>(incidenceStart[n + 1] - incidenceStart[n]);
+            for (int k = incidenceStart[n]; k < incidenceStart[n + 1]; k++) {
+                int equipment = incidentEquipment[k];
+                if (equipment != NO_INDEX) {
+                    ids.add(isLine(equipment) ? lineIds[equipment] : transformerIds[transformerOf(equipment)]);
+                }
+            }
+            equipmentsInNode.put(nodeIds[n], ids);
+        }
+        return equipmentsInNode;
+    }
+
+    Map<List<String>, Boolean> isolatedNodes() {
+        Map<List<String>, Boolean> isolatedNodes = new HashMap<>();
+        for (int b = 0; b < buses.size(); b++) {
+            isolatedNodes.put(buses.get(b), busIsolated[b]);
+        }
+        return isolatedNodes;
+    }
+
+    private static void put(PropertyBag bag, String key, double value) {
+        if (!Double.isNaN(value)) {
+            bag.put(key, Double.toString(value));
+        }
+    }
+
+    private static void putString(PropertyBag bag, String key, String value) {
+        if (value != null) {
+            bag.put(key, value);
+        }
+    }
+
+    private void putNode(PropertyBag bag, String key, int n) {
+        if (n != NO_INDEX) {
+            bag.put(key, nodeIds[n]);
+        }
+    }
+
+    // Nodes
+    final String[]                nodeIds;
+    final Map<String, Integer>    nodeIndex;
+    final double[]                v;
+    final double[]                angle;
+    final double[]                vRe;
+    final double[]                vIm;
+    final double[]                p;
+    final double[]                q;
+    final double[]                nominalV;
+
+    // Node to equipment incidence, lines are numbered before transformers
+    int[]                         incidenceStart;
+    int[]                         incidentEquipment;
+    boolean[]                     hasEquipment;
+
+    // Lines
+    final String[]                lineIds;
+    final Map<String, Integer>    lineIndex;
+    final double[]                lineR;
+    final double[]                lineX;
+    final double[]                lineBch;
+    final int[]                   lineNode;
+    final boolean[]               lineConnected;
+
+    // Transformers, three ends for each one
+    final String[]                transformerIds;
+    final Map<String, Integer>    transformerIndex;
+    final boolean[]               xfmr3;
+    final double[]                transformerEnd;
+    final int[]                   transformerNode;
+    final boolean[]               transformerConnected;
+    final int[]                   phaseAngleClock;
+    final boolean[]               ratioRegulatingControl;
+    final boolean[]               phaseRegulatingControl;
+    final String[]                phaseTapChangerType;
+    final String[]                ratioTapChangerTable;
+    final String[]                phaseTapChangerTable;
+
+    // Joined buses
+    List<List<String>>            buses;
+    int[]                         busStart;
+    int[]                         busNode;
+    boolean[]                     busIsolated;
+
+    // Phase tap changers compiled for the given tables, not written to snapshots
+    private TapChangerData[]      phaseTapChangers;
+    private TapChangerTables      phaseTapChangersTables;
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+/**
+ * Complex arithmetic on primitive real and imaginary parts that does not
+ * allocate. Each operation leaves its result in {@link #re} and {@link #im},
+ * arguments are read before the result is written so the previous result can
+ * be given as argument.
+ * <p>
+ * The algorithms and the handling of NaN, infinite and zero values are the
+ * ones of commons-math {@code Complex}, results are the same bit by bit.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class ComplexKernel {
+
+    void set(double aRe, double aIm) {
+        re = aRe;
+        im = aIm;
+    }
+
+    void add(double aRe, double aIm, double bRe, double bIm) {
+        if (isNaN(aRe, aIm) || isNaN(bRe, bIm)) {
+            set(Double.NaN, Double.NaN);
+            return;
+        }
+        set(aRe + bRe, aIm + bIm);
+    }
+
+    void subtract(double aRe, double aIm, double bRe, double bIm) {
+        if (isNaN(aRe, aIm) || isNaN(bRe, bIm)) {
+            set(Double.NaN, Double.NaN);
+            return;
+        }
+        set(aRe - bRe, aIm - bIm);
+    }
+
+    void multiply(double aRe, double aIm, double bRe, double bIm) {
+        if (isNaN(aRe, aIm) || isNaN(bRe, bIm)) {
+            set(Double.NaN, Double.NaN);
+            return;
+        }
+        if (Double.isInfinite(aRe) || Double.isInfinite(aIm) || Double.isInfinite(bRe) || Double.isInfinite(bIm)) {
+            set(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+            return;
+        }
+        set(aRe * bRe - aIm * bIm, aRe * bIm + aIm * bRe);
+    }
+
+    void divide(double aRe, double aIm, double bRe, double bIm) {
+        if (isNaN(aRe, aIm) || isNaN(bRe, bIm) || bRe == 0.0 && bIm == 0.0) {
+            set(Double.NaN, Double.NaN);
+            return;
+        }
+        if (isInfinite(bRe, bIm) && !isInfinite(aRe, aIm)) {
+            set(0.0, 0.0);
+            return;
+        }
+        // Scaled to avoid overflows
+        if (Math.abs(bRe) < Math.abs(bIm)) {
+            double q = bRe / bIm;
+            double denominator = bRe * q + bIm;
+            set((aRe * q + aIm) / denominator, (aIm * q - aRe) / denominator);
+        } else {
+            double q = bIm / bRe;
+            double denominator = bIm * q + bRe;
+            set((aIm * q + aRe) / denominator, (aIm - aRe * q) / denominator);
+        }
+    }
+
+    void reciprocal(double aRe, double aIm) {
+        if (isNaN(aRe, aIm)) {
+            set(Double.NaN, Double.NaN);
+            return;
+        }
+        if (aRe == 0.0 && aIm == 0.0) {
+            set(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+            return;
+        }
+        if (isInfinite(aRe, aIm)) {
+            set(0.0, 0.0);
+            return;
+        }
+        if (Math.abs(aRe) < Math.abs(aIm)) {
+            double q = aRe / aIm;
+            double scale = 1. / (aRe * q + aIm);
+            set(scale * q, -scale);
+        } else {
+            double q = aIm / aRe;
+            double scale = 1. / (aIm * q + aRe);
+            set(scale, -scale * q);
+        }
+    }
+
+    // Negate and conjugate apply to the last result
+    void negate() {
+        if (isNaN(re, im)) {
+            set(Double.NaN, Double.NaN);
+            return;
+        }
+        set(-re, -im);
+    }
+
+    void conjugate() {
+        if (isNaN(re, im)) {
+            set(Double.NaN, Double.NaN);
+            return;
+        }
+        set(re, -im);
+    }
+
+    static double abs(double aRe, double aIm) {
+        if (isNaN(aRe, aIm)) {
+            return Double.NaN;
+        }
+        if (isInfinite(aRe, aIm)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (Math.abs(aRe) < Math.abs(aIm)) {
+            if (aIm == 0.0) {
+                return Math.abs(aRe);
+            }
+            double q = aRe / aIm;
+            return Math.abs(aIm) * Math.sqrt(1 + q * q);
+        } else {
+            if (aRe == 0.0) {
+                return Math.abs(aIm);
+            }
+            double q = aIm / aRe;
+            return Math.abs(aRe) * Math.sqrt(1 + q * q);
+        }
+    }
+
+    private static boolean isNaN(double aRe, double aIm) {
+        return Double.isNaN(aRe) || Double.isNaN(aIm);
+    }
+
+    private static boolean isInfinite(double aRe, double aIm) {
+        return !isNaN(aRe, aIm) && (Double.isInfinite(aRe) || Double.isInfinite(aIm));
+    }
+
+    double re;
+    double im;
+}
@@ -41,6 +41,17 @@ class DetectedBranchModel {
         this.phase2 = xfmrPhaseModel(angle2, ptc2RegulatingControl, ptc2DifferentAngles);
     }
 
+    // Model read back from its binary form
+    DetectedBranchModel(ChangerType ratio1, ChangerType phase1, boolean shunt1, boolean shunt2, ChangerType ratio2,
+            ChangerType phase2) {
+        this.ratio1 = ratio1;
+        this.phase1 = phase1;
+        this.shunt1 = shunt1;
+        this.shunt2 = shunt2;
+        this.ratio2 = ratio2;
+        this.phase2 = phase2;
+    }
+
     private ChangerType xfmrRatioModel(double a, boolean rtcRegulatingControl, boolean tcDifferentRatios) {
         if (rtcRegulatingControl && tcDifferentRatios) {
             return ChangerType.REGULATING_CONTROL;
@@ -7,12 +7,9 @@
 
 package com.powsybl.cgmes.model.interpretation;
 
-import org.apache.commons.math3.complex.Complex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.powsybl.triplestore.api.PropertyBag;
-
 /**
  * @author José Antonio Marqués <marquesja at aia.es>
  * @author Marcos de Miguel <demiguelm at aia.es>
@@ -20,87 +17,141 @@ import com.powsybl.triplestore.api.PropertyBag;
 public class FlowCalculator {
 
     public FlowCalculator(InterpretedModel inputModel) {
-        this.inputModel = inputModel;
-        this.p = 0.0;
-        this.q = 0.0;
+        this(inputModel.compiledModel(), inputModel.tapChangerTables());
+    }
+
+    // Used by threads that share an already loaded model, they never load it
+    FlowCalculator(CompiledModel model, TapChangerTables tapChangerTables) {
+        this.model = model;
+        this.tapChangerTables = tapChangerTables;
+        this.endNode = new int[3];
+        this.endP = new double[3];
+        this.endQ = new double[3];
+        this.ends = 0;
         this.calculated = false;
         this.badVoltage = false;
+        this.complex = new ComplexKernel();
+        this.chain = new BranchAdmittanceMatrix();
     }
 
-    public void forLine(String n, PropertyBag node1, PropertyBag node2, PropertyBag line,
-            CgmesEquipmentModelMapping config) {
-        double v1 = node1.asDouble("v");
-        double nominalV1 = node1.asDouble("nominalV");
-        double angleDegrees1 = node1.asDouble("angle");
-        double v2 = node2.asDouble("v");
-        double nominalV2 = node2.asDouble("nominalV");
-        double angleDegrees2 = node2.asDouble("angle");
-        Boolean connected1 = line.asBoolean("connected1", false);
-        Boolean connected2 = line.asBoolean("connected2", false);
+    // Equipment numbered as in the compiled model: lines first, then transformers
+    void forBranch(int equipment, CgmesEquipmentModelMapping config) {
+        if (model.isLine(equipment)) {
+            forLine(equipment, config);
+            return;
+        }
+        int transformer = model.transformerOf(equipment);
+        if (model.xfmr3[transformer]) {
+            forThreeWindingTransformer(transformer, config);
+        } else {
+            forTwoWindingTransformer(transformer, config);
+        }
+    }
+
+    public void forLine(int line, CgmesEquipmentModelMapping config) {
+        int node1 = CompiledModel.requireNode(model.lineNode(line, 1), "node1 null in line");
+        int node2 = CompiledModel.requireNode(model.lineNode(line, 2), "node2 null in line");
+        double v1 = model.v[node1];
+        double nominalV1 = model.nominalV[node1];
+        double angleDegrees1 = model.angle[node1];
+        double v2 = model.v[node2];
+        double nominalV2 = model.nominalV[node2];
+        double angleDegrees2 = model.angle[node2];
+        boolean connected1 = model.lineConnected(line, 1);
+        boolean connected2 = model.lineConnected(line, 2);
 
         // The admittance and model code can always be calculated
-        LineModel lineModel = new LineModel(line, config);
-        lineModel.interpret(nominalV1, nominalV2);
-        equipmentModel = new DetectedEquipmentModel(lineModel.getBranchModel());
+        BranchAdmittanceMatrix admittanceMatrix = interpretLine(line, nominalV1, nominalV2, config);
 
-        String nEnd1 = line.get("terminal1");
-        String nEnd2 = line.get("terminal2");
         if (connected1 && connected2) {
-            calculateBothEndsFlow(n, nEnd1, nEnd2, v1, angleDegrees1, v2, angleDegrees2,
-                    lineModel.getAdmittanceMatrix());
+            calculateBothEndsFlow(node1, node2, v1, angleDegrees1, v2, angleDegrees2, admittanceMatrix);
         } else if (connected1) {
-            calculateEndFromFlow(n, nEnd1, v1, angleDegrees1, lineModel.getAdmittanceMatrix());
+            calculateEndFromFlow(node1, v1, angleDegrees1, admittanceMatrix);
         } else if (connected2) {
-            calculateEndToFlow(n, nEnd2, v2, angleDegrees2, lineModel.getAdmittanceMatrix());
+            calculateEndToFlow(node2, v2, angleDegrees2, admittanceMatrix);
         }
     }
 
-    public void forTwoWindingTransformer(String n, PropertyBag node1, PropertyBag node2, PropertyBag transformer,
-            CgmesEquipmentModelMapping config) {
-        double v1 = node1.asDouble("v");
-        double angleDegrees1 = node1.asDouble("angle");
-        double v2 = node2.asDouble("v");
-        double angleDegrees2 = node2.asDouble("angle");
-        Boolean connected1 = transformer.asBoolean("connected1", false);
-        Boolean connected2 = transformer.asBoolean("connected2", false);
+    public void forTwoWindingTransformer(int transformer, CgmesEquipmentModelMapping config) {
+        int node1 = CompiledModel.requireNode(model.transformerNode(transformer, 1), "node1 null in transformer");
+        int node2 = CompiledModel.requireNode(model.transformerNode(transformer, 2), "node2 null in transformer");
+        double v1 = model.v[node1];
+        double angleDegrees1 = model.angle[node1];
+        double v2 = model.v[node2];
+        double angleDegrees2 = model.angle[node2];
+        boolean connected1 = model.transformerConnected(transformer, 1);
+        boolean connected2 = model.transformerConnected(transformer, 2);
 
         // The admittance and the model code can always be calculated
-        Xfmr2Model xfmr2Model = new Xfmr2Model(inputModel.getCgmes(), transformer, config);
-        xfmr2Model.interpret();
-        equipmentModel = new DetectedEquipmentModel(xfmr2Model.getBranchModel());
+        BranchAdmittanceMatrix admittanceMatrix = interpretTwoWindingTransformer(transformer, config);
 
-        String nEnd1 = transformer.get("terminal1");
-        String nEnd2 = transformer.get("terminal2");
         if (connected1 && connected2) {
-            calculateBothEndsFlow(n, nEnd1, nEnd2, v1, angleDegrees1, v2, angleDegrees2,
-                    xfmr2Model.getAdmittanceMatrix());
+            calculateBothEndsFlow(node1, node2, v1, angleDegrees1, v2, angleDegrees2, admittanceMatrix);
         } else if (connected1) {
-            calculateEndFromFlow(n, nEnd1, v1, angleDegrees1, xfmr2Model.getAdmittanceMatrix());
+            calculateEndFromFlow(node1, v1, angleDegrees1, admittanceMatrix);
         } else if (connected2) {
-            calculateEndToFlow(n, nEnd2, v2, angleDegrees2, xfmr2Model.getAdmittanceMatrix());
+            calculateEndToFlow(node2, v2, angleDegrees2, admittanceMatrix);
         }
     }
 
-    public void forThreeWindingTransformer(String n, PropertyBag node1, PropertyBag node2, PropertyBag node3,
-            PropertyBag transformer, CgmesEquipmentModelMapping config) {
-        double r1 = transformer.asDouble("r1");
-        double x1 = transformer.asDouble("x1");
-        double r2 = transformer.asDouble("r2");
-        double x2 = transformer.asDouble("x2");
-        double r3 = transformer.asDouble("r3");
-        double x3 = transformer.asDouble("x3");
-        double v1 = node1.asDouble("v");
-        double angleDegrees1 = node1.asDouble("angle");
-        double v2 = node2.asDouble("v");
-        double angleDegrees2 = node2.asDouble("angle");
-        double v3 = node3.asDouble("v");
-        double angleDegrees3 = node3.asDouble("angle");
-        Boolean connected1 = transformer.asBoolean("connected1", false);
-        Boolean connected2 = transformer.asBoolean("connected2", false);
-        Boolean connected3 = transformer.asBoolean("connected3", false);
+    /**
+     * Interprets a line or a two winding transformer connected at both ends.
+     * Its flows are calculated elsewhere and given with
+     * {@link #setBothEndsFlow(int, int, double, double, double, double)}.
+     */
+    BranchAdmittanceMatrix interpretBothEnds(int equipment, CgmesEquipmentModelMapping config) {
+        if (model.isLine(equipment)) {
+            return interpretLine(equipment, model.nominalV[model.lineNode(equipment, 1)],
+                    model.nominalV[model.lineNode(equipment, 2)], config);
+        }
+        return interpretTwoWindingTransformer(model.transformerOf(equipment), config);
+    }
+
+    void setBothEndsFlow(int node1, int node2, double p1, double q1, double p2, double q2) {
+        addEndFlow(node1, p1, q1);
+        addEndFlow(node2, p2, q2);
+        calculated = true;
+        double[] angles = {model.angle[node1], model.angle[node2]};
+        badVoltage = !anglesAreOk(angles);
+    }
+
+    private BranchAdmittanceMatrix interpretLine(int line, double nominalV1, double nominalV2,
+            CgmesEquipmentModelMapping config) {
+        LineModel lineModel = new LineModel(model, line, config);
+        lineModel.interpret(nominalV1, nominalV2);
+        equipmentModel = new DetectedEquipmentModel(lineModel.getBranchModel());
+        return lineModel.getAdmittanceMatrix();
+    }
+
+    private BranchAdmittanceMatrix interpretTwoWindingTransformer(int transformer, CgmesEquipmentModelMapping config) {
+        Xfmr2Model xfmr2Model = new Xfmr2Model(tapChangerTables, model, transformer, config);
+        xfmr2Model.interpret();
+        equipmentModel = new DetectedEquipmentModel(xfmr2Model.getBranchModel());
+        return xfmr2Model.getAdmittanceMatrix();
+    }
+
+    public void forThreeWindingTransformer(int transformer, CgmesEquipmentModelMapping config) {
+        int node1 = CompiledModel.requireNode(model.transformerNode(transformer, 1), "node1 null in transformer");
+        int node2 = CompiledModel.requireNode(model.transformerNode(transformer, 2), "node2 null in transformer");
+        int node3 = model.transformerNode(transformer, 3);
+        double r1 = model.transformerEnd(transformer, 1, CompiledModel.R);
+        double x1 = model.transformerEnd(transformer, 1, CompiledModel.X);
+        double r2 = model.transformerEnd(transformer, 2, CompiledModel.R);
+        double x2 = model.transformerEnd(transformer, 2, CompiledModel.X);
+        double r3 = model.transformerEnd(transformer, 3, CompiledModel.R);
+        double x3 = model.transformerEnd(transformer, 3, CompiledModel.X);
+        double v1 = model.v[node1];
+        double angleDegrees1 = model.angle[node1];
+        double v2 = model.v[node2];
+        double angleDegrees2 = model.angle[node2];
+        double v3 = model.v[node3];
+        double angleDegrees3 = model.angle[node3];
+        boolean connected1 = model.transformerConnected(transformer, 1);
+        boolean connected2 = model.transformerConnected(transformer, 2);
+        boolean connected3 = model.transformerConnected(transformer, 3);
 
         // The admittance and model code can always be calculated
-        Xfmr3Model xfmr3Model = new Xfmr3Model(inputModel.getCgmes(), transformer, config);
+        Xfmr3Model xfmr3Model = new Xfmr3Model(tapChangerTables, model, transformer, config);
         xfmr3Model.interpret();
         equipmentModel = new DetectedEquipmentModel(xfmr3Model.getBranchModelEnd1(), xfmr3Model.getBranchModelEnd2(),
                 xfmr3Model.getBranchModelEnd3());
@@ -109,176 +160,117 @@ public class FlowCalculator {
             return;
         }
 
-        String nEnd1 = transformer.get("terminal1");
-        String nEnd2 = transformer.get("terminal2");
-        String nEnd3 = transformer.get("terminal3");
+        int nEnd1 = node1;
+        int nEnd2 = node2;
+        int nEnd3 = node3;
         if (connected1 && connected2 && connected3) {
-            calculateThreeConnectedEndsFlow(n, nEnd1, nEnd2, nEnd3, v1, angleDegrees1, v2, angleDegrees2, v3,
+            calculateThreeConnectedEndsFlow(nEnd1, nEnd2, nEnd3, v1, angleDegrees1, v2, angleDegrees2, v3,
                     angleDegrees3,
                     xfmr3Model.getAdmittanceMatrixEnd1(), xfmr3Model.getAdmittanceMatrixEnd2(),
                     xfmr3Model.getAdmittanceMatrixEnd3());
         } else if (connected1 && connected2) {
             BranchAdmittanceMatrix admittanceMatrixEnd1 = xfmr3Model.getAdmittanceMatrixEnd1();
             BranchAdmittanceMatrix admittanceMatrixEnd2 = xfmr3Model.getAdmittanceMatrixEnd2();
-            BranchAdmittanceMatrix admittanceMatrixOpenEnd = xfmr3Model.getAdmittanceMatrixEnd3();
-            calculateTwoConnectedEndsFlow(n, nEnd1, nEnd2, v1, angleDegrees1, v2, angleDegrees2,
-                    admittanceMatrixEnd1, admittanceMatrixEnd2, admittanceMatrixOpenEnd);
+            calculateTwoConnectedEndsFlow(nEnd1, nEnd2, v1, angleDegrees1, v2, angleDegrees2,
+                    admittanceMatrixEnd1, admittanceMatrixEnd2);
         } else if (connected1 && connected3) {
             BranchAdmittanceMatrix admittanceMatrixEnd1 = xfmr3Model.getAdmittanceMatrixEnd1();
             BranchAdmittanceMatrix admittanceMatrixEnd3 = xfmr3Model.getAdmittanceMatrixEnd3();
-            BranchAdmittanceMatrix admittanceMatrixOpenEnd = xfmr3Model.getAdmittanceMatrixEnd2();
-            calculateTwoConnectedEndsFlow(n, nEnd1, nEnd3, v1, angleDegrees1, v3, angleDegrees3,
-                    admittanceMatrixEnd1, admittanceMatrixEnd3, admittanceMatrixOpenEnd);
+            calculateTwoConnectedEndsFlow(nEnd1, nEnd3, v1, angleDegrees1, v3, angleDegrees3,
+                    admittanceMatrixEnd1, admittanceMatrixEnd3);
         } else if (connected2 && connected3) {
             BranchAdmittanceMatrix admittanceMatrixEnd2 = xfmr3Model.getAdmittanceMatrixEnd2();
             BranchAdmittanceMatrix admittanceMatrixEnd3 = xfmr3Model.getAdmittanceMatrixEnd3();
-            BranchAdmittanceMatrix admittanceMatrixOpenEnd = xfmr3Model.getAdmittanceMatrixEnd1();
-            calculateTwoConnectedEndsFlow(n, nEnd2, nEnd3, v2, angleDegrees2, v3, angleDegrees3,
-                    admittanceMatrixEnd2, admittanceMatrixEnd3, admittanceMatrixOpenEnd);
+            calculateTwoConnectedEndsFlow(nEnd2, nEnd3, v2, angleDegrees2, v3, angleDegrees3,
+                    admittanceMatrixEnd2, admittanceMatrixEnd3);
         } else if (connected1) {
             BranchAdmittanceMatrix admittanceMatrixEnd1 = xfmr3Model.getAdmittanceMatrixEnd1();
-            BranchAdmittanceMatrix admittanceMatrixFirstOpenEnd = xfmr3Model.getAdmittanceMatrixEnd2();
-            BranchAdmittanceMatrix admittanceMatrixSecondOpenEnd = xfmr3Model.getAdmittanceMatrixEnd3();
-            calculateOneConnectedEndFlow(n, nEnd1, v1, angleDegrees1, admittanceMatrixEnd1,
-                    admittanceMatrixFirstOpenEnd, admittanceMatrixSecondOpenEnd);
+            calculateOneConnectedEndFlow(nEnd1, v1, angleDegrees1, admittanceMatrixEnd1);
         } else if (connected2) {
             BranchAdmittanceMatrix admittanceMatrixEnd2 = xfmr3Model.getAdmittanceMatrixEnd2();
-            BranchAdmittanceMatrix admittanceMatrixFirstOpenEnd = xfmr3Model.getAdmittanceMatrixEnd1();
-            BranchAdmittanceMatrix admittanceMatrixSecondOpenEnd = xfmr3Model.getAdmittanceMatrixEnd3();
-            calculateOneConnectedEndFlow(n, nEnd2, v2, angleDegrees2, admittanceMatrixEnd2,
-                    admittanceMatrixFirstOpenEnd, admittanceMatrixSecondOpenEnd);
+            calculateOneConnectedEndFlow(nEnd2, v2, angleDegrees2, admittanceMatrixEnd2);
         } else if (connected3) {
             BranchAdmittanceMatrix admittanceMatrixEnd3 = xfmr3Model.getAdmittanceMatrixEnd3();
-            BranchAdmittanceMatrix admittanceMatrixFirstOpenEnd = xfmr3Model.getAdmittanceMatrixEnd1();
-            BranchAdmittanceMatrix admittanceMatrixSecondOpenEnd = xfmr3Model.getAdmittanceMatrixEnd2();
-            calculateOneConnectedEndFlow(n, nEnd3, v3, angleDegrees3, admittanceMatrixEnd3,
-                    admittanceMatrixFirstOpenEnd, admittanceMatrixSecondOpenEnd);
+            calculateOneConnectedEndFlow(nEnd3, v3, angleDegrees3, admittanceMatrixEnd3);
         }
     }
 
     // Line and Xfmr2 flow calculations
-    private void calculateEndFromFlow(String n, String nEnd1, double v1, double angleDegrees1,
+    private void calculateEndFromFlow(int nEnd1, double v1, double angleDegrees1,
             BranchAdmittanceMatrix admittanceMatrix) {
-        calculateEndFlow(n, nEnd1, v1, angleDegrees1, admittanceMatrix, false);
+        calculateEndFlow(nEnd1, v1, angleDegrees1, admittanceMatrix, false);
     }
 
-    private void calculateEndToFlow(String n, String nEnd2, double v2, double angleDegrees2,
+    private void calculateEndToFlow(int nEnd2, double v2, double angleDegrees2,
             BranchAdmittanceMatrix admittanceMatrix) {
-        calculateEndFlow(n, nEnd2, v2, angleDegrees2, admittanceMatrix, true);
+        calculateEndFlow(nEnd2, v2, angleDegrees2, admittanceMatrix, true);
     }
 
-    private void calculateEndFlow(String n, String nEnd, double v, double angleDegrees,
+    private void calculateEndFlow(int nEnd, double v, double angleDegrees,
             BranchAdmittanceMatrix admittanceMatrix, boolean isOpenFrom) {
         if (v == 0.0) {
             return;
         }
-        double angle = Math.toRadians(angleDegrees);
-        Complex a = new Complex(v * Math.cos(angle), v * Math.sin(angle));
-
-        if (nEnd.equals(n)) {
-            Complex ysh = kronAntenna(admittanceMatrix.y11, admittanceMatrix.y12, admittanceMatrix.y21,
-                    admittanceMatrix.y22, isOpenFrom);
-            p = ysh.getReal() * a.abs() * a.abs();
-            q = -ysh.getImaginary() * a.abs() * a.abs();
-        } else {
-            LOG.warn("calculateEndToFlow. Unexpected node");
-        }
+        double a = ComplexKernel.abs(model.vRe[nEnd], model.vIm[nEnd]);
+
+        kronAntenna(admittanceMatrix, isOpenFrom);
+        addEndFlow(nEnd, complex.re * a * a, -complex.im * a * a);
         calculated = true;
         double[] angles = {angleDegrees};
         badVoltage = !anglesAreOk(angles);
     }
 
-    private void calculateBothEndsFlow(String n, String nEnd1, String nEnd2, double v1, double angleDegrees1, double v2,
+    private void calculateBothEndsFlow(int nEnd1, int nEnd2, double v1, double angleDegrees1, double v2,
             double angleDegrees2, BranchAdmittanceMatrix admittanceMatrix) {
         if (v1 == 0.0 || v2 == 0.0) {
             return;
         }
-        double angle1 = Math.toRadians(angleDegrees1);
-        double angle2 = Math.toRadians(angleDegrees2);
-        Complex vf = new Complex(v1 * Math.cos(angle1), v1 * Math.sin(angle1));
-        Complex vt = new Complex(v2 * Math.cos(angle2), v2 * Math.sin(angle2));
-
-        flowBothEnds(admittanceMatrix.y11, admittanceMatrix.y12,
-                admittanceMatrix.y21, admittanceMatrix.y22, vf, vt);
-
-        if (nEnd1.equals(n)) {
-            p = sft.getReal();
-            q = sft.getImaginary();
-        } else if (nEnd2.equals(n)) {
-            p = stf.getReal();
-            q = stf.getImaginary();
-        } else {
-            LOG.warn("calculateBothEndsFlow. Unexpected node");
-        }
+        flowBothEnds(admittanceMatrix, model.vRe[nEnd1], model.vIm[nEnd1], model.vRe[nEnd2], model.vIm[nEnd2]);
+
+        addEndFlow(nEnd1, sftRe, sftIm);
+        addEndFlow(nEnd2, stfRe, stfIm);
         calculated = true;
         double[] angles = {angleDegrees1, angleDegrees2};
         badVoltage = !anglesAreOk(angles);
     }
 
     // Xfmr3 flow calculations
-    private void calculateOneConnectedEndFlow(String n, String nEnd, double v, double angleDegrees,
-            BranchAdmittanceMatrix admittanceMatrixEnd, BranchAdmittanceMatrix admittanceMatrixOpenEnd1,
-            BranchAdmittanceMatrix admittanceMatrixOpenEnd2) {
+    private void calculateOneConnectedEndFlow(int nEnd, double v, double angleDegrees,
+            BranchAdmittanceMatrix admittanceMatrixEnd) {
         if (v == 0.0) {
             return;
         }
-        double angle = Math.toRadians(angleDegrees);
-        Complex vf = new Complex(v * Math.cos(angle), v * Math.sin(angle));
-
-        Complex ysh = calculateEndShunt(admittanceMatrixEnd.y11, admittanceMatrixEnd.y12, admittanceMatrixEnd.y21,
-                admittanceMatrixEnd.y22, admittanceMatrixOpenEnd1.y11, admittanceMatrixOpenEnd1.y12,
-                admittanceMatrixOpenEnd1.y21,
-                admittanceMatrixOpenEnd1.y22, admittanceMatrixOpenEnd2.y11, admittanceMatrixOpenEnd2.y12,
-                admittanceMatrixOpenEnd2.y21,
-                admittanceMatrixOpenEnd2.y22);
-
-        if (nEnd.equals(n)) {
-            p = ysh.getReal() * vf.abs() * vf.abs();
-            q = ysh.getImaginary() * vf.abs() * vf.abs();
-        } else {
-            LOG.warn("calculateEnd1Flow. Unexpected node");
-        }
+        double vf = ComplexKernel.abs(model.vRe[nEnd], model.vIm[nEnd]);
+
+        // The shunts of the open ends are not added to the star bus
+        kronAntenna(admittanceMatrixEnd, false);
+
+        addEndFlow(nEnd, complex.re * vf * vf, complex.im * vf * vf);
         calculated = true;
         double[] angles = {angleDegrees};
         badVoltage = !anglesAreOk(angles);
     }
 
-    private void calculateTwoConnectedEndsFlow(String n, String nEnd1, String nEnd2, double v1, double angleDegrees1,
+    private void calculateTwoConnectedEndsFlow(int nEnd1, int nEnd2, double v1, double angleDegrees1,
             double v2,
             double angleDegrees2, BranchAdmittanceMatrix admittanceMatrixEnd1,
-            BranchAdmittanceMatrix admittanceMatrixEnd2, BranchAdmittanceMatrix admittanceMatrixOpenEnd) {
+            BranchAdmittanceMatrix admittanceMatrixEnd2) {
         if (v1 == 0.0 || v2 == 0.0) {
             return;
         }
-        double angle1 = Math.toRadians(angleDegrees1);
-        double angle2 = Math.toRadians(angleDegrees2);
-        Complex vf1 = new Complex(v1 * Math.cos(angle1), v1 * Math.sin(angle1));
-        Complex vf2 = new Complex(v2 * Math.cos(angle2), v2 * Math.sin(angle2));
-
-        BranchAdmittanceMatrix admittance = calculateTwoConnectedEndsAdmittance(admittanceMatrixEnd1.y11,
-                admittanceMatrixEnd1.y12,
-                admittanceMatrixEnd1.y21, admittanceMatrixEnd1.y22, admittanceMatrixEnd2.y11, admittanceMatrixEnd2.y12,
-                admittanceMatrixEnd2.y21, admittanceMatrixEnd2.y22, admittanceMatrixOpenEnd.y11,
-                admittanceMatrixOpenEnd.y12,
-                admittanceMatrixOpenEnd.y21, admittanceMatrixOpenEnd.y22);
-
-        flowBothEnds(admittance.y11, admittance.y12, admittance.y21, admittance.y22, vf1, vf2);
-
-        if (nEnd1.equals(n)) {
-            p = sft.getReal();
-            q = sft.getImaginary();
-        } else if (nEnd2.equals(n)) {
-            p = sft.getReal();
-            q = sft.getImaginary();
-        } else {
-            LOG.warn("calculateEnd1End2Flow. Unexpected node");
-        }
+        // The shunt of the open end is not added to the star bus
+        kronChain(admittanceMatrixEnd1, admittanceMatrixEnd2);
+
+        flowBothEnds(chain, model.vRe[nEnd1], model.vIm[nEnd1], model.vRe[nEnd2], model.vIm[nEnd2]);
+
+        addEndFlow(nEnd1, sftRe, sftIm);
+        addEndFlow(nEnd2, sftRe, sftIm);
         calculated = true;
         double[] angles = {angleDegrees1, angleDegrees2};
         badVoltage = !anglesAreOk(angles);
     }
 
-    private void calculateThreeConnectedEndsFlow(String n, String nEnd1, String nEnd2, String nEnd3, double v1,
+    private void calculateThreeConnectedEndsFlow(int nEnd1, int nEnd2, int nEnd3, double v1,
             double angleDegrees1,
             double v2, double angleDegrees2, double v3, double angleDegrees3,
             BranchAdmittanceMatrix admittanceMatrixEnd1, BranchAdmittanceMatrix admittanceMatrixEnd2,
@@ -287,97 +279,118 @@ public class FlowCalculator {
             return;
         }
 
-        double angle1 = Math.toRadians(angleDegrees1);
-        double angle2 = Math.toRadians(angleDegrees2);
-        double angle3 = Math.toRadians(angleDegrees3);
-        Complex vf1 = new Complex(v1 * Math.cos(angle1), v1 * Math.sin(angle1));
-        Complex vf2 = new Complex(v2 * Math.cos(angle2), v2 * Math.sin(angle2));
-        Complex vf3 = new Complex(v3 * Math.cos(angle3), v3 * Math.sin(angle3));
-
-        Complex v0 = admittanceMatrixEnd1.y21.multiply(vf1).add(admittanceMatrixEnd2.y21.multiply(vf2))
-                .add(admittanceMatrixEnd3.y21.multiply(vf3)).negate()
-                .divide(admittanceMatrixEnd1.y22.add(admittanceMatrixEnd2.y22).add(admittanceMatrixEnd3.y22));
-
-        if (nEnd1.equals(n)) {
-            flowBothEnds(admittanceMatrixEnd1.y11, admittanceMatrixEnd1.y12, admittanceMatrixEnd1.y21,
-                    admittanceMatrixEnd1.y22, vf1, v0);
-            p = sft.getReal();
-            q = sft.getImaginary();
-        } else if (nEnd2.equals(n)) {
-            flowBothEnds(admittanceMatrixEnd2.y11, admittanceMatrixEnd2.y12, admittanceMatrixEnd2.y21,
-                    admittanceMatrixEnd2.y22, vf2, v0);
-            p = sft.getReal();
-            q = sft.getImaginary();
-        } else if (nEnd3.equals(n)) {
-            flowBothEnds(admittanceMatrixEnd3.y11, admittanceMatrixEnd3.y12, admittanceMatrixEnd3.y21,
-                    admittanceMatrixEnd3.y22, vf3, v0);
-            p = sft.getReal();
-            q = sft.getImaginary();
-        } else {
-            LOG.warn("calculate3EndsFlow. Unexpected node");
-        }
+        double vf1Re = model.vRe[nEnd1];
+        double vf1Im = model.vIm[nEnd1];
+        double vf2Re = model.vRe[nEnd2];
+        double vf2Im = model.vIm[nEnd2];
+        double vf3Re = model.vRe[nEnd3];
+        double vf3Im = model.vIm[nEnd3];
+
+        // v0 = - (y21End1 vf1 + y21End2 vf2 + y21End3 vf3) / (y22End1 + y22End2 + y22End3)
+        complex.multiply(admittanceMatrixEnd1.y21Re, admittanceMatrixEnd1.y21Im, vf1Re, vf1Im);
+        double iRe = complex.re;
+        double iIm = complex.im;
+        complex.multiply(admittanceMatrixEnd2.y21Re, admittanceMatrixEnd2.y21Im, vf2Re, vf2Im);
+        complex.add(iRe, iIm, complex.re, complex.im);
+        iRe = complex.re;
+        iIm = complex.im;
+        complex.multiply(admittanceMatrixEnd3.y21Re, admittanceMatrixEnd3.y21Im, vf3Re, vf3Im);
+        complex.add(iRe, iIm, complex.re, complex.im);
+        complex.negate();
+        iRe = complex.re;
+        iIm = complex.im;
+        complex.add(admittanceMatrixEnd1.y22Re, admittanceMatrixEnd1.y22Im, admittanceMatrixEnd2.y22Re,
+                admittanceMatrixEnd2.y22Im);
+        complex.add(complex.re, complex.im, admittanceMatrixEnd3.y22Re, admittanceMatrixEnd3.y22Im);
+        complex.divide(iRe, iIm, complex.re, complex.im);
+        double v0Re = complex.re;
+        double v0Im = complex.im;
+
+        // The star bus voltage is shared by the flows of the three ends
+        flowBothEnds(admittanceMatrixEnd1, vf1Re, vf1Im, v0Re, v0Im);
+        addEndFlow(nEnd1, sftRe, sftIm);
+        flowBothEnds(admittanceMatrixEnd2, vf2Re, vf2Im, v0Re, v0Im);
+        addEndFlow(nEnd2, sftRe, sftIm);
+        flowBothEnds(admittanceMatrixEnd3, vf3Re, vf3Im, v0Re, v0Im);
+        addEndFlow(nEnd3, sftRe, sftIm);
         calculated = true;
         double[] angles = {angleDegrees1, angleDegrees2, angleDegrees3};
         badVoltage = !anglesAreOk(angles);
     }
 
-    private Complex calculateEndShunt(Complex y11, Complex y12, Complex y21, Complex y22, Complex yFirstOpen11,
-            Complex yFirstOpen12, Complex yFirstOpen21, Complex yFirstOpen22, Complex ySecondOpen11,
-            Complex ySecondOpen12, Complex ySecondOpen21, Complex ySecondOpen22) {
-        Complex ysh1 = kronAntenna(yFirstOpen11, yFirstOpen12, yFirstOpen21, yFirstOpen22, true);
-        Complex ysh2 = kronAntenna(ySecondOpen11, ySecondOpen12, ySecondOpen21, ySecondOpen22, true);
-        y22.add(ysh1).add(ysh2);
-
-        return kronAntenna(y11, y12, y21, y22, false);
-    }
-
-    private BranchAdmittanceMatrix calculateTwoConnectedEndsAdmittance(Complex yFirstConnected11,
-            Complex yFirstConnected12,
-            Complex yFirstConnected21, Complex yFirstConnected22, Complex ySecondConnected11,
-            Complex ySecondConnected12,
-            Complex ySecondConnected21, Complex ySecondConnected22, Complex yOpen11, Complex yOpen12, Complex yOpen21,
-            Complex yOpen22) {
-        Complex ysh = kronAntenna(yOpen11, yOpen12, yOpen21, yOpen22, true);
-        ySecondConnected22.add(ysh);
-
-        return kronChain(yFirstConnected11, yFirstConnected12, yFirstConnected21, yFirstConnected22, ySecondConnected11,
-                ySecondConnected12, ySecondConnected21, ySecondConnected22);
-    }
-
-    private Complex kronAntenna(Complex y11, Complex y12, Complex y21, Complex y22, boolean isOpenFrom) {
-        Complex ysh = Complex.ZERO;
-
+    // Admittance seen from the connected end, left in the complex kernel
+    private void kronAntenna(BranchAdmittanceMatrix y, boolean isOpenFrom) {
         if (isOpenFrom) {
-            ysh = y22.subtract(y21.multiply(y12).divide(y11));
+            complex.multiply(y.y21Re, y.y21Im, y.y12Re, y.y12Im);
+            complex.divide(complex.re, complex.im, y.y11Re, y.y11Im);
+            complex.subtract(y.y22Re, y.y22Im, complex.re, complex.im);
         } else {
-            ysh = y11.subtract(y12.multiply(y21).divide(y22));
+            complex.multiply(y.y12Re, y.y12Im, y.y21Re, y.y21Im);
+            complex.divide(complex.re, complex.im, y.y22Re, y.y22Im);
+            complex.subtract(y.y11Re, y.y11Im, complex.re, complex.im);
         }
-        return ysh;
     }
 
-    private BranchAdmittanceMatrix kronChain(Complex yFirstConnected11, Complex yFirstConnected12,
-            Complex yFirstConnected21, Complex yFirstConnected22, Complex ySecondConnected11,
-            Complex ySecondConnected12, Complex ySecondConnected21, Complex ySecondConnected22) {
-        BranchAdmittanceMatrix admittance = new BranchAdmittanceMatrix();
-
-        admittance.y11 = yFirstConnected11.subtract(yFirstConnected21.multiply(yFirstConnected12)
-                        .divide(yFirstConnected22.add(ySecondConnected11)));
-        admittance.y12 = ySecondConnected12.multiply(yFirstConnected12)
-                .divide(yFirstConnected22.add(ySecondConnected11)).negate();
-        admittance.y21 = yFirstConnected21.multiply(ySecondConnected21)
-                .divide(yFirstConnected22.add(ySecondConnected11)).negate();
-        admittance.y22 = ySecondConnected22.subtract(
-                ySecondConnected12.multiply(ySecondConnected21).divide(yFirstConnected22.add(ySecondConnected11)));
-
-        return admittance;
+    private void kronChain(BranchAdmittanceMatrix yFirstConnected, BranchAdmittanceMatrix ySecondConnected) {
+        complex.add(yFirstConnected.y22Re, yFirstConnected.y22Im, ySecondConnected.y11Re, ySecondConnected.y11Im);
+        double dRe = complex.re;
+        double dIm = complex.im;
+
+        complex.multiply(yFirstConnected.y21Re, yFirstConnected.y21Im, yFirstConnected.y12Re, yFirstConnected.y12Im);
+        complex.divide(complex.re, complex.im, dRe, dIm);
+        complex.subtract(yFirstConnected.y11Re, yFirstConnected.y11Im, complex.re, complex.im);
+        chain.y11Re = complex.re;
+        chain.y11Im = complex.im;
+
+        complex.multiply(ySecondConnected.y12Re, ySecondConnected.y12Im, yFirstConnected.y12Re, yFirstConnected.y12Im);
+        complex.divide(complex.re, complex.im, dRe, dIm);
+        complex.negate();
+        chain.y12Re = complex.re;
+        chain.y12Im = complex.im;
+
+        complex.multiply(yFirstConnected.y21Re, yFirstConnected.y21Im, ySecondConnected.y21Re, ySecondConnected.y21Im);
+        complex.divide(complex.re, complex.im, dRe, dIm);
+        complex.negate();
+        chain.y21Re = complex.re;
+        chain.y21Im = complex.im;
+
+        complex.multiply(ySecondConnected.y12Re, ySecondConnected.y12Im, ySecondConnected.y21Re,
+                ySecondConnected.y21Im);
+        complex.divide(complex.re, complex.im, dRe, dIm);
+        complex.subtract(ySecondConnected.y22Re, ySecondConnected.y22Im, complex.re, complex.im);
+        chain.y22Re = complex.re;
+        chain.y22Im = complex.im;
     }
 
-    private void flowBothEnds(Complex y11, Complex y12, Complex y21, Complex y22, Complex v1, Complex v2) {
-        Complex ift = y12.multiply(v2).add(y11.multiply(v1));
-        sft = ift.conjugate().multiply(v1);
+    private void flowBothEnds(BranchAdmittanceMatrix y, double v1Re, double v1Im, double v2Re, double v2Im) {
+        // sft = conj(y12 v2 + y11 v1) v1
+        complex.multiply(y.y12Re, y.y12Im, v2Re, v2Im);
+        double iRe = complex.re;
+        double iIm = complex.im;
+        complex.multiply(y.y11Re, y.y11Im, v1Re, v1Im);
+        complex.add(iRe, iIm, complex.re, complex.im);
+        complex.conjugate();
+        complex.multiply(complex.re, complex.im, v1Re, v1Im);
+        sftRe = complex.re;
+        sftIm = complex.im;
+
+        // stf = conj(y21 v1 + y22 v2) v2
+        complex.multiply(y.y21Re, y.y21Im, v1Re, v1Im);
+        iRe = complex.re;
+        iIm = complex.im;
+        complex.multiply(y.y22Re, y.y22Im, v2Re, v2Im);
+        complex.add(iRe, iIm, complex.re, complex.im);
+        complex.conjugate();
+        complex.multiply(complex.re, complex.im, v2Re, v2Im);
+        stfRe = complex.re;
+        stfIm = complex.im;
+    }
 
-        Complex itf = y21.multiply(v1).add(y22.multiply(v2));
-        stf = itf.conjugate().multiply(v2);
+    private void addEndFlow(int node, double endP, double endQ) {
+        endNode[ends] = node;
+        this.endP[ends] = endP;
+        this.endQ[ends] = endQ;
+        ends++;
     }
 
     private boolean calculateFlowXfmr3IsOk(double r1, double x1, double r2, double x2, double r3, double x3) {
@@ -396,12 +409,26 @@ public class FlowCalculator {
         return true;
     }
 
-    public double getP() {
-        return p;
+    /**
+     * The end of the branch whose flow is seen from the given node: the first
+     * evaluated end connected to it, or -1 if the node is not a branch end.
+     */
+    public int end(int n) {
+        for (int k = 0; k < ends; k++) {
+            if (endNode[k] == n) {
+                return k;
+            }
+        }
+        LOG.warn("Unexpected node {}", n);
+        return -1;
+    }
+
+    public double getP(int end) {
+        return end < 0 ? 0.0 : endP[end];
     }
 
-    public double getQ() {
-        return q;
+    public double getQ(int end) {
+        return end < 0 ? 0.0 : endQ[end];
     }
 
     public boolean getCalculated() {
@@ -416,13 +443,20 @@ public class FlowCalculator {
         return equipmentModel;
     }
 
-    private double                 p;
-    private double                 q;
-    private boolean                calculated;
-    private boolean                badVoltage;
-    private DetectedEquipmentModel equipmentModel;
-    private Complex                sft;
-    private Complex                stf;
-    private InterpretedModel       inputModel;
-    private static final Logger    LOG = LoggerFactory.getLogger(FlowCalculator.class);
+    private final int[]                  endNode;
+    private final double[]               endP;
+    private final double[]               endQ;
+    private int                          ends;
+    private boolean                      calculated;
+    private boolean                      badVoltage;
+    private DetectedEquipmentModel       equipmentModel;
+    private final ComplexKernel          complex;
+    private final BranchAdmittanceMatrix chain;
+    private double                       sftRe;
+    private double                       sftIm;
+    private double                       stfRe;
+    private double                       stfIm;
+    private CompiledModel                model;
+    private TapChangerTables             tapChangerTables;
+    private static final Logger          LOG = LoggerFactory.getLogger(FlowCalculator.class);
 }
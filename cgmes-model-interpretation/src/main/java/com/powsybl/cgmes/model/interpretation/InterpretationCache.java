@@ -0,0 +1,381 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.LineShuntMappingAlternative;
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr2PhaseAngleClockAlternative;
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr2RatioPhaseMappingAlternative;
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr2ShuntMappingAlternative;
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr3PhaseAngleClockAlternative;
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr3RatioPhaseMappingAlternative;
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr3ShuntMappingAlternative;
+import com.powsybl.cgmes.model.interpretation.DetectedBranchModel.ChangerType;
+import com.powsybl.cgmes.model.interpretation.InterpretationResult.ValidationData;
+import com.powsybl.commons.PowsyblException;
+
+/**
+ * Interpretation results kept on disk between runs over a catalog, one file
+ * per result. The name of a file is a hash of the content of the model files,
+ * the content of the boundary files, the model mapping configurations and the
+ * settings of the interpretation, so a result is only reused for the same
+ * inputs. Results are written in a binary form, with a version that is
+ * checked when they are read.
+ *
+ * Results not used for longer than the maximum age are evicted, and then the
+ * least recently used ones until the cache fits in its maximum size.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public final class InterpretationCache {
+
+    private static final int    MAGIC     = 0x43474d49;
+    private static final int    VERSION   = 1;
+    private static final String EXTENSION = ".bin";
+
+    public InterpretationCache(Path folder) {
+        this.folder = folder;
+        maxSize = Long.MAX_VALUE;
+        maxAge = null;
+        boundaryHashes = new ConcurrentHashMap<>();
+    }
+
+    public void setMaxSize(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Invalid cache size " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    public void setMaxAge(Duration maxAge) {
+        if (maxAge.isNegative()) {
+            throw new IllegalArgumentException("Invalid cache age " + maxAge);
+        }
+        this.maxAge = maxAge;
+    }
+
+    // The same boundary is shared by all the models of a catalog, it is hashed once
+    String key(Path dataset, Path boundary, String settings) throws IOException {
+        MessageDigest digest = sha256();
+        update(digest, "version " + VERSION);
+        update(digest, contentHash(dataset));
+        if (boundary == null) {
+            update(digest, "no boundary");
+        } else {
+            try {
+                update(digest, boundaryHashes.computeIfAbsent(boundary, b -> {
+                    try {
+                        return contentHash(b);
+                    } catch (IOException x) {
+                        throw new UncheckedIOException(x);
+                    }
+                }));
+            } catch (UncheckedIOException x) {
+                throw x.getCause();
+            }
+        }
+        List<CgmesEquipmentModelMapping> configs = new ArrayList<>();
+        ModelInterpretation.addModelMappingConfigurations(configs);
+        configs.forEach(config -> update(digest, config.toString()));
+        update(digest, settings);
+        return hex(digest.digest());
+    }
+
+    // A result that can not be read is discarded, as if it was not in the cache
+    InterpretationResult get(String key) {
+        Path file = folder.resolve(key + EXTENSION);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown format");
+            }
+            InterpretationResult result = readResult(in);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return result;
+        } catch (IOException | RuntimeException x) {
+            LOG.warn("Discarding cached interpretation {} {}", file, x.getMessage());
+            delete(file);
+            return null;
+        }
+    }
+
+    // The result is written to a temporary file and then moved, a concurrent reader never sees it partially
+    void put(String key, InterpretationResult result) {
+        Path file = folder.resolve(key + EXTENSION);
+        Path tmp = null;
+        try {
+            Files.createDirectories(folder);
+            tmp = Files.createTempFile(folder, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeResult(result, out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException x) {
+            LOG.warn("Error caching interpretation {} {}", file, x.getMessage());
+            if (tmp != null) {
+                delete(tmp);
+            }
+        }
+    }
+
+    public void evict() throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(folder)) {
+            files = paths.filter(p -> p.getFileName().toString().endsWith(EXTENSION))
+                    .collect(Collectors.toList());
+        }
+        Map<Path, Long> used = new LinkedHashMap<>();
+        long size = 0;
+        long now = System.currentTimeMillis();
+        for (Path file : files) {
+            long lastUsed = Files.getLastModifiedTime(file).toMillis();
+            if (maxAge != null && now - lastUsed > maxAge.toMillis()) {
+                delete(file);
+            } else {
+                used.put(file, lastUsed);
+                size += Files.size(file);
+            }
+        }
+        List<Path> leastRecentlyUsed = used.keySet().stream()
+                .sorted(Comparator.comparing(used::get))
+                .collect(Collectors.toList());
+        for (Path file : leastRecentlyUsed) {
+            if (size <= maxSize) {
+                break;
+            }
+            size -= Files.size(file);
+            delete(file);
+        }
+    }
+
+    private static String contentHash(Path path) throws IOException {
+        MessageDigest digest = sha256();
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(path)) {
+            files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        byte[] buffer = new byte[1 << 16];
+        for (Path file : files) {
+            update(digest, path.relativize(file).toString());
+            try (InputStream in = Files.newInputStream(file)) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, n);
+                }
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException x) {
+            throw new PowsyblException("SHA-256 not available", x);
+        }
+    }
+
+    // Strings are terminated, so that consecutive ones can not be confused
+    private static void update(MessageDigest digest, String s) {
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder s = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            s.append(String.format("%02x", b));
+        }
+        return s.toString();
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException x) {
+            LOG.warn("Error deleting {} {}", file, x.getMessage());
+        }
+    }
+
+    private static void writeResult(InterpretationResult result, DataOutput out) throws IOException {
+        out.writeDouble(result.error);
+        out.writeInt(result.validationDataForAllModelMapping.size());
+        for (Map.Entry<CgmesEquipmentModelMapping, ValidationData> e : result.validationDataForAllModelMapping
+                .entrySet()) {
+            writeMapping(e.getKey(), out);
+            writeValidationData(e.getValue(), out);
+        }
+        if (result.bestModelMappings == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(result.bestModelMappings.size());
+            for (Map.Entry<CgmesEquipmentModelMapping, Double> e : result.bestModelMappings.entrySet()) {
+                writeMapping(e.getKey(), out);
+                out.writeDouble(e.getValue());
+            }
+        }
+    }
+
+    private static InterpretationResult readResult(DataInput in) throws IOException {
+        InterpretationResult result = new InterpretationResult();
+        result.error = in.readDouble();
+        int numConfigs = in.readInt();
+        result.validationDataForAllModelMapping = new LinkedHashMap<>();
+        for (int k = 0; k < numConfigs; k++) {
+            CgmesEquipmentModelMapping config = readMapping(in);
+            result.validationDataForAllModelMapping.put(config, readValidationData(in));
+        }
+        int numBestMappings = in.readInt();
+        if (numBestMappings >= 0) {
+            result.bestModelMappings = new LinkedHashMap<>();
+            for (int k = 0; k < numBestMappings; k++) {
+                CgmesEquipmentModelMapping config = readMapping(in);
+                result.bestModelMappings.put(config, in.readDouble());
+            }
+        }
+        return result;
+    }
+
+    private static void writeMapping(CgmesEquipmentModelMapping config, DataOutput out) throws IOException {
+        out.writeByte(config.lineBshunt.ordinal());
+        out.writeBoolean(config.lineRatio0);
+        out.writeByte(config.xfmr2Ratio0.ordinal());
+        out.writeByte(config.xfmr2RatioPhase.ordinal());
+        out.writeBoolean(config.xfmr2Ptc2Negate);
+        out.writeByte(config.xfmr2YShunt.ordinal());
+        out.writeByte(config.xfmr2PhaseAngleClock.ordinal());
+        out.writeBoolean(config.xfmr2Pac2Negate);
+        out.writeByte(config.xfmr3Ratio0StarBusSide.ordinal());
+        out.writeByte(config.xfmr3RatioPhaseStarBusSide.ordinal());
+        out.writeByte(config.xfmr3YShunt.ordinal());
+        out.writeByte(config.xfmr3PhaseAngleClock.ordinal());
+    }
+
+    private static CgmesEquipmentModelMapping readMapping(DataInput in) throws IOException {
+        CgmesEquipmentModelMapping config = new CgmesEquipmentModelMapping();
+        config.lineBshunt = LineShuntMappingAlternative.values()[in.readByte()];
+        config.lineRatio0 = in.readBoolean();
+        config.xfmr2Ratio0 = Xfmr2RatioPhaseMappingAlternative.values()[in.readByte()];
+        config.xfmr2RatioPhase = Xfmr2RatioPhaseMappingAlternative.values()[in.readByte()];
+        config.xfmr2Ptc2Negate = in.readBoolean();
+        config.xfmr2YShunt = Xfmr2ShuntMappingAlternative.values()[in.readByte()];
+        config.xfmr2PhaseAngleClock = Xfmr2PhaseAngleClockAlternative.values()[in.readByte()];
+        config.xfmr2Pac2Negate = in.readBoolean();
+        config.xfmr3Ratio0StarBusSide = Xfmr3RatioPhaseMappingAlternative.values()[in.readByte()];
+        config.xfmr3RatioPhaseStarBusSide = Xfmr3RatioPhaseMappingAlternative.values()[in.readByte()];
+        config.xfmr3YShunt = Xfmr3ShuntMappingAlternative.values()[in.readByte()];
+        config.xfmr3PhaseAngleClock = Xfmr3PhaseAngleClockAlternative.values()[in.readByte()];
+        return config;
+    }
+
+    private static void writeValidationData(ValidationData validationData, DataOutput out) throws IOException {
+        out.writeDouble(validationData.balance);
+        out.writeBoolean(validationData.pruned);
+        out.writeDouble(validationData.prunedAt);
+        out.writeInt(validationData.detectedModelData.size());
+        for (Map.Entry<String, DetectedEquipmentModel> e : validationData.detectedModelData.entrySet()) {
+            out.writeUTF(e.getKey());
+            DetectedEquipmentModel model = e.getValue();
+            out.writeInt(model.detectedBranchModels.size());
+            for (DetectedBranchModel branchModel : model.detectedBranchModels) {
+                writeChangerType(branchModel.ratio1, out);
+                writeChangerType(branchModel.phase1, out);
+                out.writeBoolean(branchModel.shunt1);
+                out.writeBoolean(branchModel.shunt2);
+                writeChangerType(branchModel.ratio2, out);
+                writeChangerType(branchModel.phase2, out);
+            }
+            out.writeInt(model.total);
+            out.writeInt(model.calculated);
+            out.writeInt(model.ok);
+        }
+        validationData.balanceColumns.write(out);
+    }
+
+    private static ValidationData readValidationData(DataInput in) throws IOException {
+        ValidationData validationData = new ValidationData();
+        validationData.balance = in.readDouble();
+        validationData.pruned = in.readBoolean();
+        validationData.prunedAt = in.readDouble();
+        int numModels = in.readInt();
+        for (int k = 0; k < numModels; k++) {
+            String code = in.readUTF();
+            int numBranchModels = in.readInt();
+            List<DetectedBranchModel> branchModels = new ArrayList<>(numBranchModels);
+            for (int b = 0; b < numBranchModels; b++) {
+                ChangerType ratio1 = readChangerType(in);
+                ChangerType phase1 = readChangerType(in);
+                boolean shunt1 = in.readBoolean();
+                boolean shunt2 = in.readBoolean();
+                ChangerType ratio2 = readChangerType(in);
+                ChangerType phase2 = readChangerType(in);
+                branchModels.add(new DetectedBranchModel(ratio1, phase1, shunt1, shunt2, ratio2, phase2));
+            }
+            DetectedEquipmentModel model = new DetectedEquipmentModel(branchModels);
+            model.total = in.readInt();
+            model.calculated = in.readInt();
+            model.ok = in.readInt();
+            validationData.detectedModelData.put(code, model);
+        }
+        validationData.balanceColumns = BalanceColumns.read(in);
+        return validationData;
+    }
+
+    // Lines have no tap changers
+    private static void writeChangerType(ChangerType changerType, DataOutput out) throws IOException {
+        out.writeByte(changerType == null ? -1 : changerType.ordinal());
+    }
+
+    private static ChangerType readChangerType(DataInput in) throws IOException {
+        int ordinal = in.readByte();
+        return ordinal < 0 ? null : ChangerType.values()[ordinal];
+    }
+
+    private final Path              folder;
+    private long                    maxSize;
+    private Duration                maxAge;
+    private final Map<Path, String> boundaryHashes;
+
+    private static final Logger LOG = LoggerFactory.getLogger(InterpretationCache.class);
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
+
+import com.powsybl.cgmes.model.interpretation.InterpretationResult.ValidationData;
+
+/**
+ * Java Flight Recorder events of the interpretation of a catalog, to relate
+ * the pauses and allocations seen in a recording to models, configurations
+ * and reports. Events are only built and committed when they are enabled in
+ * the recording, values that are costly to obtain are calculated only then.
+ *
+ * The event types are defined in JfrEvents, in the src/main/jfr sources
+ * that are only compiled by the jfr profile, with a JDK 11 or later. The
+ * recorder is looked up once: if the jdk.jfr API or the event types are
+ * not available, all the events are ignored.
+ *
+ * A duration event is begun before the work it measures and is given back
+ * when it ends; it is null when events are ignored.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class InterpretationEvents {
+
+    private InterpretationEvents() {
+    }
+
+    // A model that is still loading has a started event without a loaded one
+    static Object beginModelLoad(String model) {
+        return RECORDER.beginModelLoad(model);
+    }
+
+    static void modelLoaded(Object event, String model, int nodes, LongSupplier triples) {
+        RECORDER.modelLoaded(event, model, nodes, triples);
+    }
+
+    static Object beginConfiguration() {
+        return RECORDER.beginConfiguration();
+    }
+
+    static void configurationEvaluated(Object event, String model, CgmesEquipmentModelMapping config,
+            ValidationData validationData) {
+        RECORDER.configurationEvaluated(event, model, config, validationData);
+    }
+
+    static Object beginReport() {
+        return RECORDER.beginReport();
+    }
+
+    // Ends a report event begun before writing the given file
+    static void reportWritten(Object event, String report, Path file, int models) throws IOException {
+        RECORDER.reportWritten(event, report, file, models);
+    }
+
+    static void modelFailed(String model, Exception x) {
+        RECORDER.modelFailed(model, x);
+    }
+
+    interface Recorder {
+
+        Object beginModelLoad(String model);
+
+        void modelLoaded(Object event, String model, int nodes, LongSupplier triples);
+
+        Object beginConfiguration();
+
+        void configurationEvaluated(Object event, String model, CgmesEquipmentModelMapping config,
+                ValidationData validationData);
+
+        Object beginReport();
+
+        void reportWritten(Object event, String report, Path file, int models) throws IOException;
+
+        void modelFailed(String model, Exception x);
+    }
+
+    private static final class NoRecorder implements Recorder {
+
+        @Override
+        public Object beginModelLoad(String model) {
+            return null;
+        }
+
+        @Override
+        public void modelLoaded(Object event, String model, int nodes, LongSupplier triples) {
+            // Events are ignored
+        }
+
+        @Override
+        public Object beginConfiguration() {
+            return null;
+        }
+
+        @Override
+        public void configurationEvaluated(Object event, String model, CgmesEquipmentModelMapping config,
+                ValidationData validationData) {
+            // Events are ignored
+        }
+
+        @Override
+        public Object beginReport() {
+            return null;
+        }
+
+        @Override
+        public void reportWritten(Object event, String report, Path file, int models) {
+            // Events are ignored
+        }
+
+        @Override
+        public void modelFailed(String model, Exception x) {
+            // Events are ignored
+        }
+    }
+
+    // The event types are only loaded if the flight recorder classes are found
+    static Recorder recorder(String recorderClass) {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder", false, InterpretationEvents.class.getClassLoader());
+            return (Recorder) Class.forName(recorderClass).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError x) {
+            return new NoRecorder();
+        }
+    }
+
+    private static final String   JFR_RECORDER = "com.powsybl.cgmes.model.interpretation.JfrEvents";
+    private static final Recorder RECORDER     = recorder(JFR_RECORDER);
+}
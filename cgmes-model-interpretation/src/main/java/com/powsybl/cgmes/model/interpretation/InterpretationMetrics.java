@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Wall time, CPU time, allocated bytes and number of elements of each phase
+ * of the interpretation of a model, or of all the models of a catalog. CPU
+ * time and allocated bytes are measured on the thread that runs the phase,
+ * they are 0 when the JVM does not support measuring them. Phases run by
+ * several threads add their times.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public final class InterpretationMetrics {
+
+    public enum Phase {
+        // Reading the files of the model into the triple store, elements are the files
+        PARSE,
+        // Loading the model, elements are the nodes, switches, lines, transformers or buses of each step
+        LOAD_NODES,
+        JOIN_SWITCHES,
+        LOAD_LINES,
+        LOAD_TRANSFORMERS,
+        JOIN_BUSES,
+        LOAD_NODE_FLOWS,
+        LOAD_TAP_CHANGER_TABLES,
+        COMPILE,
+        LOAD_SNAPSHOT,
+        // Evaluating configurations, elements are the buses of each configuration
+        BALANCE,
+        // Part of the balance: flows calculated for all the branches at once, elements are the branches
+        BRANCH_FLOWS,
+        MAPPING_SEARCH,
+        REPORT
+    }
+
+    public InterpretationMetrics() {
+        phases = new EnumMap<>(Phase.class);
+    }
+
+    /**
+     * Starts measuring a phase on the current thread, the measure is recorded
+     * when it is stopped.
+     */
+    public Measure start(Phase phase) {
+        return new Measure(phase);
+    }
+
+    public final class Measure {
+
+        private Measure(Phase phase) {
+            this.phase = phase;
+            wallStart = System.nanoTime();
+            cpuStart = cpuTime();
+            allocatedStart = allocatedBytes();
+        }
+
+        public void stop(long elements) {
+            record(phase, 1, System.nanoTime() - wallStart, cpuTime() - cpuStart, allocatedBytes() - allocatedStart,
+                    elements);
+        }
+
+        private final Phase phase;
+        private final long  wallStart;
+        private final long  cpuStart;
+        private final long  allocatedStart;
+    }
+
+    // Measures of other models are added phase by phase
+    public void add(InterpretationMetrics other) {
+        other.phases().forEach((phase, s) -> record(phase, s.count, s.wallNanos, s.cpuNanos, s.allocatedBytes,
+                s.elements));
+    }
+
+    public synchronized Map<Phase, PhaseStatistics> phases() {
+        Map<Phase, PhaseStatistics> copy = new EnumMap<>(Phase.class);
+        phases.forEach((phase, s) -> copy.put(phase, new PhaseStatistics(s)));
+        return copy;
+    }
+
+    private synchronized void record(Phase phase, long count, long wallNanos, long cpuNanos, long allocatedBytes,
+            long elements) {
+        PhaseStatistics s = phases.computeIfAbsent(phase, p -> new PhaseStatistics());
+        s.count += count;
+        s.wallNanos += wallNanos;
+        s.cpuNanos += cpuNanos;
+        s.allocatedBytes += allocatedBytes;
+        s.elements += elements;
+    }
+
+    public static final class PhaseStatistics {
+
+        private PhaseStatistics() {
+        }
+
+        private PhaseStatistics(PhaseStatistics s) {
+            count = s.count;
+            wallNanos = s.wallNanos;
+            cpuNanos = s.cpuNanos;
+            allocatedBytes = s.allocatedBytes;
+            elements = s.elements;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public long getElements() {
+            return elements;
+        }
+
+        private long count;
+        private long wallNanos;
+        private long cpuNanos;
+        private long allocatedBytes;
+        private long elements;
+    }
+
+    private static long cpuTime() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long allocatedBytes() {
+        if (!ALLOCATED_BYTES) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private final Map<Phase, PhaseStatistics> phases;
+
+    private static final ThreadMXBean THREADS         = ManagementFactory.getThreadMXBean();
+    private static final boolean      CPU_TIME        = THREADS.isCurrentThreadCpuTimeSupported()
+            && THREADS.isThreadCpuTimeEnabled();
+    private static final boolean      ALLOCATED_BYTES = THREADS instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported()
+            && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemoryEnabled();
+}
@@ -23,28 +23,43 @@ public class InterpretationResult {
 
         ValidationData() {
             balance = 0.0;
-            balanceData = new HashMap<>();
+            balanceColumns = BalanceColumns.empty();
             detectedModelData = new HashMap<>();
+            pruned = false;
+            prunedAt = 1.0;
         }
 
         public double getBalance() {
             return balance;
         }
 
+        // The property bags of the buses are built while the map is iterated
         public Map<List<String>, PropertyBag> getBalanceData() {
-            return balanceData;
+            return balanceColumns.asMap();
         }
 
         public Map<String, DetectedEquipmentModel> getDetectedModelData() {
             return detectedModelData;
         }
 
+        // A pruned configuration only has the error of the nodes evaluated before abandoning it
+        public boolean isPruned() {
+            return pruned;
+        }
+
+        public double getPrunedAt() {
+            return prunedAt;
+        }
+
         double                              balance;
-        Map<List<String>, PropertyBag>      balanceData;
+        BalanceColumns                      balanceColumns;
         Map<String, DetectedEquipmentModel> detectedModelData;
+        boolean                             pruned;
+        double                              prunedAt;
     }
 
     public double                                          error;
     public Map<CgmesEquipmentModelMapping, ValidationData> validationDataForAllModelMapping;
+    public Map<CgmesEquipmentModelMapping, Double>         bestModelMappings;
     public Exception                                       exception;
 }
@@ -9,15 +9,16 @@ package com.powsybl.cgmes.model.interpretation;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.StringWriter;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -32,7 +33,6 @@ import com.powsybl.commons.io.table.Column;
 import com.powsybl.commons.io.table.CsvTableFormatterFactory;
 import com.powsybl.commons.io.table.TableFormatter;
 import com.powsybl.commons.io.table.TableFormatterConfig;
-import com.powsybl.triplestore.api.PropertyBag;
 
 /**
  * @author José Antonio Marqués <marquesja at aia.es>
@@ -64,24 +64,36 @@ public class InterpretationsReport {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
         LocalDateTime dateTime = LocalDateTime.now();
         String formattedDateTime = dateTime.format(formatter);
-        try (BufferedWriter w = Files.newBufferedWriter(
-                output.resolve("CGMESModelInterpretationReport." + formattedDateTime), StandardCharsets.UTF_8)) {
-            interpretations.entrySet().forEach(e -> {
-                try {
-                    w.write(generateModelReport(e.getKey(), e.getValue()));
-                    w.newLine();
-                    w.flush();
-                } catch (IOException x) {
-                    LOG.warn("Error writing report for model {} {}", e.getKey(), x.getMessage());
+        Object event = InterpretationEvents.beginReport();
+        Path file = output.resolve("CGMESModelInterpretationReport." + formattedDateTime);
+        // The report is written to a temporary file and then moved, a reader never sees it partially
+        Path tmp = Files.createTempFile(output.toAbsolutePath(), file.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, InterpretationResult> e : interpretations.entrySet()) {
+                    try {
+                        modelReport(e.getKey(), e.getValue(), w);
+                        w.newLine();
+                        w.flush();
+                    } catch (IOException x) {
+                        LOG.warn("Error writing report for model {} {}", e.getKey(), x.getMessage());
+                    }
                 }
-            });
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
         }
+        InterpretationEvents.reportWritten(event, "interpretations", file, interpretations.size());
     }
 
-    private String generateModelReport(String model, InterpretationResult interpretation) {
+    // Sections are written as they are produced, the report of a model is never kept in memory
+    private void modelReport(String model, InterpretationResult interpretation, BufferedWriter w)
+            throws IOException {
 
         if (interpretation.exception != null) {
-            return interpretation.exception.getMessage();
+            w.write(String.valueOf(interpretation.exception.getMessage()));
+            return;
         }
 
         Map<CgmesEquipmentModelMapping, ValidationData> mappingConfigurationData = interpretation.validationDataForAllModelMapping;
@@ -101,87 +113,68 @@ public class InterpretationsReport {
                     throw new AssertionError();
                 }, LinkedHashMap::new));
 
-        StringBuilder modelReportBuilder = new StringBuilder();
-        modelReportBuilder.append(String.format("----> MODEL %s ", model));
-        modelReportBuilder.append(System.getProperty("line.separator"));
-        sortedMappingConfigurationData.keySet()
-                .forEach(mappingConfiguration -> {
-                    try {
-                        interpretationReport(model, mappingConfiguration,
-                                mappingConfigurationData.get(mappingConfiguration), modelReportBuilder);
-                    } catch (IOException e) {
-                        // Ignored
-                    }
-                });
-        return modelReportBuilder.toString();
+        w.write(String.format("----> MODEL %s ", model));
+        w.newLine();
+        for (Map.Entry<CgmesEquipmentModelMapping, ValidationData> e : sortedMappingConfigurationData.entrySet()) {
+            interpretationReport(e.getKey(), e.getValue(), w);
+        }
+        if (interpretation.bestModelMappings != null && !interpretation.bestModelMappings.isEmpty()) {
+            bestModelMappingsReport(interpretation.bestModelMappings, w);
+        }
     }
 
-    private void interpretationReport(String model, CgmesEquipmentModelMapping mappingConfiguration,
-            ValidationData validationData, StringBuilder modelReportBuilder) throws IOException {
-        interpretationReportHeaderSection(model, mappingConfiguration, validationData, modelReportBuilder);
-        interpretationReportBalanceSection(validationData, modelReportBuilder);
-        interpretationReportBadNodesSection(validationData, modelReportBuilder);
-        interpretationReportBadVoltageNodesSection(validationData, modelReportBuilder);
-        interpretationReportModelSection(validationData, modelReportBuilder);
+    private void bestModelMappingsReport(Map<CgmesEquipmentModelMapping, Double> bestModelMappings,
+            BufferedWriter w) throws IOException {
+        TableFormatterConfig config = new TableFormatterConfig(Locale.US, ',', "-", true, true);
+        CsvTableFormatterFactory factory = new CsvTableFormatterFactory();
+        Column[] columns = new Column[] {
+            new Column("rank"),
+            new Column("total error"),
+            new Column("config")
+        };
+        TableFormatter formatter = factory.create(w, "BEST MODEL MAPPINGS", config, columns);
+        int rank = 1;
+        for (Map.Entry<CgmesEquipmentModelMapping, Double> e : bestModelMappings.entrySet()) {
+            formatter
+                    .writeCell(rank++)
+                    .writeCell(e.getValue())
+                    .writeCell(e.getKey().toString());
+        }
     }
 
-    private void interpretationReportHeaderSection(String model, CgmesEquipmentModelMapping mappingConfiguration,
-            ValidationData validationData, StringBuilder modelReportBuilder) {
-        LOG.debug("----> MAPPING CONFIG {}", mappingConfiguration);
-        modelReportBuilder.append(String.format("----> config %s", mappingConfiguration.toString()));
-        modelReportBuilder.append(System.getProperty("line.separator"));
+    private void interpretationReport(CgmesEquipmentModelMapping mappingConfiguration,
+            ValidationData validationData, BufferedWriter w) throws IOException {
+        interpretationReportHeaderSection(mappingConfiguration, w);
+        if (validationData.pruned) {
+            w.write(String.format(Locale.US, "pruned at %.1f%% with error >= %s",
+                    validationData.prunedAt * 100.0, validationData.balance));
+            w.newLine();
+            return;
+        }
+        BalanceStatistics statistics = new BalanceStatistics(validationData);
+        interpretationReportBalanceSection(validationData, statistics, w);
+        interpretationReportNodesSection("BAD NODES", validationData.balanceColumns, statistics.shownBadNodes, w);
+        interpretationReportNodesSection("BAD VOLTAGE NODES", validationData.balanceColumns,
+                statistics.shownBadVoltageNodes, w);
+        interpretationReportModelSection(validationData, w);
     }
 
-    private void interpretationReportBalanceSection(ValidationData validationData, StringBuilder modelReportBuilder)
-            throws IOException {
-
-        long notCalculatedNodes = validationData.balanceData.entrySet().stream()
-                .filter(entry -> !entry.getValue().asBoolean("calculated", false)
-                        && !entry.getValue().asBoolean("isolated", false))
-                .count();
-
-        long totalNodes = validationData.balanceData.values().size();
-        long badNodes = validationData.balanceData.values().stream()
-                .filter(pb -> pb.asBoolean("calculated", false) && !pb.asBoolean("badVoltage", false))
-                .filter(pb -> (Math.abs(pb.asDouble("balanceP"))
-                        + Math.abs(pb.asDouble("balanceQ"))) > BALANCE_TOLERANCE)
-                .count();
-
-        long badVoltageNodes = validationData.balanceData.values().stream()
-                .filter(pb -> pb.asBoolean("calculated", false) && pb.asBoolean("badVoltage", false))
-                .filter(pb -> (Math.abs(pb.asDouble("balanceP"))
-                        + Math.abs(pb.asDouble("balanceQ"))) > BALANCE_TOLERANCE)
-                .count();
-
-        long okNodes = validationData.balanceData.values().stream().filter(pb -> pb.asBoolean("calculated", false))
-                .filter(pb -> (Math.abs(pb.asDouble("balanceP"))
-                        + Math.abs(pb.asDouble("balanceQ"))) <= BALANCE_TOLERANCE)
-                .count();
-
-        long isolatedNodes = validationData.balanceData.values().stream().filter(pb -> pb.asBoolean("isolated", false))
-                .count();
-
-        double badVoltageNodesError = validationData.balanceData.values().stream()
-                .filter(pb -> pb.asBoolean("calculated", false) && pb.asBoolean("badVoltage", false))
-                .filter(pb -> (Math.abs(pb.asDouble("balanceP"))
-                        + Math.abs(pb.asDouble("balanceQ"))) > BALANCE_TOLERANCE)
-                .map(pb -> Math.abs(pb.asDouble("balanceP")) + Math.abs(pb.asDouble("balanceQ")))
-                .mapToDouble(Double::doubleValue).sum();
-
-        double badNodesError = validationData.balanceData.values().stream()
-                .filter(pb -> pb.asBoolean("calculated", false) && !pb.asBoolean("badVoltage", false))
-                .filter(pb -> (Math.abs(pb.asDouble("balanceP"))
-                        + Math.abs(pb.asDouble("balanceQ"))) > BALANCE_TOLERANCE)
-                .map(pb -> Math.abs(pb.asDouble("balanceP")) + Math.abs(pb.asDouble("balanceQ")))
-                .mapToDouble(Double::doubleValue).sum();
+    private void interpretationReportHeaderSection(CgmesEquipmentModelMapping mappingConfiguration,
+            BufferedWriter w) throws IOException {
+        LOG.debug("----> MAPPING CONFIG {}", mappingConfiguration);
+        w.write(String.format("----> config %s", mappingConfiguration.toString()));
+        w.newLine();
+    }
 
+    private void interpretationReportBalanceSection(ValidationData validationData, BalanceStatistics statistics,
+            BufferedWriter w) throws IOException {
         LOG.debug(
                 "BALANCE -- total error;total nodes;isolated nodes;non-calculated nodes;ok nodes;bad error;bad nodes;pct;badVoltage error;badVoltage nodes;pct");
-        LOG.debug("{};{};{};{};{};{};{};{};{};{};{}", validationData.balance, totalNodes, isolatedNodes,
-                notCalculatedNodes, okNodes, badNodesError, badNodes,
-                Long.valueOf(badNodes).doubleValue() / Long.valueOf(totalNodes - isolatedNodes).doubleValue() * 100.0,
-                badVoltageNodesError, badVoltageNodes, Long.valueOf(badVoltageNodes).doubleValue()
-                        / Long.valueOf(totalNodes - isolatedNodes).doubleValue() * 100.0);
+        LOG.debug("{};{};{};{};{};{};{};{};{};{};{}", validationData.balance, statistics.totalNodes,
+                statistics.isolatedNodes, statistics.notCalculatedNodes, statistics.okNodes,
+                statistics.badNodesError, statistics.badNodes, statistics.badNodesPct(),
+                statistics.badVoltageNodesError, statistics.badVoltageNodes,
+                statistics.badVoltageNodesPct());
 
         TableFormatterConfig config = new TableFormatterConfig(Locale.US, ',', "-", true, true);
         CsvTableFormatterFactory factory = new CsvTableFormatterFactory();
@@ -198,47 +191,23 @@ public class InterpretationsReport {
             new Column("badVoltage nodes"),
             new Column("pct")
         };
-        try (Writer writer = new StringWriter()) {
-            TableFormatter formatter = factory.create(writer, "BALANCE", config, columns);
-            try {
-                formatter
-                        .writeCell(validationData.balance)
-                        .writeCell((int) totalNodes)
-                        .writeCell((int) isolatedNodes)
-                        .writeCell((int) notCalculatedNodes)
-                        .writeCell((int) okNodes)
-                        .writeCell(badNodesError)
-                        .writeCell((int) badNodes)
-                        .writeCell(Long.valueOf(badNodes).doubleValue()
-                                / Long.valueOf(totalNodes - isolatedNodes).doubleValue() * 100.0)
-                        .writeCell(badVoltageNodesError)
-                        .writeCell((int) badVoltageNodes)
-                        .writeCell(Long.valueOf(badVoltageNodes).doubleValue()
-                                / Long.valueOf(totalNodes - isolatedNodes).doubleValue() * 100.0);
-            } catch (IOException x) {
-                // Ignored
-            }
-            modelReportBuilder.append(writer.toString());
-        }
-    }
-
-    private void interpretationReportBadNodesSection(ValidationData validationData, StringBuilder modelReportBuilder) {
-        boolean showOnlyBadNodes = true;
-        boolean showOnlyBadVoltageNodes = false;
-        interpretationReportNodesSection("BAD NODES", validationData, modelReportBuilder, showOnlyBadVoltageNodes,
-                showOnlyBadNodes);
-    }
-
-    private void interpretationReportBadVoltageNodesSection(ValidationData validationData,
-            StringBuilder modelReportBuilder) {
-        boolean showOnlyBadNodes = false;
-        boolean showOnlyBadVoltageNodes = true;
-        interpretationReportNodesSection("BAD VOLTAGE NODES", validationData, modelReportBuilder,
-                showOnlyBadVoltageNodes, showOnlyBadNodes);
+        TableFormatter formatter = factory.create(w, "BALANCE", config, columns);
+        formatter
+                .writeCell(validationData.balance)
+                .writeCell(statistics.totalNodes)
+                .writeCell(statistics.isolatedNodes)
+                .writeCell(statistics.notCalculatedNodes)
+                .writeCell(statistics.okNodes)
+                .writeCell(statistics.badNodesError)
+                .writeCell(statistics.badNodes)
+                .writeCell(statistics.badNodesPct())
+                .writeCell(statistics.badVoltageNodesError)
+                .writeCell(statistics.badVoltageNodes)
+                .writeCell(statistics.badVoltageNodesPct());
     }
 
-    private void interpretationReportNodesSection(String prefix, ValidationData validationData,
-            StringBuilder modelReportBuilder, boolean showOnlyBadVoltageNodes, boolean showOnlyBadNodes) {
+    private void interpretationReportNodesSection(String prefix, BalanceColumns balanceColumns,
+            List<Integer> shownRows, BufferedWriter w) throws IOException {
         LOG.debug("%s -- id;balanceP;balanceQ;lines;xfmr2s;xfmr3s;nodes", prefix);
 
         TableFormatterConfig config = new TableFormatterConfig(Locale.US, ',', "-", true, true);
@@ -252,46 +221,29 @@ public class InterpretationsReport {
             new Column("xfmr3s"),
             new Column("nodes")
         };
-        try (Writer writer = new StringWriter()) {
-            TableFormatter formatter = factory.create(writer, prefix, config, columns);
-            validationData.balanceData.keySet().stream().filter(nodes -> {
-                PropertyBag pb = validationData.balanceData.get(nodes);
-                double nodeBalanceP = pb.asDouble("balanceP");
-                double nodeBalanceQ = pb.asDouble("balanceQ");
-                boolean calculatedNode = pb.asBoolean("calculated", false);
-                boolean badVoltage = pb.asBoolean("badVoltage", false);
-                boolean badError = calculatedNode
-                        && Math.abs(nodeBalanceP) + Math.abs(nodeBalanceQ) > BALANCE_TOLERANCE;
-                return showOnlyBadNodes && !badVoltage && badError || showOnlyBadVoltageNodes && badVoltage && badError;
-            }).limit(SHOW_NODES).forEach(nodes -> {
-                PropertyBag pb = validationData.balanceData.get(nodes);
-                double nodeBalanceP = pb.asDouble("balanceP");
-                double nodeBalanceQ = pb.asDouble("balanceQ");
-                int lines = pb.asInt("line");
-                int xfmr2s = pb.asInt("xfmr2");
-                int xfmr3s = pb.asInt("xfmr3");
-                LOG.debug("{},{},{},{},{},{},{}", nodes.iterator().next(), nodeBalanceP, nodeBalanceQ, lines, xfmr2s,
-                        xfmr3s, nodes);
-                try {
-                    formatter
-                            .writeCell(nodes.iterator().next())
-                            .writeCell(nodeBalanceP)
-                            .writeCell(nodeBalanceQ)
-                            .writeCell(lines)
-                            .writeCell(xfmr2s)
-                            .writeCell(xfmr3s)
-                            .writeCell(nodes.toString());
-                } catch (IOException x) {
-                    // Ignored
-                }
-            });
-            modelReportBuilder.append(writer.toString());
-        } catch (IOException e) {
-            // Ignored
+        TableFormatter formatter = factory.create(w, prefix, config, columns);
+        for (int row : shownRows) {
+            List<String> nodes = balanceColumns.nodes(row);
+            double nodeBalanceP = balanceColumns.balanceP(row);
+            double nodeBalanceQ = balanceColumns.balanceQ(row);
+            int lines = balanceColumns.lines(row);
+            int xfmr2s = balanceColumns.xfmr2s(row);
+            int xfmr3s = balanceColumns.xfmr3s(row);
+            LOG.debug("{},{},{},{},{},{},{}", nodes.iterator().next(), nodeBalanceP, nodeBalanceQ, lines, xfmr2s,
+                    xfmr3s, nodes);
+            formatter
+                    .writeCell(nodes.iterator().next())
+                    .writeCell(nodeBalanceP)
+                    .writeCell(nodeBalanceQ)
+                    .writeCell(lines)
+                    .writeCell(xfmr2s)
+                    .writeCell(xfmr3s)
+                    .writeCell(nodes.toString());
         }
     }
 
-    private void interpretationReportModelSection(ValidationData validationData, StringBuilder modelReportBuilder) {
+    private void interpretationReportModelSection(ValidationData validationData, BufferedWriter w)
+            throws IOException {
         Map<String, DetectedEquipmentModel> sortedByModelReport = new TreeMap<String, DetectedEquipmentModel>(
                 new Comparator<String>() {
                     @Override
@@ -315,30 +267,69 @@ public class InterpretationsReport {
         };
 
         sortedByModelReport.putAll(validationData.detectedModelData);
-        try (Writer writer = new StringWriter()) {
-            TableFormatter formatter = factory.create(writer, "DETECTED MODEL", config, columns);
-            sortedByModelReport.keySet().forEach(model -> {
-                LOG.debug("{},{},{},{},{}",
-                        sortedByModelReport.get(model).code(),
-                        sortedByModelReport.get(model).total,
-                        sortedByModelReport.get(model).calculated,
-                        sortedByModelReport.get(model).ok,
-                        sortedByModelReport.get(model).conversionCode());
-                try {
-                    formatter
-                            .writeCell(sortedByModelReport.get(model).code())
-                            .writeCell(sortedByModelReport.get(model).total)
-                            .writeCell(sortedByModelReport.get(model).calculated)
-                            .writeCell(sortedByModelReport.get(model).ok)
-                            .writeCell(sortedByModelReport.get(model).conversionCode());
-                } catch (IOException x) {
-                    // Ignored
+        TableFormatter formatter = factory.create(w, "DETECTED MODEL", config, columns);
+        for (DetectedEquipmentModel model : sortedByModelReport.values()) {
+            LOG.debug("{},{},{},{},{}", model.code(), model.total, model.calculated, model.ok,
+                    model.conversionCode());
+            formatter
+                    .writeCell(model.code())
+                    .writeCell(model.total)
+                    .writeCell(model.calculated)
+                    .writeCell(model.ok)
+                    .writeCell(model.conversionCode());
+        }
+    }
+
+    // Counters and errors of the balance section, and the first bad nodes among the kept ones
+    private static final class BalanceStatistics {
+
+        BalanceStatistics(ValidationData validationData) {
+            BalanceColumns balanceColumns = validationData.balanceColumns;
+            totalNodes = balanceColumns.totalNodes();
+            isolatedNodes = balanceColumns.isolatedNodes();
+            notCalculatedNodes = balanceColumns.notCalculatedNodes();
+            okNodes = balanceColumns.okNodes();
+            badNodes = balanceColumns.badNodes();
+            badNodesError = balanceColumns.badNodesError();
+            badVoltageNodes = balanceColumns.badVoltageNodes();
+            badVoltageNodesError = balanceColumns.badVoltageNodesError();
+            shownBadNodes = new ArrayList<>(SHOW_NODES);
+            shownBadVoltageNodes = new ArrayList<>(SHOW_NODES);
+            for (int row = 0; row < balanceColumns.size(); row++) {
+                if (balanceColumns.isCalculated(row) && balanceColumns.error(row) > BALANCE_TOLERANCE) {
+                    if (balanceColumns.isBadVoltage(row)) {
+                        show(shownBadVoltageNodes, row);
+                    } else {
+                        show(shownBadNodes, row);
+                    }
                 }
-            });
-            modelReportBuilder.append(writer.toString());
-        } catch (IOException e) {
-            // Ignored
+            }
+        }
+
+        private static void show(List<Integer> shown, int row) {
+            if (shown.size() < SHOW_NODES) {
+                shown.add(row);
+            }
         }
+
+        double badNodesPct() {
+            return (double) badNodes / (double) (totalNodes - isolatedNodes) * 100.0;
+        }
+
+        double badVoltageNodesPct() {
+            return (double) badVoltageNodes / (double) (totalNodes - isolatedNodes) * 100.0;
+        }
+
+        final int           totalNodes;
+        final int           isolatedNodes;
+        final int           notCalculatedNodes;
+        final int           okNodes;
+        final int           badNodes;
+        final double        badNodesError;
+        final int           badVoltageNodes;
+        final double        badVoltageNodesError;
+        final List<Integer> shownBadNodes;
+        final List<Integer> shownBadVoltageNodes;
     }
 
     private final Path  output;
@@ -8,6 +8,8 @@
 package com.powsybl.cgmes.model.interpretation;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -21,6 +23,8 @@ import org.slf4j.LoggerFactory;
 import com.powsybl.cgmes.model.CgmesModel;
 import com.powsybl.cgmes.model.CgmesNames;
 import com.powsybl.cgmes.model.CgmesTerminal;
+import com.powsybl.cgmes.model.interpretation.InterpretationMetrics.Measure;
+import com.powsybl.cgmes.model.interpretation.InterpretationMetrics.Phase;
 import com.powsybl.cgmes.model.triplestore.CgmesModelTripleStore;
 import com.powsybl.triplestore.api.PropertyBag;
 import com.powsybl.triplestore.api.PropertyBags;
@@ -33,16 +37,52 @@ public class InterpretedModel {
 
     public InterpretedModel(CgmesModel m) {
         cgmes = m;
+        metrics = new InterpretationMetrics();
+    }
+
+    /**
+     * Model loaded from a snapshot written by {@link #writeSnapshot(Path)}
+     * instead of a CGMES model. It has no CGMES model, tap changer tables are
+     * taken from the snapshot.
+     */
+    public InterpretedModel(Path snapshot) {
+        this.snapshot = snapshot;
+        metrics = new InterpretationMetrics();
     }
 
     public void loadModel() throws IOException {
+        if (snapshot != null) {
+            Measure measure = metrics.start(Phase.LOAD_SNAPSHOT);
+            ModelSnapshot s = ModelSnapshot.read(snapshot);
+            releaseParameters();
+            compiledModel = s.compiledModel();
+            tapChangerTables = s.tapChangerTables();
+            measure.stop(compiledModel.numNodes());
+            return;
+        }
+        Measure measure = metrics.start(Phase.LOAD_NODES);
         nodeParameters = nodeParameters(cgmes);
+        measure.stop(nodeParameters.size());
         equipmentsInNode = new HashMap<>();
-        lineParameters = lineParameters(cgmes, equipmentsInNode);
-        transformerParameters = transformerParameters(cgmes,
-                equipmentsInNode);
-        joinedNodes = joinRetainedSwitchesNodes(cgmes, nodeParameters);
+        // Each branch is classified once: z0 branches join nodes, the others are interpreted
+        NodeUnionFind nodes = new NodeUnionFind(nodeParameters.keySet());
+        measure = metrics.start(Phase.JOIN_SWITCHES);
+        measure.stop(joinRetainedSwitchesNodes(cgmes, nodes));
+        measure = metrics.start(Phase.LOAD_LINES);
+        lineParameters = lineParameters(cgmes, equipmentsInNode, nodes);
+        measure.stop(lineParameters.size());
+        measure = metrics.start(Phase.LOAD_TRANSFORMERS);
+        transformerParameters = transformerParameters(cgmes, equipmentsInNode, nodes);
+        measure.stop(transformerParameters.size());
+        measure = metrics.start(Phase.JOIN_BUSES);
+        joinedNodes = joinedNodes(nodes);
+        measure.stop(joinedNodes.size());
+        measure = metrics.start(Phase.LOAD_NODE_FLOWS);
         getNodeFlow(cgmes, nodeParameters);
+        measure.stop(nodeParameters.size());
+        measure = metrics.start(Phase.LOAD_TAP_CHANGER_TABLES);
+        tapChangerTables = TapChangerTables.load(cgmes);
+        measure.stop(tapChangerTables.size());
 
         if (LOG.isDebugEnabled()) {
             nodeParameters.keySet().forEach(key -> LOG.debug("node {} ,  {}", key, nodeParameters.get(key)));
@@ -50,6 +90,22 @@ public class InterpretedModel {
             transformerParameters.keySet()
                     .forEach(key -> LOG.debug("transformer {} , {}", key, transformerParameters.get(key)));
         }
+
+        // The interpretation works on the compiled model, loaded properties are no longer needed
+        measure = metrics.start(Phase.COMPILE);
+        compiledModel = CompiledModel.compile(nodeParameters, lineParameters, transformerParameters,
+                equipmentsInNode, joinedNodes, isolatedNodes);
+        measure.stop(compiledModel.numNodes() + compiledModel.numLines() + compiledModel.numTransformers());
+        releaseParameters();
+    }
+
+    /**
+     * Writes the loaded state of the model, its compiled parameters and its
+     * tap changer tables, to a snapshot file that can be loaded later without
+     * the CGMES model.
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        ModelSnapshot.write(compiledModel(), tapChangerTables(), file);
     }
 
     public CgmesModel getCgmes() {
@@ -57,63 +113,139 @@ public class InterpretedModel {
     }
 
     public void setJoinedNodes(List<List<String>> joinedNodes) {
+        retainParameters();
         this.joinedNodes = joinedNodes;
     }
 
     public void setNodeParameters(Map<String, PropertyBag> nodeParameters) {
+        retainParameters();
         this.nodeParameters = nodeParameters;
     }
 
     public void setLineParameters(Map<String, PropertyBag> lineParameters) {
+        retainParameters();
         this.lineParameters = lineParameters;
     }
 
     public void setTransformerParameters(Map<String, PropertyBag> transformerParameters) {
+        retainParameters();
         this.transformerParameters = transformerParameters;
     }
 
     public void setEquipmentsInNode(Map<String, List<String>> equipmentsInNode) {
+        retainParameters();
         this.equipmentsInNode = equipmentsInNode;
     }
 
     public void setIsolatedNodes(Map<List<String>, Boolean> isolatedNodes) {
+        retainParameters();
         this.isolatedNodes = isolatedNodes;
     }
 
+    /**
+     * Tap changer tables given by their points instead of loading them from
+     * the CGMES model. Points have the table identifier as property
+     * RatioTapChangerTable or PhaseTapChangerTable, the step, and the ratio,
+     * angle, r, x, g and b values.
+     */
+    public void setTapChangerTablePoints(PropertyBags ratioTablePoints, PropertyBags phaseTablePoints) {
+        tapChangerTables = TapChangerTables.of(ratioTablePoints, phaseTablePoints);
+    }
+
     public PropertyBag getNodeParameters(String n) {
-        return nodeParameters.get(n);
+        CompiledModel m = compiledModel();
+        int k = m.nodeIndex(n);
+        return k == CompiledModel.NO_INDEX ? null : m.nodeParameters(k);
     }
 
+    // Each node bag is built when it is read
     public Collection<PropertyBag> getNodeParametersValues() {
-        return nodeParameters.values();
+        CompiledModel m = compiledModel();
+        return new AbstractList<PropertyBag>() {
+            @Override
+            public PropertyBag get(int n) {
+                return m.nodeParameters(n);
+            }
+
+            @Override
+            public int size() {
+                return m.numNodes();
+            }
+        };
     }
 
     public PropertyBag getLineParameters(String n) {
-        return lineParameters.get(n);
+        CompiledModel m = compiledModel();
+        int l = m.lineIndex(n);
+        return l == CompiledModel.NO_INDEX ? null : m.lineParameters(l);
     }
 
     public PropertyBag getTransformerParameters(String n) {
-        return transformerParameters.get(n);
+        CompiledModel m = compiledModel();
+        int t = m.transformerIndex(n);
+        return t == CompiledModel.NO_INDEX ? null : m.transformerParameters(t);
     }
 
     public List<List<String>> getJoinedNodes() {
-        return joinedNodes;
+        return compiledModel().buses;
     }
 
     public Map<List<String>, Boolean> getIsolatedNodes() {
-        return isolatedNodes;
+        return compiledModel().isolatedNodes();
     }
 
     public Map<String, List<String>> getEquipmentsInNode() {
-        return equipmentsInNode;
+        return compiledModel().equipmentsInNode();
+    }
+
+    InterpretationMetrics metrics() {
+        return metrics;
+    }
+
+    // Phases of the model are added to the metrics of its interpretation
+    void setMetrics(InterpretationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    CompiledModel compiledModel() {
+        if (compiledModel == null) {
+            compiledModel = CompiledModel.compile(nodeParameters, lineParameters, transformerParameters,
+                    equipmentsInNode, joinedNodes, isolatedNodes);
+        }
+        return compiledModel;
     }
 
-    private List<List<String>> joinRetainedSwitchesNodes(CgmesModel cgmes, Map<String, PropertyBag> nodeParameters) {
+    TapChangerTables tapChangerTables() {
+        if (tapChangerTables == null) {
+            tapChangerTables = TapChangerTables.load(cgmes);
+        }
+        return tapChangerTables;
+    }
+
+    private void retainParameters() {
+        // Model parameters given after loading or compiling start from the current contents
+        if (compiledModel != null && nodeParameters == null) {
+            nodeParameters = compiledModel.nodeParameters();
+            lineParameters = compiledModel.lineParameters();
+            transformerParameters = compiledModel.transformerParameters();
+            equipmentsInNode = compiledModel.equipmentsInNode();
+            joinedNodes = compiledModel.buses;
+            isolatedNodes = compiledModel.isolatedNodes();
+        }
+        compiledModel = null;
+    }
 
-        isolatedNodes = new HashMap<>();
-        List<List<String>> joinedNodes = new ArrayList<>();
-        Map<String, List<String>> nodes = new HashMap<>();
+    private void releaseParameters() {
+        nodeParameters = null;
+        lineParameters = null;
+        transformerParameters = null;
+        equipmentsInNode = null;
+        joinedNodes = null;
+        isolatedNodes = null;
+        voltages = null;
+    }
 
+    private int joinRetainedSwitchesNodes(CgmesModel cgmes, NodeUnionFind nodes) {
         String retainedSwitches = "SELECT * "
                 + "WHERE { "
                 + "{ GRAPH ?graph {"
@@ -135,7 +267,8 @@ public class InterpretedModel {
                 + "    ?Switch cim:Switch.open ?open"
                 + "}}"
                 + "}";
-        ((CgmesModelTripleStore) cgmes).query(retainedSwitches).forEach(rs -> {
+        PropertyBags switches = ((CgmesModelTripleStore) cgmes).query(retainedSwitches);
+        switches.forEach(rs -> {
             Boolean retained = rs.asBoolean("retained", false);
             Boolean open = rs.asBoolean("open", false);
             if (retained && !open) {
@@ -143,43 +276,22 @@ public class InterpretedModel {
                 String id1 = t.topologicalNode();
                 t = cgmes.terminal(rs.getId(CgmesNames.TERMINAL + "2"));
                 String id2 = t.topologicalNode();
-                List<String> node = nodes.computeIfAbsent(id1, x -> new ArrayList<>());
-                node.add(id2);
-                node = nodes.computeIfAbsent(id2, x -> new ArrayList<>());
-                node.add(id1);
+                nodes.union(id1, id2);
             }
         });
-        cgmes.acLineSegments().forEach(l -> getZ0LinesNodesAd(l, CgmesNames.AC_LINE_SEGMENT, nodes));
-        cgmes.equivalentBranches().forEach(eb -> getZ0LinesNodesAd(eb, "EquivalentBranch", nodes));
-        cgmes.seriesCompensators().forEach(sc -> getZ0LinesNodesAd(sc, CgmesNames.SERIES_COMPENSATOR, nodes));
-        cgmes.groupedTransformerEnds().values().forEach(tends -> getZ0Xfmr2NodesAd(tends, nodes));
-
-        List<String> visitedNodes = new ArrayList<>();
-        nodeParameters.keySet().forEach(k -> {
-            if (visitedNodes.contains(k)) {
-                return;
-            }
-            List<String> joinNodes = new ArrayList<>();
-            joinNodes.add(k);
-            visitedNodes.add(k);
-            if (nodes.containsKey(k)) {
-                int indice = 0;
-                while (indice < joinNodes.size()) {
-                    String node = joinNodes.get(indice);
-                    List<String> ns = nodes.get(node);
-                    ns.forEach(nodeAd -> {
-                        if (visitedNodes.contains(nodeAd)) {
-                            return;
-                        }
-                        joinNodes.add(nodeAd);
-                        visitedNodes.add(nodeAd);
-                    });
-                    indice++;
-                }
-            }
-            joinedNodes.add(joinNodes);
-        });
+        return switches.size();
+    }
 
+    private List<List<String>> joinedNodes(NodeUnionFind nodes) {
+        List<List<String>> joinedNodes = nodes.joinedNodes();
+        isolatedNodes = isolatedNodes(joinedNodes, equipmentsInNode);
+        return joinedNodes;
+    }
+
+    // A bus is isolated when none of its nodes has equipment
+    static Map<List<String>, Boolean> isolatedNodes(List<List<String>> joinedNodes,
+            Map<String, List<String>> equipmentsInNode) {
+        Map<List<String>, Boolean> isolatedNodes = new HashMap<>();
         joinedNodes.forEach(joinNodes -> {
             isolatedNodes.put(joinNodes, Boolean.valueOf("true"));
             for (String node : joinNodes) {
@@ -189,54 +301,7 @@ public class InterpretedModel {
                 }
             }
         });
-
-        return joinedNodes;
-    }
-
-    private void getZ0LinesNodesAd(PropertyBag equipment, String cgmesNameId, Map<String, List<String>> nodes) {
-        CgmesTerminal t1 = cgmes.terminal(equipment.getId(CgmesNames.TERMINAL + 1));
-        CgmesTerminal t2 = cgmes.terminal(equipment.getId(CgmesNames.TERMINAL + 2));
-        if (!t1.connected() || !t2.connected()) {
-            return;
-        }
-
-        double r = equipment.asDouble("r");
-        double x = equipment.asDouble("x");
-        String nodeId1 = t1.topologicalNode();
-        String nodeId2 = t2.topologicalNode();
-        if (!isZ0(r, x, nodeId1, nodeId2)) {
-            return;
-        }
-        List<String> node = nodes.computeIfAbsent(nodeId1, k -> new ArrayList<>());
-        node.add(nodeId2);
-        node = nodes.computeIfAbsent(nodeId2, k -> new ArrayList<>());
-        node.add(nodeId1);
-    }
-
-    private void getZ0Xfmr2NodesAd(PropertyBags ends, Map<String, List<String>> nodes) {
-        if (ends.size() != 2) {
-            return;
-        }
-
-        CgmesTerminal t1 = cgmes.terminal(ends.get(0).getId(CgmesNames.TERMINAL));
-        CgmesTerminal t2 = cgmes.terminal(ends.get(1).getId(CgmesNames.TERMINAL));
-        if (!t1.connected() || !t2.connected()) {
-            return;
-        }
-
-        double r1 = ends.get(0).asDouble("r");
-        double x1 = ends.get(0).asDouble("x");
-        double r2 = ends.get(1).asDouble("r");
-        double x2 = ends.get(1).asDouble("x");
-        String nodeId1 = t1.topologicalNode();
-        String nodeId2 = t2.topologicalNode();
-        if (!isZ0(r1 + r2, x1 + x2, nodeId1, nodeId2)) {
-            return;
-        }
-        List<String> node = nodes.computeIfAbsent(nodeId1, k -> new ArrayList<>());
-        node.add(nodeId2);
-        node = nodes.computeIfAbsent(nodeId2, k -> new ArrayList<>());
-        node.add(nodeId1);
+        return isolatedNodes;
     }
 
     private Map<String, PropertyBag> nodeParameters(CgmesModel cgmes) {
@@ -386,17 +451,20 @@ public class InterpretedModel {
         node.put("q", String.valueOf(qNode + qEquipment));
     }
 
-    private Map<String, PropertyBag> lineParameters(CgmesModel cgmes, Map<String, List<String>> equipmentsInNode) {
+    private Map<String, PropertyBag> lineParameters(CgmesModel cgmes, Map<String, List<String>> equipmentsInNode,
+            NodeUnionFind nodes) {
 
         propertyNames = new ArrayList<>(Arrays.asList("r", "x", "bch"));
         Map<String, PropertyBag> lines = new HashMap<>();
-        cgmes.acLineSegments().forEach(l -> getLineParameters(l, CgmesNames.AC_LINE_SEGMENT, lines));
-        cgmes.equivalentBranches().forEach(eb -> getLineParameters(eb, "EquivalentBranch", lines));
-        cgmes.seriesCompensators().forEach(sc -> getLineParameters(sc, CgmesNames.SERIES_COMPENSATOR, lines));
+        cgmes.acLineSegments().forEach(l -> getLineParameters(l, CgmesNames.AC_LINE_SEGMENT, lines, nodes));
+        cgmes.equivalentBranches().forEach(eb -> getLineParameters(eb, "EquivalentBranch", lines, nodes));
+        cgmes.seriesCompensators()
+                .forEach(sc -> getLineParameters(sc, CgmesNames.SERIES_COMPENSATOR, lines, nodes));
         return lines;
     }
 
-    private void getLineParameters(PropertyBag equipment, String cgmesNameId, Map<String, PropertyBag> lines) {
+    private void getLineParameters(PropertyBag equipment, String cgmesNameId, Map<String, PropertyBag> lines,
+            NodeUnionFind nodes) {
         String id = equipment.getId(cgmesNameId);
         double r = equipment.asDouble("r");
         double x = equipment.asDouble("x");
@@ -408,12 +476,14 @@ public class InterpretedModel {
         boolean t1connected = t1.connected();
         String nodeId2 = t2.topologicalNode();
         boolean t2connected = t2.connected();
-        if (!t1connected && !t2connected) {
-            return;
-        }
-        // Connected z0 lines are used to join buses
-        if (t1connected && t2connected && isZ0(r, x, nodeId1, nodeId2)) {
-            return;
+        switch (classifyBranch(r, x, t1, t2)) {
+            case DISCONNECTED:
+                return;
+            case Z0_JOINER:
+                nodes.union(nodeId1, nodeId2);
+                return;
+            default:
+                break;
         }
         PropertyBag line = lines.computeIfAbsent(id, z -> new PropertyBag(propertyNames));
         line.put("r", Double.toString(r));
@@ -436,7 +506,7 @@ public class InterpretedModel {
     }
 
     private Map<String, PropertyBag> transformerParameters(CgmesModel cgmes,
-            Map<String, List<String>> equipmentsInNode) {
+            Map<String, List<String>> equipmentsInNode, NodeUnionFind nodes) {
 
         propertyNames = new ArrayList<>(Arrays.asList(
                 "r1", "x1", "b1", "g1", "pac1", "ratedU1", "rns1", "rsvi1", "rstep1", "pns1",
@@ -461,43 +531,53 @@ public class InterpretedModel {
         cgmes.groupedTransformerEnds().entrySet().forEach(tends -> {
             String id = tends.getKey();
             PropertyBags ends = tends.getValue();
-            if (ends.size() == 2) {
-                PropertyBag end1 = ends.get(0);
-                PropertyBag end2 = ends.get(1);
-                CgmesTerminal t1 = cgmes.terminal(end1.getId(CgmesNames.TERMINAL));
-                CgmesTerminal t2 = cgmes.terminal(end2.getId(CgmesNames.TERMINAL));
-
-                double r1 = end1.asDouble("r");
-                double x1 = end1.asDouble("x");
-                double r2 = end2.asDouble("r");
-                double x2 = end2.asDouble("x");
-                String nodeId1 = t1.topologicalNode();
-                String nodeId2 = t2.topologicalNode();
-                if (t1.connected() && t2.connected() && isZ0(r1 + r2, x1 + x2, nodeId1, nodeId2)) {
-                    return;
-                }
+            CgmesTerminal[] terminals = new CgmesTerminal[ends.size()];
+            for (int k = 0; k < terminals.length; k++) {
+                terminals[k] = cgmes.terminal(ends.get(k).getId(CgmesNames.TERMINAL));
             }
-
-            boolean partialConnected = false;
-            for (PropertyBag end : ends) {
-                CgmesTerminal t = cgmes.terminal(end.getId(CgmesNames.TERMINAL));
-                if (t.connected()) {
-                    partialConnected = true;
-                }
+            BranchClass branchClass;
+            if (ends.size() == 2) {
+                double r = ends.get(0).asDouble("r") + ends.get(1).asDouble("r");
+                double x = ends.get(0).asDouble("x") + ends.get(1).asDouble("x");
+                branchClass = classifyBranch(r, x, terminals[0], terminals[1]);
+            } else {
+                branchClass = Arrays.stream(terminals).anyMatch(CgmesTerminal::connected) ? BranchClass.BRANCH
+                        : BranchClass.DISCONNECTED;
             }
-            if (partialConnected) {
+            if (branchClass == BranchClass.Z0_JOINER) {
+                nodes.union(terminals[0].topologicalNode(), terminals[1].topologicalNode());
+            } else if (branchClass == BranchClass.BRANCH) {
                 // Add all ends. Associate with a node only it is connected to it
-                ends.forEach(end -> transformerEndParameters(cgmes, equipmentsInNode, powerTransformerRatioTapChanger,
-                        powerTransformerPhaseTapChanger, transformers, id, end));
+                for (int k = 0; k < terminals.length; k++) {
+                    transformerEndParameters(equipmentsInNode, powerTransformerRatioTapChanger,
+                            powerTransformerPhaseTapChanger, transformers, id, ends.get(k), terminals[k]);
+                }
             }
         });
         return transformers;
     }
 
-    private void transformerEndParameters(CgmesModel cgmes, Map<String, List<String>> equipmentsInNode,
+    private enum BranchClass {
+        Z0_JOINER,
+        BRANCH,
+        DISCONNECTED
+    }
+
+    private BranchClass classifyBranch(double r, double x, CgmesTerminal t1, CgmesTerminal t2) {
+        if (!t1.connected() && !t2.connected()) {
+            return BranchClass.DISCONNECTED;
+        }
+        // Connected z0 branches are used to join buses
+        if (t1.connected() && t2.connected() && isZ0(r, x, t1.topologicalNode(), t2.topologicalNode())) {
+            return BranchClass.Z0_JOINER;
+        }
+        return BranchClass.BRANCH;
+    }
+
+    private void transformerEndParameters(Map<String, List<String>> equipmentsInNode,
             Map<String, PropertyBag> powerTransformerRatioTapChanger,
             Map<String, PropertyBag> powerTransformerPhaseTapChanger, Map<String, PropertyBag> transformers, String id,
-            PropertyBag end) {
+            PropertyBag end, CgmesTerminal t) {
         String endNumber = end.get("endNumber");
         String r = end.get("r");
         String x = end.get("x");
@@ -615,7 +695,6 @@ public class InterpretedModel {
             }
         }
 
-        CgmesTerminal t = cgmes.terminal(end.getId(CgmesNames.TERMINAL));
         String nodeId = t.topologicalNode();
         transformer.put("terminal" + endNumber, nodeId);
         transformer.put("connected" + endNumber, Boolean.toString(t.connected()));
@@ -684,6 +763,7 @@ public class InterpretedModel {
     }
 
     private CgmesModel                 cgmes;
+    private Path                       snapshot;
     private List<String>               propertyNames;
     private Map<String, PropertyBag>   voltages;
     private List<List<String>>         joinedNodes;
@@ -692,6 +772,9 @@ public class InterpretedModel {
     private Map<String, PropertyBag>   lineParameters;
     private Map<String, PropertyBag>   transformerParameters;
     private Map<String, List<String>>  equipmentsInNode;
+    private CompiledModel              compiledModel;
+    private TapChangerTables           tapChangerTables;
+    private InterpretationMetrics      metrics;
 
     private static final Logger        LOG = LoggerFactory.getLogger(InterpretedModel.class);
 }
@@ -7,10 +7,7 @@
 
 package com.powsybl.cgmes.model.interpretation;
 
-import org.apache.commons.math3.complex.Complex;
-
 import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.LineShuntMappingAlternative;
-import com.powsybl.triplestore.api.PropertyBag;
 
 /**
  * @author José Antonio Marqués <marquesja at aia.es>
@@ -18,14 +15,14 @@ import com.powsybl.triplestore.api.PropertyBag;
  */
 public class LineModel {
 
-    public LineModel(PropertyBag line, CgmesEquipmentModelMapping config) {
+    LineModel(CompiledModel model, int line, CgmesEquipmentModelMapping config) {
         super();
         this.config = config;
-        this.line = line;
         admittanceMatrix = new BranchAdmittanceMatrix();
 
-        r = line.asDouble("r");
-        x = line.asDouble("x");
+        r = model.lineR[line];
+        x = model.lineX[line];
+        bch = model.lineBch[line];
     }
 
     public void interpret(double nominalV1, double nominalV2) {
@@ -34,8 +31,6 @@ public class LineModel {
         BShuntData bShuntData = getLineBshunt(config);
         double bsh1 = bShuntData.bsh1;
         double bsh2 = bShuntData.bsh2;
-        Complex ysh1 = new Complex(0.0, bsh1);
-        Complex ysh2 = new Complex(0.0, bsh2);
 
         detectBranchModel(bsh1, bsh2);
 
@@ -44,7 +39,7 @@ public class LineModel {
         double a0 = getLineRatio0(nominalV1, nominalV2, config);
 
         // admittance
-        admittanceMatrix.calculateAdmittance(r, x, a0, 0.0, ysh1, 1.0, 0.0, ysh2);
+        admittanceMatrix.calculateAdmittance(r, x, a0, 1.0, 0.0, 0.0, bsh1, 1.0, 1.0, 0.0, 0.0, bsh2);
     }
 
     public DetectedBranchModel getBranchModel() {
@@ -72,7 +67,6 @@ public class LineModel {
     }
 
     private BShuntData getLineBshunt(CgmesEquipmentModelMapping config) {
-        double bch = line.asDouble("bch");
         LineShuntMappingAlternative lineBshunt = config.getLineBshunt();
         BShuntData bShuntData = new BShuntData();
         switch (lineBshunt) {
@@ -96,10 +90,10 @@ public class LineModel {
     }
 
     private final CgmesEquipmentModelMapping config;
-    private final PropertyBag                line;
 
     private final double                     r;
     private final double                     x;
+    private final double                     bch;
 
     private BranchAdmittanceMatrix           admittanceMatrix;
     private DetectedBranchModel              branchModel;
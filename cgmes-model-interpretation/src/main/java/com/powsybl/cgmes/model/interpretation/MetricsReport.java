@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+import com.powsybl.cgmes.model.interpretation.InterpretationMetrics.Phase;
+import com.powsybl.cgmes.model.interpretation.InterpretationMetrics.PhaseStatistics;
+
+/**
+ * Metrics of the interpretation of a catalog, for each model and for the
+ * whole catalog, written as JSON or in the Prometheus text format.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class MetricsReport {
+
+    public enum Format {
+        JSON,
+        PROMETHEUS
+    }
+
+    private static final String PREFIX         = "cgmes_interpretation_phase_";
+    private static final String CATALOG_PREFIX = "cgmes_interpretation_catalog_phase_";
+
+    public MetricsReport(Path output, Format format) {
+        this.output = output;
+        this.format = format;
+    }
+
+    // The catalog metrics add the metrics of all the models to the ones measured for the whole catalog
+    public void report(Map<String, InterpretationMetrics> models, InterpretationMetrics catalog) throws IOException {
+        InterpretationMetrics total = new InterpretationMetrics();
+        models.values().forEach(total::add);
+        total.add(catalog);
+        Object event = InterpretationEvents.beginReport();
+        try (BufferedWriter w = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            if (format == Format.JSON) {
+                json(models, total, w);
+            } else {
+                prometheus(models, total, w);
+            }
+        }
+        InterpretationEvents.reportWritten(event, "metrics", output, models.size());
+    }
+
+    private void json(Map<String, InterpretationMetrics> models, InterpretationMetrics total, BufferedWriter w)
+            throws IOException {
+        w.write("{");
+        w.newLine();
+        w.write("  \"catalog\": {");
+        w.newLine();
+        w.write("    \"models\": " + models.size() + ",");
+        w.newLine();
+        w.write("    \"phases\": ");
+        jsonPhases(total, "    ", w);
+        w.newLine();
+        w.write("  },");
+        w.newLine();
+        w.write("  \"models\": {");
+        Iterator<Map.Entry<String, InterpretationMetrics>> k = models.entrySet().iterator();
+        while (k.hasNext()) {
+            Map.Entry<String, InterpretationMetrics> e = k.next();
+            w.newLine();
+            w.write("    " + jsonString(e.getKey()) + ": ");
+            jsonPhases(e.getValue(), "    ", w);
+            if (k.hasNext()) {
+                w.write(",");
+            }
+        }
+        w.newLine();
+        w.write("  }");
+        w.newLine();
+        w.write("}");
+        w.newLine();
+    }
+
+    private void jsonPhases(InterpretationMetrics metrics, String indent, BufferedWriter w) throws IOException {
+        w.write("{");
+        Iterator<Map.Entry<Phase, PhaseStatistics>> k = metrics.phases().entrySet().iterator();
+        while (k.hasNext()) {
+            Map.Entry<Phase, PhaseStatistics> e = k.next();
+            PhaseStatistics s = e.getValue();
+            w.newLine();
+            w.write(String.format(Locale.ROOT,
+                    "%s  \"%s\": {\"count\": %d, \"wallNanos\": %d, \"cpuNanos\": %d, \"allocatedBytes\": %d, "
+                            + "\"elements\": %d}%s",
+                    indent, phaseName(e.getKey()), s.getCount(), s.getWallNanos(), s.getCpuNanos(),
+                    s.getAllocatedBytes(), s.getElements(), k.hasNext() ? "," : ""));
+        }
+        w.newLine();
+        w.write(indent + "}");
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder json = new StringBuilder(s.length() + 2).append('"');
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    // Catalog totals are written as their own metrics, with only the phase label, so that summing the
+    // series of the models, that also have the model label, does not count them twice
+    private void prometheus(Map<String, InterpretationMetrics> models, InterpretationMetrics total,
+            BufferedWriter w) throws IOException {
+        prometheus("runs_total", "Number of times each phase was run", PhaseStatistics::getCount, 1.0,
+                models, total, w);
+        prometheus("wall_seconds_total", "Wall time of each phase", PhaseStatistics::getWallNanos, 1e-9,
+                models, total, w);
+        prometheus("cpu_seconds_total", "CPU time of each phase", PhaseStatistics::getCpuNanos, 1e-9,
+                models, total, w);
+        prometheus("allocated_bytes_total", "Bytes allocated by each phase", PhaseStatistics::getAllocatedBytes, 1.0,
+                models, total, w);
+        prometheus("elements_total", "Elements processed by each phase", PhaseStatistics::getElements, 1.0,
+                models, total, w);
+    }
+
+    private void prometheus(String metric, String help, ToLongFunction<PhaseStatistics> value, double scale,
+            Map<String, InterpretationMetrics> models, InterpretationMetrics total, BufferedWriter w)
+            throws IOException {
+        String catalogName = CATALOG_PREFIX + metric;
+        prometheusHeader(catalogName, help + ", for the whole catalog", w);
+        prometheusSeries(catalogName, "", total, value, scale, w);
+        String name = PREFIX + metric;
+        prometheusHeader(name, help + ", for each model", w);
+        for (Map.Entry<String, InterpretationMetrics> e : models.entrySet()) {
+            prometheusSeries(name, "model=\"" + labelValue(e.getKey()) + "\",", e.getValue(), value, scale, w);
+        }
+    }
+
+    private static void prometheusHeader(String name, String help, BufferedWriter w) throws IOException {
+        w.write("# HELP " + name + " " + help);
+        w.newLine();
+        w.write("# TYPE " + name + " counter");
+        w.newLine();
+    }
+
+    private void prometheusSeries(String name, String labels, InterpretationMetrics metrics,
+            ToLongFunction<PhaseStatistics> value, double scale, BufferedWriter w) throws IOException {
+        for (Map.Entry<Phase, PhaseStatistics> e : metrics.phases().entrySet()) {
+            long v = value.applyAsLong(e.getValue());
+            String formatted = scale == 1.0 ? Long.toString(v) : Double.toString(v * scale);
+            w.write(name + "{" + labels + "phase=\"" + phaseName(e.getKey()) + "\"} " + formatted);
+            w.newLine();
+        }
+    }
+
+    private static String labelValue(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String phaseName(Phase phase) {
+        return phase.name().toLowerCase(Locale.ROOT);
+    }
+
+    private final Path   output;
+    private final Format format;
+}
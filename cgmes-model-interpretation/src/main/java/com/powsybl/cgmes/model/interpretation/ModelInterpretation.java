@@ -8,15 +8,20 @@
 package com.powsybl.cgmes.model.interpretation;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -29,8 +34,10 @@ import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr2Sh
 import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr3PhaseAngleClockAlternative;
 import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr3RatioPhaseMappingAlternative;
 import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr3ShuntMappingAlternative;
+import com.powsybl.cgmes.model.interpretation.InterpretationMetrics.Measure;
+import com.powsybl.cgmes.model.interpretation.InterpretationMetrics.Phase;
 import com.powsybl.cgmes.model.interpretation.InterpretationResult.ValidationData;
-import com.powsybl.triplestore.api.PropertyBag;
+import com.powsybl.commons.PowsyblException;
 
 /**
  * @author José Antonio Marqués <marquesja at aia.es>
@@ -39,30 +46,155 @@ import com.powsybl.triplestore.api.PropertyBag;
 public class ModelInterpretation {
 
     private static final double BALANCE_TOLERANCE = 1.0;
+    private static final int    WORST_NODES       = 5;
 
     public ModelInterpretation(CgmesModel m) {
-        inputModel = new InterpretedModel(m);
-        validationDataForAllModelMapping = new HashMap<>();
+        this(new InterpretedModel(m));
+    }
+
+    /**
+     * Interpretation of a model loaded from a snapshot, see
+     * {@link #writeSnapshot(Path)}.
+     */
+    public ModelInterpretation(Path snapshot) {
+        this(new InterpretedModel(snapshot));
+    }
+
+    private ModelInterpretation(InterpretedModel inputModel) {
+        metrics = new InterpretationMetrics();
+        this.inputModel = inputModel;
+        inputModel.setMetrics(metrics);
+        validationDataForAllModelMapping = new LinkedHashMap<>();
         bestError = Double.MAX_VALUE;
+        threads = 1;
+        nodalAdmittance = false;
+        bestMappings = 0;
+        pruning = 0;
+        worstNodes = WORST_NODES;
     }
 
     public void interpret() throws IOException {
+        loadInputModel();
+        interpretInputModel();
+    }
+
+    void loadInputModel() throws IOException {
         inputModel.loadModel();
+    }
+
+    // Interprets the input model as it is, without loading it again
+    void interpretInputModel() {
         calculateBalancesForAllModelMapping();
+        if (bestMappings > 0) {
+            Measure measure = metrics.start(Phase.MAPPING_SEARCH);
+            bestModelMappings = new ModelMappingSearch(inputModel).search(bestMappings);
+            measure.stop(bestModelMappings.size());
+        }
+    }
+
+    /**
+     * Writes the loaded input model to a snapshot file, so later
+     * interpretations of the same model can start from it instead of
+     * querying the CGMES model again.
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        inputModel.writeSnapshot(file);
+    }
+
+    // Name of the model in the events of a recording
+    void setModelName(String modelName) {
+        this.modelName = modelName;
+    }
+
+    int numNodes() {
+        return inputModel.compiledModel().numNodes();
     }
 
     public void setInputModel(InterpretedModel inputModel) {
         this.inputModel = inputModel;
+        inputModel.setMetrics(metrics);
+    }
+
+    /**
+     * Time, allocated bytes and elements of each phase of the loading and
+     * the interpretation of the model.
+     */
+    public InterpretationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Number of threads used to evaluate the model mapping configurations.
+     * Results do not depend on it, configurations are always reported in the
+     * same order.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Calculate the flows of each configuration from the nodal admittance
+     * matrix of the model instead of calculating them branch by branch. Flows
+     * of three winding transformers with open ends are calculated exactly.
+     */
+    public void setNodalAdmittance(boolean nodalAdmittance) {
+        this.nodalAdmittance = nodalAdmittance;
+    }
+
+    /**
+     * Also search the given number of best configurations over all the
+     * combinations of model mapping alternatives, 0 to skip the search.
+     */
+    public void setMappingSearch(int bestMappings) {
+        if (bestMappings < 0) {
+            throw new IllegalArgumentException("Invalid number of best model mappings " + bestMappings);
+        }
+        this.bestMappings = bestMappings;
+    }
+
+    /**
+     * Evaluate completely only the given number of best configurations, 0 to
+     * evaluate all of them. A first batch of that many configurations is
+     * evaluated completely: the default configuration and then the ones that
+     * change the fewest mapping alternatives from it. The other
+     * configurations are evaluated in batches of the same size, and abandoned
+     * as soon as the error of their evaluated nodes exceeds the error of the
+     * last of the best configurations found in the previous batches, as they
+     * can not be among the best ones. The bound only changes between batches
+     * and is the same for all the threads, the abandoned configurations do
+     * not depend on the number of threads.
+     */
+    public void setPruning(int keep) {
+        if (keep < 0) {
+            throw new IllegalArgumentException("Invalid number of configurations to keep " + keep);
+        }
+        this.pruning = keep;
+    }
+
+    /**
+     * Keep only the given number of worst nodes of each configuration in its
+     * balance data, with and without bad voltage, 0 to keep all the nodes
+     * sorted by error. Counters and errors are calculated over all the nodes.
+     */
+    public void setWorstNodes(int worstNodes) {
+        if (worstNodes < 0) {
+            throw new IllegalArgumentException("Invalid number of worst nodes " + worstNodes);
+        }
+        this.worstNodes = worstNodes;
     }
 
     public InterpretationResult getInterpretation() {
         InterpretationResult r = new InterpretationResult();
         r.error = bestError;
         r.validationDataForAllModelMapping = validationDataForAllModelMapping;
+        r.bestModelMappings = bestModelMappings;
         return r;
     }
 
-    private void addModelMappingConfigurations(List<CgmesEquipmentModelMapping> configs) {
+    static void addModelMappingConfigurations(List<CgmesEquipmentModelMapping> configs) {
         CgmesEquipmentModelMapping config = new CgmesEquipmentModelMapping();
         configs.add(config);
 
@@ -135,245 +267,549 @@ public class ModelInterpretation {
         List<CgmesEquipmentModelMapping> configs = new ArrayList<>();
         addModelMappingConfigurations(configs);
 
-        configs.forEach(config -> {
-            ValidationData validationData = calculateBalance(config);
+        List<ValidationData> validationDataForConfigs = calculateBalances(configs);
+        for (int k = 0; k < configs.size(); k++) {
+            ValidationData validationData = validationDataForConfigs.get(k);
             if (validationData.balance < bestError) {
                 bestError = validationData.balance;
             }
-            validationDataForAllModelMapping.put(config, validationData);
-        });
+            validationDataForAllModelMapping.put(configs.get(k), validationData);
+        }
+    }
+
+    private List<ValidationData> calculateBalances(List<CgmesEquipmentModelMapping> configs) {
+        if (pruning == 0 || pruning >= configs.size()) {
+            return calculateBalancesInOrder(configs, Double.MAX_VALUE);
+        }
+
+        // Models are expected to follow the default interpretation, with as few changes as possible.
+        // The sort is stable, configurations with the same number of changes keep their order
+        CgmesEquipmentModelMapping defaultConfig = new CgmesEquipmentModelMapping();
+        List<CgmesEquipmentModelMapping> prunedOrder = new ArrayList<>(configs);
+        prunedOrder.sort(Comparator.comparingInt(config -> config.alternativesChanged(defaultConfig)));
+        List<ValidationData> validationDataInPrunedOrder = new ArrayList<>(configs.size());
+        List<Double> bestErrors = new ArrayList<>();
+        double bound = Double.MAX_VALUE;
+        for (int first = 0; first < prunedOrder.size(); first += pruning) {
+            List<ValidationData> batch = calculateBalancesInOrder(
+                    prunedOrder.subList(first, Math.min(first + pruning, prunedOrder.size())), bound);
+            batch.stream().filter(v -> !v.pruned).forEach(v -> bestErrors.add(v.balance));
+            Collections.sort(bestErrors);
+            bound = bestErrors.get(pruning - 1);
+            validationDataInPrunedOrder.addAll(batch);
+        }
+        Map<CgmesEquipmentModelMapping, ValidationData> validationDataForConfigs = new IdentityHashMap<>();
+        for (int k = 0; k < prunedOrder.size(); k++) {
+            validationDataForConfigs.put(prunedOrder.get(k), validationDataInPrunedOrder.get(k));
+        }
+        return configs.stream().map(validationDataForConfigs::get).collect(Collectors.toList());
+    }
+
+    private List<ValidationData> calculateBalancesInOrder(List<CgmesEquipmentModelMapping> configs, double bound) {
+        // The model is compiled, its tables loaded and its phase tap changers compiled before evaluating
+        // any configuration, the threads that evaluate them only read them and never query the CGMES model
+        CompiledModel model = inputModel.compiledModel();
+        TapChangerTables tapChangerTables = inputModel.tapChangerTables();
+        model.phaseTapChangers(tapChangerTables);
+        NodalAdmittanceBalance nodalBalance = nodalAdmittance
+                ? new NodalAdmittanceBalance(model, tapChangerTables)
+                : null;
+        if (nodalBalance == null && bothEndsBranches == null) {
+            bothEndsBranches = bothEndsBranches(model);
+        }
+        if (threads == 1 || configs.size() < 2) {
+            return calculateBalances(configs, model, tapChangerTables, nodalBalance, bound);
+        }
+
+        // Each thread evaluates a consecutive group of configurations
+        int groups = Math.min(threads, configs.size());
+        ExecutorService executor = Executors.newFixedThreadPool(groups);
+        try {
+            List<Future<List<ValidationData>>> futures = new ArrayList<>(groups);
+            for (int g = 0; g < groups; g++) {
+                List<CgmesEquipmentModelMapping> group = configs.subList(g * configs.size() / groups,
+                        (g + 1) * configs.size() / groups);
+                futures.add(executor.submit(() -> calculateBalances(group, model, tapChangerTables,
+                        nodalBalance == null ? null : new NodalAdmittanceBalance(nodalBalance), bound)));
+            }
+            List<ValidationData> validationDataForConfigs = new ArrayList<>(configs.size());
+            for (Future<List<ValidationData>> future : futures) {
+                validationDataForConfigs.addAll(future.get());
+            }
+            return validationDataForConfigs;
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+            throw new PowsyblException("Interrupted while evaluating model mapping configurations", x);
+        } catch (ExecutionException x) {
+            if (x.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) x.getCause();
+            }
+            throw new PowsyblException("Model mapping configuration failed", x.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
-    private ValidationData calculateBalance(CgmesEquipmentModelMapping config) {
+    // Configurations with an error above the bound are abandoned
+    private List<ValidationData> calculateBalances(List<CgmesEquipmentModelMapping> configs, CompiledModel model,
+            TapChangerTables tapChangerTables, NodalAdmittanceBalance nodalBalance, double bound) {
+        List<ValidationData> validationDataForConfigs = new ArrayList<>(configs.size());
+        NodalBusBalances nodalBuses = nodalBalance == null ? null : new NodalBusBalances(model, nodalBalance);
+        for (CgmesEquipmentModelMapping config : configs) {
+            validationDataForConfigs.add(calculateBalance(config, model, tapChangerTables, nodalBuses, bound));
+        }
+        return validationDataForConfigs;
+    }
 
+    private ValidationData calculateBalance(CgmesEquipmentModelMapping config, CompiledModel model,
+            TapChangerTables tapChangerTables, NodalBusBalances nodalBuses, double bound) {
+
+        Measure measure = metrics.start(Phase.BALANCE);
+        Object event = InterpretationEvents.beginConfiguration();
         ValidationData validationData = new ValidationData();
-        Map<List<String>, PropertyBag> balanceData = new HashMap<>();
-        List<String> pn = new ArrayList<>(
-                Arrays.asList("balanceP", "balanceQ", "calculated", "line", "xfmr2", "xfmr3"));
-
-        inputModel.getJoinedNodes().forEach(nodes -> {
-            Map<String, DetectedEquipmentModel> nodeModelData = new HashMap<>();
-            PropertyBag nodeBalanceData = initNodeBalanceData(pn);
-            Boolean isIsolatedNodes = inputModel.getIsolatedNodes().get(nodes);
-            if (isIsolatedNodes != null && isIsolatedNodes) {
-                isolateNodeBalance(nodeBalanceData);
+
+        BalanceColumns balanceColumns = new BalanceColumns(model.buses, worstNodes);
+        BusBalance busBalance = new BusBalance();
+        // Each branch is evaluated once, the first time one of its end nodes is visited,
+        // and its end flows are shared by all the nodes it connects
+        FlowCalculator[] branchFlows = null;
+        double partialError = 0.0;
+        Measure flowsMeasure = metrics.start(Phase.BRANCH_FLOWS);
+        if (nodalBuses != null) {
+            nodalBuses.evaluate(config);
+            flowsMeasure.stop(model.numLines() + model.numTransformers());
+        } else {
+            branchFlows = new FlowCalculator[model.numLines() + model.numTransformers()];
+            calculateBothEndsFlows(config, model, tapChangerTables, branchFlows);
+            flowsMeasure.stop(bothEndsBranches.length);
+        }
+        for (int b = 0; b < model.numBuses(); b++) {
+            if (nodalBuses != null) {
+                nodalBuses.get(b, busBalance);
             } else {
-                calculateJoinedNodeBalance(config, nodes, nodeBalanceData, nodeModelData);
+                busBalance.reset();
+                if (model.busIsolated[b]) {
+                    busBalance.flags = BalanceColumns.ISOLATED;
+                } else {
+                    calculateJoinedNodeBalance(config, model, tapChangerTables, branchFlows, b, busBalance);
+                }
+                writeToDetectedModelData(validationData.detectedModelData, busBalance);
             }
-            writeToDetectedModelData(validationData.detectedModelData, nodeModelData, nodeBalanceData);
-            writeToBalanceData(pn, balanceData, nodes, nodeBalanceData);
-        });
+            balanceColumns.add(b, busBalance.calculatedP(), busBalance.calculatedQ(), busBalance.flags,
+                    busBalance.lines, busBalance.xfmr2s, busBalance.xfmr3s);
+            if (bound < Double.MAX_VALUE) {
+                partialError += busBalance.error();
+                if (partialError > bound) {
+                    measure.stop(b + 1L);
+                    return commit(event, config, prunedValidationData(partialError, (b + 1.0) / model.numBuses()));
+                }
+            }
+        }
 
-        sortValidationData(balanceData, validationData);
-        validationData.balance = calculateTotalBalanceError(validationData);
+        if (nodalBuses != null) {
+            nodalBuses.copyDetectedModelData(validationData.detectedModelData);
+        }
+        sortValidationData(balanceColumns, validationData);
+        validationData.balance = validationData.balanceColumns.totalError();
+        measure.stop(model.numBuses());
+        return commit(event, config, validationData);
+    }
+
+    private ValidationData commit(Object event, CgmesEquipmentModelMapping config, ValidationData validationData) {
+        InterpretationEvents.configurationEvaluated(event, modelName, config, validationData);
         return validationData;
     }
 
-    private void sortValidationData(Map<List<String>, PropertyBag> balanceData, ValidationData validationData) {
-        Comparator<Map.Entry<List<String>, PropertyBag>> byBalance = (
-                Entry<List<String>, PropertyBag> o1,
-                Entry<List<String>, PropertyBag> o2) -> {
-            return Double.compare(
-                    Math.abs(o1.getValue().asDouble("balanceP", 0.0))
-                            + Math.abs(o1.getValue().asDouble("balanceQ", 0.0)),
-                    Math.abs(o2.getValue().asDouble("balanceP", 0.0))
-                            + Math.abs(o2.getValue().asDouble("balanceQ", 0.0)));
-        };
-
-        validationData.balanceData = balanceData.entrySet().stream().sorted(byBalance.reversed())
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> {
-                    throw new AssertionError();
-                }, LinkedHashMap::new));
-
-    }
-
-    private double calculateTotalBalanceError(ValidationData validationData) {
-        double totalError = validationData.balanceData.values().stream()
-                .filter(pb -> pb.asBoolean("calculated", false) && !pb.asBoolean("isolated", false))
-                .map(pb -> Math.abs(pb.asDouble("balanceP")) + Math.abs(pb.asDouble("balanceQ")))
-                .mapToDouble(Double::doubleValue).sum();
-        return totalError;
-    }
-
-    private void calculateJoinedNodeBalance(CgmesEquipmentModelMapping config, List<String> nodes,
-            PropertyBag nodeBalanceData, Map<String, DetectedEquipmentModel> nodeDetectedModelReport) {
-        nodes.forEach(n -> {
-            PropertyBag node = inputModel.getNodeParameters(n);
-            Objects.requireNonNull(node, "node without parameters");
-            if (inputModel.getEquipmentsInNode().containsKey(n)) {
-                inputModel.getEquipmentsInNode().get(n).forEach(id -> {
-                    boolean isLine = false;
-                    boolean isXfmr2 = false;
-                    boolean isXfmr3 = false;
-                    FlowCalculator calcFlow = new FlowCalculator(inputModel);
-                    PropertyBag line = inputModel.getLineParameters(id);
-                    if (line != null) {
-                        PropertyBag node1 = inputModel
-                                .getNodeParameters(line.get("terminal1"));
-                        Objects.requireNonNull(node1, "node1 null in line");
-                        PropertyBag node2 = inputModel
-                                .getNodeParameters(line.get("terminal2"));
-                        Objects.requireNonNull(node2, "node2 null in line");
-                        calcFlow.forLine(n, node1, node2, line, config);
-                        isLine = true;
-                    }
-                    PropertyBag transformer = inputModel.getTransformerParameters(id);
-                    if (transformer != null) {
-                        PropertyBag node1 = inputModel
-                                .getNodeParameters(transformer.get("terminal1"));
-                        Objects.requireNonNull(node1, "node1 null in transformer");
-                        PropertyBag node2 = inputModel
-                                .getNodeParameters(transformer.get("terminal2"));
-                        Objects.requireNonNull(node2, "node2 null in transformer");
-                        PropertyBag node3 = inputModel
-                                .getNodeParameters(transformer.get("terminal3"));
-                        if (node3 == null) {
-                            calcFlow.forTwoWindingTransformer(n, node1, node2, transformer, config);
-                            isXfmr2 = true;
-                        } else {
-                            calcFlow.forThreeWindingTransformer(n, node1, node2, node3, transformer, config);
-                            isXfmr3 = true;
-                        }
-                    }
+    // The configuration can not be better than the kept ones, only its error so far is reported
+    private ValidationData prunedValidationData(double partialError, double prunedAt) {
+        ValidationData validationData = new ValidationData();
+        validationData.balance = partialError;
+        validationData.pruned = true;
+        validationData.prunedAt = prunedAt;
+        return validationData;
+    }
 
-                    writeToNodeDetectedModelData(nodeDetectedModelReport, calcFlow.getEquipmentModel());
-                    writeToNodeBalanceData(nodeBalanceData, calcFlow, isLine, isXfmr2, isXfmr3);
-                });
+    // Only the kept nodes are sorted, the worst ones of the configuration unless all of them are kept
+    private void sortValidationData(BalanceColumns balanceColumns, ValidationData validationData) {
+        balanceColumns.complete();
+        validationData.balanceColumns = balanceColumns;
+    }
+
+    private void calculateJoinedNodeBalance(CgmesEquipmentModelMapping config, CompiledModel model,
+            TapChangerTables tapChangerTables, FlowCalculator[] branchFlows, int bus, BusBalance busBalance) {
+        for (int k = model.busStart[bus]; k < model.busStart[bus + 1]; k++) {
+            int n = CompiledModel.requireNode(model.busNode[k], "node without parameters");
+            for (int i = model.incidenceStart[n]; i < model.incidenceStart[n + 1]; i++) {
+                int equipment = model.incidentEquipment[i];
+                FlowCalculator calcFlow = branchFlow(config, model, tapChangerTables, branchFlows, equipment);
+                busBalance.addEquipment(model, equipment, calcFlow.getEquipmentModel());
+                if (calcFlow.getCalculated()) {
+                    int end = calcFlow.end(n);
+                    busBalance.addFlow(calcFlow.getBadVoltage(), calcFlow.getP(end), calcFlow.getQ(end));
+                } else {
+                    busBalance.notCalculated();
+                }
             }
 
-            addNodeInjectionToJoinedBusBalance(node, nodeBalanceData);
-        });
-    }
-
-    private void addNodeInjectionToJoinedBusBalance(PropertyBag node, PropertyBag nodeBalanceData) {
-        double p = node.asDouble("p");
-        double q = node.asDouble("q");
-        double nodeBalanceP = nodeBalanceData.asDouble("balanceP");
-        double nodeBalanceQ = nodeBalanceData.asDouble("balanceQ");
-        nodeBalanceData.put("balanceP", Double.toString(nodeBalanceP + p));
-        nodeBalanceData.put("balanceQ", Double.toString(nodeBalanceQ + q));
-    }
-
-    private PropertyBag initNodeBalanceData(List<String> pn) {
-        PropertyBag nodeBalanceReport = new PropertyBag(pn);
-        nodeBalanceReport.put("balanceP", Double.toString(0.0));
-        nodeBalanceReport.put("balanceQ", Double.toString(0.0));
-        nodeBalanceReport.put("calculated", "true");
-        nodeBalanceReport.put("isolated", "false");
-        nodeBalanceReport.put("badVoltage", "false");
-        nodeBalanceReport.put("line", Integer.toString(0));
-        nodeBalanceReport.put("xfmr2", Integer.toString(0));
-        nodeBalanceReport.put("xfmr3", Integer.toString(0));
-        return nodeBalanceReport;
-    }
-
-    private void isolateNodeBalance(PropertyBag nodeBalanceData) {
-        nodeBalanceData.put("isolated", "true");
-        nodeBalanceData.put("calculated", "false");
-        nodeBalanceData.put("badVoltage", "false");
-    }
-
-    private void writeToNodeBalanceData(PropertyBag nodeBalanceData, FlowCalculator calcFlow, boolean isLine,
-            boolean isXfmr2, boolean isXfmr3) {
-        if (calcFlow.getCalculated()) {
-            double balanceP = nodeBalanceData.asDouble("balanceP");
-            double balanceQ = nodeBalanceData.asDouble("balanceQ");
-            nodeBalanceData.put("balanceP", Double.toString(balanceP + calcFlow.getP()));
-            nodeBalanceData.put("balanceQ", Double.toString(balanceQ + calcFlow.getQ()));
-            if (calcFlow.getBadVoltage()) {
-                nodeBalanceData.put("badVoltage", Boolean.toString(calcFlow.getBadVoltage()));
+            busBalance.addInjection(model.p[n], model.q[n]);
+        }
+    }
+
+    /**
+     * Lines and two winding transformers connected at both ends, with voltage at
+     * both ends, that are reached from the buses that are not isolated. They
+     * are most of the branches and their flows can be calculated in one sweep.
+     */
+    private static int[] bothEndsBranches(CompiledModel model) {
+        int numEquipments = model.numLines() + model.numTransformers();
+        boolean[] selected = new boolean[numEquipments];
+        int[] branches = new int[numEquipments];
+        int numBranches = 0;
+        for (int b = 0; b < model.numBuses(); b++) {
+            if (model.busIsolated[b]) {
+                continue;
+            }
+            for (int k = model.busStart[b]; k < model.busStart[b + 1]; k++) {
+                int n = model.busNode[k];
+                if (n == CompiledModel.NO_INDEX) {
+                    // Left to the balance, that reports it
+                    continue;
+                }
+                for (int i = model.incidenceStart[n]; i < model.incidenceStart[n + 1]; i++) {
+                    int equipment = model.incidentEquipment[i];
+                    if (equipment != CompiledModel.NO_INDEX && !selected[equipment]
+                            && isConnectedAtBothEnds(model, equipment)) {
+                        selected[equipment] = true;
+                        branches[numBranches++] = equipment;
+                    }
+                }
             }
-        } else {
-            nodeBalanceData.put("calculated", Boolean.toString(calcFlow.getCalculated()));
         }
-        if (isLine) {
-            int lines = nodeBalanceData.asInt("line");
-            nodeBalanceData.put("line", Integer.toString(lines + 1));
+        return Arrays.copyOf(branches, numBranches);
+    }
+
+    private static boolean isConnectedAtBothEnds(CompiledModel model, int equipment) {
+        if (model.isLine(equipment)) {
+            return model.lineConnected(equipment, 1) && model.lineConnected(equipment, 2)
+                    && hasVoltage(model, model.lineNode(equipment, 1))
+                    && hasVoltage(model, model.lineNode(equipment, 2));
         }
-        if (isXfmr2) {
-            int xfmr2s = nodeBalanceData.asInt("xfmr2");
-            nodeBalanceData.put("xfmr2", Integer.toString(xfmr2s + 1));
+        int transformer = model.transformerOf(equipment);
+        return !model.xfmr3[transformer]
+                && model.transformerConnected(transformer, 1) && model.transformerConnected(transformer, 2)
+                && hasVoltage(model, model.transformerNode(transformer, 1))
+                && hasVoltage(model, model.transformerNode(transformer, 2));
+    }
+
+    private static boolean hasVoltage(CompiledModel model, int node) {
+        return node != CompiledModel.NO_INDEX && model.v[node] != 0.0;
+    }
+
+    private void calculateBothEndsFlows(CgmesEquipmentModelMapping config, CompiledModel model,
+            TapChangerTables tapChangerTables, FlowCalculator[] branchFlows) {
+        BranchFlowBatch batch = new BranchFlowBatch(bothEndsBranches.length);
+        for (int equipment : bothEndsBranches) {
+            FlowCalculator calcFlow = new FlowCalculator(model, tapChangerTables);
+            BranchAdmittanceMatrix admittanceMatrix = calcFlow.interpretBothEnds(equipment, config);
+            int node1 = branchNode(model, equipment, 1);
+            int node2 = branchNode(model, equipment, 2);
+            batch.add(admittanceMatrix, model.vRe[node1], model.vIm[node1], model.vRe[node2], model.vIm[node2]);
+            branchFlows[equipment] = calcFlow;
         }
-        if (isXfmr3) {
-            int xfmr3s = nodeBalanceData.asInt("xfmr3");
-            nodeBalanceData.put("xfmr3", Integer.toString(xfmr3s + 1));
+        batch.calculate();
+        for (int k = 0; k < bothEndsBranches.length; k++) {
+            int equipment = bothEndsBranches[k];
+            branchFlows[equipment].setBothEndsFlow(branchNode(model, equipment, 1), branchNode(model, equipment, 2),
+                    batch.p1(k), batch.q1(k), batch.p2(k), batch.q2(k));
         }
     }
 
-    private void writeToNodeDetectedModelData(Map<String, DetectedEquipmentModel> detectedModelData,
-            DetectedEquipmentModel detectedEquipmentModel) {
-        if (detectedEquipmentModel == null) {
-            return;
+    private static int branchNode(CompiledModel model, int equipment, int end) {
+        if (model.isLine(equipment)) {
+            return model.lineNode(equipment, end);
         }
-        DetectedEquipmentModel aggregateModel = detectedModelData.get(detectedEquipmentModel.code());
-        if (aggregateModel == null) {
-            aggregateModel = new DetectedEquipmentModel(detectedEquipmentModel.detectedBranchModels);
+        return model.transformerNode(model.transformerOf(equipment), end);
+    }
+
+    private FlowCalculator branchFlow(CgmesEquipmentModelMapping config, CompiledModel model,
+            TapChangerTables tapChangerTables, FlowCalculator[] branchFlows, int equipment) {
+        if (equipment == CompiledModel.NO_INDEX) {
+            // Unknown equipment, its flow is never calculated
+            return new FlowCalculator(model, tapChangerTables);
         }
-        aggregateModel.total += 1;
-        detectedModelData.put(detectedEquipmentModel.code(), aggregateModel);
+        FlowCalculator calcFlow = branchFlows[equipment];
+        if (calcFlow == null) {
+            calcFlow = new FlowCalculator(model, tapChangerTables);
+            calcFlow.forBranch(equipment, config);
+            branchFlows[equipment] = calcFlow;
+        }
+        return calcFlow;
     }
 
-    private void writeToBalanceData(List<String> pn, Map<List<String>, PropertyBag> balanceData, List<String> nodes,
-            PropertyBag nodeBalanceData) {
-        boolean calculatedNodes = nodeBalanceData.asBoolean("calculated", true);
-        boolean isolatedNodes = nodeBalanceData.asBoolean("isolated", true);
-        boolean badVoltageNodes = nodeBalanceData.asBoolean("badVoltage", true);
-        int nodeLines = nodeBalanceData.asInt("line");
-        int nodeXfmr2s = nodeBalanceData.asInt("xfmr2");
-        int nodeXfmr3s = nodeBalanceData.asInt("xfmr3");
+    private void writeToDetectedModelData(Map<String, DetectedEquipmentModel> detectedModelData,
+            BusBalance busBalance) {
+        boolean calculated = busBalance.calculated();
+        boolean ok = calculated
+                && Math.abs(busBalance.p) + Math.abs(busBalance.q) <= BALANCE_TOLERANCE;
+        for (DetectedEquipmentModel equipmentModel : busBalance.equipmentModels) {
+            DetectedEquipmentModel aggregateModel = detectedModelData.computeIfAbsent(equipmentModel.code(),
+                code -> new DetectedEquipmentModel(equipmentModel.detectedBranchModels));
+            aggregateModel.total += 1;
+            if (calculated) {
+                aggregateModel.calculated += 1;
+            }
+            if (ok) {
+                aggregateModel.ok += 1;
+            }
+        }
+    }
 
-        PropertyBag pb = new PropertyBag(pn);
+    /**
+     * Balance of the nodes of a bus and the equipment connected to them. One
+     * is reused for all the buses of a configuration.
+     */
+    private static final class BusBalance {
+
+        void reset() {
+            p = 0.0;
+            q = 0.0;
+            flags = BalanceColumns.CALCULATED;
+            lines = 0;
+            xfmr2s = 0;
+            xfmr3s = 0;
+            equipmentModels.clear();
+        }
 
-        if (calculatedNodes && !isolatedNodes) {
-            double nodeBalanceP = nodeBalanceData.asDouble("balanceP");
-            double nodeBalanceQ = nodeBalanceData.asDouble("balanceQ");
-            pb.put("balanceP", Double.toString(nodeBalanceP));
-            pb.put("balanceQ", Double.toString(nodeBalanceQ));
-        } else {
-            pb.put("balanceP", Double.toString(0.0));
-            pb.put("balanceQ", Double.toString(0.0));
+        // Unknown equipment is not counted
+        void addEquipment(CompiledModel model, int equipment, DetectedEquipmentModel equipmentModel) {
+            if (equipment == CompiledModel.NO_INDEX) {
+                return;
+            }
+            if (model.isLine(equipment)) {
+                lines++;
+            } else if (model.xfmr3[model.transformerOf(equipment)]) {
+                xfmr3s++;
+            } else {
+                xfmr2s++;
+            }
+            if (equipmentModel != null) {
+                equipmentModels.add(equipmentModel);
+            }
         }
-        pb.put("calculated", Boolean.toString(calculatedNodes));
-        pb.put("badVoltage", Boolean.toString(badVoltageNodes));
-        pb.put("isolated", Boolean.toString(isolatedNodes));
-        pb.put("line", Integer.toString(nodeLines));
-        pb.put("xfmr2", Integer.toString(nodeXfmr2s));
-        pb.put("xfmr3", Integer.toString(nodeXfmr3s));
-        balanceData.put(nodes, pb);
-    }
 
-    private void writeToDetectedModelData(Map<String, DetectedEquipmentModel> detectedModelData,
-            Map<String, DetectedEquipmentModel> nodeDetectedModelData, PropertyBag nodeBalanceData) {
+        void addFlow(boolean badVoltage, double flowP, double flowQ) {
+            p += flowP;
+            q += flowQ;
+            if (badVoltage) {
+                flags |= BalanceColumns.BAD_VOLTAGE;
+            }
+        }
+
+        void notCalculated() {
+            flags &= ~BalanceColumns.CALCULATED;
+        }
+
+        void addInjection(double injectionP, double injectionQ) {
+            p += injectionP;
+            q += injectionQ;
+        }
+
+        // Isolated buses are never calculated
+        boolean calculated() {
+            return (flags & BalanceColumns.CALCULATED) != 0;
+        }
+
+        double calculatedP() {
+            return calculated() ? p : 0.0;
+        }
 
-        nodeDetectedModelData.keySet().forEach(detectedEquipmentModel -> {
-            DetectedEquipmentModel nodeModel = nodeDetectedModelData.get(detectedEquipmentModel);
-            DetectedEquipmentModel aggregateModel = detectedModelData.get(detectedEquipmentModel);
-            if (aggregateModel == null) {
-                aggregateModel = new DetectedEquipmentModel(nodeModel.detectedBranchModels);
+        double calculatedQ() {
+            return calculated() ? q : 0.0;
+        }
+
+        double error() {
+            return calculated() ? Math.abs(p) + Math.abs(q) : 0.0;
+        }
+
+        private double                             p;
+        private double                             q;
+        private int                                flags;
+        private int                                lines;
+        private int                                xfmr2s;
+        private int                                xfmr3s;
+        private final List<DetectedEquipmentModel> equipmentModels = new ArrayList<>();
+    }
+
+    /**
+     * Balances of the buses calculated from the nodal admittance, kept from
+     * one configuration to the next. Only the buses changed by a
+     * configuration are calculated again, and the counters of the detected
+     * equipment models are updated with the difference. One is used by each
+     * thread.
+     */
+    private static final class NodalBusBalances {
+
+        NodalBusBalances(CompiledModel model, NodalAdmittanceBalance nodalBalance) {
+            this.model = model;
+            this.nodalBalance = nodalBalance;
+            int numBuses = model.numBuses();
+            p = new double[numBuses];
+            q = new double[numBuses];
+            flags = new int[numBuses];
+            lines = new int[numBuses];
+            xfmr2s = new int[numBuses];
+            xfmr3s = new int[numBuses];
+
+            // Room for the equipment models of all the equipment connected to each bus
+            modelStart = new int[numBuses + 1];
+            for (int b = 0; b < numBuses; b++) {
+                int count = 0;
+                for (int k = model.busStart[b]; k < model.busStart[b + 1]; k++) {
+                    int n = model.busNode[k];
+                    if (n != CompiledModel.NO_INDEX) {
+                        count += model.incidenceStart[n + 1] - model.incidenceStart[n];
+                    }
+                }
+                modelStart[b + 1] = modelStart[b] + count;
             }
-            double nodeBalanceP = nodeBalanceData.asDouble("balanceP");
-            double nodeBalanceQ = nodeBalanceData.asDouble("balanceQ");
-            boolean calculatedNodes = nodeBalanceData.asBoolean("calculated", true);
-            boolean isolatedNodes = nodeBalanceData.asBoolean("isolated", false);
-            if (calculatedNodes && !isolatedNodes) {
-                if (Math.abs(nodeBalanceP) + Math.abs(nodeBalanceQ) <= BALANCE_TOLERANCE) {
-                    aggregateModel.total += nodeModel.total;
-                    aggregateModel.calculated += nodeModel.total;
-                    aggregateModel.ok += nodeModel.total;
-                } else {
-                    aggregateModel.total += nodeModel.total;
-                    aggregateModel.calculated += nodeModel.total;
+            modelEnd = Arrays.copyOf(modelStart, numBuses);
+            modelCodes = new String[modelStart[numBuses]];
+            models = new DetectedEquipmentModel[modelStart[numBuses]];
+            detectedModelData = new HashMap<>();
+            busBalance = new BusBalance();
+        }
+
+        void evaluate(CgmesEquipmentModelMapping config) {
+            nodalBalance.evaluate(config);
+            if (nodalBalance.allBusesChanged()) {
+                for (int b = 0; b < model.numBuses(); b++) {
+                    calculate(b);
                 }
             } else {
-                aggregateModel.total += nodeModel.total;
+                for (int i = 0; i < nodalBalance.numChangedBuses(); i++) {
+                    calculate(nodalBalance.changedBus(i));
+                }
             }
-            detectedModelData.put(detectedEquipmentModel, aggregateModel);
-        });
+        }
+
+        void get(int b, BusBalance balance) {
+            balance.p = p[b];
+            balance.q = q[b];
+            balance.flags = flags[b];
+            balance.lines = lines[b];
+            balance.xfmr2s = xfmr2s[b];
+            balance.xfmr3s = xfmr3s[b];
+        }
+
+        // Each configuration keeps its own counters
+        void copyDetectedModelData(Map<String, DetectedEquipmentModel> copy) {
+            for (Map.Entry<String, DetectedEquipmentModel> e : detectedModelData.entrySet()) {
+                DetectedEquipmentModel aggregateModel = e.getValue();
+                DetectedEquipmentModel copyModel = new DetectedEquipmentModel(aggregateModel.detectedBranchModels);
+                copyModel.total = aggregateModel.total;
+                copyModel.calculated = aggregateModel.calculated;
+                copyModel.ok = aggregateModel.ok;
+                copy.put(e.getKey(), copyModel);
+            }
+        }
+
+        private void calculate(int b) {
+            countDetectedModels(b, -1);
+            busBalance.reset();
+            if (model.busIsolated[b]) {
+                busBalance.flags = BalanceColumns.ISOLATED;
+            } else {
+                calculateJoinedNodeBalance(b);
+            }
+            p[b] = busBalance.p;
+            q[b] = busBalance.q;
+            flags[b] = busBalance.flags;
+            lines[b] = busBalance.lines;
+            xfmr2s[b] = busBalance.xfmr2s;
+            xfmr3s[b] = busBalance.xfmr3s;
+            int k = modelStart[b];
+            for (DetectedEquipmentModel equipmentModel : busBalance.equipmentModels) {
+                models[k] = equipmentModel;
+                modelCodes[k] = equipmentModel.code();
+                k++;
+            }
+            modelEnd[b] = k;
+            countDetectedModels(b, 1);
+        }
+
+        private void calculateJoinedNodeBalance(int bus) {
+            for (int k = model.busStart[bus]; k < model.busStart[bus + 1]; k++) {
+                int n = CompiledModel.requireNode(model.busNode[k], "node without parameters");
+                for (int i = model.incidenceStart[n]; i < model.incidenceStart[n + 1]; i++) {
+                    int equipment = model.incidentEquipment[i];
+                    if (equipment == CompiledModel.NO_INDEX) {
+                        // Unknown equipment, its flow is never calculated
+                        busBalance.notCalculated();
+                        continue;
+                    }
+                    busBalance.addEquipment(model, equipment, nodalBalance.equipmentModel(equipment));
+                    // Branch flows are added once for the whole node
+                    if (nodalBalance.calculated(equipment)) {
+                        busBalance.addFlow(nodalBalance.badVoltage(equipment), 0.0, 0.0);
+                    } else {
+                        busBalance.notCalculated();
+                    }
+                }
+
+                busBalance.addInjection(nodalBalance.p(n), nodalBalance.q(n));
+                busBalance.addInjection(model.p[n], model.q[n]);
+            }
+        }
+
+        // Adds or removes the equipment models of the bus from the counters, as writeToDetectedModelData
+        private void countDetectedModels(int b, int count) {
+            boolean calculated = (flags[b] & BalanceColumns.CALCULATED) != 0;
+            boolean ok = calculated && Math.abs(p[b]) + Math.abs(q[b]) <= BALANCE_TOLERANCE;
+            for (int k = modelStart[b]; k < modelEnd[b]; k++) {
+                DetectedEquipmentModel equipmentModel = models[k];
+                DetectedEquipmentModel aggregateModel = detectedModelData.computeIfAbsent(modelCodes[k],
+                    code -> new DetectedEquipmentModel(equipmentModel.detectedBranchModels));
+                aggregateModel.total += count;
+                if (calculated) {
+                    aggregateModel.calculated += count;
+                }
+                if (ok) {
+                    aggregateModel.ok += count;
+                }
+                if (aggregateModel.total == 0) {
+                    detectedModelData.remove(modelCodes[k]);
+                }
+            }
+        }
+
+        private final CompiledModel                       model;
+        private final NodalAdmittanceBalance              nodalBalance;
+        private final double[]                            p;
+        private final double[]                            q;
+        private final int[]                               flags;
+        private final int[]                               lines;
+        private final int[]                               xfmr2s;
+        private final int[]                               xfmr3s;
+        private final int[]                               modelStart;
+        private final int[]                               modelEnd;
+        private final String[]                            modelCodes;
+        private final DetectedEquipmentModel[]            models;
+        private final Map<String, DetectedEquipmentModel> detectedModelData;
+        private final BusBalance                          busBalance;
     }
 
     private InterpretedModel                                inputModel;
     private double                                          bestError;
     private Map<CgmesEquipmentModelMapping, ValidationData> validationDataForAllModelMapping;
+    private int                                             threads;
+    private boolean                                         nodalAdmittance;
+    private int                                             bestMappings;
+    private Map<CgmesEquipmentModelMapping, Double>         bestModelMappings;
+    private int                                             pruning;
+    private int                                             worstNodes;
+    private int[]                                           bothEndsBranches;
+    private final InterpretationMetrics                     metrics;
+    private String                                          modelName;
 
     private static final Logger                             LOG = LoggerFactory.getLogger(ModelInterpretation.class);
 
@@ -0,0 +1,375 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.LineShuntMappingAlternative;
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr2PhaseAngleClockAlternative;
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr2RatioPhaseMappingAlternative;
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr2ShuntMappingAlternative;
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr3PhaseAngleClockAlternative;
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr3RatioPhaseMappingAlternative;
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr3ShuntMappingAlternative;
+
+/**
+ * Search of the best model mapping configurations over all the combinations
+ * of mapping alternatives.
+ * <p>
+ * Each equipment class (lines, two winding and three winding transformers)
+ * is only interpreted with its own mapping fields, so the flows of a class
+ * are calculated once for each alternative of the class and the balance of a
+ * combination is the sum of the flows of its three alternatives. Alternatives
+ * of a class that give the same flows are evaluated only once.
+ * <p>
+ * Errors are the same as the ones of the configurations evaluated one by one,
+ * except for rounding, because node flows are summed in a different order.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class ModelMappingSearch {
+
+    private static final int LINES  = 0;
+    private static final int XFMR2S = 1;
+    private static final int XFMR3S = 2;
+
+    ModelMappingSearch(InterpretedModel inputModel) {
+        this.inputModel = inputModel;
+        this.model = inputModel.compiledModel();
+    }
+
+    /**
+     * The given number of best combinations, from the best one, with their
+     * total balance error.
+     */
+    Map<CgmesEquipmentModelMapping, Double> search(int bestMappings) {
+        prepare();
+        List<CgmesEquipmentModelMapping> lineAlternatives = lineAlternatives();
+        List<CgmesEquipmentModelMapping> xfmr2Alternatives = xfmr2Alternatives();
+        List<CgmesEquipmentModelMapping> xfmr3Alternatives = xfmr3Alternatives();
+        ClassFlows lineFlows = classFlows(LINES, lineAlternatives);
+        ClassFlows xfmr2Flows = classFlows(XFMR2S, xfmr2Alternatives);
+        ClassFlows xfmr3Flows = classFlows(XFMR3S, xfmr3Alternatives);
+
+        // Error of each combination of different class flows. The error of the buses
+        // without two winding transformers is shared by all the two winding transformer flows
+        int numLine = lineFlows.flows.size();
+        int numXfmr2 = xfmr2Flows.flows.size();
+        int numXfmr3 = xfmr3Flows.flows.size();
+        int numCombinations = numLine * numXfmr2 * numXfmr3;
+        double[] error = new double[numCombinations];
+        double[] balance = new double[2 * numBuses];
+        int[] xfmr2Buses = busClass[XFMR2S];
+        boolean[] withXfmr2 = new boolean[numBuses];
+        for (int b : xfmr2Buses) {
+            withXfmr2[b] = true;
+        }
+        double[] xfmr2Balance = new double[2 * xfmr2Buses.length];
+        for (int l = 0; l < numLine; l++) {
+            for (int x3 = 0; x3 < numXfmr3; x3++) {
+                System.arraycopy(injection, 0, balance, 0, balance.length);
+                lineFlows.addTo(l, balance);
+                xfmr3Flows.addTo(x3, balance);
+                double commonError = 0.0;
+                for (int b = 0; b < numBuses; b++) {
+                    if (!withXfmr2[b]) {
+                        commonError += Math.abs(balance[2 * b]) + Math.abs(balance[2 * b + 1]);
+                    }
+                }
+                for (int k = 0; k < xfmr2Buses.length; k++) {
+                    xfmr2Balance[2 * k] = balance[2 * xfmr2Buses[k]];
+                    xfmr2Balance[2 * k + 1] = balance[2 * xfmr2Buses[k] + 1];
+                }
+                for (int x2 = 0; x2 < numXfmr2; x2++) {
+                    double[] xfmr2 = xfmr2Flows.flows.get(x2);
+                    double e = commonError;
+                    for (int k = 0; k < xfmr2Balance.length; k++) {
+                        e += Math.abs(xfmr2Balance[k] + xfmr2[k]);
+                    }
+                    error[(l * numXfmr3 + x3) * numXfmr2 + x2] = e;
+                }
+            }
+        }
+
+        Integer[] ranking = new Integer[numCombinations];
+        for (int c = 0; c < numCombinations; c++) {
+            ranking[c] = c;
+        }
+        Arrays.sort(ranking, (c1, c2) -> {
+            int cp = Double.compare(error[c1], error[c2]);
+            return cp != 0 ? cp : Integer.compare(c1, c2);
+        });
+
+        // Expand the best combinations to the alternatives that give their flows
+        Map<CgmesEquipmentModelMapping, Double> best = new LinkedHashMap<>();
+        for (int c : ranking) {
+            int x2 = c % numXfmr2;
+            int x3 = c / numXfmr2 % numXfmr3;
+            int l = c / numXfmr2 / numXfmr3;
+            for (int line : lineFlows.alternatives.get(l)) {
+                for (int xfmr2 : xfmr2Flows.alternatives.get(x2)) {
+                    for (int xfmr3 : xfmr3Flows.alternatives.get(x3)) {
+                        if (best.size() == bestMappings) {
+                            return best;
+                        }
+                        best.put(combine(lineAlternatives.get(line), xfmr2Alternatives.get(xfmr2),
+                                xfmr3Alternatives.get(xfmr3)), error[c]);
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // Buses that are calculated in all configurations, their injections and their incident branches by class
+    private void prepare() {
+        FlowCalculator[] branchFlows = new FlowCalculator[model.numLines() + model.numTransformers()];
+        CgmesEquipmentModelMapping config = new CgmesEquipmentModelMapping();
+        int[] bus = new int[model.numBuses()];
+        double[] p = new double[model.numBuses()];
+        double[] q = new double[model.numBuses()];
+        int calculatedBuses = 0;
+        for (int b = 0; b < model.numBuses(); b++) {
+            bus[b] = -1;
+            if (model.busIsolated[b]) {
+                continue;
+            }
+            boolean calculated = true;
+            for (int k = model.busStart[b]; k < model.busStart[b + 1]; k++) {
+                int n = CompiledModel.requireNode(model.busNode[k], "node without parameters");
+                for (int i = model.incidenceStart[n]; i < model.incidenceStart[n + 1]; i++) {
+                    int equipment = model.incidentEquipment[i];
+                    calculated &= equipment != CompiledModel.NO_INDEX
+                            && branchFlow(config, branchFlows, equipment).getCalculated();
+                }
+                p[b] += model.p[n];
+                q[b] += model.q[n];
+            }
+            if (calculated) {
+                bus[b] = calculatedBuses++;
+            }
+        }
+
+        numBuses = calculatedBuses;
+        injection = new double[2 * numBuses];
+        for (int b = 0; b < model.numBuses(); b++) {
+            if (bus[b] >= 0) {
+                injection[2 * bus[b]] = p[b];
+                injection[2 * bus[b] + 1] = q[b];
+            }
+        }
+        List<int[]> incidences = new ArrayList<>();
+        for (int b = 0; b < model.numBuses(); b++) {
+            if (bus[b] < 0) {
+                continue;
+            }
+            for (int k = model.busStart[b]; k < model.busStart[b + 1]; k++) {
+                int n = model.busNode[k];
+                for (int i = model.incidenceStart[n]; i < model.incidenceStart[n + 1]; i++) {
+                    incidences.add(new int[] {bus[b], n, model.incidentEquipment[i]});
+                }
+            }
+        }
+        // Flows of each class are only kept for the buses where the class has branches
+        busClass = new int[3][];
+        incidenceBus = new int[3][];
+        incidenceNode = new int[3][];
+        incidenceEquipment = new int[3][];
+        int[] classBus = new int[numBuses];
+        for (int equipmentClass = LINES; equipmentClass <= XFMR3S; equipmentClass++) {
+            int c = equipmentClass;
+            int[][] classIncidences = incidences.stream()
+                    .filter(i -> i[2] != CompiledModel.NO_INDEX && equipmentClass(i[2]) == c)
+                    .toArray(int[][]::new);
+            busClass[c] = Arrays.stream(classIncidences).mapToInt(i -> i[0]).distinct().toArray();
+            for (int k = 0; k < busClass[c].length; k++) {
+                classBus[busClass[c][k]] = k;
+            }
+            incidenceBus[c] = Arrays.stream(classIncidences).mapToInt(i -> classBus[i[0]]).toArray();
+            incidenceNode[c] = Arrays.stream(classIncidences).mapToInt(i -> i[1]).toArray();
+            incidenceEquipment[c] = Arrays.stream(classIncidences).mapToInt(i -> i[2]).toArray();
+        }
+    }
+
+    private int equipmentClass(int equipment) {
+        if (model.isLine(equipment)) {
+            return LINES;
+        }
+        return model.xfmr3[model.transformerOf(equipment)] ? XFMR3S : XFMR2S;
+    }
+
+    private FlowCalculator branchFlow(CgmesEquipmentModelMapping config, FlowCalculator[] branchFlows,
+            int equipment) {
+        FlowCalculator calcFlow = branchFlows[equipment];
+        if (calcFlow == null) {
+            calcFlow = new FlowCalculator(inputModel);
+            calcFlow.forBranch(equipment, config);
+            branchFlows[equipment] = calcFlow;
+        }
+        return calcFlow;
+    }
+
+    private ClassFlows classFlows(int equipmentClass, List<CgmesEquipmentModelMapping> alternatives) {
+        ClassFlows classFlows = new ClassFlows(busClass[equipmentClass]);
+        Map<Flows, Integer> different = new HashMap<>();
+        for (int a = 0; a < alternatives.size(); a++) {
+            double[] flows = flows(equipmentClass, alternatives.get(a));
+            Integer f = different.computeIfAbsent(new Flows(flows), x -> {
+                classFlows.flows.add(flows);
+                classFlows.alternatives.add(new ArrayList<>());
+                return classFlows.flows.size() - 1;
+            });
+            classFlows.alternatives.get(f).add(a);
+        }
+        return classFlows;
+    }
+
+    private double[] flows(int equipmentClass, CgmesEquipmentModelMapping config) {
+        FlowCalculator[] branchFlows = new FlowCalculator[model.numLines() + model.numTransformers()];
+        double[] flows = new double[2 * busClass[equipmentClass].length];
+        int[] buses = incidenceBus[equipmentClass];
+        int[] nodes = incidenceNode[equipmentClass];
+        int[] equipments = incidenceEquipment[equipmentClass];
+        for (int i = 0; i < buses.length; i++) {
+            FlowCalculator calcFlow = branchFlow(config, branchFlows, equipments[i]);
+            int end = calcFlow.end(nodes[i]);
+            flows[2 * buses[i]] += calcFlow.getP(end);
+            flows[2 * buses[i] + 1] += calcFlow.getQ(end);
+        }
+        return flows;
+    }
+
+    private static List<CgmesEquipmentModelMapping> lineAlternatives() {
+        List<CgmesEquipmentModelMapping> alternatives = new ArrayList<>();
+        for (LineShuntMappingAlternative bshunt : LineShuntMappingAlternative.values()) {
+            for (boolean ratio0 : new boolean[] {false, true}) {
+                CgmesEquipmentModelMapping config = new CgmesEquipmentModelMapping();
+                config.setLineBshunt(bshunt);
+                config.setLineRatio0(ratio0);
+                alternatives.add(config);
+            }
+        }
+        return alternatives;
+    }
+
+    private static List<CgmesEquipmentModelMapping> xfmr2Alternatives() {
+        List<CgmesEquipmentModelMapping> alternatives = new ArrayList<>();
+        for (Xfmr2RatioPhaseMappingAlternative ratio0 : Xfmr2RatioPhaseMappingAlternative.values()) {
+            for (Xfmr2RatioPhaseMappingAlternative ratioPhase : Xfmr2RatioPhaseMappingAlternative.values()) {
+                for (boolean ptc2Negate : new boolean[] {false, true}) {
+                    for (Xfmr2ShuntMappingAlternative yshunt : Xfmr2ShuntMappingAlternative.values()) {
+                        for (Xfmr2PhaseAngleClockAlternative clock : Xfmr2PhaseAngleClockAlternative.values()) {
+                            for (boolean pac2Negate : new boolean[] {false, true}) {
+                                CgmesEquipmentModelMapping config = new CgmesEquipmentModelMapping();
+                                config.setXfmr2Ratio0(ratio0);
+                                config.setXfmr2RatioPhase(ratioPhase);
+                                config.setXfmr2Ptc2Negate(ptc2Negate);
+                                config.setXfmr2YShunt(yshunt);
+                                config.setXfmr2PhaseAngleClock(clock);
+                                config.setXfmr2Pac2Negate(pac2Negate);
+                                alternatives.add(config);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return alternatives;
+    }
+
+    private static List<CgmesEquipmentModelMapping> xfmr3Alternatives() {
+        List<CgmesEquipmentModelMapping> alternatives = new ArrayList<>();
+        for (Xfmr3RatioPhaseMappingAlternative ratio0 : Xfmr3RatioPhaseMappingAlternative.values()) {
+            for (Xfmr3RatioPhaseMappingAlternative ratioPhase : Xfmr3RatioPhaseMappingAlternative.values()) {
+                for (Xfmr3ShuntMappingAlternative yshunt : Xfmr3ShuntMappingAlternative.values()) {
+                    for (Xfmr3PhaseAngleClockAlternative clock : Xfmr3PhaseAngleClockAlternative.values()) {
+                        CgmesEquipmentModelMapping config = new CgmesEquipmentModelMapping();
+                        config.setXfmr3Ratio0StarBusSide(ratio0);
+                        config.setXfmr3RatioPhaseStarBusSide(ratioPhase);
+                        config.setXfmr3YShunt(yshunt);
+                        config.setXfmr3PhaseAngleClock(clock);
+                        alternatives.add(config);
+                    }
+                }
+            }
+        }
+        return alternatives;
+    }
+
+    private static CgmesEquipmentModelMapping combine(CgmesEquipmentModelMapping line,
+            CgmesEquipmentModelMapping xfmr2, CgmesEquipmentModelMapping xfmr3) {
+        CgmesEquipmentModelMapping config = new CgmesEquipmentModelMapping();
+        config.setLineBshunt(line.getLineBshunt());
+        config.setLineRatio0(line.isLineRatio0());
+        config.setXfmr2Ratio0(xfmr2.getXfmr2Ratio0());
+        config.setXfmr2RatioPhase(xfmr2.getXfmr2RatioPhase());
+        config.setXfmr2Ptc2Negate(xfmr2.isXfmr2Ptc2Negate());
+        config.setXfmr2YShunt(xfmr2.getXfmr2YShunt());
+        config.setXfmr2PhaseAngleClock(xfmr2.getXfmr2PhaseAngleClock());
+        config.setXfmr2Pac2Negate(xfmr2.isXfmr2Pac2Negate());
+        config.setXfmr3Ratio0StarBusSide(xfmr3.getXfmr3Ratio0StarBusSide());
+        config.setXfmr3RatioPhaseStarBusSide(xfmr3.getXfmr3RatioPhaseStarBusSide());
+        config.setXfmr3YShunt(xfmr3.getXfmr3YShunt());
+        config.setXfmr3PhaseAngleClock(xfmr3.getXfmr3PhaseAngleClock());
+        return config;
+    }
+
+    // Different flows given by the alternatives of a class, at the buses where the class has branches
+    private static final class ClassFlows {
+
+        ClassFlows(int[] buses) {
+            this.buses = buses;
+        }
+
+        void addTo(int f, double[] balance) {
+            double[] classFlows = flows.get(f);
+            for (int k = 0; k < buses.length; k++) {
+                balance[2 * buses[k]] += classFlows[2 * k];
+                balance[2 * buses[k] + 1] += classFlows[2 * k + 1];
+            }
+        }
+
+        private final int[]               buses;
+        private final List<double[]>      flows        = new ArrayList<>();
+        private final List<List<Integer>> alternatives = new ArrayList<>();
+    }
+
+    private static final class Flows {
+
+        Flows(double[] flows) {
+            this.flows = flows;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Flows && Arrays.equals(flows, ((Flows) o).flows);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(flows);
+        }
+
+        private final double[] flows;
+    }
+
+    private final InterpretedModel inputModel;
+    private final CompiledModel    model;
+    private int                    numBuses;
+    private double[]               injection;
+    private int[][]                busClass;
+    private int[][]                incidenceBus;
+    private int[][]                incidenceNode;
+    private int[][]                incidenceEquipment;
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.powsybl.commons.PowsyblException;
+
+/**
+ * Loaded state of an interpreted model kept in a file: its compiled model and
+ * its tap changer tables. Arrays are written as they are held in memory, and
+ * the file is read back through a memory mapped channel without parsing, so
+ * configurations can be evaluated again without querying the CGMES model.
+ *
+ * The file starts with a magic number and the version of the format, a
+ * snapshot written with another version is rejected.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class ModelSnapshot {
+
+    private static final int MAGIC   = 0x43474d53;
+    private static final int VERSION = 2;
+
+    private ModelSnapshot(CompiledModel compiledModel, TapChangerTables tapChangerTables) {
+        this.compiledModel = compiledModel;
+        this.tapChangerTables = tapChangerTables;
+    }
+
+    // The snapshot is written to a temporary file and then moved, a reader never sees it partially
+    static void write(CompiledModel compiledModel, TapChangerTables tapChangerTables, Path file)
+            throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                compiledModel.write(out);
+                tapChangerTables.write(out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    static ModelSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new PowsyblException("Snapshot too large " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new PowsyblException("Not a model snapshot " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new PowsyblException("Unsupported model snapshot version " + version + " " + file);
+            }
+            try {
+                return new ModelSnapshot(CompiledModel.read(buffer), TapChangerTables.read(buffer));
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException x) {
+                throw new PowsyblException("Invalid model snapshot " + file, x);
+            }
+        }
+    }
+
+    CompiledModel compiledModel() {
+        return compiledModel;
+    }
+
+    TapChangerTables tapChangerTables() {
+        return tapChangerTables;
+    }
+
+    // Arrays are written with their length, and read back into arrays of the expected length
+
+    static void writeDoubles(DataOutput out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    static void writeInts(DataOutput out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    static void writeBooleans(DataOutput out, boolean[] values) throws IOException {
+        out.writeInt(values.length);
+        for (boolean value : values) {
+            out.writeBoolean(value);
+        }
+    }
+
+    static void writeStrings(DataOutput out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static void writeStringLists(DataOutput out, List<List<String>> lists) throws IOException {
+        out.writeInt(lists.size());
+        for (List<String> list : lists) {
+            writeStrings(out, list.toArray(new String[0]));
+        }
+    }
+
+    static double[] readDoubles(ByteBuffer buffer, double[] values) {
+        readLength(buffer, values.length);
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Double.BYTES);
+        return values;
+    }
+
+    static int[] readInts(ByteBuffer buffer, int[] values) {
+        readLength(buffer, values.length);
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+        return values;
+    }
+
+    static boolean[] readBooleans(ByteBuffer buffer, boolean[] values) {
+        readLength(buffer, values.length);
+        for (int k = 0; k < values.length; k++) {
+            values[k] = buffer.get() != 0;
+        }
+        return values;
+    }
+
+    static String[] readStrings(ByteBuffer buffer, String[] values) {
+        readLength(buffer, values.length);
+        for (int k = 0; k < values.length; k++) {
+            values[k] = readString(buffer);
+        }
+        return values;
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[checkCount(length, buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static List<List<String>> readStringLists(ByteBuffer buffer) {
+        int size = readCount(buffer);
+        List<List<String>> lists = new ArrayList<>(size);
+        for (int k = 0; k < size; k++) {
+            lists.add(new ArrayList<>(Arrays.asList(readStrings(buffer, new String[peekLength(buffer)]))));
+        }
+        return lists;
+    }
+
+    // Counts are checked against the size of the file before anything is allocated for them
+    static int readCount(ByteBuffer buffer) {
+        return checkCount(buffer.getInt(), buffer);
+    }
+
+    // Length of the array at the current position, that is not consumed
+    static int peekLength(ByteBuffer buffer) {
+        return checkCount(buffer.getInt(buffer.position()), buffer);
+    }
+
+    private static int checkCount(int count, ByteBuffer buffer) {
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid count " + count);
+        }
+        return count;
+    }
+
+    private static void readLength(ByteBuffer buffer, int expected) {
+        int length = buffer.getInt();
+        if (length != expected) {
+            throw new IllegalArgumentException("Invalid array length " + length + ", expected " + expected);
+        }
+    }
+
+    private final CompiledModel    compiledModel;
+    private final TapChangerTables tapChangerTables;
+}
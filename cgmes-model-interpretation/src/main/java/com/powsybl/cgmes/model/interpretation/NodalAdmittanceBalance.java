@@ -0,0 +1,564 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.Arrays;
+
+/**
+ * Branch flows of all the nodes of a model obtained from its nodal admittance
+ * matrix, S = V conj(Y V).
+ * <p>
+ * The pattern of the matrix only depends on the topology and is built once,
+ * each model mapping configuration only sets its values. When a configuration
+ * maps an equipment class as the previous one its branches are not
+ * interpreted again, only the values and the node flows touched by the
+ * branches of the changed classes are updated, and the buses of their end
+ * nodes are reported as changed. Three winding
+ * transformers are stamped with their star bus as an internal node, open ends
+ * add their shunt admittance to the star bus. Single connected lines and two
+ * winding transformers add their shunt admittance to the connected node.
+ * <p>
+ * Branches that are not calculated, with a connected end without voltage,
+ * are not stamped. As in the branch by branch calculation, the flow of a
+ * branch with several ends connected to the same node is the flow of the
+ * first of them, once for each of these ends.
+ * <p>
+ * The flows of the three winding transformers with open ends are the exact
+ * ones of the star bus circuit, they differ from the simplified ones
+ * calculated by {@link FlowCalculator}.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class NodalAdmittanceBalance {
+
+    NodalAdmittanceBalance(CompiledModel model, TapChangerTables tapChangerTables) {
+        this.model = model;
+        this.tapChangerTables = tapChangerTables;
+        complex = new ComplexKernel();
+        int numNodes = model.numNodes();
+        int numEquipments = model.numLines() + model.numTransformers();
+
+        // Branches are interpreted in the order they are found from the buses,
+        // the same order in which branch flows are calculated one by one
+        int[] found = new int[numEquipments];
+        boolean[] visited = new boolean[numEquipments];
+        int numBranches = 0;
+        for (int b = 0; b < model.numBuses(); b++) {
+            if (model.busIsolated[b]) {
+                continue;
+            }
+            for (int k = model.busStart[b]; k < model.busStart[b + 1]; k++) {
+                int n = CompiledModel.requireNode(model.busNode[k], "node without parameters");
+                for (int i = model.incidenceStart[n]; i < model.incidenceStart[n + 1]; i++) {
+                    int equipment = model.incidentEquipment[i];
+                    if (equipment != CompiledModel.NO_INDEX && !visited[equipment]) {
+                        visited[equipment] = true;
+                        requireNodes(equipment);
+                        found[numBranches++] = equipment;
+                    }
+                }
+            }
+        }
+        branches = Arrays.copyOf(found, numBranches);
+        lineBranches = Arrays.stream(branches).filter(model::isLine).toArray();
+        xfmr2Branches = Arrays.stream(branches).filter(e -> !model.isLine(e) && !isXfmr3(e)).toArray();
+        xfmr3Branches = Arrays.stream(branches).filter(this::isXfmr3).toArray();
+
+        calculated = new boolean[numEquipments];
+        badVoltage = new boolean[numEquipments];
+        stampStart = new int[numEquipments + 1];
+        int[] stamps = new int[numEquipments];
+        for (int equipment : branches) {
+            checkVoltages(equipment);
+            stamps[equipment] = countStamps(equipment);
+        }
+        for (int e = 0; e < numEquipments; e++) {
+            stampStart[e + 1] = stampStart[e] + stamps[e];
+        }
+
+        NodalAdmittanceMatrix.Builder builder = new NodalAdmittanceMatrix.Builder(numNodes + model.numTransformers());
+        int[] handles = new int[stampStart[numEquipments]];
+        for (int equipment : branches) {
+            addStampEntries(builder, equipment, handles);
+        }
+        matrix = builder.build();
+        stampValue = new int[handles.length];
+        for (int k = 0; k < handles.length; k++) {
+            stampValue[k] = matrix.valuePosition(handles[k]);
+        }
+
+        // Stamps added to each value of the matrix
+        int numValues = matrix.numValues();
+        valueStampStart = new int[numValues + 1];
+        for (int k = 0; k < stampValue.length; k++) {
+            valueStampStart[stampValue[k] + 1]++;
+        }
+        for (int v = 0; v < numValues; v++) {
+            valueStampStart[v + 1] += valueStampStart[v];
+        }
+        valueStamp = new int[stampValue.length];
+        int[] next = Arrays.copyOf(valueStampStart, numValues);
+        for (int k = 0; k < stampValue.length; k++) {
+            valueStamp[next[stampValue[k]]++] = k;
+        }
+
+        int size = matrix.size();
+        vRe = new double[size];
+        vIm = new double[size];
+        for (int n = 0; n < numNodes; n++) {
+            vRe[matrix.position(n)] = model.vRe[n];
+            vIm[matrix.position(n)] = model.vIm[n];
+        }
+        stampRe = new double[handles.length];
+        stampIm = new double[handles.length];
+        p = new double[size];
+        q = new double[size];
+        equipmentModel = new DetectedEquipmentModel[numEquipments];
+        changedValue = new boolean[numValues];
+        changedValues = new int[numValues];
+        changedRow = new boolean[size];
+        changedRows = new int[size];
+
+        nodeBus = new int[numNodes];
+        Arrays.fill(nodeBus, CompiledModel.NO_INDEX);
+        for (int b = 0; b < model.numBuses(); b++) {
+            for (int k = model.busStart[b]; k < model.busStart[b + 1]; k++) {
+                if (model.busNode[k] != CompiledModel.NO_INDEX) {
+                    nodeBus[model.busNode[k]] = b;
+                }
+            }
+        }
+        changedBus = new boolean[model.numBuses()];
+        changedBuses = new int[model.numBuses()];
+    }
+
+    /**
+     * A balance that shares the topology and the matrix pattern of the given
+     * one, to evaluate configurations in a different thread.
+     */
+    NodalAdmittanceBalance(NodalAdmittanceBalance other) {
+        model = other.model;
+        tapChangerTables = other.tapChangerTables;
+        complex = new ComplexKernel();
+        branches = other.branches;
+        lineBranches = other.lineBranches;
+        xfmr2Branches = other.xfmr2Branches;
+        xfmr3Branches = other.xfmr3Branches;
+        calculated = other.calculated;
+        badVoltage = other.badVoltage;
+        stampStart = other.stampStart;
+        stampValue = other.stampValue;
+        valueStampStart = other.valueStampStart;
+        valueStamp = other.valueStamp;
+        matrix = other.matrix.copy();
+        vRe = other.vRe.clone();
+        vIm = other.vIm.clone();
+        stampRe = new double[other.stampRe.length];
+        stampIm = new double[other.stampIm.length];
+        p = new double[other.p.length];
+        q = new double[other.q.length];
+        equipmentModel = new DetectedEquipmentModel[other.equipmentModel.length];
+        changedValue = new boolean[other.changedValue.length];
+        changedValues = new int[other.changedValues.length];
+        changedRow = new boolean[other.changedRow.length];
+        changedRows = new int[other.changedRows.length];
+        nodeBus = other.nodeBus;
+        changedBus = new boolean[other.changedBus.length];
+        changedBuses = new int[other.changedBuses.length];
+    }
+
+    void evaluate(CgmesEquipmentModelMapping config) {
+        for (int i = 0; i < numChangedBuses; i++) {
+            changedBus[changedBuses[i]] = false;
+        }
+        numChangedBuses = 0;
+        allBusesChanged = previous == null;
+        if (previous == null) {
+            for (int equipment : branches) {
+                interpret(equipment, config);
+            }
+            for (int v = 0; v < matrix.numValues(); v++) {
+                updateValue(v);
+            }
+            matrix.powerInjections(vRe, vIm, p, q);
+        } else {
+            if (!config.sameLineMapping(previous)) {
+                reinterpret(lineBranches, config);
+            }
+            if (!config.sameXfmr2Mapping(previous)) {
+                reinterpret(xfmr2Branches, config);
+            }
+            if (!config.sameXfmr3Mapping(previous)) {
+                reinterpret(xfmr3Branches, config);
+            }
+            updateChanged();
+        }
+        previous = config;
+    }
+
+    private void reinterpret(int[] classBranches, CgmesEquipmentModelMapping config) {
+        for (int equipment : classBranches) {
+            interpret(equipment, config);
+            // Only the rows of its end nodes and its star bus change, and its model
+            int ends = isXfmr3(equipment) ? 3 : 2;
+            for (int end = 1; end <= ends; end++) {
+                addChangedBus(node(equipment, end));
+            }
+            for (int k = stampStart[equipment]; k < stampStart[equipment + 1]; k++) {
+                int v = stampValue[k];
+                if (!changedValue[v]) {
+                    changedValue[v] = true;
+                    changedValues[numChangedValues++] = v;
+                }
+            }
+        }
+    }
+
+    private void addChangedBus(int n) {
+        if (n == CompiledModel.NO_INDEX || nodeBus[n] == CompiledModel.NO_INDEX) {
+            return;
+        }
+        int b = nodeBus[n];
+        if (!changedBus[b]) {
+            changedBus[b] = true;
+            changedBuses[numChangedBuses++] = b;
+        }
+    }
+
+    private void updateChanged() {
+        for (int i = 0; i < numChangedValues; i++) {
+            int v = changedValues[i];
+            changedValue[v] = false;
+            updateValue(v);
+            int r = matrix.row(v);
+            if (!changedRow[r]) {
+                changedRow[r] = true;
+                changedRows[numChangedRows++] = r;
+            }
+        }
+        numChangedValues = 0;
+
+        // Star bus voltages only depend on their own row
+        for (int i = 0; i < numChangedRows; i++) {
+            int r = changedRows[i];
+            if (matrix.isInternal(r)) {
+                matrix.internalVoltage(r, vRe, vIm);
+            }
+        }
+        for (int i = 0; i < numChangedRows; i++) {
+            int r = changedRows[i];
+            changedRow[r] = false;
+            matrix.powerInjection(r, vRe, vIm, p, q);
+        }
+        numChangedRows = 0;
+    }
+
+    // Values are always summed from their stamps in the same order, the result
+    // does not depend on the configurations evaluated before
+    private void updateValue(int v) {
+        double yRe = 0.0;
+        double yIm = 0.0;
+        for (int i = valueStampStart[v]; i < valueStampStart[v + 1]; i++) {
+            yRe += stampRe[valueStamp[i]];
+            yIm += stampIm[valueStamp[i]];
+        }
+        matrix.set(v, yRe, yIm);
+    }
+
+    // All the buses have changed in the first evaluated configuration
+    boolean allBusesChanged() {
+        return allBusesChanged;
+    }
+
+    // Buses with flows or equipment models changed by the last evaluated configuration
+    int numChangedBuses() {
+        return numChangedBuses;
+    }
+
+    int changedBus(int i) {
+        return changedBuses[i];
+    }
+
+    // Power flowing from the node to the branches connected to it
+    double p(int n) {
+        return p[matrix.position(n)];
+    }
+
+    double q(int n) {
+        return q[matrix.position(n)];
+    }
+
+    boolean calculated(int equipment) {
+        return calculated[equipment];
+    }
+
+    boolean badVoltage(int equipment) {
+        return badVoltage[equipment];
+    }
+
+    DetectedEquipmentModel equipmentModel(int equipment) {
+        return equipmentModel[equipment];
+    }
+
+    private void requireNodes(int equipment) {
+        if (model.isLine(equipment)) {
+            CompiledModel.requireNode(model.lineNode(equipment, 1), "node1 null in line");
+            CompiledModel.requireNode(model.lineNode(equipment, 2), "node2 null in line");
+        } else {
+            int transformer = model.transformerOf(equipment);
+            CompiledModel.requireNode(model.transformerNode(transformer, 1), "node1 null in transformer");
+            CompiledModel.requireNode(model.transformerNode(transformer, 2), "node2 null in transformer");
+        }
+    }
+
+    private boolean isXfmr3(int equipment) {
+        return !model.isLine(equipment) && model.xfmr3[model.transformerOf(equipment)];
+    }
+
+    private int node(int equipment, int end) {
+        if (model.isLine(equipment)) {
+            return model.lineNode(equipment, end);
+        }
+        return model.transformerNode(model.transformerOf(equipment), end);
+    }
+
+    private boolean connected(int equipment, int end) {
+        if (model.isLine(equipment)) {
+            return model.lineConnected(equipment, end);
+        }
+        return model.transformerConnected(model.transformerOf(equipment), end);
+    }
+
+    private boolean xfmr3IsOk(int transformer) {
+        for (int end = 1; end <= 3; end++) {
+            if (model.transformerEnd(transformer, end, CompiledModel.R) == 0.0
+                    && model.transformerEnd(transformer, end, CompiledModel.X) == 0.0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int countStamps(int equipment) {
+        if (!calculated[equipment]) {
+            return 0;
+        }
+        if (isXfmr3(equipment)) {
+            int count = 0;
+            for (int end = 1; end <= 3; end++) {
+                count += connected(equipment, end) ? 4 : 1;
+            }
+            return count;
+        }
+        boolean connected1 = connected(equipment, 1);
+        boolean connected2 = connected(equipment, 2);
+        if (connected1 && connected2) {
+            return 4;
+        }
+        return connected1 || connected2 ? 1 : 0;
+    }
+
+    // A branch is calculated when all its connected ends have voltage
+    private void checkVoltages(int equipment) {
+        int ends = isXfmr3(equipment) ? 3 : 2;
+        if (ends == 3 && !xfmr3IsOk(model.transformerOf(equipment))) {
+            return;
+        }
+        boolean anyConnected = false;
+        boolean withVoltage = true;
+        boolean anglesOk = true;
+        for (int end = 1; end <= ends; end++) {
+            if (connected(equipment, end)) {
+                int n = node(equipment, end);
+                anyConnected = true;
+                withVoltage &= model.v[n] != 0.0;
+                anglesOk &= model.angle[n] != 0.0;
+            }
+        }
+        calculated[equipment] = anyConnected && withVoltage;
+        badVoltage[equipment] = calculated[equipment] && !anglesOk;
+    }
+
+    private void addStampEntries(NodalAdmittanceMatrix.Builder builder, int equipment, int[] handles) {
+        int k = stampStart[equipment];
+        if (isXfmr3(equipment)) {
+            if (k == stampStart[equipment + 1]) {
+                return;
+            }
+            int star = model.numNodes() + model.transformerOf(equipment);
+            builder.internal(star);
+            for (int end = 1; end <= 3; end++) {
+                if (connected(equipment, end)) {
+                    k = addBranchEntries(builder, node(equipment, end), star, handles, k);
+                } else {
+                    handles[k++] = builder.entry(star, star);
+                }
+            }
+            return;
+        }
+        if (k == stampStart[equipment + 1]) {
+            return;
+        }
+        int node1 = node(equipment, 1);
+        int node2 = node(equipment, 2);
+        boolean connected1 = connected(equipment, 1);
+        boolean connected2 = connected(equipment, 2);
+        if (connected1 && connected2) {
+            addBranchEntries(builder, node1, node2, handles, k);
+        } else if (connected1) {
+            handles[k] = builder.entry(node1, node1);
+        } else if (connected2) {
+            handles[k] = builder.entry(node2, node2);
+        }
+    }
+
+    private static int addBranchEntries(NodalAdmittanceMatrix.Builder builder, int node1, int node2, int[] handles,
+            int k) {
+        handles[k] = builder.entry(node1, node1);
+        handles[k + 1] = builder.entry(node1, node2);
+        handles[k + 2] = builder.entry(node2, node1);
+        handles[k + 3] = builder.entry(node2, node2);
+        return k + 4;
+    }
+
+    private void interpret(int equipment, CgmesEquipmentModelMapping config) {
+        int k = stampStart[equipment];
+        if (model.isLine(equipment)) {
+            LineModel lineModel = new LineModel(model, equipment, config);
+            lineModel.interpret(model.nominalV[node(equipment, 1)], model.nominalV[node(equipment, 2)]);
+            equipmentModel[equipment] = new DetectedEquipmentModel(lineModel.getBranchModel());
+            stampBranch(equipment, k, lineModel.getAdmittanceMatrix());
+            return;
+        }
+        int transformer = model.transformerOf(equipment);
+        if (!model.xfmr3[transformer]) {
+            Xfmr2Model xfmr2Model = new Xfmr2Model(tapChangerTables, model, transformer, config);
+            xfmr2Model.interpret();
+            equipmentModel[equipment] = new DetectedEquipmentModel(xfmr2Model.getBranchModel());
+            stampBranch(equipment, k, xfmr2Model.getAdmittanceMatrix());
+            return;
+        }
+        Xfmr3Model xfmr3Model = new Xfmr3Model(tapChangerTables, model, transformer, config);
+        xfmr3Model.interpret();
+        equipmentModel[equipment] = new DetectedEquipmentModel(xfmr3Model.getBranchModelEnd1(),
+                xfmr3Model.getBranchModelEnd2(), xfmr3Model.getBranchModelEnd3());
+        if (k == stampStart[equipment + 1]) {
+            return;
+        }
+        BranchAdmittanceMatrix[] admittanceMatrixEnds = {xfmr3Model.getAdmittanceMatrixEnd1(),
+            xfmr3Model.getAdmittanceMatrixEnd2(), xfmr3Model.getAdmittanceMatrixEnd3()};
+        for (int end = 1; end <= 3; end++) {
+            BranchAdmittanceMatrix y = admittanceMatrixEnds[end - 1];
+            if (connected(equipment, end)) {
+                // The star bus row is always stamped, the voltage of the star bus depends on all the ends
+                int flows = endFlows(equipment, end, 3);
+                stamp(k++, flows * y.y11Re, flows * y.y11Im);
+                stamp(k++, flows * y.y12Re, flows * y.y12Im);
+                stamp(k++, y.y21Re, y.y21Im);
+                stamp(k++, y.y22Re, y.y22Im);
+            } else {
+                // Open end seen from the star bus
+                kronAntenna(y, true);
+                stamp(k++, complex.re, complex.im);
+            }
+        }
+    }
+
+    private void stampBranch(int equipment, int k, BranchAdmittanceMatrix y) {
+        if (k == stampStart[equipment + 1]) {
+            return;
+        }
+        boolean connected1 = connected(equipment, 1);
+        boolean connected2 = connected(equipment, 2);
+        if (connected1 && connected2) {
+            int flows1 = endFlows(equipment, 1, 2);
+            int flows2 = endFlows(equipment, 2, 2);
+            stamp(k, flows1 * y.y11Re, flows1 * y.y11Im);
+            stamp(k + 1, flows1 * y.y12Re, flows1 * y.y12Im);
+            stamp(k + 2, flows2 * y.y21Re, flows2 * y.y21Im);
+            stamp(k + 3, flows2 * y.y22Re, flows2 * y.y22Im);
+        } else if (connected1) {
+            kronAntenna(y, false);
+            stamp(k, complex.re, complex.im);
+        } else if (connected2) {
+            kronAntenna(y, true);
+            stamp(k, complex.re, complex.im);
+        }
+    }
+
+    // Times the flow of a connected end is seen from its node, see FlowCalculator.end:
+    // the first end connected to a node counts for all the ends connected to it, the others do not count
+    private int endFlows(int equipment, int end, int ends) {
+        int n = node(equipment, end);
+        for (int other = 1; other < end; other++) {
+            if (connected(equipment, other) && node(equipment, other) == n) {
+                return 0;
+            }
+        }
+        int flows = 1;
+        for (int other = end + 1; other <= ends; other++) {
+            if (connected(equipment, other) && node(equipment, other) == n) {
+                flows++;
+            }
+        }
+        return flows;
+    }
+
+    private void stamp(int k, double yRe, double yIm) {
+        stampRe[k] = yRe;
+        stampIm[k] = yIm;
+    }
+
+    // Admittance seen from the connected end, left in the complex kernel
+    private void kronAntenna(BranchAdmittanceMatrix y, boolean isOpenFrom) {
+        if (isOpenFrom) {
+            complex.multiply(y.y21Re, y.y21Im, y.y12Re, y.y12Im);
+            complex.divide(complex.re, complex.im, y.y11Re, y.y11Im);
+            complex.subtract(y.y22Re, y.y22Im, complex.re, complex.im);
+        } else {
+            complex.multiply(y.y12Re, y.y12Im, y.y21Re, y.y21Im);
+            complex.divide(complex.re, complex.im, y.y22Re, y.y22Im);
+            complex.subtract(y.y11Re, y.y11Im, complex.re, complex.im);
+        }
+    }
+
+    private final CompiledModel            model;
+    private final TapChangerTables         tapChangerTables;
+    private final int[]                    branches;
+    private final int[]                    lineBranches;
+    private final int[]                    xfmr2Branches;
+    private final int[]                    xfmr3Branches;
+    private final boolean[]                calculated;
+    private final boolean[]                badVoltage;
+    private final int[]                    stampStart;
+    private final int[]                    stampValue;
+    private final int[]                    valueStampStart;
+    private final int[]                    valueStamp;
+    private final NodalAdmittanceMatrix    matrix;
+    private final double[]                 vRe;
+    private final double[]                 vIm;
+    private final double[]                 stampRe;
+    private final double[]                 stampIm;
+    private final double[]                 p;
+    private final double[]                 q;
+    private final DetectedEquipmentModel[] equipmentModel;
+    private final ComplexKernel            complex;
+    private final boolean[]                changedValue;
+    private final int[]                    changedValues;
+    private final boolean[]                changedRow;
+    private final int[]                    changedRows;
+    private final int[]                    nodeBus;
+    private final boolean[]                changedBus;
+    private final int[]                    changedBuses;
+    private int                            numChangedValues;
+    private int                            numChangedRows;
+    private int                            numChangedBuses;
+    private boolean                        allBusesChanged;
+    private CgmesEquipmentModelMapping     previous;
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.Arrays;
+
+/**
+ * Sparse complex nodal admittance matrix in CSR format, real and imaginary
+ * parts stored in separate arrays.
+ * <p>
+ * Rows and columns are stored in reverse Cuthill-McKee order to keep the
+ * entries of neighbour nodes close in memory. Vectors given to or returned by
+ * the matrix are indexed by position in that order, {@link #position(int)}
+ * gives the position of a node.
+ * <p>
+ * Internal nodes, as the star buses of three winding transformers, have no
+ * injection: their voltages are obtained from the voltages of their
+ * neighbours before computing the injections of the other nodes.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class NodalAdmittanceMatrix {
+
+    /**
+     * Collects the pattern of the matrix. Each call to {@link #entry(int, int)}
+     * returns a handle that the built matrix maps to the position of the value
+     * of the entry, repeated entries share the same value.
+     */
+    static final class Builder {
+
+        Builder(int size) {
+            this.size = size;
+            this.rows = new int[64];
+            this.columns = new int[64];
+            this.internal = new boolean[size];
+        }
+
+        int entry(int row, int column) {
+            if (entries == rows.length) {
+                rows = Arrays.copyOf(rows, entries * 2);
+                columns = Arrays.copyOf(columns, entries * 2);
+            }
+            rows[entries] = row;
+            columns[entries] = column;
+            return entries++;
+        }
+
+        void internal(int node) {
+            internal[node] = true;
+        }
+
+        NodalAdmittanceMatrix build() {
+            return new NodalAdmittanceMatrix(this);
+        }
+
+        private final int       size;
+        private final boolean[] internal;
+        private int[]           rows;
+        private int[]           columns;
+        private int             entries;
+    }
+
+    private NodalAdmittanceMatrix(Builder builder) {
+        int n = builder.size;
+        position = reverseCuthillMcKee(n, builder.rows, builder.columns, builder.entries);
+        node = new int[n];
+        for (int k = 0; k < n; k++) {
+            node[position[k]] = k;
+        }
+        internal = new boolean[n];
+        for (int k = 0; k < n; k++) {
+            internal[position[k]] = builder.internal[k];
+        }
+
+        // Sort the entries by row and column in the new order, then merge the repeated ones
+        int entries = builder.entries;
+        int[] rowCount = new int[n + 1];
+        for (int e = 0; e < entries; e++) {
+            rowCount[position[builder.rows[e]] + 1]++;
+        }
+        for (int r = 0; r < n; r++) {
+            rowCount[r + 1] += rowCount[r];
+        }
+        int[] sorted = new int[entries];
+        int[] next = Arrays.copyOf(rowCount, n);
+        for (int e = 0; e < entries; e++) {
+            sorted[next[position[builder.rows[e]]]++] = e;
+        }
+        handlePosition = new int[entries];
+        rowStart = new int[n + 1];
+        int[] cols = new int[entries];
+        int nnz = 0;
+        for (int r = 0; r < n; r++) {
+            rowStart[r] = nnz;
+            int first = rowCount[r];
+            int last = rowCount[r + 1];
+            sortByColumn(sorted, first, last, builder.columns);
+            int previous = -1;
+            for (int k = first; k < last; k++) {
+                int e = sorted[k];
+                int c = position[builder.columns[e]];
+                if (c != previous) {
+                    cols[nnz++] = c;
+                    previous = c;
+                }
+                handlePosition[e] = nnz - 1;
+            }
+        }
+        rowStart[n] = nnz;
+        column = Arrays.copyOf(cols, nnz);
+        re = new double[nnz];
+        im = new double[nnz];
+        valueRow = new int[nnz];
+        for (int r = 0; r < n; r++) {
+            Arrays.fill(valueRow, rowStart[r], rowStart[r + 1], r);
+        }
+        diagonal = new int[n];
+        Arrays.fill(diagonal, -1);
+        for (int r = 0; r < n; r++) {
+            for (int k = rowStart[r]; k < rowStart[r + 1]; k++) {
+                if (column[k] == r) {
+                    diagonal[r] = k;
+                }
+            }
+        }
+    }
+
+    private NodalAdmittanceMatrix(NodalAdmittanceMatrix other) {
+        position = other.position;
+        node = other.node;
+        internal = other.internal;
+        rowStart = other.rowStart;
+        column = other.column;
+        diagonal = other.diagonal;
+        valueRow = other.valueRow;
+        handlePosition = other.handlePosition;
+        re = new double[other.re.length];
+        im = new double[other.im.length];
+    }
+
+    /**
+     * A matrix with the same pattern and its own values.
+     */
+    NodalAdmittanceMatrix copy() {
+        return new NodalAdmittanceMatrix(this);
+    }
+
+    private void sortByColumn(int[] sorted, int first, int last, int[] columns) {
+        // Rows are short, insertion sort is enough
+        for (int k = first + 1; k < last; k++) {
+            int e = sorted[k];
+            int c = position[columns[e]];
+            int j = k - 1;
+            while (j >= first && position[columns[sorted[j]]] > c) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = e;
+        }
+    }
+
+    private static int[] reverseCuthillMcKee(int n, int[] rows, int[] columns, int entries) {
+        // Symmetric adjacency of the pattern, without the diagonal
+        int[] degree = new int[n];
+        for (int e = 0; e < entries; e++) {
+            if (rows[e] != columns[e]) {
+                degree[rows[e]]++;
+                degree[columns[e]]++;
+            }
+        }
+        int[] adjacencyStart = new int[n + 1];
+        for (int k = 0; k < n; k++) {
+            adjacencyStart[k + 1] = adjacencyStart[k] + degree[k];
+        }
+        int[] adjacency = new int[adjacencyStart[n]];
+        int[] next = Arrays.copyOf(adjacencyStart, n);
+        for (int e = 0; e < entries; e++) {
+            if (rows[e] != columns[e]) {
+                adjacency[next[rows[e]]++] = columns[e];
+                adjacency[next[columns[e]]++] = rows[e];
+            }
+        }
+
+        // Start each connected component from one of its nodes of minimum degree
+        int maxDegree = 0;
+        for (int k = 0; k < n; k++) {
+            maxDegree = Math.max(maxDegree, degree[k]);
+        }
+        int[] byDegreeStart = new int[maxDegree + 2];
+        for (int k = 0; k < n; k++) {
+            byDegreeStart[degree[k] + 1]++;
+        }
+        for (int d = 0; d <= maxDegree; d++) {
+            byDegreeStart[d + 1] += byDegreeStart[d];
+        }
+        int[] byDegree = new int[n];
+        for (int k = 0; k < n; k++) {
+            byDegree[byDegreeStart[degree[k]]++] = k;
+        }
+
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        int ordered = 0;
+        for (int s = 0; s < n; s++) {
+            int start = byDegree[s];
+            if (visited[start]) {
+                continue;
+            }
+            visited[start] = true;
+            order[ordered++] = start;
+            int head = ordered - 1;
+            while (head < ordered) {
+                int k = order[head++];
+                int first = ordered;
+                for (int a = adjacencyStart[k]; a < adjacencyStart[k + 1]; a++) {
+                    int j = adjacency[a];
+                    if (!visited[j]) {
+                        visited[j] = true;
+                        order[ordered++] = j;
+                    }
+                }
+                sortByDegree(order, first, ordered, degree);
+            }
+        }
+
+        int[] position = new int[n];
+        for (int k = 0; k < n; k++) {
+            position[order[k]] = n - 1 - k;
+        }
+        return position;
+    }
+
+    private static void sortByDegree(int[] nodes, int first, int last, int[] degree) {
+        for (int k = first + 1; k < last; k++) {
+            int j = k - 1;
+            int v = nodes[k];
+            while (j >= first && degree[nodes[j]] > degree[v]) {
+                nodes[j + 1] = nodes[j];
+                j--;
+            }
+            nodes[j + 1] = v;
+        }
+    }
+
+    int size() {
+        return node.length;
+    }
+
+    int position(int n) {
+        return position[n];
+    }
+
+    int node(int p) {
+        return node[p];
+    }
+
+    int valuePosition(int handle) {
+        return handlePosition[handle];
+    }
+
+    int numValues() {
+        return re.length;
+    }
+
+    // Row of the given value, as a position
+    int row(int valuePosition) {
+        return valueRow[valuePosition];
+    }
+
+    boolean isInternal(int r) {
+        return internal[r];
+    }
+
+    void set(int valuePosition, double yRe, double yIm) {
+        re[valuePosition] = yRe;
+        im[valuePosition] = yIm;
+    }
+
+    /**
+     * Complex power injected at each node S = V conj(Y V). The voltages of the
+     * internal nodes are calculated first and written to the voltage vectors.
+     */
+    void powerInjections(double[] vRe, double[] vIm, double[] p, double[] q) {
+        for (int r = 0; r < node.length; r++) {
+            if (internal[r]) {
+                internalVoltage(r, vRe, vIm);
+            }
+        }
+        for (int r = 0; r < node.length; r++) {
+            powerInjection(r, vRe, vIm, p, q);
+        }
+    }
+
+    void internalVoltage(int r, double[] vRe, double[] vIm) {
+        // Zero injection: Yrr Vr = - sum(Yrj Vj)
+        double sumRe = 0.0;
+        double sumIm = 0.0;
+        for (int k = rowStart[r]; k < rowStart[r + 1]; k++) {
+            int c = column[k];
+            if (c != r) {
+                sumRe += re[k] * vRe[c] - im[k] * vIm[c];
+                sumIm += re[k] * vIm[c] + im[k] * vRe[c];
+            }
+        }
+        int d = diagonal[r];
+        double yRe = d < 0 ? 0.0 : re[d];
+        double yIm = d < 0 ? 0.0 : im[d];
+        double den = yRe * yRe + yIm * yIm;
+        if (den == 0.0) {
+            vRe[r] = Double.NaN;
+            vIm[r] = Double.NaN;
+            return;
+        }
+        vRe[r] = -(sumRe * yRe + sumIm * yIm) / den;
+        vIm[r] = -(sumIm * yRe - sumRe * yIm) / den;
+    }
+
+    void powerInjection(int r, double[] vRe, double[] vIm, double[] p, double[] q) {
+        double iRe = 0.0;
+        double iIm = 0.0;
+        for (int k = rowStart[r]; k < rowStart[r + 1]; k++) {
+            int c = column[k];
+            iRe += re[k] * vRe[c] - im[k] * vIm[c];
+            iIm += re[k] * vIm[c] + im[k] * vRe[c];
+        }
+        // S = V conj(I)
+        p[r] = vRe[r] * iRe + vIm[r] * iIm;
+        q[r] = vIm[r] * iRe - vRe[r] * iIm;
+    }
+
+    private final int[]     position;
+    private final int[]     node;
+    private final boolean[] internal;
+    private final int[]     rowStart;
+    private final int[]     column;
+    private final int[]     diagonal;
+    private final int[]     valueRow;
+    private final int[]     handlePosition;
+    private final double[]  re;
+    private final double[]  im;
+}
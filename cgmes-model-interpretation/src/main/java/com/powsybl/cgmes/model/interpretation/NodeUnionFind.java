@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Disjoint sets of topological nodes, used to join the nodes connected by
+ * retained closed switches and zero impedance branches.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class NodeUnionFind {
+
+    NodeUnionFind(Collection<String> nodes) {
+        index = new HashMap<>(nodes.size() * 2);
+        ids = new ArrayList<>(nodes.size());
+        parent = new int[Math.max(nodes.size(), 16)];
+        size = new int[parent.length];
+        nodes.forEach(this::intern);
+        numNodes = ids.size();
+    }
+
+    void union(String node1, String node2) {
+        int root1 = find(intern(node1));
+        int root2 = find(intern(node2));
+        if (root1 == root2) {
+            return;
+        }
+        // Union by size keeps the trees shallow
+        if (size[root1] < size[root2]) {
+            parent[root1] = root2;
+            size[root2] += size[root1];
+        } else {
+            parent[root2] = root1;
+            size[root1] += size[root2];
+        }
+    }
+
+    /**
+     * Sets that contain at least one of the nodes given at construction, in the
+     * order of their first node. Nodes of each set are listed in the same order.
+     */
+    List<List<String>> joinedNodes() {
+        int[] set = new int[ids.size()];
+        Arrays.fill(set, -1);
+        List<List<String>> joinedNodes = new ArrayList<>();
+        for (int k = 0; k < numNodes; k++) {
+            int root = find(k);
+            if (set[root] < 0) {
+                set[root] = joinedNodes.size();
+                joinedNodes.add(new ArrayList<>(size[root]));
+            }
+        }
+        for (int k = 0; k < ids.size(); k++) {
+            int s = set[find(k)];
+            if (s >= 0) {
+                joinedNodes.get(s).add(ids.get(k));
+            }
+        }
+        return joinedNodes;
+    }
+
+    private int intern(String node) {
+        Integer k = index.get(node);
+        if (k != null) {
+            return k;
+        }
+        int n = ids.size();
+        if (n == parent.length) {
+            parent = Arrays.copyOf(parent, n * 2);
+            size = Arrays.copyOf(size, n * 2);
+        }
+        parent[n] = n;
+        size[n] = 1;
+        ids.add(node);
+        index.put(node, n);
+        return n;
+    }
+
+    private int find(int node) {
+        int root = node;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        // Path compression
+        int k = node;
+        while (parent[k] != root) {
+            int next = parent[k];
+            parent[k] = root;
+            k = next;
+        }
+        return root;
+    }
+
+    private final Map<String, Integer> index;
+    private final List<String>         ids;
+    private final int                  numNodes;
+    private int[]                      parent;
+    private int[]                      size;
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import com.powsybl.cgmes.model.CgmesModel;
+import com.powsybl.cgmes.model.CgmesModelFactory;
+import com.powsybl.cgmes.model.triplestore.CgmesModelTripleStore;
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.commons.datasource.ReadOnlyDataSource;
+import com.powsybl.triplestore.api.TripleStore;
+
+/**
+ * Boundary set shared by all the models of a catalog. Its files are parsed
+ * once, into a triple store that is never modified afterwards. The statements
+ * of the boundary are copied with their graphs to the triple store of each
+ * model, so queries see them as if the boundary files had been read with the
+ * model.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class SharedBoundary {
+
+    SharedBoundary(ReadOnlyDataSource boundary, String implementation) {
+        CgmesModel boundaryModel = CgmesModelFactory.create(boundary, implementation);
+        if (!(boundaryModel instanceof CgmesModelTripleStore)) {
+            throw new PowsyblException("Boundary can not be shared, it is not held in a triple store");
+        }
+        tripleStore = ((CgmesModelTripleStore) boundaryModel).tripleStore();
+    }
+
+    // Copies are serialized, not all triple store implementations support concurrent readers
+    synchronized void attachTo(CgmesModel cgmes) {
+        if (!(cgmes instanceof CgmesModelTripleStore)) {
+            throw new PowsyblException("Boundary can not be attached, the model is not held in a triple store");
+        }
+        ((CgmesModelTripleStore) cgmes).tripleStore().add(tripleStore);
+    }
+
+    private final TripleStore tripleStore;
+}
@@ -0,0 +1,339 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.powsybl.cgmes.model.CgmesModel;
+import com.powsybl.cgmes.model.triplestore.CgmesModelTripleStore;
+import com.powsybl.triplestore.api.PropertyBag;
+import com.powsybl.triplestore.api.PropertyBags;
+
+/**
+ * Ratio and phase tap changer tables of a model, loaded with one query for
+ * each kind of table and indexed by step.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class TapChangerTables {
+
+    private TapChangerTables(Map<String, Table> ratioTables, Map<String, Table> phaseTables) {
+        this.ratioTables = ratioTables;
+        this.phaseTables = phaseTables;
+    }
+
+    static TapChangerTables load(CgmesModel cgmes) {
+        String ratioTablePoints = "SELECT * "
+                + "WHERE { "
+                + "{ GRAPH ?graph {"
+                + "    ?RatioTapChangerTablePoint"
+                + "        cim:RatioTapChangerTablePoint.RatioTapChangerTable ?RatioTapChangerTable ;"
+                + "        cim:TapChangerTablePoint.step ?step ;"
+                + "        cim:TapChangerTablePoint.ratio ?ratio ."
+                + "    OPTIONAL { ?RatioTapChangerTablePoint cim:TapChangerTablePoint.r ?r }"
+                + "    OPTIONAL { ?RatioTapChangerTablePoint cim:TapChangerTablePoint.x ?x }"
+                + "    OPTIONAL { ?RatioTapChangerTablePoint cim:TapChangerTablePoint.g ?g }"
+                + "    OPTIONAL { ?RatioTapChangerTablePoint cim:TapChangerTablePoint.b ?b }"
+                + "}}"
+                + "}";
+        String phaseTablePoints = "SELECT * "
+                + "WHERE { "
+                + "{ GRAPH ?graph {"
+                + "    ?PhaseTapChangerTablePoint"
+                + "        cim:PhaseTapChangerTablePoint.PhaseTapChangerTable ?PhaseTapChangerTable ;"
+                + "        cim:TapChangerTablePoint.step ?step ;"
+                + "        cim:TapChangerTablePoint.ratio ?ratio ;"
+                + "        cim:PhaseTapChangerTablePoint.angle ?angle ."
+                + "    OPTIONAL { ?PhaseTapChangerTablePoint cim:TapChangerTablePoint.r ?r }"
+                + "    OPTIONAL { ?PhaseTapChangerTablePoint cim:TapChangerTablePoint.x ?x }"
+                + "    OPTIONAL { ?PhaseTapChangerTablePoint cim:TapChangerTablePoint.g ?g }"
+                + "    OPTIONAL { ?PhaseTapChangerTablePoint cim:TapChangerTablePoint.b ?b }"
+                + "}}"
+                + "}";
+        CgmesModelTripleStore tripleStore = (CgmesModelTripleStore) cgmes;
+        return of(tripleStore.query(ratioTablePoints), tripleStore.query(phaseTablePoints));
+    }
+
+    // Tables from points with the properties given by the queries of load
+    static TapChangerTables of(PropertyBags ratioTablePoints, PropertyBags phaseTablePoints) {
+        return new TapChangerTables(
+                index(ratioTablePoints, "RatioTapChangerTable"),
+                index(phaseTablePoints, "PhaseTapChangerTable"));
+    }
+
+    void write(DataOutput out) throws IOException {
+        write(out, ratioTables);
+        write(out, phaseTables);
+    }
+
+    static TapChangerTables read(ByteBuffer buffer) {
+        return new TapChangerTables(readTables(buffer), readTables(buffer));
+    }
+
+    private static void write(DataOutput out, Map<String, Table> tables) throws IOException {
+        out.writeInt(tables.size());
+        for (Map.Entry<String, Table> e : tables.entrySet()) {
+            ModelSnapshot.writeString(out, e.getKey());
+            e.getValue().write(out);
+        }
+    }
+
+    private static Map<String, Table> readTables(ByteBuffer buffer) {
+        int size = ModelSnapshot.readCount(buffer);
+        Map<String, Table> tables = new HashMap<>(size * 2);
+        for (int k = 0; k < size; k++) {
+            tables.put(ModelSnapshot.readString(buffer), new Table(buffer));
+        }
+        return tables;
+    }
+
+    private static Map<String, Table> index(PropertyBags points, String tableProperty) {
+        Map<String, List<PropertyBag>> tablePoints = new HashMap<>();
+        points.forEach(p -> tablePoints.computeIfAbsent(p.getId(tableProperty), x -> new ArrayList<>()).add(p));
+        Map<String, Table> tables = new HashMap<>();
+        tablePoints.forEach((id, tp) -> tables.put(id, new Table(tp)));
+        return tables;
+    }
+
+    int size() {
+        return ratioTables.size() + phaseTables.size();
+    }
+
+    // A table referenced by a tap changer but without points is an empty table
+    Table ratioTable(String id) {
+        if (id == null) {
+            return null;
+        }
+        return ratioTables.getOrDefault(id, Table.EMPTY);
+    }
+
+    Table phaseTable(String id) {
+        if (id == null) {
+            return null;
+        }
+        return phaseTables.getOrDefault(id, Table.EMPTY);
+    }
+
+    /**
+     * Table points stored in dense arrays indexed by (step - minStep). When the
+     * steps are spread over a range much larger than their number, the points
+     * are stored in step order and found by a binary search of their steps.
+     * Only the first point found for each step is kept.
+     */
+    static final class Table {
+
+        // Dense arrays are used up to this number of positions for each point, and for any short table
+        private static final int   DENSE_SPAN_FACTOR = 4;
+        private static final int   DENSE_SPAN_MIN    = 64;
+        private static final int[] NO_STEPS          = new int[0];
+
+        static final Table EMPTY = new Table(new ArrayList<>());
+
+        private Table(List<PropertyBag> points) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            int[] steps = new int[points.size()];
+            for (int k = 0; k < steps.length; k++) {
+                steps[k] = points.get(k).asInt("step");
+                min = Math.min(min, steps[k]);
+                max = Math.max(max, steps[k]);
+            }
+            long span = steps.length == 0 ? 0 : (long) max - min + 1;
+            sparseSteps = span > Math.max(DENSE_SPAN_MIN, (long) DENSE_SPAN_FACTOR * steps.length)
+                    ? Arrays.stream(steps).distinct().sorted().toArray()
+                    : null;
+            int length = sparseSteps == null ? (int) span : sparseSteps.length;
+            minStep = min;
+            defined = new boolean[length];
+            ratio = new double[length];
+            angle = new double[length];
+            angleCos = new double[length];
+            angleSin = new double[length];
+            r = new double[length];
+            x = new double[length];
+            g = new double[length];
+            b = new double[length];
+            for (int k = 0; k < steps.length; k++) {
+                int i = sparseSteps == null ? steps[k] - min : Arrays.binarySearch(sparseSteps, steps[k]);
+                if (defined[i]) {
+                    continue;
+                }
+                PropertyBag point = points.get(k);
+                defined[i] = true;
+                ratio[i] = doublePoint(point, "ratio", 1.0);
+                angle[i] = doublePoint(point, "angle", 0.0);
+                angleCos[i] = Math.cos(Math.toRadians(angle[i]));
+                angleSin[i] = Math.sin(Math.toRadians(angle[i]));
+                r[i] = doublePoint(point, "r", 0.0);
+                x[i] = doublePoint(point, "x", 0.0);
+                g[i] = doublePoint(point, "g", 0.0);
+                b[i] = doublePoint(point, "b", 0.0);
+            }
+            empty = steps.length == 0;
+            differentRatios = differentValues(points, "ratio");
+            differentAngles = differentValues(points, "angle");
+        }
+
+        // Table as written to a snapshot, see ModelSnapshot
+        private Table(ByteBuffer buffer) {
+            minStep = buffer.getInt();
+            int[] steps = ModelSnapshot.readInts(buffer, new int[ModelSnapshot.peekLength(buffer)]);
+            sparseSteps = steps.length == 0 ? null : steps;
+            int length = ModelSnapshot.peekLength(buffer);
+            checkSparseSteps(sparseSteps, length);
+            defined = ModelSnapshot.readBooleans(buffer, new boolean[length]);
+            ratio = ModelSnapshot.readDoubles(buffer, new double[length]);
+            angle = ModelSnapshot.readDoubles(buffer, new double[length]);
+            angleCos = ModelSnapshot.readDoubles(buffer, new double[length]);
+            angleSin = ModelSnapshot.readDoubles(buffer, new double[length]);
+            r = ModelSnapshot.readDoubles(buffer, new double[length]);
+            x = ModelSnapshot.readDoubles(buffer, new double[length]);
+            g = ModelSnapshot.readDoubles(buffer, new double[length]);
+            b = ModelSnapshot.readDoubles(buffer, new double[length]);
+            empty = buffer.get() != 0;
+            differentRatios = buffer.get() != 0;
+            differentAngles = buffer.get() != 0;
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeInt(minStep);
+            ModelSnapshot.writeInts(out, sparseSteps == null ? NO_STEPS : sparseSteps);
+            ModelSnapshot.writeBooleans(out, defined);
+            ModelSnapshot.writeDoubles(out, ratio);
+            ModelSnapshot.writeDoubles(out, angle);
+            ModelSnapshot.writeDoubles(out, angleCos);
+            ModelSnapshot.writeDoubles(out, angleSin);
+            ModelSnapshot.writeDoubles(out, r);
+            ModelSnapshot.writeDoubles(out, x);
+            ModelSnapshot.writeDoubles(out, g);
+            ModelSnapshot.writeDoubles(out, b);
+            out.writeBoolean(empty);
+            out.writeBoolean(differentRatios);
+            out.writeBoolean(differentAngles);
+        }
+
+        // Sparse steps have one point each and are strictly increasing, or the binary search would miss them
+        private static void checkSparseSteps(int[] steps, int length) {
+            if (steps == null) {
+                return;
+            }
+            if (steps.length != length) {
+                throw new IllegalArgumentException("Invalid number of table steps " + steps.length
+                        + ", expected " + length);
+            }
+            for (int k = 1; k < steps.length; k++) {
+                if (steps[k] <= steps[k - 1]) {
+                    throw new IllegalArgumentException("Table steps not sorted at " + k);
+                }
+            }
+        }
+
+        private static double doublePoint(PropertyBag point, String parameter, double defaultValue) {
+            double value = point.asDouble(parameter, defaultValue);
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                return defaultValue;
+            }
+            return value;
+        }
+
+        private static boolean differentValues(List<PropertyBag> points, String parameter) {
+            return points.stream().map(pb -> pb.asDouble(parameter)).mapToDouble(Double::doubleValue).distinct()
+                    .limit(2).count() > 1;
+        }
+
+        // Position of the given step in the point arrays, -1 if the table has no point for it
+        int point(double step) {
+            if (sparseSteps != null) {
+                int s = (int) step;
+                if (s != step) {
+                    return -1;
+                }
+                int i = Arrays.binarySearch(sparseSteps, s);
+                return i < 0 ? -1 : i;
+            }
+            if (step < minStep || step >= (double) minStep + defined.length) {
+                return -1;
+            }
+            int i = (int) step - minStep;
+            if (i != step - minStep || !defined[i]) {
+                return -1;
+            }
+            return i;
+        }
+
+        boolean isEmpty() {
+            return empty;
+        }
+
+        boolean differentRatios() {
+            return differentRatios;
+        }
+
+        boolean differentAngles() {
+            return differentAngles;
+        }
+
+        double ratio(int point) {
+            return ratio[point];
+        }
+
+        double angle(int point) {
+            return angle[point];
+        }
+
+        double angleCos(int point) {
+            return angleCos[point];
+        }
+
+        double angleSin(int point) {
+            return angleSin[point];
+        }
+
+        double r(int point) {
+            return r[point];
+        }
+
+        double x(int point) {
+            return x[point];
+        }
+
+        double g(int point) {
+            return g[point];
+        }
+
+        double b(int point) {
+            return b[point];
+        }
+
+        private final int       minStep;
+        private final int[]     sparseSteps;
+        private final boolean[] defined;
+        private final double[]  ratio;
+        private final double[]  angle;
+        private final double[]  angleCos;
+        private final double[]  angleSin;
+        private final double[]  r;
+        private final double[]  x;
+        private final double[]  g;
+        private final double[]  b;
+        private final boolean   empty;
+        private final boolean   differentRatios;
+        private final boolean   differentAngles;
+    }
+
+    private final Map<String, Table> ratioTables;
+    private final Map<String, Table> phaseTables;
+}
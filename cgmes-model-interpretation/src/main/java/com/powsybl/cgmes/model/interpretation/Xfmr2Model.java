@@ -9,7 +9,6 @@ package com.powsybl.cgmes.model.interpretation;
 
 import org.apache.commons.math3.complex.Complex;
 
-import com.powsybl.cgmes.model.CgmesModel;
 import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr2PhaseAngleClockAlternative;
 import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr2RatioPhaseMappingAlternative;
 import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr2ShuntMappingAlternative;
@@ -18,8 +17,6 @@ import com.powsybl.cgmes.model.interpretation.XfmrUtilities.Ratio0Data;
 import com.powsybl.cgmes.model.interpretation.XfmrUtilities.RatioPhaseData;
 import com.powsybl.cgmes.model.interpretation.XfmrUtilities.TapChangerData;
 import com.powsybl.cgmes.model.interpretation.XfmrUtilities.YShuntData;
-import com.powsybl.triplestore.api.PropertyBag;
-import com.powsybl.triplestore.api.PropertyBags;
 
 /**
  * @author José Antonio Marqués <marquesja at aia.es>
@@ -27,22 +24,25 @@ import com.powsybl.triplestore.api.PropertyBags;
  */
 public class Xfmr2Model {
 
-    public Xfmr2Model(CgmesModel cgmes, PropertyBag transformer, CgmesEquipmentModelMapping config) {
+    Xfmr2Model(TapChangerTables tapChangerTables, CompiledModel model, int transformer,
+            CgmesEquipmentModelMapping config) {
         super();
         this.config = config;
+        this.model = model;
         this.transformer = transformer;
-        this.cgmes = cgmes;
+        this.tapChangerTables = tapChangerTables;
+        phaseTapChangers = model.phaseTapChangers(tapChangerTables);
 
         admittanceMatrix = new BranchAdmittanceMatrix();
 
-        r1 = transformer.asDouble("r1", 0.0);
-        x1 = transformer.asDouble("x1", 0.0);
-        b1 = transformer.asDouble("b1", 0.0);
-        g1 = transformer.asDouble("g1", 0.0);
-        r2 = transformer.asDouble("r2", 0.0);
-        x2 = transformer.asDouble("x2", 0.0);
-        b2 = transformer.asDouble("b2", 0.0);
-        g2 = transformer.asDouble("g2", 0.0);
+        r1 = end(1, CompiledModel.R);
+        x1 = end(1, CompiledModel.X);
+        b1 = end(1, CompiledModel.B);
+        g1 = end(1, CompiledModel.G);
+        r2 = end(2, CompiledModel.R);
+        x2 = end(2, CompiledModel.X);
+        b2 = end(2, CompiledModel.B);
+        g2 = end(2, CompiledModel.G);
     }
 
     public void interpret() {
@@ -70,6 +70,7 @@ public class Xfmr2Model {
         PhaseAngleClockData phaseAngleClockData = getXfmr2PhaseAngleClock(config);
         angle1 += phaseAngleClockData.angle1;
         angle2 += phaseAngleClockData.angle2;
+        ratioPhaseData.rotate(phaseAngleClockData);
 
         detectBranchModel(ysh1, ysh2, a1, angle1, a2, angle2, rtc1RegulatingControl, tc1DifferentRatios,
                 ptc1RegulatingControl, ptc1DifferentAngles, rtc2RegulatingControl,
@@ -83,7 +84,7 @@ public class Xfmr2Model {
         a2 *= a02;
 
         // admittance
-        calculateAdmittance(a1, angle1, ysh1, a2, angle2, ysh2);
+        calculateAdmittance(a1, ysh1, a2, ysh2, ratioPhaseData);
     }
 
     public DetectedBranchModel getBranchModel() {
@@ -94,18 +95,10 @@ public class Xfmr2Model {
         return admittanceMatrix;
     }
 
-    private void calculateAdmittance(double a1, double angleDegrees1, Complex ysh1, double a2, double angleDegrees2,
-            Complex ysh2) {
-        double angle1 = Math.toRadians(angleDegrees1);
-        double angle2 = Math.toRadians(angleDegrees2);
-        Complex aA1 = new Complex(a1 * Math.cos(angle1), a1 * Math.sin(angle1));
-        Complex aA2 = new Complex(a2 * Math.cos(angle2), a2 * Math.sin(angle2));
-
-        Complex z = new Complex(r1 + r2, x1 + x2);
-        admittanceMatrix.y11 = z.reciprocal().add(ysh1).divide(aA1.conjugate().multiply(aA1));
-        admittanceMatrix.y12 = z.reciprocal().negate().divide(aA1.conjugate().multiply(aA2));
-        admittanceMatrix.y21 = z.reciprocal().negate().divide(aA2.conjugate().multiply(aA1));
-        admittanceMatrix.y22 = z.reciprocal().add(ysh2).divide(aA2.conjugate().multiply(aA2));
+    private void calculateAdmittance(double a1, Complex ysh1, double a2, Complex ysh2, RatioPhaseData phaseShifts) {
+        admittanceMatrix.calculateAdmittance(r1 + r2, x1 + x2, a1, phaseShifts.angle1Cos, phaseShifts.angle1Sin,
+                ysh1.getReal(), ysh1.getImaginary(), a2, phaseShifts.angle2Cos, phaseShifts.angle2Sin, ysh2.getReal(),
+                ysh2.getImaginary());
     }
 
     private void detectBranchModel(Complex ysh1, Complex ysh2, double a1, double angle1, double a2, double angle2,
@@ -118,9 +111,9 @@ public class Xfmr2Model {
     }
 
     private Ratio0Data getXfmr2Ratio0(CgmesEquipmentModelMapping config) {
-        double rsvi1 = transformer.asDouble("rsvi1", 0.0);
-        double ratedU1 = transformer.asDouble("ratedU1");
-        double ratedU2 = transformer.asDouble("ratedU2");
+        double rsvi1 = end(1, CompiledModel.RSVI);
+        double ratedU1 = end(1, CompiledModel.RATED_U);
+        double ratedU2 = end(2, CompiledModel.RATED_U);
         Xfmr2RatioPhaseMappingAlternative xfmr2Ratio0 = config.getXfmr2Ratio0();
         Ratio0Data ratio0Data = new Ratio0Data();
         switch (xfmr2Ratio0) {
@@ -155,97 +148,73 @@ public class Xfmr2Model {
     }
 
     private RatioPhaseData getXfmr2RatioPhase(CgmesEquipmentModelMapping config) {
-        double rns1 = transformer.asDouble("rns1", 0.0);
-        double rsvi1 = transformer.asDouble("rsvi1", 0.0);
-        double rstep1 = transformer.asDouble("rstep1", 0.0);
-        double rls1 = transformer.asDouble("rls1", 0.0);
-        double rhs1 = transformer.asDouble("rhs1", 0.0);
-        String ratioTapChangerTableName1 = transformer.get("RatioTapChangerTable1");
-        PropertyBags ratioTapChangerTable1 = null;
-        if (ratioTapChangerTableName1 != null) {
-            ratioTapChangerTable1 = cgmes.ratioTapChangerTable(ratioTapChangerTableName1);
-        }
+        double rns1 = end(1, CompiledModel.RNS);
+        double rsvi1 = end(1, CompiledModel.RSVI);
+        double rstep1 = end(1, CompiledModel.RSTEP);
+        double rls1 = end(1, CompiledModel.RLS);
+        double rhs1 = end(1, CompiledModel.RHS);
+        String ratioTapChangerTableName1 = model.ratioTapChangerTable(transformer, 1);
+        TapChangerTables.Table ratioTapChangerTable1 = tapChangerTables.ratioTable(ratioTapChangerTableName1);
         Xfmr2RatioPhaseMappingAlternative xfmr2RatioPhase = config.getXfmr2RatioPhase();
         RatioPhaseData ratioPhaseData = new RatioPhaseData();
         // ratio end1
         TapChangerData tapChangerData = XfmrUtilities.getRatioTapChanger(rstep1, rns1, rsvi1, ratioTapChangerTable1);
         double rtc1a = tapChangerData.rptca;
         double rtc1A = tapChangerData.rptcA;
+        double rtc1Cos = tapChangerData.rptcACos;
+        double rtc1Sin = tapChangerData.rptcASin;
         boolean rtc1TabularDifferentRatios = tapChangerData.tabularDifferentRatios;
 
         xfmr2ParametersCorrectionEnd1(tapChangerData);
 
-        // phase end1
-        double pns1 = transformer.asDouble("pns1", 0.0);
-        double psvi1 = transformer.asDouble("psvi1", 0.0);
-        double pstep1 = transformer.asDouble("pstep1", 0.0);
-        double pls1 = transformer.asDouble("pls1", 0.0);
-        double phs1 = transformer.asDouble("phs1", 0.0);
-        double xStepMin1 = transformer.asDouble("xStepMin1", 0.0);
-        double xStepMax1 = transformer.asDouble("xStepMax1", 0.0);
-        double pwca1 = transformer.asDouble("pwca1", 0.0);
-        double stepPhaseShiftIncrement1 = transformer.asDouble("pspsi1", 0.0);
-        String ptype1 = transformer.get("ptype1");
-        String phaseTapChangerTableName1 = transformer.get("PhaseTapChangerTable1");
-        PropertyBags phaseTapChangerTable1 = null;
-        if (phaseTapChangerTableName1 != null) {
-            phaseTapChangerTable1 = cgmes.phaseTapChangerTable(phaseTapChangerTableName1);
-        }
-        tapChangerData = XfmrUtilities.getPhaseTapChanger(ptype1, pstep1, pls1, phs1, pns1, psvi1, pwca1,
-                stepPhaseShiftIncrement1, phaseTapChangerTable1);
+        // phase end1, precomputed with its corrected reactance
+        double psvi1 = end(1, CompiledModel.PSVI);
+        double pls1 = end(1, CompiledModel.PLS);
+        double phs1 = end(1, CompiledModel.PHS);
+        double stepPhaseShiftIncrement1 = end(1, CompiledModel.PSPSI);
+        tapChangerData = phaseTapChanger(1);
         double ptc1a = tapChangerData.rptca;
         double ptc1A = tapChangerData.rptcA;
+        double ptc1Cos = tapChangerData.rptcACos;
+        double ptc1Sin = tapChangerData.rptcASin;
         boolean ptc1TabularDifferentRatios = tapChangerData.tabularDifferentRatios;
         boolean ptc1TabularDifferentAngles = tapChangerData.tabularDifferentAngles;
         boolean ptc1AsymmetricalDifferentRatios = tapChangerData.asymmetricalDifferentRatios;
-        x1 = XfmrUtilities.getX(x1, ptc1A, ptype1, pls1, phs1, pns1, psvi1, pwca1, stepPhaseShiftIncrement1, xStepMin1,
-                xStepMax1);
+        x1 = XfmrUtilities.getX(x1, tapChangerData, false);
 
         xfmr2ParametersCorrectionEnd1(tapChangerData);
 
         // ratio end2
-        double rns2 = transformer.asDouble("rns2", 0.0);
-        double rsvi2 = transformer.asDouble("rsvi2", 0.0);
-        double rstep2 = transformer.asDouble("rstep2", 0.0);
-        double rls2 = transformer.asDouble("rls2", 0.0);
-        double rhs2 = transformer.asDouble("rhs2", 0.0);
-        String ratioTapChangerTableName2 = transformer.get("RatioTapChangerTable2");
-        PropertyBags ratioTapChangerTable2 = null;
-        if (ratioTapChangerTableName2 != null) {
-            ratioTapChangerTable2 = cgmes.ratioTapChangerTable(ratioTapChangerTableName2);
-        }
+        double rns2 = end(2, CompiledModel.RNS);
+        double rsvi2 = end(2, CompiledModel.RSVI);
+        double rstep2 = end(2, CompiledModel.RSTEP);
+        double rls2 = end(2, CompiledModel.RLS);
+        double rhs2 = end(2, CompiledModel.RHS);
+        String ratioTapChangerTableName2 = model.ratioTapChangerTable(transformer, 2);
+        TapChangerTables.Table ratioTapChangerTable2 = tapChangerTables.ratioTable(ratioTapChangerTableName2);
         tapChangerData = XfmrUtilities.getRatioTapChanger(rstep2, rns2, rsvi2, ratioTapChangerTable2);
         double rtc2a = tapChangerData.rptca;
         double rtc2A = tapChangerData.rptcA;
+        double rtc2Cos = tapChangerData.rptcACos;
+        double rtc2Sin = tapChangerData.rptcASin;
         boolean rtc2TabularDifferentRatios = tapChangerData.tabularDifferentRatios;
 
         xfmr2ParametersCorrectionEnd2(tapChangerData);
 
-        // phase end2
-        double pns2 = transformer.asDouble("pns2", 0.0);
-        double psvi2 = transformer.asDouble("psvi2", 0.0);
-        double pstep2 = transformer.asDouble("pstep2", 0.0);
-        double pls2 = transformer.asDouble("pls2", 0.0);
-        double phs2 = transformer.asDouble("phs2", 0.0);
-        double xStepMin2 = transformer.asDouble("xStepMin2", 0.0);
-        double xStepMax2 = transformer.asDouble("xStepMax2", 0.0);
-        double pwca2 = transformer.asDouble("pwca2", 0.0);
-        double stepPhaseShiftIncrement2 = transformer.asDouble("pspsi2", 0.0);
-        String ptype2 = transformer.get("ptype2");
-        String phaseTapChangerTableName2 = transformer.get("PhaseTapChangerTable2");
-        PropertyBags phaseTapChangerTable2 = null;
-        if (phaseTapChangerTableName2 != null) {
-            phaseTapChangerTable2 = cgmes.phaseTapChangerTable(phaseTapChangerTableName2);
-        }
-        tapChangerData = XfmrUtilities.getPhaseTapChanger(ptype2, pstep2, pls2, phs2, pns2, psvi2, pwca2,
-                stepPhaseShiftIncrement2, phaseTapChangerTable2);
+        // phase end2, precomputed with its corrected reactance
+        double psvi2 = end(2, CompiledModel.PSVI);
+        double pls2 = end(2, CompiledModel.PLS);
+        double phs2 = end(2, CompiledModel.PHS);
+        double stepPhaseShiftIncrement2 = end(2, CompiledModel.PSPSI);
+        tapChangerData = phaseTapChanger(2);
         double ptc2a = tapChangerData.rptca;
         double ptc2A = getXfmr2Ptc2Negate(config, tapChangerData.rptcA);
+        double ptc2Cos = tapChangerData.rptcACos;
+        double ptc2Sin = getXfmr2Ptc2Negate(config, tapChangerData.rptcASin);
         boolean ptc2TabularDifferentRatios = tapChangerData.tabularDifferentRatios;
         boolean ptc2TabularDifferentAngles = tapChangerData.tabularDifferentAngles;
         boolean ptc2AsymmetricalDifferentRatios = tapChangerData.asymmetricalDifferentRatios;
-        x2 = XfmrUtilities.getX(x2, ptc2A, ptype2, pls2, phs2, pns2, psvi2, pwca2, stepPhaseShiftIncrement2, xStepMin2,
-                xStepMax2);
+        x2 = XfmrUtilities.getX(x2, tapChangerData, config.isXfmr2Ptc2Negate());
 
         xfmr2ParametersCorrectionEnd2(tapChangerData);
 
@@ -258,15 +227,25 @@ public class Xfmr2Model {
         boolean ptc2DifferentAngles = XfmrUtilities.getXfmrDifferentAngles(psvi2, stepPhaseShiftIncrement2, pls2, phs2,
                 ptc2TabularDifferentAngles);
 
-        boolean rtc1RegulatingControl = transformer.asBoolean("ratioRegulatingControlEnabled1", false);
-        boolean ptc1RegulatingControl = transformer.asBoolean("phaseRegulatingControlEnabled1", false);
-        boolean rtc2RegulatingControl = transformer.asBoolean("ratioRegulatingControlEnabled2", false);
-        boolean ptc2RegulatingControl = transformer.asBoolean("phaseRegulatingControlEnabled2", false);
+        boolean rtc1RegulatingControl = model.ratioRegulatingControl(transformer, 1);
+        boolean ptc1RegulatingControl = model.phaseRegulatingControl(transformer, 1);
+        boolean rtc2RegulatingControl = model.ratioRegulatingControl(transformer, 2);
+        boolean ptc2RegulatingControl = model.phaseRegulatingControl(transformer, 2);
+
+        // Phasors of the angles at each end and of their sum
+        double tc1Cos = XfmrUtilities.rotatedCos(rtc1Cos, rtc1Sin, ptc1Cos, ptc1Sin);
+        double tc1Sin = XfmrUtilities.rotatedSin(rtc1Cos, rtc1Sin, ptc1Cos, ptc1Sin);
+        double tc2Cos = XfmrUtilities.rotatedCos(rtc2Cos, rtc2Sin, ptc2Cos, ptc2Sin);
+        double tc2Sin = XfmrUtilities.rotatedSin(rtc2Cos, rtc2Sin, ptc2Cos, ptc2Sin);
+        double tcCos = XfmrUtilities.rotatedCos(tc1Cos, tc1Sin, tc2Cos, tc2Sin);
+        double tcSin = XfmrUtilities.rotatedSin(tc1Cos, tc1Sin, tc2Cos, tc2Sin);
 
         switch (xfmr2RatioPhase) {
             case END1:
                 ratioPhaseData.a1 = rtc1a * ptc1a * rtc2a * ptc2a;
                 ratioPhaseData.angle1 = rtc1A + ptc1A + rtc2A + ptc2A;
+                ratioPhaseData.angle1Cos = tcCos;
+                ratioPhaseData.angle1Sin = tcSin;
                 ratioPhaseData.tc1DifferentRatios = tc1DifferentRatios || tc2DifferentRatios;
                 ratioPhaseData.ptc1DifferentAngles = ptc1DifferentAngles || ptc2DifferentAngles;
                 ratioPhaseData.rtc1RegulatingControl = rtc1RegulatingControl || rtc2RegulatingControl;
@@ -275,6 +254,8 @@ public class Xfmr2Model {
             case END2:
                 ratioPhaseData.a2 = rtc1a * ptc1a * rtc2a * ptc2a;
                 ratioPhaseData.angle2 = rtc1A + ptc1A + rtc2A + ptc2A;
+                ratioPhaseData.angle2Cos = tcCos;
+                ratioPhaseData.angle2Sin = tcSin;
                 ratioPhaseData.tc2DifferentRatios = tc1DifferentRatios || tc2DifferentRatios;
                 ratioPhaseData.ptc2DifferentAngles = ptc1DifferentAngles || ptc2DifferentAngles;
                 ratioPhaseData.rtc2RegulatingControl = rtc1RegulatingControl || rtc2RegulatingControl;
@@ -283,8 +264,12 @@ public class Xfmr2Model {
             case END1_END2:
                 ratioPhaseData.a1 = rtc1a * ptc1a;
                 ratioPhaseData.angle1 = rtc1A + ptc1A;
+                ratioPhaseData.angle1Cos = tc1Cos;
+                ratioPhaseData.angle1Sin = tc1Sin;
                 ratioPhaseData.a2 = rtc2a * ptc2a;
                 ratioPhaseData.angle2 = rtc2A + ptc2A;
+                ratioPhaseData.angle2Cos = tc2Cos;
+                ratioPhaseData.angle2Sin = tc2Sin;
                 ratioPhaseData.tc1DifferentRatios = tc1DifferentRatios;
                 ratioPhaseData.ptc1DifferentAngles = ptc1DifferentAngles;
                 ratioPhaseData.rtc1RegulatingControl = rtc1RegulatingControl;
@@ -298,6 +283,8 @@ public class Xfmr2Model {
                 if (x1 == 0.0) {
                     ratioPhaseData.a1 = rtc1a * ptc1a * rtc2a * ptc2a;
                     ratioPhaseData.angle1 = rtc1A + ptc1A + rtc2A + ptc2A;
+                    ratioPhaseData.angle1Cos = tcCos;
+                    ratioPhaseData.angle1Sin = tcSin;
                     ratioPhaseData.tc1DifferentRatios = tc1DifferentRatios || tc2DifferentRatios;
                     ratioPhaseData.ptc1DifferentAngles = ptc1DifferentAngles || ptc2DifferentAngles;
                     ratioPhaseData.rtc1RegulatingControl = rtc1RegulatingControl || rtc2RegulatingControl;
@@ -305,6 +292,8 @@ public class Xfmr2Model {
                 } else {
                     ratioPhaseData.a2 = rtc1a * ptc1a * rtc2a * ptc2a;
                     ratioPhaseData.angle2 = rtc1A + ptc1A + rtc2A + ptc2A;
+                    ratioPhaseData.angle2Cos = tcCos;
+                    ratioPhaseData.angle2Sin = tcSin;
                     ratioPhaseData.tc2DifferentRatios = tc1DifferentRatios || tc2DifferentRatios;
                     ratioPhaseData.ptc2DifferentAngles = ptc1DifferentAngles || ptc2DifferentAngles;
                     ratioPhaseData.rtc2RegulatingControl = rtc1RegulatingControl || rtc2RegulatingControl;
@@ -347,21 +336,26 @@ public class Xfmr2Model {
     }
 
     private PhaseAngleClockData getXfmr2PhaseAngleClock(CgmesEquipmentModelMapping config) {
-        int pac1 = transformer.asInt("pac1", 0);
-        int pac2 = transformer.asInt("pac2", 0);
+        int pac1 = model.phaseAngleClock(transformer, 1);
+        int pac2 = model.phaseAngleClock(transformer, 2);
         PhaseAngleClockData phaseAngleClockData = new PhaseAngleClockData();
         Xfmr2PhaseAngleClockAlternative xfmr2PhaseAngleClock = config.getXfmr2PhaseAngleClock();
         switch (xfmr2PhaseAngleClock) {
             case END1_END2:
                 if (pac1 != 0) {
                     phaseAngleClockData.angle1 = XfmrUtilities.getPhaseAngleClock(pac1);
+                    phaseAngleClockData.angle1Cos = XfmrUtilities.getPhaseAngleClockCos(pac1);
+                    phaseAngleClockData.angle1Sin = XfmrUtilities.getPhaseAngleClockSin(pac1);
                 }
                 if (pac2 != 0) {
                     phaseAngleClockData.angle2 = XfmrUtilities.getPhaseAngleClock(pac2);
+                    phaseAngleClockData.angle2Cos = XfmrUtilities.getPhaseAngleClockCos(pac2);
+                    phaseAngleClockData.angle2Sin = XfmrUtilities.getPhaseAngleClockSin(pac2);
                 }
 
                 if (config.isXfmr2Pac2Negate()) {
                     phaseAngleClockData.angle2 = -phaseAngleClockData.angle2;
+                    phaseAngleClockData.angle2Sin = -phaseAngleClockData.angle2Sin;
                 }
                 break;
         }
@@ -424,9 +418,19 @@ public class Xfmr2Model {
         }
     }
 
+    private double end(int end, int field) {
+        return model.transformerEnd(transformer, end, field);
+    }
+
+    private TapChangerData phaseTapChanger(int end) {
+        return phaseTapChangers[transformer * 3 + end - 1];
+    }
+
     private final CgmesEquipmentModelMapping config;
-    private final CgmesModel                 cgmes;
-    private final PropertyBag                transformer;
+    private final TapChangerTables           tapChangerTables;
+    private final TapChangerData[]           phaseTapChangers;
+    private final CompiledModel              model;
+    private final int                        transformer;
 
     private double                           r1;
     private double                           x1;
@@ -9,7 +9,6 @@ package com.powsybl.cgmes.model.interpretation;
 
 import org.apache.commons.math3.complex.Complex;
 
-import com.powsybl.cgmes.model.CgmesModel;
 import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr3PhaseAngleClockAlternative;
 import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr3RatioPhaseMappingAlternative;
 import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr3ShuntMappingAlternative;
@@ -18,8 +17,6 @@ import com.powsybl.cgmes.model.interpretation.XfmrUtilities.Ratio0Data;
 import com.powsybl.cgmes.model.interpretation.XfmrUtilities.RatioPhaseData;
 import com.powsybl.cgmes.model.interpretation.XfmrUtilities.TapChangerData;
 import com.powsybl.cgmes.model.interpretation.XfmrUtilities.YShuntData;
-import com.powsybl.triplestore.api.PropertyBag;
-import com.powsybl.triplestore.api.PropertyBags;
 
 /**
  * @author José Antonio Marqués <marquesja at aia.es>
@@ -27,30 +24,33 @@ import com.powsybl.triplestore.api.PropertyBags;
  */
 public class Xfmr3Model {
 
-    public Xfmr3Model(CgmesModel cgmes, PropertyBag transformer, CgmesEquipmentModelMapping config) {
+    Xfmr3Model(TapChangerTables tapChangerTables, CompiledModel model, int transformer,
+            CgmesEquipmentModelMapping config) {
         super();
         this.config = config;
+        this.model = model;
         this.transformer = transformer;
-        this.cgmes = cgmes;
+        this.tapChangerTables = tapChangerTables;
+        phaseTapChangers = model.phaseTapChangers(tapChangerTables);
 
         admittanceMatrixEnd1 = new BranchAdmittanceMatrix();
         admittanceMatrixEnd2 = new BranchAdmittanceMatrix();
         admittanceMatrixEnd3 = new BranchAdmittanceMatrix();
 
-        r1 = transformer.asDouble("r1", 0.0);
-        x1 = transformer.asDouble("x1", 0.0);
-        b1 = transformer.asDouble("b1", 0.0);
-        g1 = transformer.asDouble("g1", 0.0);
+        r1 = end(1, CompiledModel.R);
+        x1 = end(1, CompiledModel.X);
+        b1 = end(1, CompiledModel.B);
+        g1 = end(1, CompiledModel.G);
 
-        r2 = transformer.asDouble("r2", 0.0);
-        x2 = transformer.asDouble("x2", 0.0);
-        b2 = transformer.asDouble("b2", 0.0);
-        g2 = transformer.asDouble("g2", 0.0);
+        r2 = end(2, CompiledModel.R);
+        x2 = end(2, CompiledModel.X);
+        b2 = end(2, CompiledModel.B);
+        g2 = end(2, CompiledModel.G);
 
-        r3 = transformer.asDouble("r3", 0.0);
-        x3 = transformer.asDouble("x3", 0.0);
-        b3 = transformer.asDouble("b3", 0.0);
-        g3 = transformer.asDouble("g3", 0.0);
+        r3 = end(3, CompiledModel.R);
+        x3 = end(3, CompiledModel.X);
+        b3 = end(3, CompiledModel.B);
+        g3 = end(3, CompiledModel.G);
     }
 
     public void interpret() {
@@ -112,6 +112,9 @@ public class Xfmr3Model {
         angle22 += phaseAngleClockData.end2.angle2;
         angle31 += phaseAngleClockData.end3.angle1;
         angle32 += phaseAngleClockData.end3.angle2;
+        ratioPhaseData.end1.rotate(phaseAngleClockData.end1);
+        ratioPhaseData.end2.rotate(phaseAngleClockData.end2);
+        ratioPhaseData.end3.rotate(phaseAngleClockData.end3);
 
         detectBranchModel(ysh11, ysh12, a11, angle11, a12, angle12,
                 rtc11RegulatingControl, tc11DifferentRatios, ptc11RegulatingControl, ptc11DifferentAngles,
@@ -140,8 +143,7 @@ public class Xfmr3Model {
         a32 *= a032;
 
         // admittance
-        calculateAdmittance(a11, angle11, ysh11, a12, angle12, ysh12, a21, angle21, ysh21, a22, angle22, ysh22, a31,
-                angle31, ysh31, a32, angle32, ysh32);
+        calculateAdmittance(a11, ysh11, a12, ysh12, a21, ysh21, a22, ysh22, a31, ysh31, a32, ysh32, ratioPhaseData);
     }
 
     public DetectedBranchModel getBranchModelEnd1() {
@@ -156,41 +158,19 @@ public class Xfmr3Model {
         return branchModelEnd3;
     }
 
-    private void calculateAdmittance(double a11, double angleDegrees11, Complex ysh11, double a12,
-            double angleDegrees12,
-            Complex ysh12, double a21, double angleDegrees21, Complex ysh21, double a22, double angleDegrees22,
-            Complex ysh22,
-            double a31, double angleDegrees31, Complex ysh31, double a32, double angleDegrees32, Complex ysh32) {
-        double angle11 = Math.toRadians(angleDegrees11);
-        double angle12 = Math.toRadians(angleDegrees12);
-        double angle21 = Math.toRadians(angleDegrees21);
-        double angle22 = Math.toRadians(angleDegrees22);
-        double angle31 = Math.toRadians(angleDegrees31);
-        double angle32 = Math.toRadians(angleDegrees32);
-        Complex aA11 = new Complex(a11 * Math.cos(angle11), a11 * Math.sin(angle11));
-        Complex aA12 = new Complex(a12 * Math.cos(angle12), a12 * Math.sin(angle12));
-        Complex aA21 = new Complex(a21 * Math.cos(angle21), a21 * Math.sin(angle21));
-        Complex aA22 = new Complex(a22 * Math.cos(angle22), a22 * Math.sin(angle22));
-        Complex aA31 = new Complex(a31 * Math.cos(angle31), a31 * Math.sin(angle31));
-        Complex aA32 = new Complex(a32 * Math.cos(angle32), a32 * Math.sin(angle32));
-
-        Complex z1 = new Complex(r1, x1);
-        admittanceMatrixEnd1.y11 = z1.reciprocal().add(ysh11).divide(aA11.conjugate().multiply(aA11));
-        admittanceMatrixEnd1.y12 = z1.reciprocal().negate().divide(aA11.conjugate().multiply(aA12));
-        admittanceMatrixEnd1.y21 = z1.reciprocal().negate().divide(aA12.conjugate().multiply(aA11));
-        admittanceMatrixEnd1.y22 = z1.reciprocal().add(ysh12).divide(aA12.conjugate().multiply(aA12));
-
-        Complex z2 = new Complex(r2, x2);
-        admittanceMatrixEnd2.y11 = z2.reciprocal().add(ysh21).divide(aA21.conjugate().multiply(aA21));
-        admittanceMatrixEnd2.y12 = z2.reciprocal().negate().divide(aA21.conjugate().multiply(aA22));
-        admittanceMatrixEnd2.y21 = z2.reciprocal().negate().divide(aA22.conjugate().multiply(aA21));
-        admittanceMatrixEnd2.y22 = z2.reciprocal().add(ysh22).divide(aA22.conjugate().multiply(aA22));
-
-        Complex z3 = new Complex(r3, x3);
-        admittanceMatrixEnd3.y11 = z3.reciprocal().add(ysh31).divide(aA31.conjugate().multiply(aA31));
-        admittanceMatrixEnd3.y12 = z3.reciprocal().negate().divide(aA31.conjugate().multiply(aA32));
-        admittanceMatrixEnd3.y21 = z3.reciprocal().negate().divide(aA32.conjugate().multiply(aA31));
-        admittanceMatrixEnd3.y22 = z3.reciprocal().add(ysh32).divide(aA32.conjugate().multiply(aA32));
+    private void calculateAdmittance(double a11, Complex ysh11, double a12, Complex ysh12, double a21, Complex ysh21,
+            double a22, Complex ysh22, double a31, Complex ysh31, double a32, Complex ysh32,
+            Xfmr3RatioPhaseData phaseShifts) {
+        calculateAdmittance(admittanceMatrixEnd1, r1, x1, a11, ysh11, a12, ysh12, phaseShifts.end1);
+        calculateAdmittance(admittanceMatrixEnd2, r2, x2, a21, ysh21, a22, ysh22, phaseShifts.end2);
+        calculateAdmittance(admittanceMatrixEnd3, r3, x3, a31, ysh31, a32, ysh32, phaseShifts.end3);
+    }
+
+    private static void calculateAdmittance(BranchAdmittanceMatrix admittanceMatrix, double r, double x, double a1,
+            Complex ysh1, double a2, Complex ysh2, RatioPhaseData phaseShifts) {
+        admittanceMatrix.calculateAdmittance(r, x, a1, phaseShifts.angle1Cos, phaseShifts.angle1Sin, ysh1.getReal(),
+                ysh1.getImaginary(), a2, phaseShifts.angle2Cos, phaseShifts.angle2Sin, ysh2.getReal(),
+                ysh2.getImaginary());
     }
 
     private void detectBranchModel(Complex ysh11, Complex ysh12, double a11, double angle11, double a12, double angle12,
@@ -234,9 +214,9 @@ public class Xfmr3Model {
     }
 
     private Xfmr3Ratio0Data getXfmr3Ratio0(CgmesEquipmentModelMapping config, double ratedU0) {
-        double ratedU1 = transformer.asDouble("ratedU1");
-        double ratedU2 = transformer.asDouble("ratedU2");
-        double ratedU3 = transformer.asDouble("ratedU3");
+        double ratedU1 = end(1, CompiledModel.RATED_U);
+        double ratedU2 = end(2, CompiledModel.RATED_U);
+        double ratedU3 = end(3, CompiledModel.RATED_U);
         Xfmr3Ratio0Data ratio0Data = new Xfmr3Ratio0Data();
         Xfmr3RatioPhaseMappingAlternative xfmr3Ratio0StarBusSide = config.getXfmr3Ratio0StarBusSide();
         switch (xfmr3Ratio0StarBusSide) {
@@ -264,140 +244,104 @@ public class Xfmr3Model {
 
         Xfmr3RatioPhaseData ratioPhaseData = new Xfmr3RatioPhaseData();
         // ratio end1
-        double rns1 = transformer.asDouble("rns1", 0.0);
-        double rsvi1 = transformer.asDouble("rsvi1", 0.0);
-        double rstep1 = transformer.asDouble("rstep1", 0.0);
-        double rls1 = transformer.asDouble("rls1", 0.0);
-        double rhs1 = transformer.asDouble("rhs1", 0.0);
-        String ratioTapChangerTableName1 = transformer.get("RatioTapChangerTable1");
-        PropertyBags ratioTapChangerTable1 = null;
-        if (ratioTapChangerTableName1 != null) {
-            ratioTapChangerTable1 = cgmes.ratioTapChangerTable(ratioTapChangerTableName1);
-        }
+        double rns1 = end(1, CompiledModel.RNS);
+        double rsvi1 = end(1, CompiledModel.RSVI);
+        double rstep1 = end(1, CompiledModel.RSTEP);
+        double rls1 = end(1, CompiledModel.RLS);
+        double rhs1 = end(1, CompiledModel.RHS);
+        String ratioTapChangerTableName1 = model.ratioTapChangerTable(transformer, 1);
+        TapChangerTables.Table ratioTapChangerTable1 = tapChangerTables.ratioTable(ratioTapChangerTableName1);
         TapChangerData tapChangerData = XfmrUtilities.getRatioTapChanger(rstep1, rns1, rsvi1, ratioTapChangerTable1);
         double rtc1a = tapChangerData.rptca;
         double rtc1A = tapChangerData.rptcA;
+        double rtc1Cos = tapChangerData.rptcACos;
+        double rtc1Sin = tapChangerData.rptcASin;
         boolean rtc1TabularDifferentRatios = tapChangerData.tabularDifferentRatios;
 
         xfmr3ParametersCorrectionEnd1(tapChangerData);
 
-        // phase end1
-        double pns1 = transformer.asDouble("pns1", 0.0);
-        double psvi1 = transformer.asDouble("psvi1", 0.0);
-        double pstep1 = transformer.asDouble("pstep1", 0.0);
-        double pls1 = transformer.asDouble("pls1", 0.0);
-        double phs1 = transformer.asDouble("phs1", 0.0);
-        double xStepMin1 = transformer.asDouble("xStepMin1", 0.0);
-        double xStepMax1 = transformer.asDouble("xStepMax1", 0.0);
-        double pwca1 = transformer.asDouble("pwca1", 0.0);
-        double stepPhaseShiftIncrement1 = transformer.asDouble("stepPhaseShiftIncrement1", 0.0);
-        String ptype1 = transformer.get("ptype1");
-        String phaseTapChangerTableName1 = transformer.get("PhaseTapChangerTable1");
-        PropertyBags phaseTapChangerTable1 = null;
-        if (phaseTapChangerTableName1 != null) {
-            phaseTapChangerTable1 = cgmes.phaseTapChangerTable(phaseTapChangerTableName1);
-        }
-        tapChangerData = XfmrUtilities.getPhaseTapChanger(ptype1, pstep1, pls1, phs1, pns1, psvi1, pwca1,
-                stepPhaseShiftIncrement1, phaseTapChangerTable1);
+        // phase end1, precomputed with its corrected reactance
+        double psvi1 = end(1, CompiledModel.PSVI);
+        double pls1 = end(1, CompiledModel.PLS);
+        double phs1 = end(1, CompiledModel.PHS);
+        double stepPhaseShiftIncrement1 = end(1, CompiledModel.STEP_PHASE_SHIFT_INCREMENT);
+        tapChangerData = phaseTapChanger(1);
         double ptc1a = tapChangerData.rptca;
         double ptc1A = tapChangerData.rptcA;
+        double ptc1Cos = tapChangerData.rptcACos;
+        double ptc1Sin = tapChangerData.rptcASin;
         boolean ptc1TabularDifferentRatios = tapChangerData.tabularDifferentRatios;
         boolean ptc1TabularDifferentAngles = tapChangerData.tabularDifferentAngles;
         boolean ptc1AsymmetricalDifferentRatios = tapChangerData.asymmetricalDifferentRatios;
-        x1 = XfmrUtilities.getX(x1, ptc1A, ptype1, pls1, phs1, pns1, psvi1, pwca1, stepPhaseShiftIncrement1, xStepMin1,
-                xStepMax1);
+        x1 = XfmrUtilities.getX(x1, tapChangerData, false);
 
         xfmr3ParametersCorrectionEnd1(tapChangerData);
 
         // ratio end2
-        double rns2 = transformer.asDouble("rns2", 0.0);
-        double rsvi2 = transformer.asDouble("rsvi2", 0.0);
-        double rstep2 = transformer.asDouble("rstep2", 0.0);
-        double rls2 = transformer.asDouble("rls2", 0.0);
-        double rhs2 = transformer.asDouble("rhs2", 0.0);
-        String ratioTapChangerTableName2 = transformer.get("RatioTapChangerTable2");
-        PropertyBags ratioTapChangerTable2 = null;
-        if (ratioTapChangerTableName2 != null) {
-            ratioTapChangerTable2 = cgmes.ratioTapChangerTable(ratioTapChangerTableName2);
-        }
+        double rns2 = end(2, CompiledModel.RNS);
+        double rsvi2 = end(2, CompiledModel.RSVI);
+        double rstep2 = end(2, CompiledModel.RSTEP);
+        double rls2 = end(2, CompiledModel.RLS);
+        double rhs2 = end(2, CompiledModel.RHS);
+        String ratioTapChangerTableName2 = model.ratioTapChangerTable(transformer, 2);
+        TapChangerTables.Table ratioTapChangerTable2 = tapChangerTables.ratioTable(ratioTapChangerTableName2);
         tapChangerData = XfmrUtilities.getRatioTapChanger(rstep2, rns2, rsvi2, ratioTapChangerTable2);
         double rtc2a = tapChangerData.rptca;
         double rtc2A = tapChangerData.rptcA;
+        double rtc2Cos = tapChangerData.rptcACos;
+        double rtc2Sin = tapChangerData.rptcASin;
         boolean rtc2TabularDifferentRatios = tapChangerData.tabularDifferentRatios;
 
         xfmr3ParametersCorrectionEnd2(tapChangerData);
 
-        // phase end2
-        double pns2 = transformer.asDouble("pns2", 0.0);
-        double psvi2 = transformer.asDouble("psvi2", 0.0);
-        double pstep2 = transformer.asDouble("pstep2", 0.0);
-        double pls2 = transformer.asDouble("pls2", 0.0);
-        double phs2 = transformer.asDouble("phs2", 0.0);
-        double xStepMin2 = transformer.asDouble("xStepMin2", 0.0);
-        double xStepMax2 = transformer.asDouble("xStepMax2", 0.0);
-        double pwca2 = transformer.asDouble("pwca2", 0.0);
-        double stepPhaseShiftIncrement2 = transformer.asDouble("stepPhaseShiftIncrement2", 0.0);
-        String ptype2 = transformer.get("ptype2");
-        String phaseTapChangerTableName2 = transformer.get("PhaseTapChangerTable2");
-        PropertyBags phaseTapChangerTable2 = null;
-        if (phaseTapChangerTableName2 != null) {
-            phaseTapChangerTable2 = cgmes.phaseTapChangerTable(phaseTapChangerTableName2);
-        }
-        tapChangerData = XfmrUtilities.getPhaseTapChanger(ptype2, pstep2, pls2, phs2, pns2, psvi2, pwca2,
-                stepPhaseShiftIncrement2, phaseTapChangerTable2);
+        // phase end2, precomputed with its corrected reactance
+        double psvi2 = end(2, CompiledModel.PSVI);
+        double pls2 = end(2, CompiledModel.PLS);
+        double phs2 = end(2, CompiledModel.PHS);
+        double stepPhaseShiftIncrement2 = end(2, CompiledModel.STEP_PHASE_SHIFT_INCREMENT);
+        tapChangerData = phaseTapChanger(2);
         double ptc2a = tapChangerData.rptca;
         double ptc2A = tapChangerData.rptcA;
+        double ptc2Cos = tapChangerData.rptcACos;
+        double ptc2Sin = tapChangerData.rptcASin;
         boolean ptc2TabularDifferentRatios = tapChangerData.tabularDifferentRatios;
         boolean ptc2TabularDifferentAngles = tapChangerData.tabularDifferentAngles;
         boolean ptc2AsymmetricalDifferentRatios = tapChangerData.asymmetricalDifferentRatios;
-        x2 = XfmrUtilities.getX(x2, ptc2A, ptype2, pls2, phs2, pns2, psvi2, pwca2, stepPhaseShiftIncrement2, xStepMin2,
-                xStepMax2);
+        x2 = XfmrUtilities.getX(x2, tapChangerData, false);
 
         xfmr3ParametersCorrectionEnd2(tapChangerData);
 
         // ratio end3
-        double rns3 = transformer.asDouble("rns3", 0.0);
-        double rsvi3 = transformer.asDouble("rsvi3", 0.0);
-        double rstep3 = transformer.asDouble("rstep3", 0.0);
-        double rls3 = transformer.asDouble("rls3", 0.0);
-        double rhs3 = transformer.asDouble("rhs3", 0.0);
-        String ratioTapChangerTableName3 = transformer.get("RatioTapChangerTable3");
-        PropertyBags ratioTapChangerTable3 = null;
-        if (ratioTapChangerTableName3 != null) {
-            ratioTapChangerTable3 = cgmes.ratioTapChangerTable(ratioTapChangerTableName3);
-        }
+        double rns3 = end(3, CompiledModel.RNS);
+        double rsvi3 = end(3, CompiledModel.RSVI);
+        double rstep3 = end(3, CompiledModel.RSTEP);
+        double rls3 = end(3, CompiledModel.RLS);
+        double rhs3 = end(3, CompiledModel.RHS);
+        String ratioTapChangerTableName3 = model.ratioTapChangerTable(transformer, 3);
+        TapChangerTables.Table ratioTapChangerTable3 = tapChangerTables.ratioTable(ratioTapChangerTableName3);
         tapChangerData = XfmrUtilities.getRatioTapChanger(rstep3, rns3, rsvi3, ratioTapChangerTable3);
         double rtc3a = tapChangerData.rptca;
         double rtc3A = tapChangerData.rptcA;
+        double rtc3Cos = tapChangerData.rptcACos;
+        double rtc3Sin = tapChangerData.rptcASin;
         boolean rtc3TabularDifferentRatios = tapChangerData.tabularDifferentRatios;
 
         xfmr3ParametersCorrectionEnd3(tapChangerData);
 
-        // phase end3
-        double pns3 = transformer.asDouble("pns3", 0.0);
-        double psvi3 = transformer.asDouble("psvi3", 0.0);
-        double pstep3 = transformer.asDouble("pstep3", 0.0);
-        double pls3 = transformer.asDouble("pls3", 0.0);
-        double phs3 = transformer.asDouble("phs3", 0.0);
-        double xStepMin3 = transformer.asDouble("xStepMin3", 0.0);
-        double xStepMax3 = transformer.asDouble("xStepMax3", 0.0);
-        double pwca3 = transformer.asDouble("pwca3", 0.0);
-        double stepPhaseShiftIncrement3 = transformer.asDouble("stepPhaseShiftIncrement3", 0.0);
-        String ptype3 = transformer.get("ptype3");
-        String phaseTapChangerTableName3 = transformer.get("PhaseTapChangerTable3");
-        PropertyBags phaseTapChangerTable3 = null;
-        if (phaseTapChangerTableName3 != null) {
-            phaseTapChangerTable3 = cgmes.phaseTapChangerTable(phaseTapChangerTableName3);
-        }
-        tapChangerData = XfmrUtilities.getPhaseTapChanger(ptype3, pstep3, pls3, phs3, pns3, psvi3, pwca3,
-                stepPhaseShiftIncrement3, phaseTapChangerTable3);
+        // phase end3, precomputed with its corrected reactance
+        double psvi3 = end(3, CompiledModel.PSVI);
+        double pls3 = end(3, CompiledModel.PLS);
+        double phs3 = end(3, CompiledModel.PHS);
+        double stepPhaseShiftIncrement3 = end(3, CompiledModel.STEP_PHASE_SHIFT_INCREMENT);
+        tapChangerData = phaseTapChanger(3);
         double ptc3a = tapChangerData.rptca;
         double ptc3A = tapChangerData.rptcA;
+        double ptc3Cos = tapChangerData.rptcACos;
+        double ptc3Sin = tapChangerData.rptcASin;
         boolean ptc3TabularDifferentRatios = tapChangerData.tabularDifferentRatios;
         boolean ptc3TabularDifferentAngles = tapChangerData.tabularDifferentAngles;
         boolean ptc3AsymmetricalDifferentRatios = tapChangerData.asymmetricalDifferentRatios;
-        x3 = XfmrUtilities.getX(x3, ptc3A, ptype3, pls3, phs3, pns3, psvi3, pwca3, stepPhaseShiftIncrement3, xStepMin3,
-                xStepMax3);
+        x3 = XfmrUtilities.getX(x3, tapChangerData, false);
 
         xfmr3ParametersCorrectionEnd3(tapChangerData);
 
@@ -414,30 +358,44 @@ public class Xfmr3Model {
         boolean ptc3DifferentAngles = XfmrUtilities.getXfmrDifferentAngles(psvi3, stepPhaseShiftIncrement3, pls3, phs3,
                 ptc3TabularDifferentAngles);
 
-        boolean rtc1RegulatingControl = transformer.asBoolean("ratioRegulatingControlEnabled1", false);
-        boolean ptc1RegulatingControl = transformer.asBoolean("phaseRegulatingControlEnabled1", false);
-        boolean rtc2RegulatingControl = transformer.asBoolean("ratioRegulatingControlEnabled2", false);
-        boolean ptc2RegulatingControl = transformer.asBoolean("phaseRegulatingControlEnabled2", false);
-        boolean rtc3RegulatingControl = transformer.asBoolean("ratioRegulatingControlEnabled3", false);
-        boolean ptc3RegulatingControl = transformer.asBoolean("phaseRegulatingControlEnabled3", false);
+        boolean rtc1RegulatingControl = model.ratioRegulatingControl(transformer, 1);
+        boolean ptc1RegulatingControl = model.phaseRegulatingControl(transformer, 1);
+        boolean rtc2RegulatingControl = model.ratioRegulatingControl(transformer, 2);
+        boolean ptc2RegulatingControl = model.phaseRegulatingControl(transformer, 2);
+        boolean rtc3RegulatingControl = model.ratioRegulatingControl(transformer, 3);
+        boolean ptc3RegulatingControl = model.phaseRegulatingControl(transformer, 3);
+
+        // Phasors of the angles at each end
+        double tc1Cos = XfmrUtilities.rotatedCos(rtc1Cos, rtc1Sin, ptc1Cos, ptc1Sin);
+        double tc1Sin = XfmrUtilities.rotatedSin(rtc1Cos, rtc1Sin, ptc1Cos, ptc1Sin);
+        double tc2Cos = XfmrUtilities.rotatedCos(rtc2Cos, rtc2Sin, ptc2Cos, ptc2Sin);
+        double tc2Sin = XfmrUtilities.rotatedSin(rtc2Cos, rtc2Sin, ptc2Cos, ptc2Sin);
+        double tc3Cos = XfmrUtilities.rotatedCos(rtc3Cos, rtc3Sin, ptc3Cos, ptc3Sin);
+        double tc3Sin = XfmrUtilities.rotatedSin(rtc3Cos, rtc3Sin, ptc3Cos, ptc3Sin);
 
         Xfmr3RatioPhaseMappingAlternative xfmr3RatioPhaseStarBusSide = config.getXfmr3RatioPhaseStarBusSide();
         switch (xfmr3RatioPhaseStarBusSide) {
             case STAR_BUS_SIDE:
                 ratioPhaseData.end1.a2 = rtc1a * ptc1a;
                 ratioPhaseData.end1.angle2 = rtc1A + ptc1A;
+                ratioPhaseData.end1.angle2Cos = tc1Cos;
+                ratioPhaseData.end1.angle2Sin = tc1Sin;
                 ratioPhaseData.end1.tc2DifferentRatios = tc1DifferentRatios;
                 ratioPhaseData.end1.ptc2DifferentAngles = ptc1DifferentAngles;
                 ratioPhaseData.end1.rtc2RegulatingControl = rtc1RegulatingControl;
                 ratioPhaseData.end1.ptc2RegulatingControl = ptc1RegulatingControl;
                 ratioPhaseData.end2.a2 = rtc2a * ptc2a;
                 ratioPhaseData.end2.angle2 = rtc2A + ptc2A;
+                ratioPhaseData.end2.angle2Cos = tc2Cos;
+                ratioPhaseData.end2.angle2Sin = tc2Sin;
                 ratioPhaseData.end2.tc2DifferentRatios = tc2DifferentRatios;
                 ratioPhaseData.end2.ptc2DifferentAngles = ptc2DifferentAngles;
                 ratioPhaseData.end2.rtc2RegulatingControl = rtc2RegulatingControl;
                 ratioPhaseData.end2.ptc2RegulatingControl = ptc2RegulatingControl;
                 ratioPhaseData.end3.a2 = rtc3a * ptc3a;
                 ratioPhaseData.end3.angle2 = rtc3A + ptc3A;
+                ratioPhaseData.end3.angle2Cos = tc3Cos;
+                ratioPhaseData.end3.angle2Sin = tc3Sin;
                 ratioPhaseData.end3.tc2DifferentRatios = tc3DifferentRatios;
                 ratioPhaseData.end3.ptc2DifferentAngles = ptc3DifferentAngles;
                 ratioPhaseData.end3.rtc2RegulatingControl = rtc3RegulatingControl;
@@ -446,18 +404,24 @@ public class Xfmr3Model {
             case NETWORK_SIDE:
                 ratioPhaseData.end1.a1 = rtc1a * ptc1a;
                 ratioPhaseData.end1.angle1 = rtc1A + ptc1A;
+                ratioPhaseData.end1.angle1Cos = tc1Cos;
+                ratioPhaseData.end1.angle1Sin = tc1Sin;
                 ratioPhaseData.end1.tc1DifferentRatios = tc1DifferentRatios;
                 ratioPhaseData.end1.ptc1DifferentAngles = ptc1DifferentAngles;
                 ratioPhaseData.end1.rtc1RegulatingControl = rtc1RegulatingControl;
                 ratioPhaseData.end1.ptc1RegulatingControl = ptc1RegulatingControl;
                 ratioPhaseData.end2.a1 = rtc2a * ptc2a;
                 ratioPhaseData.end2.angle1 = rtc2A + ptc2A;
+                ratioPhaseData.end2.angle1Cos = tc2Cos;
+                ratioPhaseData.end2.angle1Sin = tc2Sin;
                 ratioPhaseData.end2.tc1DifferentRatios = tc2DifferentRatios;
                 ratioPhaseData.end2.ptc1DifferentAngles = ptc2DifferentAngles;
                 ratioPhaseData.end2.rtc1RegulatingControl = rtc2RegulatingControl;
                 ratioPhaseData.end2.ptc1RegulatingControl = ptc2RegulatingControl;
                 ratioPhaseData.end3.a1 = rtc3a * ptc3a;
                 ratioPhaseData.end3.angle1 = rtc3A + ptc3A;
+                ratioPhaseData.end3.angle1Cos = tc3Cos;
+                ratioPhaseData.end3.angle1Sin = tc3Sin;
                 ratioPhaseData.end3.tc1DifferentRatios = tc3DifferentRatios;
                 ratioPhaseData.end3.ptc1DifferentAngles = ptc3DifferentAngles;
                 ratioPhaseData.end3.rtc1RegulatingControl = rtc3RegulatingControl;
@@ -495,32 +459,44 @@ public class Xfmr3Model {
     }
 
     private Xfmr3PhaseAngleClockData getXfmr3PhaseAngleClock(CgmesEquipmentModelMapping config) {
-        int pac1 = transformer.asInt("pac1", 0);
-        int pac2 = transformer.asInt("pac2", 0);
-        int pac3 = transformer.asInt("pac3", 0);
+        int pac1 = model.phaseAngleClock(transformer, 1);
+        int pac2 = model.phaseAngleClock(transformer, 2);
+        int pac3 = model.phaseAngleClock(transformer, 3);
         Xfmr3PhaseAngleClockAlternative xfmr3PhaseAngleClock = config.getXfmr3PhaseAngleClock();
         Xfmr3PhaseAngleClockData phaseAngleClockData = new Xfmr3PhaseAngleClockData();
         switch (xfmr3PhaseAngleClock) {
             case STAR_BUS_SIDE:
                 if (pac1 != 0) {
                     phaseAngleClockData.end1.angle2 = XfmrUtilities.getPhaseAngleClock(pac1);
+                    phaseAngleClockData.end1.angle2Cos = XfmrUtilities.getPhaseAngleClockCos(pac1);
+                    phaseAngleClockData.end1.angle2Sin = XfmrUtilities.getPhaseAngleClockSin(pac1);
                 }
                 if (pac2 != 0) {
                     phaseAngleClockData.end2.angle2 = XfmrUtilities.getPhaseAngleClock(pac2);
+                    phaseAngleClockData.end2.angle2Cos = XfmrUtilities.getPhaseAngleClockCos(pac2);
+                    phaseAngleClockData.end2.angle2Sin = XfmrUtilities.getPhaseAngleClockSin(pac2);
                 }
                 if (pac3 != 0) {
                     phaseAngleClockData.end3.angle2 = XfmrUtilities.getPhaseAngleClock(pac3);
+                    phaseAngleClockData.end3.angle2Cos = XfmrUtilities.getPhaseAngleClockCos(pac3);
+                    phaseAngleClockData.end3.angle2Sin = XfmrUtilities.getPhaseAngleClockSin(pac3);
                 }
                 break;
             case NETWORK_SIDE:
                 if (pac1 != 0) {
                     phaseAngleClockData.end1.angle1 = XfmrUtilities.getPhaseAngleClock(pac1);
+                    phaseAngleClockData.end1.angle1Cos = XfmrUtilities.getPhaseAngleClockCos(pac1);
+                    phaseAngleClockData.end1.angle1Sin = XfmrUtilities.getPhaseAngleClockSin(pac1);
                 }
                 if (pac2 != 0) {
                     phaseAngleClockData.end2.angle1 = XfmrUtilities.getPhaseAngleClock(pac2);
+                    phaseAngleClockData.end2.angle1Cos = XfmrUtilities.getPhaseAngleClockCos(pac2);
+                    phaseAngleClockData.end2.angle1Sin = XfmrUtilities.getPhaseAngleClockSin(pac2);
                 }
                 if (pac3 != 0) {
                     phaseAngleClockData.end3.angle1 = XfmrUtilities.getPhaseAngleClock(pac3);
+                    phaseAngleClockData.end3.angle1Cos = XfmrUtilities.getPhaseAngleClockCos(pac3);
+                    phaseAngleClockData.end3.angle1Sin = XfmrUtilities.getPhaseAngleClockSin(pac3);
                 }
                 break;
         }
@@ -563,6 +539,14 @@ public class Xfmr3Model {
         g3 = XfmrUtilities.applyCorrection(g3, gc);
     }
 
+    private double end(int end, int field) {
+        return model.transformerEnd(transformer, end, field);
+    }
+
+    private TapChangerData phaseTapChanger(int end) {
+        return phaseTapChangers[transformer * 3 + end - 1];
+    }
+
     static class Xfmr3RatioPhaseData {
         RatioPhaseData end1 = new RatioPhaseData();
         RatioPhaseData end2 = new RatioPhaseData();
@@ -588,8 +572,10 @@ public class Xfmr3Model {
     }
 
     private final CgmesEquipmentModelMapping config;
-    private final CgmesModel                 cgmes;
-    private final PropertyBag                transformer;
+    private final TapChangerTables           tapChangerTables;
+    private final TapChangerData[]           phaseTapChangers;
+    private final CompiledModel              model;
+    private final int                        transformer;
 
     private double                           r1;
     private double                           x1;
@@ -11,9 +11,6 @@ import org.apache.commons.math3.complex.Complex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.powsybl.triplestore.api.PropertyBag;
-import com.powsybl.triplestore.api.PropertyBags;
-
 /**
  * @author José Antonio Marqués <marquesja at aia.es>
  * @author Marcos de Miguel <demiguelm at aia.es>
@@ -23,25 +20,25 @@ public final class XfmrUtilities {
     private XfmrUtilities() {
     }
 
-    public static TapChangerData getRatioTapChanger(double rstep, double rns, double rsvi,
-            PropertyBags ratioTapChangerTable1) {
+    static TapChangerData getRatioTapChanger(double rstep, double rns, double rsvi,
+            TapChangerTables.Table ratioTapChangerTable1) {
         TapChangerData tapChangerData = new TapChangerData();
         if (ratioTapChangerIsTabular(ratioTapChangerTable1)) {
             tapChangerData = getTabularRatioTapChangerData(rstep, ratioTapChangerTable1);
-            tapChangerData.tabularDifferentRatios = getTabularRatioTapChangerDifferentRatios(ratioTapChangerTable1);
+            tapChangerData.tabularDifferentRatios = ratioTapChangerTable1.differentRatios();
         } else {
             tapChangerData = getRatioTapChangerData(rstep, rns, rsvi);
         }
         return tapChangerData;
     }
 
-    public static TapChangerData getPhaseTapChanger(String ptype, double pstep, double pls, double phs, double pns,
-            double psvi, double pwca, double stepPhaseShiftIncrement, PropertyBags phaseTapChangerTable) {
+    static TapChangerData getPhaseTapChanger(String ptype, double pstep, double pls, double phs, double pns,
+            double psvi, double pwca, double stepPhaseShiftIncrement, TapChangerTables.Table phaseTapChangerTable) {
         TapChangerData tapChangerData = new TapChangerData();
         if (phaseTapChangerIsTabular(ptype, phaseTapChangerTable)) {
             tapChangerData = getTabularPhaseTapChangerData(pstep, phaseTapChangerTable);
-            tapChangerData.tabularDifferentRatios = getTabularPhaseTapChangerDifferentRatios(phaseTapChangerTable);
-            tapChangerData.tabularDifferentAngles = getTabularPhaseTapChangerDifferentAngles(phaseTapChangerTable);
+            tapChangerData.tabularDifferentRatios = phaseTapChangerTable.differentRatios();
+            tapChangerData.tabularDifferentAngles = phaseTapChangerTable.differentAngles();
         } else if (phaseTapChangerIsAsymmetrical(ptype)) {
             tapChangerData = getAsymmetricalPhaseTapChangerData(ptype, pstep, pns, psvi, pwca);
             tapChangerData.asymmetricalDifferentRatios = getAsymmetricalPhaseTapChangerDifferentRatios(psvi, pls, phs);
@@ -50,9 +47,53 @@ public final class XfmrUtilities {
         } else {
             tapChangerData = getSymmetricalPhaseTapChangerData(ptype, pstep, pns, psvi, stepPhaseShiftIncrement);
         }
+        // Phasors of tabular angles are calculated when the table is loaded
+        if (!phaseTapChangerIsTabular(ptype, phaseTapChangerTable)) {
+            double angle = Math.toRadians(tapChangerData.rptcA);
+            tapChangerData.rptcACos = Math.cos(angle);
+            tapChangerData.rptcASin = Math.sin(angle);
+        }
         return tapChangerData;
     }
 
+    // Phase tap changer of a transformer end with its reactance for the tap changer angle, and also for
+    // the negated angle when the end can negate it. It does not depend on the model mapping configuration
+    static TapChangerData getPhaseTapChanger(CompiledModel model, int transformer, int end,
+            int stepPhaseShiftIncrementField, TapChangerTables tapChangerTables, boolean negatedAngle) {
+        double pns = model.transformerEnd(transformer, end, CompiledModel.PNS);
+        double psvi = model.transformerEnd(transformer, end, CompiledModel.PSVI);
+        double pstep = model.transformerEnd(transformer, end, CompiledModel.PSTEP);
+        double pls = model.transformerEnd(transformer, end, CompiledModel.PLS);
+        double phs = model.transformerEnd(transformer, end, CompiledModel.PHS);
+        double xStepMin = model.transformerEnd(transformer, end, CompiledModel.X_STEP_MIN);
+        double xStepMax = model.transformerEnd(transformer, end, CompiledModel.X_STEP_MAX);
+        double pwca = model.transformerEnd(transformer, end, CompiledModel.PWCA);
+        double stepPhaseShiftIncrement = model.transformerEnd(transformer, end, stepPhaseShiftIncrementField);
+        String ptype = model.phaseTapChangerType(transformer, end);
+        TapChangerTables.Table phaseTapChangerTable = tapChangerTables
+                .phaseTable(model.phaseTapChangerTable(transformer, end));
+        TapChangerData tapChangerData = getPhaseTapChanger(ptype, pstep, pls, phs, pns, psvi, pwca,
+                stepPhaseShiftIncrement, phaseTapChangerTable);
+        // Without steps the reactance of the end is kept, the given one is not used otherwise
+        tapChangerData.xStep = xStepMax > 0;
+        if (tapChangerData.xStep) {
+            tapChangerData.x = getX(0.0, tapChangerData.rptcA, ptype, pls, phs, pns, psvi, pwca,
+                    stepPhaseShiftIncrement, xStepMin, xStepMax);
+            if (negatedAngle) {
+                tapChangerData.xNegatedAngle = getX(0.0, -tapChangerData.rptcA, ptype, pls, phs, pns, psvi, pwca,
+                        stepPhaseShiftIncrement, xStepMin, xStepMax);
+            }
+        }
+        return tapChangerData;
+    }
+
+    static double getX(double x, TapChangerData phaseTapChangerData, boolean negatedAngle) {
+        if (!phaseTapChangerData.xStep) {
+            return x;
+        }
+        return negatedAngle ? phaseTapChangerData.xNegatedAngle : phaseTapChangerData.x;
+    }
+
     public static double getX(double x, double ptcA, String ptype, double pls, double phs, double pns, double psvi,
             double pwca, double stepPhaseShiftIncrement, double xStepMin, double xStepMax) {
         double xo = x;
@@ -79,7 +120,7 @@ public final class XfmrUtilities {
         return x * (1.0 + xc / 100.0);
     }
 
-    private static boolean ratioTapChangerIsTabular(PropertyBags ratioTapChangerTable) {
+    private static boolean ratioTapChangerIsTabular(TapChangerTables.Table ratioTapChangerTable) {
         if (ratioTapChangerTable != null) {
             return true;
         }
@@ -93,39 +134,24 @@ public final class XfmrUtilities {
         return tapChangerData;
     }
 
-    private static TapChangerData getTabularRatioTapChangerData(double rstep, PropertyBags ratioTapChangerTable) {
+    private static TapChangerData getTabularRatioTapChangerData(double rstep,
+            TapChangerTables.Table ratioTapChangerTable) {
         TapChangerData tapChangerData = new TapChangerData();
         if (ratioTapChangerTable.isEmpty()) {
             LOG.warn("Empty RatioTapChangerTable");
         }
-        for (PropertyBag point : ratioTapChangerTable) {
-            if (point.asInt("step") == rstep) {
-                tapChangerData.rptca = getDoublePoint(point, "ratio", 1.0);
-                tapChangerData.xc = getDoublePoint(point, "x", 0.0);
-                tapChangerData.rc = getDoublePoint(point, "r", 0.0);
-                tapChangerData.bc = getDoublePoint(point, "b", 0.0);
-                tapChangerData.gc = getDoublePoint(point, "g", 0.0);
-                return tapChangerData;
-            }
+        int point = ratioTapChangerTable.point(rstep);
+        if (point >= 0) {
+            tapChangerData.rptca = ratioTapChangerTable.ratio(point);
+            tapChangerData.xc = ratioTapChangerTable.x(point);
+            tapChangerData.rc = ratioTapChangerTable.r(point);
+            tapChangerData.bc = ratioTapChangerTable.b(point);
+            tapChangerData.gc = ratioTapChangerTable.g(point);
         }
-
         return tapChangerData;
     }
 
-    private static double getDoublePoint(PropertyBag point, String parameter, double defaultValue) {
-        double value = point.asDouble(parameter, defaultValue);
-        if (Double.isNaN(value) || Double.isInfinite(value)) {
-            return defaultValue;
-        }
-        return value;
-    }
-
-    private static boolean getTabularRatioTapChangerDifferentRatios(PropertyBags ratioTapChangerTable) {
-        return ratioTapChangerTable.stream().map(pb -> pb.asDouble("ratio")).mapToDouble(Double::doubleValue).distinct()
-                .limit(2).count() > 1;
-    }
-
-    private static boolean phaseTapChangerIsTabular(String ptype, PropertyBags phaseTapChangerTable) {
+    private static boolean phaseTapChangerIsTabular(String ptype, TapChangerTables.Table phaseTapChangerTable) {
         if (ptype != null && phaseTapChangerTable != null && ptype.endsWith("tabular")) {
             return true;
         }
@@ -146,16 +172,6 @@ public final class XfmrUtilities {
         return false;
     }
 
-    private static boolean getTabularPhaseTapChangerDifferentRatios(PropertyBags phaseTapChangerTable) {
-        return phaseTapChangerTable.stream().map(pb -> pb.asDouble("ratio")).mapToDouble(Double::doubleValue).distinct()
-                .limit(2).count() > 1;
-    }
-
-    private static boolean getTabularPhaseTapChangerDifferentAngles(PropertyBags phaseTapChangerTable) {
-        return phaseTapChangerTable.stream().map(pb -> pb.asDouble("angle")).mapToDouble(Double::doubleValue).distinct()
-                .limit(2).count() > 1;
-    }
-
     private static boolean getAsymmetricalPhaseTapChangerDifferentRatios(double psvi, double pls,
             double phs) {
         if (psvi != 0.0 && pls != phs) {
@@ -164,22 +180,23 @@ public final class XfmrUtilities {
         return false;
     }
 
-    private static TapChangerData getTabularPhaseTapChangerData(double pstep, PropertyBags phaseTapChangerTable) {
+    private static TapChangerData getTabularPhaseTapChangerData(double pstep,
+            TapChangerTables.Table phaseTapChangerTable) {
         TapChangerData tapChangerData = new TapChangerData();
         if (phaseTapChangerTable.isEmpty()) {
             LOG.warn("Empty PhaseTapChangerTable");
         }
-        for (PropertyBag point : phaseTapChangerTable) {
-            if (point.asInt("step") == pstep) {
-                tapChangerData.rptca = getDoublePoint(point, "ratio", 1.0);
-                tapChangerData.rptcA = getDoublePoint(point, "angle", 0.0);
-
-                tapChangerData.xc = getDoublePoint(point, "x", 0.0);
-                tapChangerData.rc = getDoublePoint(point, "r", 0.0);
-                tapChangerData.bc = getDoublePoint(point, "b", 0.0);
-                tapChangerData.gc = getDoublePoint(point, "g", 0.0);
-                return tapChangerData;
-            }
+        int point = phaseTapChangerTable.point(pstep);
+        if (point >= 0) {
+            tapChangerData.rptca = phaseTapChangerTable.ratio(point);
+            tapChangerData.rptcA = phaseTapChangerTable.angle(point);
+            tapChangerData.rptcACos = phaseTapChangerTable.angleCos(point);
+            tapChangerData.rptcASin = phaseTapChangerTable.angleSin(point);
+
+            tapChangerData.xc = phaseTapChangerTable.x(point);
+            tapChangerData.rc = phaseTapChangerTable.r(point);
+            tapChangerData.bc = phaseTapChangerTable.b(point);
+            tapChangerData.gc = phaseTapChangerTable.g(point);
         }
         return tapChangerData;
     }
@@ -265,6 +282,33 @@ public final class XfmrUtilities {
         return phaseAngleClockDegree;
     }
 
+    // The phase angle clock shift only depends on the clock number modulo 24
+    static double getPhaseAngleClockCos(int phaseAngleClock) {
+        return PHASE_ANGLE_CLOCK_COS[Math.floorMod(phaseAngleClock, PHASE_ANGLE_CLOCKS)];
+    }
+
+    static double getPhaseAngleClockSin(int phaseAngleClock) {
+        return PHASE_ANGLE_CLOCK_SIN[Math.floorMod(phaseAngleClock, PHASE_ANGLE_CLOCKS)];
+    }
+
+    private static double[] phaseAngleClockPhasors(boolean cos) {
+        double[] phasors = new double[PHASE_ANGLE_CLOCKS];
+        for (int k = 0; k < PHASE_ANGLE_CLOCKS; k++) {
+            double angle = Math.toRadians(getPhaseAngleClock(k));
+            phasors[k] = cos ? Math.cos(angle) : Math.sin(angle);
+        }
+        return phasors;
+    }
+
+    // Phasor of the sum of two angles given by their cosines and sines
+    static double rotatedCos(double cos1, double sin1, double cos2, double sin2) {
+        return cos1 * cos2 - sin1 * sin2;
+    }
+
+    static double rotatedSin(double cos1, double sin1, double cos2, double sin2) {
+        return sin1 * cos2 + cos1 * sin2;
+    }
+
     static boolean getXfmrDifferentRatios(double rsvi, double rls, double rhs, boolean rtcTabularDifferentRatios,
             boolean ptcTabularDifferentRatios, boolean ptcAsymmetricalDifferentRatios) {
         if (rsvi != 0 && rls != rhs) {
@@ -287,6 +331,8 @@ public final class XfmrUtilities {
     static class TapChangerData {
         double  rptca                       = 1.0;
         double  rptcA                       = 0.0;
+        double  rptcACos                    = 1.0;
+        double  rptcASin                    = 0.0;
         double  rc                          = 0.0;
         double  xc                          = 0.0;
         double  bc                          = 0.0;
@@ -294,6 +340,9 @@ public final class XfmrUtilities {
         boolean tabularDifferentRatios      = false;
         boolean tabularDifferentAngles      = false;
         boolean asymmetricalDifferentRatios = false;
+        boolean xStep                       = false;
+        double  x                           = 0.0;
+        double  xNegatedAngle               = 0.0;
     }
 
     static class RatioPhaseData {
@@ -301,6 +350,10 @@ public final class XfmrUtilities {
         double  angle1                = 0.0;
         double  a2                    = 1.0;
         double  angle2                = 0.0;
+        double  angle1Cos             = 1.0;
+        double  angle1Sin             = 0.0;
+        double  angle2Cos             = 1.0;
+        double  angle2Sin             = 0.0;
         boolean rtc1RegulatingControl = false;
         boolean tc1DifferentRatios    = false;
         boolean ptc1RegulatingControl = false;
@@ -309,6 +362,16 @@ public final class XfmrUtilities {
         boolean tc2DifferentRatios    = false;
         boolean ptc2RegulatingControl = false;
         boolean ptc2DifferentAngles   = false;
+
+        // Adds the phase angle clock shifts to the phasors of the angles
+        void rotate(PhaseAngleClockData phaseAngleClockData) {
+            double cos1 = angle1Cos;
+            double cos2 = angle2Cos;
+            angle1Cos = rotatedCos(cos1, angle1Sin, phaseAngleClockData.angle1Cos, phaseAngleClockData.angle1Sin);
+            angle1Sin = rotatedSin(cos1, angle1Sin, phaseAngleClockData.angle1Cos, phaseAngleClockData.angle1Sin);
+            angle2Cos = rotatedCos(cos2, angle2Sin, phaseAngleClockData.angle2Cos, phaseAngleClockData.angle2Sin);
+            angle2Sin = rotatedSin(cos2, angle2Sin, phaseAngleClockData.angle2Cos, phaseAngleClockData.angle2Sin);
+        }
     }
 
     static class YShuntData {
@@ -322,9 +385,17 @@ public final class XfmrUtilities {
     }
 
     static class PhaseAngleClockData {
-        double angle1 = 0.0;
-        double angle2 = 0.0;
+        double angle1    = 0.0;
+        double angle2    = 0.0;
+        double angle1Cos = 1.0;
+        double angle1Sin = 0.0;
+        double angle2Cos = 1.0;
+        double angle2Sin = 0.0;
     }
 
+    private static final int      PHASE_ANGLE_CLOCKS    = 24;
+    private static final double[] PHASE_ANGLE_CLOCK_COS = phaseAngleClockPhasors(true);
+    private static final double[] PHASE_ANGLE_CLOCK_SIN = phaseAngleClockPhasors(false);
+
     private static final Logger LOG = LoggerFactory.getLogger(BranchAdmittanceMatrix.class);
 }
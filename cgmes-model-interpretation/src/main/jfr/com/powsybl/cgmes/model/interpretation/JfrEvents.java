@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
+
+import com.powsybl.cgmes.model.interpretation.InterpretationEvents.Recorder;
+import com.powsybl.cgmes.model.interpretation.InterpretationResult.ValidationData;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Event types of the interpretation recorded by the Java Flight Recorder.
+ * Only used through {@link InterpretationEvents}, once the jdk.jfr API has
+ * been found. Compiled by the jfr profile, with a JDK 11 or later.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class JfrEvents implements Recorder {
+
+    private static final String PREFIX = "com.powsybl.cgmes.interpretation.";
+
+    // Built by InterpretationEvents through reflection, this class is not compiled without the jfr profile
+    JfrEvents() {
+    }
+
+    @Override
+    public Object beginModelLoad(String model) {
+        ModelLoaded loaded = new ModelLoaded();
+        loaded.begin();
+        ModelLoadStarted started = new ModelLoadStarted();
+        if (started.shouldCommit()) {
+            started.model = model;
+            started.commit();
+        }
+        return loaded;
+    }
+
+    // The triples are only counted when the event is recorded, it is a query over all the graphs
+    @Override
+    public void modelLoaded(Object event, String model, int nodes, LongSupplier triples) {
+        ModelLoaded loaded = (ModelLoaded) event;
+        loaded.end();
+        if (loaded.shouldCommit()) {
+            loaded.model = model;
+            loaded.nodes = nodes;
+            loaded.triples = triples.getAsLong();
+            loaded.commit();
+        }
+    }
+
+    @Override
+    public Object beginConfiguration() {
+        ConfigurationEvaluated event = new ConfigurationEvaluated();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void configurationEvaluated(Object event, String model, CgmesEquipmentModelMapping config,
+            ValidationData validationData) {
+        ConfigurationEvaluated evaluated = (ConfigurationEvaluated) event;
+        evaluated.end();
+        if (evaluated.shouldCommit()) {
+            evaluated.model = model;
+            evaluated.configuration = config.toString();
+            evaluated.balance = validationData.balance;
+            evaluated.pruned = validationData.pruned;
+            evaluated.commit();
+        }
+    }
+
+    @Override
+    public Object beginReport() {
+        ReportWritten event = new ReportWritten();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void reportWritten(Object event, String report, Path file, int models) throws IOException {
+        ReportWritten written = (ReportWritten) event;
+        written.end();
+        if (written.shouldCommit()) {
+            written.report = report;
+            written.file = file.toString();
+            written.models = models;
+            written.size = Files.size(file);
+            written.commit();
+        }
+    }
+
+    @Override
+    public void modelFailed(String model, Exception x) {
+        ModelFailed failed = new ModelFailed();
+        if (failed.shouldCommit()) {
+            failed.model = model;
+            failed.exception = x.getClass().getName();
+            failed.message = x.getMessage();
+            failed.commit();
+        }
+    }
+
+    @Name(PREFIX + "ModelLoadStarted")
+    @Label("Model Load Started")
+    @Category({"CGMES", "Model Interpretation"})
+    @StackTrace(false)
+    static final class ModelLoadStarted extends Event {
+
+        @Label("Model")
+        String model;
+    }
+
+    @Name(PREFIX + "ModelLoaded")
+    @Label("Model Loaded")
+    @Description("Files of a model read and its nodes, branches and tap changer tables loaded")
+    @Category({"CGMES", "Model Interpretation"})
+    @StackTrace(false)
+    static final class ModelLoaded extends Event {
+
+        @Label("Model")
+        String model;
+
+        @Label("Nodes")
+        int nodes;
+
+        @Label("Triples")
+        long triples;
+    }
+
+    @Name(PREFIX + "ConfigurationEvaluated")
+    @Label("Configuration Evaluated")
+    @Description("Balance of all the buses of a model calculated with a model mapping configuration")
+    @Category({"CGMES", "Model Interpretation"})
+    @StackTrace(false)
+    static final class ConfigurationEvaluated extends Event {
+
+        @Label("Model")
+        String model;
+
+        @Label("Configuration")
+        String configuration;
+
+        @Label("Balance")
+        double balance;
+
+        @Label("Pruned")
+        boolean pruned;
+    }
+
+    @Name(PREFIX + "ReportWritten")
+    @Label("Report Written")
+    @Category({"CGMES", "Model Interpretation"})
+    @StackTrace(false)
+    static final class ReportWritten extends Event {
+
+        @Label("Report")
+        String report;
+
+        @Label("File")
+        String file;
+
+        @Label("Models")
+        int models;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+    @Name(PREFIX + "ModelFailed")
+    @Label("Model Failed")
+    @Category({"CGMES", "Model Interpretation"})
+    @StackTrace(false)
+    static final class ModelFailed extends Event {
+
+        @Label("Model")
+        String model;
+
+        @Label("Exception")
+        String exception;
+
+        @Label("Message")
+        String message;
+    }
+}
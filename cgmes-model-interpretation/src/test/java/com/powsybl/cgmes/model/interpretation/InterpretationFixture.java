@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.powsybl.cgmes.model.CgmesModel;
+import com.powsybl.cgmes.model.interpretation.test.KronAdmittanceModels;
+import com.powsybl.cgmes.model.interpretation.test.TestKronAdmittance;
+import com.powsybl.cgmes.model.triplestore.CgmesModelTripleStore;
+import com.powsybl.triplestore.api.TripleStoreFactory;
+
+/**
+ * The Kron admittance models shared by the tests of the interpretation, and
+ * their interpretation without loading them from CGMES.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+final class InterpretationFixture {
+
+    private InterpretationFixture() {
+    }
+
+    // The models are built directly, the CGMES model is empty
+    static CgmesModel cgmes() {
+        return CGMES;
+    }
+
+    // Line, two and three winding transformer models, with both ends connected and with a Kron antenna
+    static List<InterpretedModel> models() {
+        return Arrays.asList(
+                KronAdmittanceModels.line(CGMES, true),
+                KronAdmittanceModels.line(CGMES, false),
+                KronAdmittanceModels.xfmr2(CGMES, true),
+                KronAdmittanceModels.xfmr2(CGMES, false),
+                KronAdmittanceModels.xfmr3(CGMES, true),
+                KronAdmittanceModels.xfmr3(CGMES, false));
+    }
+
+    // The input model is interpreted as it is, without loading it again from CGMES
+    static InterpretationResult interpret(InterpretedModel model, Consumer<ModelInterpretation> settings) {
+        ModelInterpretation flowValidation = new ModelInterpretation(CGMES);
+        flowValidation.setInputModel(model);
+        flowValidation.setWorstNodes(0);
+        settings.accept(flowValidation);
+        flowValidation.interpretInputModel();
+        return flowValidation.getInterpretation();
+    }
+
+    static InterpretationResult interpret(InterpretedModel model) {
+        return interpret(model, flowValidation -> {
+        });
+    }
+
+    private static final CgmesModel CGMES = new CgmesModelTripleStore(TestKronAdmittance.CIM_16_NAMESPACE,
+            TripleStoreFactory.create());
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.powsybl.triplestore.api.PropertyBag;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestBalanceColumns {
+
+    private static final int CALCULATED  = BalanceColumns.CALCULATED;
+    private static final int ISOLATED    = BalanceColumns.ISOLATED;
+    private static final int BAD_VOLTAGE = BalanceColumns.BAD_VOLTAGE;
+
+    @Test
+    public void countersTest() {
+        BalanceColumns balanceColumns = sampleColumns(0);
+        balanceColumns.complete();
+        Assert.assertEquals(8, balanceColumns.size());
+        Assert.assertEquals(8, balanceColumns.totalNodes());
+        Assert.assertEquals(1, balanceColumns.isolatedNodes());
+        // Isolated buses are never counted as not calculated
+        Assert.assertEquals(1, balanceColumns.notCalculatedNodes());
+        // An error equal to the tolerance is ok
+        Assert.assertEquals(2, balanceColumns.okNodes());
+        Assert.assertEquals(2, balanceColumns.badNodes());
+        Assert.assertEquals(2, balanceColumns.badVoltageNodes());
+    }
+
+    @Test
+    public void errorsTest() {
+        BalanceColumns balanceColumns = sampleColumns(0);
+        balanceColumns.complete();
+        Assert.assertEquals(7.0 + 2.5, balanceColumns.badNodesError(), 0.0);
+        Assert.assertEquals(3.0 + 1.5, balanceColumns.badVoltageNodesError(), 0.0);
+        // Not calculated buses do not add their error
+        Assert.assertEquals(0.75 + 1.0 + 7.0 + 2.5 + 3.0 + 1.5, balanceColumns.totalError(), 0.0);
+
+        // Errors are summed with compensation
+        BalanceColumns compensated = new BalanceColumns(buses(10), 0);
+        for (int b = 0; b < 10; b++) {
+            compensated.add(b, 0.1, 0.0, CALCULATED, 0, 0, 0);
+        }
+        compensated.complete();
+        Assert.assertEquals(1.0, compensated.totalError(), 0.0);
+    }
+
+    @Test
+    public void rowsTest() {
+        BalanceColumns balanceColumns = sampleColumns(0);
+        balanceColumns.complete();
+        // From the largest error to the smallest one
+        List<List<String>> nodes = new ArrayList<>();
+        for (int row = 0; row < balanceColumns.size(); row++) {
+            nodes.add(balanceColumns.nodes(row));
+        }
+        Assert.assertEquals(Arrays.asList(bus(4), bus(1), bus(2), bus(6), bus(7), bus(5), bus(3),
+                bus(0)), nodes);
+
+        Assert.assertEquals(100.0, balanceColumns.balanceP(0), 0.0);
+        Assert.assertFalse(balanceColumns.isCalculated(0));
+        Assert.assertFalse(balanceColumns.isIsolated(0));
+        Assert.assertEquals(3.0, balanceColumns.balanceP(1), 0.0);
+        Assert.assertEquals(-4.0, balanceColumns.balanceQ(1), 0.0);
+        Assert.assertEquals(7.0, balanceColumns.error(1), 0.0);
+        Assert.assertTrue(balanceColumns.isCalculated(1));
+        Assert.assertFalse(balanceColumns.isBadVoltage(1));
+        Assert.assertEquals(2, balanceColumns.lines(1));
+        Assert.assertEquals(1, balanceColumns.xfmr2s(1));
+        Assert.assertEquals(0, balanceColumns.xfmr3s(1));
+        Assert.assertTrue(balanceColumns.isBadVoltage(2));
+        Assert.assertTrue(balanceColumns.isIsolated(7));
+        Assert.assertFalse(balanceColumns.isCalculated(7));
+
+        // Counts are saturated to the short range
+        Assert.assertEquals(Short.MAX_VALUE, balanceColumns.xfmr3s(2));
+    }
+
+    @Test
+    public void mapViewTest() {
+        BalanceColumns balanceColumns = sampleColumns(0);
+        Map<List<String>, PropertyBag> balanceData = balanceColumns.asMap();
+        Assert.assertEquals(8, balanceData.size());
+        Assert.assertEquals(bus(0), balanceData.keySet().iterator().next());
+
+        // The view is built while it is iterated, it follows the sorted rows
+        balanceColumns.complete();
+        Iterator<Map.Entry<List<String>, PropertyBag>> k = balanceData.entrySet().iterator();
+        Map.Entry<List<String>, PropertyBag> worst = k.next();
+        Assert.assertEquals(bus(4), worst.getKey());
+        Map.Entry<List<String>, PropertyBag> bad = k.next();
+        Assert.assertEquals(bus(1), bad.getKey());
+        PropertyBag pb = bad.getValue();
+        Assert.assertEquals("3.0", pb.get("balanceP"));
+        Assert.assertEquals("-4.0", pb.get("balanceQ"));
+        Assert.assertEquals("true", pb.get("calculated"));
+        Assert.assertEquals("false", pb.get("badVoltage"));
+        Assert.assertEquals("false", pb.get("isolated"));
+        Assert.assertEquals("2", pb.get("line"));
+        Assert.assertEquals("1", pb.get("xfmr2"));
+        Assert.assertEquals("0", pb.get("xfmr3"));
+        Assert.assertNotSame(pb, balanceData.get(bus(1)));
+        Assert.assertEquals(pb, balanceData.get(bus(1)));
+        Assert.assertEquals("true", balanceData.get(bus(0)).get("isolated"));
+        Assert.assertNull(balanceData.get(bus(8)));
+
+        int rows = 2;
+        while (k.hasNext()) {
+            k.next();
+            rows++;
+        }
+        Assert.assertEquals(8, rows);
+        try {
+            k.next();
+            Assert.fail();
+        } catch (NoSuchElementException x) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void emptyTest() {
+        BalanceColumns balanceColumns = BalanceColumns.empty();
+        Assert.assertEquals(0, balanceColumns.size());
+        Assert.assertEquals(0, balanceColumns.totalNodes());
+        Assert.assertEquals(0, balanceColumns.okNodes());
+        Assert.assertEquals(0.0, balanceColumns.totalError(), 0.0);
+        Assert.assertTrue(balanceColumns.asMap().isEmpty());
+    }
+
+    @Test
+    public void selectTest() {
+        // Many buses share the same error, with and without bad voltage
+        for (int worstNodes : new int[] {1, 2, 5, 40, 41, 100}) {
+            assertSameSelection(randomColumns(0, 40, true), randomColumns(worstNodes, 40, true), worstNodes);
+            assertSameSelection(randomColumns(0, 40, false), randomColumns(worstNodes, 40, false), worstNodes);
+        }
+        // All the buses are kept without worst nodes
+        BalanceColumns all = randomColumns(0, 40, true);
+        all.complete();
+        Assert.assertEquals(40, all.size());
+
+        // No buses are selected if none of them is bad
+        BalanceColumns selected = new BalanceColumns(buses(3), 1);
+        for (int b = 0; b < 3; b++) {
+            selected.add(b, 0.5, 0.0, CALCULATED, 1, 0, 0);
+        }
+        selected.complete();
+        Assert.assertEquals(0, selected.size());
+        Assert.assertEquals(3, selected.okNodes());
+    }
+
+    @Test
+    public void selectSampleTest() {
+        // The worst buses in order, the not calculated bus and the ok buses are never selected
+        BalanceColumns selected = sampleColumns(1);
+        selected.complete();
+        Assert.assertEquals(2, selected.size());
+        Assert.assertEquals(bus(1), selected.nodes(0));
+        Assert.assertEquals(bus(2), selected.nodes(1));
+        assertSameSelection(sampleColumns(0), sampleColumns(1), 1);
+        assertSameSelection(sampleColumns(0), sampleColumns(8), 8);
+    }
+
+    // The selected rows are the worst bad rows of the full sort, with and without bad voltage, in the same order
+    private static void assertSameSelection(BalanceColumns all, BalanceColumns selected, int worstNodes) {
+        all.complete();
+        selected.complete();
+        List<List<String>> expected = new ArrayList<>();
+        int bad = 0;
+        int badVoltage = 0;
+        for (int row = 0; row < all.size(); row++) {
+            if (!all.isCalculated(row) || all.error(row) <= 1.0) {
+                continue;
+            }
+            if (all.isBadVoltage(row) ? badVoltage++ < worstNodes : bad++ < worstNodes) {
+                expected.add(all.nodes(row));
+            }
+        }
+        List<List<String>> actual = new ArrayList<>();
+        for (int row = 0; row < selected.size(); row++) {
+            actual.add(selected.nodes(row));
+            int row0 = rowOf(all, selected.nodes(row));
+            Assert.assertEquals(all.balanceP(row0), selected.balanceP(row), 0.0);
+            Assert.assertEquals(all.balanceQ(row0), selected.balanceQ(row), 0.0);
+            Assert.assertEquals(all.isBadVoltage(row0), selected.isBadVoltage(row));
+        }
+        Assert.assertEquals(expected, actual);
+
+        // Counters and errors are the ones of all the buses
+        Assert.assertEquals(all.totalNodes(), selected.totalNodes());
+        Assert.assertEquals(all.isolatedNodes(), selected.isolatedNodes());
+        Assert.assertEquals(all.notCalculatedNodes(), selected.notCalculatedNodes());
+        Assert.assertEquals(all.okNodes(), selected.okNodes());
+        Assert.assertEquals(all.badNodes(), selected.badNodes());
+        Assert.assertEquals(all.badVoltageNodes(), selected.badVoltageNodes());
+        Assert.assertEquals(all.badNodesError(), selected.badNodesError(), 0.0);
+        Assert.assertEquals(all.badVoltageNodesError(), selected.badVoltageNodesError(), 0.0);
+        Assert.assertEquals(all.totalError(), selected.totalError(), 0.0);
+    }
+
+    private static int rowOf(BalanceColumns balanceColumns, List<String> nodes) {
+        for (int row = 0; row < balanceColumns.size(); row++) {
+            if (balanceColumns.nodes(row).equals(nodes)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    // Errors are multiples of 0.5, so many buses have the same one
+    private static BalanceColumns randomColumns(int worstNodes, int numBuses, boolean badVoltage) {
+        Random random = new Random(numBuses);
+        BalanceColumns balanceColumns = new BalanceColumns(buses(numBuses), worstNodes);
+        for (int b = 0; b < numBuses; b++) {
+            int nodeFlags = random.nextInt(10) == 0 ? 0 : CALCULATED;
+            if (badVoltage && random.nextBoolean()) {
+                nodeFlags |= BAD_VOLTAGE;
+            }
+            balanceColumns.add(b, 0.5 * random.nextInt(8), -0.5 * random.nextInt(4), nodeFlags, 1, 0, 0);
+        }
+        return balanceColumns;
+    }
+
+    // An isolated bus, ok buses, bad buses with and without bad voltage and a bus that is not calculated
+    private static BalanceColumns sampleColumns(int worstNodes) {
+        BalanceColumns balanceColumns = new BalanceColumns(buses(8), worstNodes);
+        balanceColumns.add(0, 0.0, 0.0, ISOLATED, 0, 0, 0);
+        balanceColumns.add(1, 3.0, -4.0, CALCULATED, 2, 1, 0);
+        balanceColumns.add(2, -2.0, 1.0, CALCULATED | BAD_VOLTAGE, 0, 1, 40000);
+        balanceColumns.add(3, 0.5, 0.25, CALCULATED, 1, 0, 0);
+        balanceColumns.add(4, 100.0, 0.0, 0, 1, 0, 0);
+        balanceColumns.add(5, 0.0, -1.0, CALCULATED, 1, 0, 0);
+        balanceColumns.add(6, 2.0, 0.5, CALCULATED, 0, 0, 1);
+        balanceColumns.add(7, 1.0, -0.5, CALCULATED | BAD_VOLTAGE, 0, 0, 1);
+        return balanceColumns;
+    }
+
+    private static List<List<String>> buses(int numBuses) {
+        List<List<String>> buses = new ArrayList<>();
+        for (int b = 0; b < numBuses; b++) {
+            buses.add(bus(b));
+        }
+        return buses;
+    }
+
+    private static List<String> bus(int b) {
+        return Collections.singletonList("N" + b);
+    }
+}
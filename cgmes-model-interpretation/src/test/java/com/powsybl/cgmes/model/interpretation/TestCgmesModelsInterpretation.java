@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.IOException;
+import java.util.function.IntConsumer;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestCgmesModelsInterpretation {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void invalidSettingsTest() {
+        CgmesModelsInterpretation catalog = new CgmesModelsInterpretation(folder.getRoot().toString());
+        assertRejected(catalog::setThreads, 0);
+        assertRejected(catalog::setConfigThreads, 0);
+        assertRejected(catalog::setMappingSearch, -1);
+        assertRejected(catalog::setPruning, -1);
+        assertRejected(catalog::setWorstNodes, -1);
+        catalog.setThreads(1);
+        catalog.setConfigThreads(1);
+        catalog.setMappingSearch(0);
+        catalog.setPruning(0);
+        catalog.setWorstNodes(0);
+    }
+
+    // A model that failed in a previous review is not reported again
+    @Test
+    public void exceptionsOfLastReviewTest() throws IOException {
+        folder.newFile("model.txt");
+        CgmesModelsInterpretation catalog = new CgmesModelsInterpretation(folder.getRoot().toString());
+        Assert.assertTrue(catalog.reviewAll("glob:**/*.txt").isEmpty());
+        Assert.assertEquals(1, catalog.getExceptions().size());
+        Assert.assertTrue(catalog.getExceptions().containsKey("model.txt"));
+
+        Assert.assertTrue(catalog.reviewAll("glob:**/*.zip").isEmpty());
+        Assert.assertTrue(catalog.getExceptions().isEmpty());
+        Assert.assertTrue(catalog.getMetrics().isEmpty());
+    }
+
+    private static void assertRejected(IntConsumer setter, int value) {
+        try {
+            setter.accept(value);
+            Assert.fail("Accepted " + value);
+        } catch (IllegalArgumentException x) {
+            // Expected
+        }
+    }
+}
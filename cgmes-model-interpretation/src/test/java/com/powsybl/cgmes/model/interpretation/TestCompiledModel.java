@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.powsybl.cgmes.model.interpretation.XfmrUtilities.TapChangerData;
+import com.powsybl.cgmes.model.interpretation.test.KronAdmittanceModels;
+import com.powsybl.triplestore.api.PropertyBag;
+import com.powsybl.triplestore.api.PropertyBags;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestCompiledModel {
+
+    private static final double VBASE = 400.0;
+    private static final double ZPU   = 100.0 / Math.pow(VBASE, 2);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void compiledNodesTest() {
+        CompiledModel model = KronAdmittanceModels.line(InterpretationFixture.cgmes(), true).compiledModel();
+        Assert.assertEquals(5, model.numNodes());
+        Assert.assertEquals(4, model.numLines());
+        Assert.assertEquals(0, model.numTransformers());
+
+        int n = model.nodeIndex("1");
+        Assert.assertEquals("1", model.nodeIds[n]);
+        Assert.assertEquals(1.00982854 * VBASE, model.v[n], 0.0);
+        Assert.assertEquals(Math.toDegrees(-0.03386869), model.angle[n], 0.0);
+        Assert.assertEquals(model.v[n] * Math.cos(-0.03386869), model.vRe[n], 1e-9);
+        Assert.assertEquals(model.v[n] * Math.sin(-0.03386869), model.vIm[n], 1e-9);
+        Assert.assertEquals(24.0, model.p[n], 0.0);
+        Assert.assertEquals(102.0, model.q[n], 0.0);
+        Assert.assertEquals(400.0, model.nominalV[n], 0.0);
+        Assert.assertEquals(CompiledModel.NO_INDEX, model.nodeIndex("unknown"));
+        Assert.assertEquals(CompiledModel.NO_INDEX, model.nodeIndex(null));
+    }
+
+    @Test
+    public void compiledLinesTest() {
+        CompiledModel model = KronAdmittanceModels.line(InterpretationFixture.cgmes(), false).compiledModel();
+        int l = Arrays.asList(model.lineIds).indexOf("T2");
+        Assert.assertTrue(model.isLine(l));
+        Assert.assertEquals(0.0016 / ZPU, model.lineR[l], 0.0);
+        Assert.assertEquals(0.091 / ZPU, model.lineX[l], 0.0);
+        Assert.assertEquals(0.39 * ZPU, model.lineBch[l], 0.0);
+        Assert.assertEquals(model.nodeIndex("T"), model.lineNode(l, 1));
+        Assert.assertEquals(model.nodeIndex("2"), model.lineNode(l, 2));
+        Assert.assertTrue(model.lineConnected(l, 1));
+        Assert.assertFalse(model.lineConnected(l, 2));
+
+        // The disconnected end leaves its node without equipment, alone in an isolated bus
+        int n = model.nodeIndex("2");
+        Assert.assertFalse(model.hasEquipment[n]);
+        Assert.assertEquals(model.incidenceStart[n], model.incidenceStart[n + 1]);
+        int b = model.buses.indexOf(Collections.singletonList("2"));
+        Assert.assertTrue(model.busIsolated[b]);
+        Assert.assertEquals(n, model.busNode[model.busStart[b]]);
+
+        n = model.nodeIndex("T");
+        int[] incident = Arrays.copyOfRange(model.incidentEquipment, model.incidenceStart[n],
+                model.incidenceStart[n + 1]);
+        Arrays.sort(incident);
+        int[] expected = {Arrays.asList(model.lineIds).indexOf("1T"), l, Arrays.asList(model.lineIds).indexOf("T3")};
+        Arrays.sort(expected);
+        Assert.assertArrayEquals(expected, incident);
+    }
+
+    @Test
+    public void compiledTransformersTest() {
+        CompiledModel model = KronAdmittanceModels.xfmr3(InterpretationFixture.cgmes(), false).compiledModel();
+        Assert.assertEquals(1, model.numTransformers());
+        int t = 0;
+        int equipment = model.numLines() + t;
+        Assert.assertFalse(model.isLine(equipment));
+        Assert.assertEquals(t, model.transformerOf(equipment));
+        Assert.assertTrue(model.xfmr3[t]);
+        Assert.assertEquals(0.0016 / ZPU, model.transformerEnd(t, 1, CompiledModel.R), 0.0);
+        Assert.assertEquals(0.091 / ZPU, model.transformerEnd(t, 1, CompiledModel.X), 0.0);
+        Assert.assertEquals(0.39 * ZPU, model.transformerEnd(t, 1, CompiledModel.B), 0.0);
+        Assert.assertEquals(400.0, model.transformerEnd(t, 3, CompiledModel.RATED_U), 0.0);
+        // Missing tap changer values are 0
+        Assert.assertEquals(0.0, model.transformerEnd(t, 1, CompiledModel.PSTEP), 0.0);
+        Assert.assertEquals(0, model.phaseAngleClock(t, 2));
+        Assert.assertNull(model.phaseTapChangerType(t, 1));
+        Assert.assertEquals(model.nodeIndex("2"), model.transformerNode(t, 2));
+        Assert.assertTrue(model.transformerConnected(t, 1));
+        Assert.assertFalse(model.transformerConnected(t, 2));
+        Assert.assertTrue(model.transformerConnected(t, 3));
+
+        CompiledModel xfmr2 = KronAdmittanceModels.xfmr2(InterpretationFixture.cgmes(), true).compiledModel();
+        Assert.assertFalse(xfmr2.xfmr3[0]);
+        Assert.assertEquals(CompiledModel.NO_INDEX, xfmr2.transformerNode(0, 3));
+        Assert.assertTrue(Double.isNaN(xfmr2.transformerEnd(0, 3, CompiledModel.RATED_U)));
+    }
+
+    @Test
+    public void phaseTapChangersTest() {
+        InterpretedModel xfmr2 = KronAdmittanceModels.xfmr2(InterpretationFixture.cgmes(), true);
+        CompiledModel model = xfmr2.compiledModel();
+        TapChangerTables tapChangerTables = xfmr2.tapChangerTables();
+        TapChangerData[] phaseTapChangers = model.phaseTapChangers(tapChangerTables);
+        Assert.assertSame(phaseTapChangers, model.phaseTapChangers(tapChangerTables));
+        Assert.assertEquals(3, phaseTapChangers.length);
+        // Ends without phase tap changer keep their ratio, angle and reactance
+        for (int end = 1; end <= 2; end++) {
+            TapChangerData phaseTapChanger = phaseTapChangers[end - 1];
+            Assert.assertEquals(1.0, phaseTapChanger.rptca, 0.0);
+            Assert.assertEquals(0.0, phaseTapChanger.rptcA, 0.0);
+            Assert.assertEquals(1.0, phaseTapChanger.rptcACos, 0.0);
+            Assert.assertFalse(phaseTapChanger.xStep);
+            Assert.assertEquals(2.5, XfmrUtilities.getX(2.5, phaseTapChanger, end == 2), 0.0);
+        }
+        // The two winding transformer has no third end
+        Assert.assertNull(phaseTapChangers[2]);
+
+        // Other tables compile them again
+        Assert.assertNotSame(phaseTapChangers, model.phaseTapChangers(
+                TapChangerTables.of(new PropertyBags(), new PropertyBags())));
+    }
+
+    @Test
+    public void nodeParametersTest() {
+        InterpretedModel model = KronAdmittanceModels.xfmr2(InterpretationFixture.cgmes(), true);
+        PropertyBag node = model.getNodeParameters("3");
+        Assert.assertEquals(1.06519040 * VBASE, node.asDouble("v"), 0.0);
+        Assert.assertEquals(Math.toDegrees(-0.04950536), node.asDouble("angle"), 0.0);
+        Assert.assertEquals(13.0, node.asDouble("p"), 0.0);
+        Assert.assertEquals(5.0, node.asDouble("q"), 0.0);
+        Assert.assertEquals(400.0, node.asDouble("nominalV"), 0.0);
+        Assert.assertNull(model.getNodeParameters("unknown"));
+        Assert.assertEquals(5, model.getNodeParametersValues().size());
+    }
+
+    @Test
+    public void lineParametersTest() {
+        InterpretedModel model = KronAdmittanceModels.line(InterpretationFixture.cgmes(), false);
+        PropertyBag line = model.getLineParameters("T2");
+        Assert.assertEquals(0.0016 / ZPU, line.asDouble("r"), 0.0);
+        Assert.assertEquals(0.091 / ZPU, line.asDouble("x"), 0.0);
+        Assert.assertEquals(0.39 * ZPU, line.asDouble("bch"), 0.0);
+        Assert.assertEquals("T", line.get("terminal1"));
+        Assert.assertEquals("2", line.get("terminal2"));
+        Assert.assertTrue(line.asBoolean("connected1", false));
+        Assert.assertFalse(line.asBoolean("connected2", true));
+        Assert.assertNull(model.getLineParameters("unknown"));
+    }
+
+    @Test
+    public void transformerParametersTest() {
+        InterpretedModel model = KronAdmittanceModels.xfmr2(InterpretationFixture.cgmes(), false);
+        PropertyBag xfmr2 = model.getTransformerParameters("T2");
+        Assert.assertEquals(0.0016 / ZPU, xfmr2.asDouble("r1"), 0.0);
+        Assert.assertEquals(0.091 / ZPU, xfmr2.asDouble("x1"), 0.0);
+        Assert.assertEquals(0.39 * ZPU, xfmr2.asDouble("b1"), 0.0);
+        Assert.assertEquals(0.0, xfmr2.asDouble("g1"), 0.0);
+        Assert.assertEquals(400.0, xfmr2.asDouble("ratedU1"), 0.0);
+        Assert.assertEquals(400.0, xfmr2.asDouble("ratedU2"), 0.0);
+        Assert.assertEquals("T", xfmr2.get("terminal1"));
+        Assert.assertEquals("2", xfmr2.get("terminal2"));
+        Assert.assertTrue(xfmr2.asBoolean("connected1", false));
+        Assert.assertFalse(xfmr2.asBoolean("connected2", true));
+        // The missing third end has neither rated voltage nor terminal
+        Assert.assertFalse(xfmr2.containsKey("ratedU3"));
+        Assert.assertFalse(xfmr2.containsKey("terminal3"));
+        Assert.assertFalse(xfmr2.containsKey("ptype1"));
+        Assert.assertNull(model.getTransformerParameters("unknown"));
+    }
+
+    // Equipment identifiers are looked up by index, also in a model read from a snapshot
+    @Test
+    public void equipmentIndexTest() throws IOException {
+        CompiledModel line = KronAdmittanceModels.line(InterpretationFixture.cgmes(), true).compiledModel();
+        CompiledModel xfmr2 = KronAdmittanceModels.xfmr2(InterpretationFixture.cgmes(), true).compiledModel();
+        Path file = folder.newFile().toPath();
+        ModelSnapshot.write(xfmr2, TapChangerTables.of(new PropertyBags(), new PropertyBags()), file);
+        CompiledModel read = ModelSnapshot.read(file).compiledModel();
+        for (CompiledModel model : Arrays.asList(line, xfmr2, read)) {
+            for (int l = 0; l < model.numLines(); l++) {
+                Assert.assertEquals(l, model.lineIndex(model.lineIds[l]));
+            }
+            for (int t = 0; t < model.numTransformers(); t++) {
+                Assert.assertEquals(t, model.transformerIndex(model.transformerIds[t]));
+            }
+            Assert.assertEquals(CompiledModel.NO_INDEX, model.lineIndex("unknown"));
+            Assert.assertEquals(CompiledModel.NO_INDEX, model.transformerIndex(null));
+        }
+        Assert.assertEquals(CompiledModel.NO_INDEX, line.transformerIndex("T2"));
+        Assert.assertEquals(xfmr2.transformerIndex("T2"), read.transformerIndex("T2"));
+    }
+
+    @Test
+    public void nodeParametersValuesTest() {
+        InterpretedModel model = KronAdmittanceModels.line(InterpretationFixture.cgmes(), true);
+        CompiledModel compiled = model.compiledModel();
+        Collection<PropertyBag> values = model.getNodeParametersValues();
+        Assert.assertEquals(compiled.numNodes(), values.size());
+        int n = 0;
+        for (PropertyBag node : values) {
+            Assert.assertEquals(model.getNodeParameters(compiled.nodeIds[n]), node);
+            n++;
+        }
+    }
+
+    @Test
+    public void topologyTest() {
+        InterpretedModel model = KronAdmittanceModels.xfmr3(InterpretationFixture.cgmes(), true);
+        Map<String, List<String>> equipmentsInNode = model.getEquipmentsInNode();
+        Assert.assertEquals(Arrays.asList("LSlack1"), equipmentsInNode.get("Slack"));
+        Assert.assertEquals(Arrays.asList("123"), equipmentsInNode.get("2"));
+        Assert.assertTrue(equipmentsInNode.get("1").containsAll(Arrays.asList("LSlack1", "123")));
+
+        Map<List<String>, Boolean> isolatedNodes = model.getIsolatedNodes();
+        Assert.assertEquals(4, model.getJoinedNodes().size());
+        for (List<String> bus : model.getJoinedNodes()) {
+            Assert.assertFalse(isolatedNodes.get(bus));
+        }
+
+        isolatedNodes = KronAdmittanceModels.xfmr3(InterpretationFixture.cgmes(), false).getIsolatedNodes();
+        Assert.assertTrue(isolatedNodes.get(Collections.singletonList("2")));
+        Assert.assertFalse(isolatedNodes.get(Collections.singletonList("3")));
+    }
+}
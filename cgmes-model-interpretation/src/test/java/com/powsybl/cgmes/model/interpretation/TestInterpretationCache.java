@@ -0,0 +1,271 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.powsybl.cgmes.model.interpretation.DetectedBranchModel.ChangerType;
+import com.powsybl.cgmes.model.interpretation.InterpretationResult.ValidationData;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestInterpretationCache {
+
+    private static final long HOUR = 3600 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws IOException {
+        cacheFolder = folder.newFolder("cache").toPath();
+    }
+
+    @Test
+    public void roundTripTest() {
+        InterpretationCache cache = new InterpretationCache(cacheFolder);
+        // Without the results of the search of best model mappings
+        InterpretationResult result = sampleResult(false);
+        cache.put("k1", result);
+        assertSameResult(result, cache.get("k1"));
+
+        InterpretationResult searched = sampleResult(true);
+        cache.put("k2", searched);
+        assertSameResult(searched, cache.get("k2"));
+
+        // A result that is not in the cache
+        Assert.assertNull(cache.get("k3"));
+    }
+
+    @Test
+    public void keyTest() throws IOException {
+        Path dataset = folder.newFolder("dataset").toPath();
+        Files.write(dataset.resolve("EQ.xml"), new byte[] {1, 2, 3});
+        Files.write(dataset.resolve("SV.xml"), new byte[] {4, 5, 6});
+        Path boundary = folder.newFolder("boundary").toPath();
+        Files.write(boundary.resolve("EQ_BD.xml"), new byte[] {7, 8, 9});
+
+        String key = new InterpretationCache(cacheFolder).key(dataset, boundary, "settings");
+        Assert.assertEquals(key, new InterpretationCache(cacheFolder).key(dataset, boundary, "settings"));
+        Assert.assertNotEquals(key, new InterpretationCache(cacheFolder).key(dataset, boundary, "other settings"));
+        Assert.assertNotEquals(key, new InterpretationCache(cacheFolder).key(dataset, null, "settings"));
+
+        // One byte of the dataset
+        Files.write(dataset.resolve("SV.xml"), new byte[] {4, 5, 7});
+        Assert.assertNotEquals(key, new InterpretationCache(cacheFolder).key(dataset, boundary, "settings"));
+        Files.write(dataset.resolve("SV.xml"), new byte[] {4, 5, 6});
+        Assert.assertEquals(key, new InterpretationCache(cacheFolder).key(dataset, boundary, "settings"));
+
+        // The boundary is hashed once by each cache, a new one sees its changes
+        InterpretationCache cache = new InterpretationCache(cacheFolder);
+        Assert.assertEquals(key, cache.key(dataset, boundary, "settings"));
+        Files.write(boundary.resolve("EQ_BD.xml"), new byte[] {7, 8, 8});
+        Assert.assertEquals(key, cache.key(dataset, boundary, "settings"));
+        Assert.assertNotEquals(key, new InterpretationCache(cacheFolder).key(dataset, boundary, "settings"));
+    }
+
+    @Test
+    public void discardedTest() throws IOException {
+        InterpretationCache cache = new InterpretationCache(cacheFolder);
+        cache.put("truncated", sampleResult(true));
+        Path truncated = cacheFolder.resolve("truncated.bin");
+        byte[] bytes = Files.readAllBytes(truncated);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length / 2));
+        Assert.assertNull(cache.get("truncated"));
+        Assert.assertFalse(Files.exists(truncated));
+
+        // A result written by another version
+        Path otherVersion = cacheFolder.resolve("version.bin");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(otherVersion))) {
+            out.writeInt(0x43474d49);
+            out.writeInt(0);
+        }
+        Assert.assertNull(cache.get("version"));
+        Assert.assertFalse(Files.exists(otherVersion));
+
+        Path corrupt = cacheFolder.resolve("corrupt.bin");
+        Files.write(corrupt, "corrupt".getBytes());
+        Assert.assertNull(cache.get("corrupt"));
+        Assert.assertFalse(Files.exists(corrupt));
+    }
+
+    @Test
+    public void evictTest() throws IOException {
+        InterpretationCache cache = new InterpretationCache(cacheFolder);
+        for (String key : Arrays.asList("k1", "k2", "k3", "k4")) {
+            cache.put(key, sampleResult(false));
+        }
+        long now = System.currentTimeMillis();
+        used("k1", now - 3 * HOUR);
+        used("k2", now - 2 * HOUR);
+        used("k3", now - HOUR);
+        used("k4", now);
+
+        // Evicted by age
+        cache.setMaxAge(Duration.ofMinutes(150));
+        cache.evict();
+        Assert.assertEquals(Arrays.asList("k2.bin", "k3.bin", "k4.bin"), cachedFiles());
+
+        // Reading a result makes it the most recently used one
+        Assert.assertNotNull(cache.get("k2"));
+        long size = Files.size(cacheFolder.resolve("k4.bin"));
+        cache.setMaxSize(2 * size);
+        cache.evict();
+        Assert.assertEquals(Arrays.asList("k2.bin", "k4.bin"), cachedFiles());
+
+        cache.setMaxSize(0);
+        cache.evict();
+        Assert.assertTrue(cachedFiles().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSizeTest() {
+        new InterpretationCache(cacheFolder).setMaxSize(-1);
+    }
+
+    private void used(String key, long millis) throws IOException {
+        Files.setLastModifiedTime(cacheFolder.resolve(key + ".bin"), FileTime.fromMillis(millis));
+    }
+
+    private List<String> cachedFiles() throws IOException {
+        List<String> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(cacheFolder)) {
+            paths.forEach(p -> files.add(p.getFileName().toString()));
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    // A pruned configuration, a line model without tap changers and a transformer model
+    private static InterpretationResult sampleResult(boolean searched) {
+        List<CgmesEquipmentModelMapping> configs = new ArrayList<>();
+        ModelInterpretation.addModelMappingConfigurations(configs);
+
+        InterpretationResult result = new InterpretationResult();
+        result.error = 12.5;
+        result.validationDataForAllModelMapping = new LinkedHashMap<>();
+        ValidationData validationData = new ValidationData();
+        validationData.balance = 12.5;
+        DetectedEquipmentModel line = new DetectedEquipmentModel(new DetectedBranchModel(0.0, 0.5));
+        line.total = 3;
+        line.calculated = 2;
+        line.ok = 1;
+        validationData.detectedModelData.put(line.code(), line);
+        DetectedEquipmentModel xfmr2 = new DetectedEquipmentModel(Collections.singletonList(
+                new DetectedBranchModel(ChangerType.FIXED, ChangerType.ABSENT, true, false,
+                        ChangerType.CHANGEABLE_AT_NEUTRAL, ChangerType.REGULATING_CONTROL)));
+        xfmr2.total = 1;
+        xfmr2.calculated = 1;
+        xfmr2.ok = 0;
+        validationData.detectedModelData.put(xfmr2.code(), xfmr2);
+        BalanceColumns balanceColumns = new BalanceColumns(Arrays.asList(Arrays.asList("N0", "N1"),
+                Collections.singletonList("N2")), 0);
+        balanceColumns.add(0, 10.0, -2.5, BalanceColumns.CALCULATED, 2, 1, 0);
+        balanceColumns.add(1, 0.0, 0.0, BalanceColumns.ISOLATED, 0, 0, 0);
+        balanceColumns.complete();
+        validationData.balanceColumns = balanceColumns;
+        result.validationDataForAllModelMapping.put(configs.get(0), validationData);
+
+        ValidationData pruned = new ValidationData();
+        pruned.balance = 40.0;
+        pruned.pruned = true;
+        pruned.prunedAt = 0.25;
+        result.validationDataForAllModelMapping.put(configs.get(1), pruned);
+
+        if (searched) {
+            result.bestModelMappings = new LinkedHashMap<>();
+            result.bestModelMappings.put(configs.get(2), 1.5);
+            result.bestModelMappings.put(configs.get(0), 12.5);
+        }
+        return result;
+    }
+
+    private static void assertSameResult(InterpretationResult expected, InterpretationResult actual) {
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(expected.error, actual.error, 0.0);
+        Assert.assertEquals(expected.validationDataForAllModelMapping.size(),
+                actual.validationDataForAllModelMapping.size());
+        Iterator<Map.Entry<CgmesEquipmentModelMapping, ValidationData>> k = actual.validationDataForAllModelMapping
+                .entrySet().iterator();
+        for (Map.Entry<CgmesEquipmentModelMapping, ValidationData> e : expected.validationDataForAllModelMapping
+                .entrySet()) {
+            Map.Entry<CgmesEquipmentModelMapping, ValidationData> a = k.next();
+            assertSameMapping(e.getKey(), a.getKey());
+            assertSameValidationData(e.getValue(), a.getValue());
+        }
+        if (expected.bestModelMappings == null) {
+            Assert.assertNull(actual.bestModelMappings);
+            return;
+        }
+        Assert.assertEquals(expected.bestModelMappings.size(), actual.bestModelMappings.size());
+        Iterator<Map.Entry<CgmesEquipmentModelMapping, Double>> b = actual.bestModelMappings.entrySet().iterator();
+        for (Map.Entry<CgmesEquipmentModelMapping, Double> e : expected.bestModelMappings.entrySet()) {
+            Map.Entry<CgmesEquipmentModelMapping, Double> a = b.next();
+            assertSameMapping(e.getKey(), a.getKey());
+            Assert.assertEquals(e.getValue(), a.getValue());
+        }
+    }
+
+    private static void assertSameMapping(CgmesEquipmentModelMapping expected, CgmesEquipmentModelMapping actual) {
+        Assert.assertTrue(expected.sameLineMapping(actual));
+        Assert.assertTrue(expected.sameXfmr2Mapping(actual));
+        Assert.assertTrue(expected.sameXfmr3Mapping(actual));
+    }
+
+    private static void assertSameValidationData(ValidationData expected, ValidationData actual) {
+        Assert.assertEquals(expected.getBalance(), actual.getBalance(), 0.0);
+        Assert.assertEquals(expected.isPruned(), actual.isPruned());
+        Assert.assertEquals(expected.getPrunedAt(), actual.getPrunedAt(), 0.0);
+        Assert.assertEquals(expected.getBalanceData(), actual.getBalanceData());
+        Assert.assertEquals(expected.balanceColumns.totalNodes(), actual.balanceColumns.totalNodes());
+        Assert.assertEquals(expected.balanceColumns.isolatedNodes(), actual.balanceColumns.isolatedNodes());
+        Assert.assertEquals(expected.balanceColumns.totalError(), actual.balanceColumns.totalError(), 0.0);
+        Assert.assertEquals(expected.getDetectedModelData().keySet(), actual.getDetectedModelData().keySet());
+        for (Map.Entry<String, DetectedEquipmentModel> e : expected.getDetectedModelData().entrySet()) {
+            DetectedEquipmentModel model = actual.getDetectedModelData().get(e.getKey());
+            Assert.assertEquals(e.getKey(), model.code());
+            Assert.assertEquals(e.getValue().total, model.total);
+            Assert.assertEquals(e.getValue().calculated, model.calculated);
+            Assert.assertEquals(e.getValue().ok, model.ok);
+        }
+        // Lines have no tap changers
+        DetectedBranchModel line = actual.getDetectedModelData().values().stream()
+                .map(model -> model.detectedBranchModels.get(0))
+                .filter(branchModel -> branchModel.ratio1 == null)
+                .findFirst().orElse(null);
+        Assert.assertEquals(expected.getDetectedModelData().isEmpty(), line == null);
+        if (line != null) {
+            Assert.assertNull(line.phase1);
+            Assert.assertNull(line.ratio2);
+            Assert.assertNull(line.phase2);
+        }
+    }
+
+    private Path cacheFolder;
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.powsybl.cgmes.model.interpretation.InterpretationEvents.Recorder;
+import com.powsybl.cgmes.model.interpretation.InterpretationResult.ValidationData;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestInterpretationEvents {
+
+    @Test
+    public void noRecorderTest() throws IOException {
+        // As when the event types have not been compiled or jdk.jfr is not available
+        Recorder recorder = InterpretationEvents.recorder("com.powsybl.cgmes.model.interpretation.MissingEvents");
+        Assert.assertEquals("NoRecorder", recorder.getClass().getSimpleName());
+
+        List<String> calculated = new ArrayList<>();
+        Object loaded = recorder.beginModelLoad("model");
+        Assert.assertNull(loaded);
+        recorder.modelLoaded(loaded, "model", 10, () -> {
+            calculated.add("triples");
+            return 0L;
+        });
+        Object evaluated = recorder.beginConfiguration();
+        Assert.assertNull(evaluated);
+        recorder.configurationEvaluated(evaluated, "model", new CgmesEquipmentModelMapping(), new ValidationData());
+        // The size of the report file is not read
+        Object written = recorder.beginReport();
+        Assert.assertNull(written);
+        recorder.reportWritten(written, "report", Paths.get("missing", "report.csv"), 1);
+        recorder.modelFailed("model", new IOException("failed"));
+        Assert.assertTrue(calculated.isEmpty());
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.powsybl.cgmes.model.interpretation.InterpretationMetrics.Phase;
+import com.powsybl.cgmes.model.interpretation.InterpretationMetrics.PhaseStatistics;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestInterpretationMetrics {
+
+    private static final int THREADS  = 8;
+    private static final int MEASURES = 1000;
+
+    @Test
+    public void measureTest() {
+        InterpretationMetrics metrics = new InterpretationMetrics();
+        Assert.assertTrue(metrics.phases().isEmpty());
+        metrics.start(Phase.BALANCE).stop(10);
+        metrics.start(Phase.BALANCE).stop(5);
+        metrics.start(Phase.REPORT).stop(1);
+
+        Map<Phase, PhaseStatistics> phases = metrics.phases();
+        Assert.assertEquals(2, phases.size());
+        Assert.assertEquals(2, phases.get(Phase.BALANCE).getCount());
+        Assert.assertEquals(15, phases.get(Phase.BALANCE).getElements());
+        Assert.assertTrue(phases.get(Phase.BALANCE).getWallNanos() >= 0);
+        Assert.assertTrue(phases.get(Phase.BALANCE).getCpuNanos() >= 0);
+        Assert.assertTrue(phases.get(Phase.BALANCE).getAllocatedBytes() >= 0);
+        Assert.assertEquals(1, phases.get(Phase.REPORT).getCount());
+
+        // Phases are a copy, they do not change with later measures
+        metrics.start(Phase.BALANCE).stop(1);
+        Assert.assertEquals(2, phases.get(Phase.BALANCE).getCount());
+        Assert.assertEquals(3, metrics.phases().get(Phase.BALANCE).getCount());
+    }
+
+    @Test
+    public void addTest() {
+        InterpretationMetrics model1 = new InterpretationMetrics();
+        model1.start(Phase.PARSE).stop(3);
+        model1.start(Phase.BALANCE).stop(10);
+        InterpretationMetrics model2 = new InterpretationMetrics();
+        model2.start(Phase.BALANCE).stop(20);
+
+        InterpretationMetrics total = new InterpretationMetrics();
+        total.add(model1);
+        total.add(model2);
+        Map<Phase, PhaseStatistics> phases = total.phases();
+        Assert.assertEquals(1, phases.get(Phase.PARSE).getCount());
+        Assert.assertEquals(3, phases.get(Phase.PARSE).getElements());
+        Assert.assertEquals(2, phases.get(Phase.BALANCE).getCount());
+        Assert.assertEquals(30, phases.get(Phase.BALANCE).getElements());
+        Assert.assertEquals(model1.phases().get(Phase.BALANCE).getWallNanos()
+                + model2.phases().get(Phase.BALANCE).getWallNanos(), phases.get(Phase.BALANCE).getWallNanos());
+        // The added metrics are not changed
+        Assert.assertEquals(1, model2.phases().get(Phase.BALANCE).getCount());
+    }
+
+    // Measures stopped and metrics added from several threads are all recorded
+    @Test
+    public void concurrentTest() throws InterruptedException, ExecutionException {
+        InterpretationMetrics metrics = new InterpretationMetrics();
+        InterpretationMetrics other = new InterpretationMetrics();
+        other.start(Phase.BALANCE).stop(2);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int k = 0; k < MEASURES; k++) {
+                        metrics.start(Phase.BALANCE).stop(1);
+                        metrics.add(other);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        PhaseStatistics balance = metrics.phases().get(Phase.BALANCE);
+        Assert.assertEquals(2L * THREADS * MEASURES, balance.getCount());
+        Assert.assertEquals(3L * THREADS * MEASURES, balance.getElements());
+    }
+}
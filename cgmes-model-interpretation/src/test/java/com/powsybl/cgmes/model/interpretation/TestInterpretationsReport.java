@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestInterpretationsReport {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Only the complete report is left in the output folder
+    @Test
+    public void reportTest() throws IOException {
+        Map<String, InterpretationResult> interpretations = new TreeMap<>();
+        List<InterpretedModel> models = InterpretationFixture.models();
+        for (int k = 0; k < models.size(); k++) {
+            interpretations.put("model" + k, InterpretationFixture.interpret(models.get(k)));
+        }
+        Path output = folder.getRoot().toPath();
+        new InterpretationsReport(output).report(interpretations);
+
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(output)) {
+            files = paths.collect(Collectors.toList());
+        }
+        Assert.assertEquals(1, files.size());
+        Path report = files.get(0);
+        Assert.assertTrue(report.getFileName().toString().startsWith("CGMESModelInterpretationReport."));
+        Assert.assertFalse(report.getFileName().toString().endsWith(".tmp"));
+        String contents = new String(Files.readAllBytes(report), StandardCharsets.UTF_8);
+        for (String model : interpretations.keySet()) {
+            Assert.assertTrue(model, contents.contains(model));
+        }
+    }
+}
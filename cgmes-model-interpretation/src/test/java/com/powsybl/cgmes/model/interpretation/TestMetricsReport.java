@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.powsybl.cgmes.model.interpretation.InterpretationMetrics.Phase;
+import com.powsybl.cgmes.model.interpretation.MetricsReport.Format;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestMetricsReport {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        models = new TreeMap<>();
+        InterpretationMetrics model1 = new InterpretationMetrics();
+        model1.start(Phase.PARSE).stop(3);
+        model1.start(Phase.BALANCE).stop(10);
+        models.put("model1", model1);
+        InterpretationMetrics model2 = new InterpretationMetrics();
+        model2.start(Phase.BALANCE).stop(20);
+        models.put("a \"quoted\" model", model2);
+        catalog = new InterpretationMetrics();
+        catalog.start(Phase.REPORT).stop(1);
+    }
+
+    @Test
+    public void jsonTest() throws IOException {
+        Path output = folder.newFile("metrics.json").toPath();
+        new MetricsReport(output, Format.JSON).report(models, catalog);
+        String json = new String(Files.readAllBytes(output), StandardCharsets.UTF_8);
+
+        Assert.assertTrue(json.startsWith("{"));
+        Assert.assertTrue(json.trim().endsWith("}"));
+        Assert.assertTrue(json.contains("\"models\": 2,"));
+        Assert.assertTrue(json.contains("\"a \\\"quoted\\\" model\": {"));
+        Assert.assertTrue(json.contains("\"model1\": {"));
+        // Catalog phases add the phases of the models and the ones of the whole catalog
+        String catalogPhases = json.substring(json.indexOf("\"catalog\""), json.indexOf("\"models\": {"));
+        Assert.assertTrue(catalogPhases.contains("\"parse\": {\"count\": 1,"));
+        Assert.assertTrue(catalogPhases.contains("\"balance\": {\"count\": 2,"));
+        Assert.assertTrue(catalogPhases.contains("\"elements\": 30}"));
+        Assert.assertTrue(catalogPhases.contains("\"report\": {\"count\": 1,"));
+        String modelPhases = json.substring(json.indexOf("\"model1\""));
+        Assert.assertTrue(modelPhases.contains("\"elements\": 10}"));
+        Assert.assertFalse(modelPhases.contains("\"report\""));
+        Assert.assertEquals(count(json, '{'), count(json, '}'));
+    }
+
+    @Test
+    public void prometheusTest() throws IOException {
+        Path output = folder.newFile("metrics.prom").toPath();
+        new MetricsReport(output, Format.PROMETHEUS).report(models, catalog);
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+
+        Assert.assertTrue(lines.contains("# TYPE cgmes_interpretation_catalog_phase_runs_total counter"));
+        Assert.assertTrue(lines.contains("# TYPE cgmes_interpretation_phase_runs_total counter"));
+        Assert.assertTrue(lines.contains("cgmes_interpretation_catalog_phase_runs_total{phase=\"balance\"} 2"));
+        Assert.assertTrue(lines.contains("cgmes_interpretation_catalog_phase_elements_total{phase=\"balance\"} 30"));
+        Assert.assertTrue(lines.contains("cgmes_interpretation_catalog_phase_runs_total{phase=\"report\"} 1"));
+        Assert.assertTrue(lines.contains(
+                "cgmes_interpretation_phase_elements_total{model=\"model1\",phase=\"balance\"} 10"));
+        Assert.assertTrue(lines.contains(
+                "cgmes_interpretation_phase_elements_total{model=\"a \\\"quoted\\\" model\",phase=\"balance\"} 20"));
+
+        // Summing the series of a model metric gives the models total, the catalog is not counted twice
+        long modelBalances = lines.stream()
+                .filter(l -> l.startsWith("cgmes_interpretation_phase_elements_total{") && l.contains("balance"))
+                .mapToLong(l -> Long.parseLong(l.substring(l.lastIndexOf(' ') + 1)))
+                .sum();
+        Assert.assertEquals(30, modelBalances);
+        // Every series has a header for its metric, and model series always have the model label
+        List<String> series = lines.stream().filter(l -> !l.startsWith("#")).collect(Collectors.toList());
+        for (String s : series) {
+            String name = s.substring(0, s.indexOf('{'));
+            Assert.assertTrue(s, lines.contains("# TYPE " + name + " counter"));
+            Assert.assertEquals(s, name.startsWith("cgmes_interpretation_phase_"), s.contains("model=\""));
+        }
+    }
+
+    private static long count(String s, char c) {
+        return s.chars().filter(x -> x == c).count();
+    }
+
+    private Map<String, InterpretationMetrics> models;
+    private InterpretationMetrics              catalog;
+}
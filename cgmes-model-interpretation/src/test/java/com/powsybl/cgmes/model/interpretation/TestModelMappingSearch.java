@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.powsybl.cgmes.model.interpretation.InterpretationResult.ValidationData;
+import com.powsybl.cgmes.model.interpretation.test.KronAdmittanceModels;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestModelMappingSearch {
+
+    // Node flows are summed in a different order by the search
+    private static final double TOLERANCE    = 1e-6;
+    // All the combinations of model mapping alternatives
+    private static final int    ALL_MAPPINGS = 3 * 2 * 5 * 5 * 2 * 4 * 2 * 2 * 2 * 2 * 3 * 3;
+
+    @Test
+    public void sameErrorsTest() {
+        InterpretationFixture.models().forEach(TestModelMappingSearch::assertSameErrors);
+    }
+
+    @Test
+    public void bestMappingsTest() {
+        InterpretationResult interpretation = interpret(
+                KronAdmittanceModels.xfmr2(InterpretationFixture.cgmes(), true), 3);
+        List<Double> errors = new ArrayList<>(interpretation.bestModelMappings.values());
+        Assert.assertEquals(3, errors.size());
+        Assert.assertTrue(errors.get(0) <= errors.get(1));
+        Assert.assertTrue(errors.get(1) <= errors.get(2));
+        // No hand picked configuration is better than the best combination
+        Assert.assertTrue(errors.get(0) <= interpretation.error + TOLERANCE);
+    }
+
+    // The error found by the search for each hand picked configuration is the one of its own evaluation
+    private static void assertSameErrors(InterpretedModel model) {
+        InterpretationResult interpretation = interpret(model, ALL_MAPPINGS);
+        Map<CgmesEquipmentModelMapping, Double> bestModelMappings = interpretation.bestModelMappings;
+        Assert.assertEquals(ALL_MAPPINGS, bestModelMappings.size());
+        Assert.assertEquals(13, interpretation.validationDataForAllModelMapping.size());
+        for (Map.Entry<CgmesEquipmentModelMapping, ValidationData> e : interpretation.validationDataForAllModelMapping
+                .entrySet()) {
+            Double error = searchError(bestModelMappings, e.getKey());
+            Assert.assertNotNull(e.getKey().toString(), error);
+            Assert.assertEquals(e.getKey().toString(), e.getValue().getBalance(), error, TOLERANCE);
+        }
+    }
+
+    private static Double searchError(Map<CgmesEquipmentModelMapping, Double> bestModelMappings,
+            CgmesEquipmentModelMapping config) {
+        for (Map.Entry<CgmesEquipmentModelMapping, Double> e : bestModelMappings.entrySet()) {
+            CgmesEquipmentModelMapping mapping = e.getKey();
+            if (mapping.sameLineMapping(config) && mapping.sameXfmr2Mapping(config)
+                    && mapping.sameXfmr3Mapping(config)) {
+                return e.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static InterpretationResult interpret(InterpretedModel model, int bestMappings) {
+        return InterpretationFixture.interpret(model, flowValidation -> flowValidation.setMappingSearch(bestMappings));
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.powsybl.cgmes.model.interpretation.InterpretationResult.ValidationData;
+import com.powsybl.cgmes.model.interpretation.test.KronAdmittanceModels;
+import com.powsybl.commons.PowsyblException;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestModelSnapshot {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameInterpretationTest() throws IOException {
+        for (InterpretedModel model : InterpretationFixture.models()) {
+            assertSameInterpretation(model);
+        }
+        assertSameInterpretation(KronAdmittanceModels.xfmr3OpenEnd(InterpretationFixture.cgmes()));
+    }
+
+    @Test
+    public void truncatedTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("model.snapshot");
+        KronAdmittanceModels.xfmr3(InterpretationFixture.cgmes(), true).writeSnapshot(file);
+        byte[] bytes = Files.readAllBytes(file);
+        // Truncated at any position, even inside the header
+        for (int length = 0; length < bytes.length; length++) {
+            Files.write(file, Arrays.copyOf(bytes, length));
+            assertRejected(file);
+        }
+    }
+
+    @Test
+    public void wrongMagicTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("model.snapshot");
+        KronAdmittanceModels.line(InterpretationFixture.cgmes(), true).writeSnapshot(file);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(0, 0x43474d49);
+        Files.write(file, bytes);
+        assertRejected(file);
+    }
+
+    @Test
+    public void wrongVersionTest() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("model.snapshot");
+        KronAdmittanceModels.line(InterpretationFixture.cgmes(), true).writeSnapshot(file);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(4, 0);
+        Files.write(file, bytes);
+        assertRejected(file);
+    }
+
+    @Test
+    public void corruptIndexesTest() throws IOException {
+        assertRejected(KronAdmittanceModels.line(InterpretationFixture.cgmes(), true), m -> m.incidenceStart[0] = 1);
+        assertRejected(KronAdmittanceModels.line(InterpretationFixture.cgmes(), true),
+                m -> m.incidenceStart[m.incidenceStart.length - 1]--);
+        assertRejected(KronAdmittanceModels.line(InterpretationFixture.cgmes(), true),
+                m -> m.incidenceStart[1] = m.incidenceStart[2] + 1);
+        assertRejected(KronAdmittanceModels.line(InterpretationFixture.cgmes(), true),
+                m -> m.incidentEquipment[0] = m.numLines() + m.numTransformers());
+        assertRejected(KronAdmittanceModels.line(InterpretationFixture.cgmes(), true),
+                m -> m.lineNode[0] = m.numNodes());
+        assertRejected(KronAdmittanceModels.xfmr2(InterpretationFixture.cgmes(), true),
+                m -> m.transformerNode[0] = -2);
+        assertRejected(KronAdmittanceModels.line(InterpretationFixture.cgmes(), true),
+                m -> m.busStart[1] = m.busStart[2] + 1);
+        assertRejected(KronAdmittanceModels.line(InterpretationFixture.cgmes(), true),
+                m -> m.busNode[0] = m.numNodes());
+    }
+
+    // The model interpreted from its snapshot, without the CGMES model, gives the same results
+    private void assertSameInterpretation(InterpretedModel model) throws IOException {
+        InterpretationResult expected = InterpretationFixture.interpret(model);
+        Path file = folder.newFile().toPath();
+        model.writeSnapshot(file);
+        ModelInterpretation fromSnapshot = new ModelInterpretation(file);
+        fromSnapshot.setWorstNodes(0);
+        fromSnapshot.interpret();
+        InterpretationResult actual = fromSnapshot.getInterpretation();
+
+        Assert.assertEquals(expected.error, actual.error, 0.0);
+        Assert.assertEquals(expected.validationDataForAllModelMapping.size(),
+                actual.validationDataForAllModelMapping.size());
+        Iterator<ValidationData> k = actual.validationDataForAllModelMapping.values().iterator();
+        for (ValidationData e : expected.validationDataForAllModelMapping.values()) {
+            ValidationData a = k.next();
+            Assert.assertEquals(e.getBalance(), a.getBalance(), 0.0);
+            Assert.assertEquals(e.getBalanceData(), a.getBalanceData());
+            Assert.assertEquals(e.getDetectedModelData().keySet(), a.getDetectedModelData().keySet());
+            for (Map.Entry<String, DetectedEquipmentModel> m : e.getDetectedModelData().entrySet()) {
+                Assert.assertEquals(m.getValue().total, a.getDetectedModelData().get(m.getKey()).total);
+                Assert.assertEquals(m.getValue().ok, a.getDetectedModelData().get(m.getKey()).ok);
+            }
+        }
+    }
+
+    // The snapshot of the model with its compiled model corrupted is rejected
+    private void assertRejected(InterpretedModel model, Consumer<CompiledModel> corruption) throws IOException {
+        corruption.accept(model.compiledModel());
+        Path file = folder.newFile().toPath();
+        model.writeSnapshot(file);
+        assertRejected(file);
+    }
+
+    private static void assertRejected(Path file) {
+        try {
+            ModelSnapshot.read(file);
+            Assert.fail("Accepted " + file);
+        } catch (PowsyblException x) {
+            // Expected
+        } catch (IOException x) {
+            Assert.fail(x.getMessage());
+        }
+    }
+}
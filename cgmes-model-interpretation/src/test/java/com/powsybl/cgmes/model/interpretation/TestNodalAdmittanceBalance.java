@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.powsybl.cgmes.model.interpretation.CgmesEquipmentModelMapping.Xfmr3RatioPhaseMappingAlternative;
+import com.powsybl.cgmes.model.interpretation.InterpretationResult.ValidationData;
+import com.powsybl.cgmes.model.interpretation.test.KronAdmittanceModels;
+import com.powsybl.triplestore.api.PropertyBag;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestNodalAdmittanceBalance {
+
+    // Both ways of calculating the flows only differ in rounding
+    private static final double TOLERANCE = 1e-6;
+
+    @Test
+    public void sameBalancesTest() {
+        InterpretationFixture.models().forEach(TestNodalAdmittanceBalance::assertSameBalances);
+    }
+
+    // Branches with an open end, without voltage at an end or with both ends at the same node
+    @Test
+    public void openAndLoopBranchesTest() {
+        InterpretedModel model = KronAdmittanceModels.openAndLoopBranches(InterpretationFixture.cgmes());
+        assertSameBalances(model);
+        for (ValidationData validationData : interpret(model, true)) {
+            Map<List<String>, PropertyBag> balance = validationData.getBalanceData();
+            Assert.assertTrue(balance.get(Collections.singletonList("1")).asBoolean("calculated", false));
+            Assert.assertFalse(balance.get(Collections.singletonList("2")).asBoolean("calculated", true));
+            Assert.assertTrue(balance.get(Collections.singletonList("3")).asBoolean("calculated", false));
+            Assert.assertFalse(balance.get(Collections.singletonList("4")).asBoolean("calculated", true));
+            // The losses of the transformer connected to itself are counted twice from its first end
+            Assert.assertNotEquals(0.0, balance.get(Collections.singletonList("3")).asDouble("balanceP"), 0.0);
+        }
+    }
+
+    // The branch by branch calculation gives both connected ends of a three winding transformer
+    // with an open end the same simplified flow, the nodal admittance gives each end its exact flow
+    @Test
+    public void xfmr3OpenEndTest() {
+        Map<CgmesEquipmentModelMapping, ValidationData> branchFlows = interpretByConfiguration(
+                KronAdmittanceModels.xfmr3OpenEnd(InterpretationFixture.cgmes()), false);
+        Map<CgmesEquipmentModelMapping, ValidationData> nodalFlows = interpretByConfiguration(
+                KronAdmittanceModels.xfmr3OpenEnd(InterpretationFixture.cgmes()), true);
+
+        // Nothing flows through the open end, the series impedances of ends 1 and 2 carry the current
+        double v1Re = 404.0 * Math.cos(Math.toRadians(-1.0));
+        double v1Im = 404.0 * Math.sin(Math.toRadians(-1.0));
+        double v2Re = 400.0 * Math.cos(Math.toRadians(-2.0));
+        double v2Im = 400.0 * Math.sin(Math.toRadians(-2.0));
+        double r = 1.0;
+        double x = 20.0;
+        double z2 = r * r + x * x;
+        double iRe = ((v1Re - v2Re) * r + (v1Im - v2Im) * x) / z2;
+        double iIm = ((v1Im - v2Im) * r - (v1Re - v2Re) * x) / z2;
+        double p1 = v1Re * iRe + v1Im * iIm;
+        double q1 = v1Im * iRe - v1Re * iIm;
+        double i2 = iRe * iRe + iIm * iIm;
+
+        Assert.assertEquals(branchFlows.size(), nodalFlows.size());
+        Iterator<ValidationData> nodalFlow = nodalFlows.values().iterator();
+        for (Map.Entry<CgmesEquipmentModelMapping, ValidationData> e : branchFlows.entrySet()) {
+            Map<List<String>, PropertyBag> branchBalance = e.getValue().getBalanceData();
+            Map<List<String>, PropertyBag> nodalBalance = nodalFlow.next().getBalanceData();
+            PropertyBag branch1 = branchBalance.get(Collections.singletonList("1"));
+            PropertyBag branch2 = branchBalance.get(Collections.singletonList("2"));
+            PropertyBag nodal1 = nodalBalance.get(Collections.singletonList("1"));
+            PropertyBag nodal2 = nodalBalance.get(Collections.singletonList("2"));
+            Assert.assertTrue(branch1.asBoolean("calculated", false));
+            Assert.assertTrue(branch2.asBoolean("calculated", false));
+            Assert.assertTrue(nodal1.asBoolean("calculated", false));
+            Assert.assertTrue(nodal2.asBoolean("calculated", false));
+            Assert.assertTrue(nodalBalance.get(Collections.singletonList("3")).asBoolean("isolated", false));
+
+            Assert.assertEquals(branch1.asDouble("balanceP"), branch2.asDouble("balanceP"), 0.0);
+            Assert.assertEquals(branch1.asDouble("balanceQ"), branch2.asDouble("balanceQ"), 0.0);
+
+            // With the ratio at the network side the star bus is at 1 kV, seen from the network
+            // the series impedances are ratedU ^ 2 times larger
+            double scale = e.getKey().getXfmr3Ratio0StarBusSide() == Xfmr3RatioPhaseMappingAlternative.NETWORK_SIDE
+                    ? 400.0 * 400.0
+                    : 1.0;
+            Assert.assertEquals(p1 / scale, nodal1.asDouble("balanceP"), TOLERANCE);
+            Assert.assertEquals(q1 / scale, nodal1.asDouble("balanceQ"), TOLERANCE);
+            // Only the losses of the series impedances remain
+            Assert.assertEquals(i2 * r / scale, nodal1.asDouble("balanceP") + nodal2.asDouble("balanceP"),
+                    TOLERANCE);
+            Assert.assertEquals(i2 * x / scale, nodal1.asDouble("balanceQ") + nodal2.asDouble("balanceQ"),
+                    TOLERANCE);
+            Assert.assertNotEquals(branch1.asDouble("balanceP"), nodal1.asDouble("balanceP"), TOLERANCE);
+        }
+    }
+
+    // Configurations are always reported in the same order
+    private static List<ValidationData> interpret(InterpretedModel model, boolean nodalAdmittance) {
+        return new ArrayList<>(interpretByConfiguration(model, nodalAdmittance).values());
+    }
+
+    private static Map<CgmesEquipmentModelMapping, ValidationData> interpretByConfiguration(InterpretedModel model,
+            boolean nodalAdmittance) {
+        return InterpretationFixture.interpret(model,
+                flowValidation -> flowValidation.setNodalAdmittance(nodalAdmittance)).validationDataForAllModelMapping;
+    }
+
+    private static void assertSameBalances(InterpretedModel model) {
+        List<ValidationData> branchFlows = interpret(model, false);
+        List<ValidationData> nodalFlows = interpret(model, true);
+        Assert.assertEquals(branchFlows.size(), nodalFlows.size());
+        for (int k = 0; k < branchFlows.size(); k++) {
+            Assert.assertEquals(branchFlows.get(k).getBalance(), nodalFlows.get(k).getBalance(), TOLERANCE);
+            Map<List<String>, PropertyBag> branchBalance = branchFlows.get(k).getBalanceData();
+            Map<List<String>, PropertyBag> nodalBalance = nodalFlows.get(k).getBalanceData();
+            Assert.assertEquals(model.getJoinedNodes().size(), branchBalance.size());
+            Assert.assertEquals(branchBalance.keySet(), nodalBalance.keySet());
+            for (Map.Entry<List<String>, PropertyBag> e : branchBalance.entrySet()) {
+                PropertyBag branchBus = e.getValue();
+                PropertyBag nodalBus = nodalBalance.get(e.getKey());
+                for (String property : Arrays.asList("calculated", "isolated", "badVoltage", "line", "xfmr2",
+                        "xfmr3")) {
+                    Assert.assertEquals(branchBus.get(property), nodalBus.get(property));
+                }
+                Assert.assertEquals(branchBus.asDouble("balanceP"), nodalBus.asDouble("balanceP"), TOLERANCE);
+                Assert.assertEquals(branchBus.asDouble("balanceQ"), nodalBus.asDouble("balanceQ"), TOLERANCE);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestNodeUnionFind {
+
+    @Test
+    public void joinedNodesTest() {
+        NodeUnionFind nodes = new NodeUnionFind(Arrays.asList("N1", "N2", "N3", "N4", "N5", "N6", "N7", "N8"));
+        // Joins in the order the model is loaded: retained closed switches, z0 lines,
+        // z0 equivalent branches and z0 transformers
+        nodes.union("N1", "N2");
+        nodes.union("N2", "N3");
+        nodes.union("N4", "BOUNDARY");
+        nodes.union("N6", "N5");
+        // Joins of nodes without parameters only do not make a bus
+        nodes.union("X1", "X2");
+
+        List<List<String>> joinedNodes = nodes.joinedNodes();
+        Assert.assertEquals(Arrays.asList(
+                Arrays.asList("N1", "N2", "N3"),
+                Arrays.asList("N4", "BOUNDARY"),
+                Arrays.asList("N5", "N6"),
+                Collections.singletonList("N7"),
+                Collections.singletonList("N8")), joinedNodes);
+
+        // A line between N3 and N5 and a transformer at N8
+        Map<String, List<String>> equipmentsInNode = new HashMap<>();
+        equipmentsInNode.put("N3", Collections.singletonList("L1"));
+        equipmentsInNode.put("N5", Collections.singletonList("L1"));
+        equipmentsInNode.put("N8", Collections.singletonList("T1"));
+        Map<List<String>, Boolean> isolatedNodes = InterpretedModel.isolatedNodes(joinedNodes, equipmentsInNode);
+        Assert.assertEquals(5, isolatedNodes.size());
+        Assert.assertFalse(isolatedNodes.get(Arrays.asList("N1", "N2", "N3")));
+        Assert.assertTrue(isolatedNodes.get(Arrays.asList("N4", "BOUNDARY")));
+        Assert.assertFalse(isolatedNodes.get(Arrays.asList("N5", "N6")));
+        Assert.assertTrue(isolatedNodes.get(Collections.singletonList("N7")));
+        Assert.assertFalse(isolatedNodes.get(Collections.singletonList("N8")));
+    }
+
+    @Test
+    public void repeatedJoinsTest() {
+        NodeUnionFind nodes = new NodeUnionFind(Arrays.asList("A", "B", "C"));
+        // A switch and a z0 line in parallel, and a loop closed by a transformer
+        nodes.union("A", "B");
+        nodes.union("B", "A");
+        nodes.union("B", "C");
+        nodes.union("C", "A");
+        Assert.assertEquals(Collections.singletonList(Arrays.asList("A", "B", "C")), nodes.joinedNodes());
+    }
+
+    @Test
+    public void manyNodesTest() {
+        // More nodes than the initial capacity, some of them only found in joins
+        List<String> ids = new ArrayList<>();
+        for (int k = 0; k < 10; k++) {
+            ids.add("N" + k);
+        }
+        NodeUnionFind nodes = new NodeUnionFind(ids);
+        for (int k = 0; k < 10; k++) {
+            nodes.union("N" + k, "B" + k);
+            nodes.union("B" + k, "C" + k);
+        }
+        nodes.union("N0", "N9");
+        List<List<String>> joinedNodes = nodes.joinedNodes();
+        Assert.assertEquals(9, joinedNodes.size());
+        Assert.assertEquals(Arrays.asList("N0", "N9", "B0", "C0", "B9", "C9"), joinedNodes.get(0));
+        Assert.assertEquals(Arrays.asList("N1", "B1", "C1"), joinedNodes.get(1));
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.powsybl.cgmes.model.interpretation.InterpretationResult.ValidationData;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestPruning {
+
+    @Test
+    public void sameForAllThreadsTest() {
+        int pruned = 0;
+        for (InterpretedModel model : InterpretationFixture.models()) {
+            for (int keep : new int[] {1, 3}) {
+                for (boolean nodalAdmittance : new boolean[] {false, true}) {
+                    List<ValidationData> oneThread = interpret(model, keep, 1, nodalAdmittance);
+                    for (int threads : new int[] {2, 4}) {
+                        List<ValidationData> severalThreads = interpret(model, keep, threads, nodalAdmittance);
+                        Assert.assertEquals(oneThread.size(), severalThreads.size());
+                        for (int k = 0; k < oneThread.size(); k++) {
+                            Assert.assertEquals(oneThread.get(k).isPruned(), severalThreads.get(k).isPruned());
+                            Assert.assertEquals(oneThread.get(k).getPrunedAt(), severalThreads.get(k).getPrunedAt(),
+                                    0.0);
+                            Assert.assertEquals(oneThread.get(k).getBalance(), severalThreads.get(k).getBalance(),
+                                    0.0);
+                        }
+                    }
+                    pruned += oneThread.stream().filter(ValidationData::isPruned).count();
+                }
+            }
+        }
+        // The models have configurations that are clearly worse than the default one
+        Assert.assertTrue(pruned > 0);
+    }
+
+    @Test
+    public void sameBestErrorTest() {
+        for (InterpretedModel model : InterpretationFixture.models()) {
+            InterpretationResult all = InterpretationFixture.interpret(model);
+            for (int keep : new int[] {1, 3}) {
+                InterpretationResult pruned = InterpretationFixture.interpret(model,
+                        flowValidation -> flowValidation.setPruning(keep));
+                Assert.assertEquals(all.error, pruned.error, 0.0);
+                List<ValidationData> allData = new ArrayList<>(all.validationDataForAllModelMapping.values());
+                List<ValidationData> prunedData = new ArrayList<>(pruned.validationDataForAllModelMapping.values());
+                int complete = 0;
+                for (int k = 0; k < allData.size(); k++) {
+                    if (prunedData.get(k).isPruned()) {
+                        Assert.assertTrue(prunedData.get(k).getBalance() <= allData.get(k).getBalance());
+                    } else {
+                        Assert.assertEquals(allData.get(k).getBalance(), prunedData.get(k).getBalance(), 0.0);
+                        complete++;
+                    }
+                }
+                Assert.assertTrue(complete >= keep);
+            }
+        }
+    }
+
+    // The default configuration is always evaluated completely
+    @Test
+    public void defaultFirstTest() {
+        CgmesEquipmentModelMapping defaultConfig = new CgmesEquipmentModelMapping();
+        for (InterpretedModel model : InterpretationFixture.models()) {
+            InterpretationResult pruned = InterpretationFixture.interpret(model,
+                    flowValidation -> flowValidation.setPruning(1));
+            for (Map.Entry<CgmesEquipmentModelMapping, ValidationData> e : pruned.validationDataForAllModelMapping
+                    .entrySet()) {
+                if (e.getKey().alternativesChanged(defaultConfig) == 0) {
+                    Assert.assertFalse(e.getValue().isPruned());
+                }
+            }
+        }
+    }
+
+    private static List<ValidationData> interpret(InterpretedModel model, int keep, int threads,
+            boolean nodalAdmittance) {
+        InterpretationResult interpretation = InterpretationFixture.interpret(model, flowValidation -> {
+            flowValidation.setPruning(keep);
+            flowValidation.setThreads(threads);
+            flowValidation.setNodalAdmittance(nodalAdmittance);
+        });
+        return new ArrayList<>(interpretation.validationDataForAllModelMapping.values());
+    }
+}
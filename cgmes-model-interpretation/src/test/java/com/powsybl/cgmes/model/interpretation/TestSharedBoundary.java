@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.powsybl.cgmes.model.CgmesModel;
+import com.powsybl.cgmes.model.CgmesModelFactory;
+import com.powsybl.cgmes.tools.Catalog;
+import com.powsybl.cgmes.tools.SyntheticCgmesWriter;
+import com.powsybl.commons.datasource.DataSource;
+import com.powsybl.triplestore.api.TripleStoreFactory;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestSharedBoundary {
+
+    private static final int    BOUNDARY_LINES    = 3;
+    private static final int    THREADS           = 4;
+    private static final double BALANCE_TOLERANCE = 1.0e-4;
+    private static final String MODEL             = "model";
+    private static final String BOUNDARY          = "_(EQ|TP)_BD\\.xml";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Models of the catalog, with and without their own boundary files, and the boundary files alone
+    @Before
+    public void setUp() throws IOException {
+        Path full = folder.newFolder("full").toPath().resolve(MODEL);
+        SyntheticCgmesWriter writer = new SyntheticCgmesWriter(1);
+        writer.setSubstations(5);
+        writer.setBoundaryLines(BOUNDARY_LINES);
+        writer.write(full);
+
+        catalog = folder.newFolder("catalog").toPath();
+        own = copy(full, catalog.resolve("own").resolve(MODEL), ".*");
+        shared = copy(full, catalog.resolve("shared").resolve(MODEL), "^(?!.*" + BOUNDARY + ").*");
+        boundary = copy(full, folder.getRoot().toPath().resolve("boundary").resolve(MODEL), ".*" + BOUNDARY);
+        implementation = TripleStoreFactory.defaultImplementation();
+    }
+
+    @Test
+    public void attachWithoutBoundaryFilesTest() {
+        CgmesModel cgmes = load(shared);
+        int nodes = cgmes.topologicalNodes().size();
+        new SharedBoundary(dataSource(boundary), implementation).attachTo(cgmes);
+        Assert.assertEquals(nodes + BOUNDARY_LINES, cgmes.topologicalNodes().size());
+        Assert.assertEquals(load(own).topologicalNodes().size(), cgmes.topologicalNodes().size());
+    }
+
+    // Both models are interpreted the same, the shared boundary completes the one without boundary files
+    @Test
+    public void sameInterpretationTest() throws IOException {
+        CgmesModelsInterpretation models = new CgmesModelsInterpretation(catalog.toString(), boundary.toString());
+        models.setWorstNodes(0);
+        Map<String, InterpretationResult> interpretations = models.reviewAll("glob:**/" + MODEL);
+        Assert.assertTrue(models.getExceptions().isEmpty());
+        Assert.assertEquals(2, interpretations.size());
+        InterpretationResult ownInterpretation = interpretations.get(modelName(own));
+        InterpretationResult sharedInterpretation = interpretations.get(modelName(shared));
+        Assert.assertEquals(0.0, ownInterpretation.error, BALANCE_TOLERANCE);
+        Assert.assertEquals(ownInterpretation.error, sharedInterpretation.error, BALANCE_TOLERANCE);
+    }
+
+    // The shared boundary is not even parsed for a model with its own boundary files
+    @Test
+    public void ownBoundaryLeftAloneTest() throws IOException {
+        Path invalid = Files.createDirectories(folder.getRoot().toPath().resolve("invalid").resolve(MODEL));
+        Files.write(invalid.resolve(MODEL + "_EQ_BD.xml"), "not a boundary".getBytes(StandardCharsets.UTF_8));
+        Files.write(invalid.resolve(MODEL + "_TP_BD.xml"), "not a boundary".getBytes(StandardCharsets.UTF_8));
+
+        CgmesModelsInterpretation models = new CgmesModelsInterpretation(catalog.toString(), invalid.toString());
+        models.setWorstNodes(0);
+        Map<String, InterpretationResult> interpretations = models.reviewAll("glob:**/" + MODEL);
+        Assert.assertEquals(0.0, interpretations.get(modelName(own)).error, BALANCE_TOLERANCE);
+        Assert.assertFalse(models.getExceptions().containsKey(modelName(own)));
+        Assert.assertTrue(models.getExceptions().containsKey(modelName(shared)));
+    }
+
+    @Test
+    public void concurrentAttachTest() throws InterruptedException, ExecutionException {
+        SharedBoundary sharedBoundary = new SharedBoundary(dataSource(boundary), implementation);
+        List<CgmesModel> models = new ArrayList<>();
+        for (int k = 0; k < THREADS; k++) {
+            models.add(load(shared));
+        }
+        int nodes = models.get(0).topologicalNodes().size();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (CgmesModel cgmes : models) {
+                futures.add(executor.submit(() -> sharedBoundary.attachTo(cgmes)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (CgmesModel cgmes : models) {
+            Assert.assertEquals(nodes + BOUNDARY_LINES, cgmes.topologicalNodes().size());
+        }
+        // The boundary is not changed by the copies, it can still be attached
+        CgmesModel cgmes = load(shared);
+        sharedBoundary.attachTo(cgmes);
+        Assert.assertEquals(nodes + BOUNDARY_LINES, cgmes.topologicalNodes().size());
+    }
+
+    private CgmesModel load(Path model) {
+        return CgmesModelFactory.create(dataSource(model), implementation);
+    }
+
+    private DataSource dataSource(Path model) {
+        return new Catalog(folder.getRoot().toString()).dataSource(model);
+    }
+
+    private String modelName(Path model) {
+        return catalog.relativize(model).toString();
+    }
+
+    // Copies the files of a model whose names match the regular expression
+    private static Path copy(Path from, Path to, String regex) throws IOException {
+        Files.createDirectories(to);
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(from)) {
+            paths.filter(p -> p.getFileName().toString().matches(regex)).forEach(files::add);
+        }
+        for (Path file : files) {
+            Files.copy(file, to.resolve(file.getFileName()));
+        }
+        return to;
+    }
+
+    private Path   catalog;
+    private Path   own;
+    private Path   shared;
+    private Path   boundary;
+    private String implementation;
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.powsybl.cgmes.tools.SyntheticCgmesWriter;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestSyntheticCgmesWriter {
+
+    private static final Pattern MODEL_ID = Pattern.compile("rdf:about=\"urn:uuid:([^\"]*)\"");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Model identifiers are valid UUIDs, the same for the same model name and different for each profile
+    @Test
+    public void modelIdsTest() throws IOException {
+        Path output1 = folder.newFolder("synthetic1").toPath().resolve("model");
+        Path output2 = folder.newFolder("synthetic2").toPath().resolve("model");
+        writer(2).write(output1);
+        writer(2).write(output2);
+
+        String eq = modelId(output1.resolve("model_EQ.xml"));
+        Assert.assertEquals(eq, modelId(output2.resolve("model_EQ.xml")));
+        Assert.assertNotEquals(eq, modelId(output1.resolve("model_TP.xml")));
+        Assert.assertNotEquals(eq, modelId(output1.resolve("model_EQ_BD.xml")));
+        String tp = new String(Files.readAllBytes(output1.resolve("model_TP.xml")), StandardCharsets.UTF_8);
+        Assert.assertTrue(tp.contains("urn:uuid:" + eq));
+    }
+
+    // The state variables written close the balance of every node of the default configuration
+    @Test
+    public void roundTripTest() throws IOException {
+        for (int boundaryLines : new int[] {0, 2}) {
+            Path catalog = folder.newFolder("catalog" + boundaryLines).toPath();
+            writer(boundaryLines).write(catalog.resolve("synthetic.zip"));
+
+            CgmesModelsInterpretation models = new CgmesModelsInterpretation(catalog.toString());
+            models.setWorstNodes(0);
+            Map<String, InterpretationResult> interpretations = models.reviewAll("glob:**/*.zip");
+            Assert.assertTrue(models.getExceptions().isEmpty());
+            Assert.assertEquals(1, interpretations.size());
+            InterpretationResult interpretation = interpretations.values().iterator().next();
+            Assert.assertNull(interpretation.exception);
+            Assert.assertEquals(0.0, interpretation.error, BALANCE_TOLERANCE);
+        }
+    }
+
+    private static SyntheticCgmesWriter writer(int boundaryLines) {
+        SyntheticCgmesWriter writer = new SyntheticCgmesWriter(1);
+        writer.setSubstations(5);
+        writer.setBoundaryLines(boundaryLines);
+        return writer;
+    }
+
+    private static String modelId(Path file) throws IOException {
+        Matcher m = MODEL_ID.matcher(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        Assert.assertTrue(file.toString(), m.find());
+        // Fails if the identifier is not a UUID
+        UUID uuid = UUID.fromString(m.group(1));
+        return uuid.toString();
+    }
+
+    private static final double BALANCE_TOLERANCE = 1.0e-4;
+}
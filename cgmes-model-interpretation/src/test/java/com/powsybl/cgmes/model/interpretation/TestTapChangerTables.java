@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.powsybl.cgmes.model.interpretation.TapChangerTables.Table;
+import com.powsybl.triplestore.api.PropertyBag;
+import com.powsybl.triplestore.api.PropertyBags;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestTapChangerTables {
+
+    @Test
+    public void missingStepTest() {
+        Table table = phaseTable(point(1, 1.0, 2.0), point(2, 1.0, 4.0), point(4, 1.0, 8.0));
+        Assert.assertEquals(0, table.point(1));
+        Assert.assertEquals(1, table.point(2));
+        Assert.assertEquals(-1, table.point(3));
+        Assert.assertEquals(3, table.point(4));
+        Assert.assertEquals(8.0, table.angle(table.point(4)), 0.0);
+        Assert.assertEquals(Math.cos(Math.toRadians(8.0)), table.angleCos(table.point(4)), 0.0);
+        Assert.assertEquals(Math.sin(Math.toRadians(8.0)), table.angleSin(table.point(4)), 0.0);
+
+        // Steps out of the table or between two steps have no point
+        Assert.assertEquals(-1, table.point(0));
+        Assert.assertEquals(-1, table.point(5));
+        Assert.assertEquals(-1, table.point(1.5));
+        Assert.assertFalse(table.differentRatios());
+        Assert.assertTrue(table.differentAngles());
+    }
+
+    @Test
+    public void negativeMinStepTest() {
+        Table table = ratioTable(point(1, 1.3, 0.0), point(-2, 1.0, 0.0), point(0, 1.2, 0.0), point(-1, 1.1, 0.0));
+        Assert.assertEquals(0, table.point(-2));
+        Assert.assertEquals(1, table.point(-1));
+        Assert.assertEquals(3, table.point(1));
+        Assert.assertEquals(1.0, table.ratio(table.point(-2)), 0.0);
+        Assert.assertEquals(1.1, table.ratio(table.point(-1)), 0.0);
+        Assert.assertEquals(1.3, table.ratio(table.point(1)), 0.0);
+        Assert.assertEquals(-1, table.point(-3));
+        Assert.assertEquals(-1, table.point(2));
+        Assert.assertTrue(table.differentRatios());
+    }
+
+    @Test
+    public void repeatedStepTest() {
+        PropertyBag first = point(3, 1.05, 0.0);
+        first.put("x", "2.5");
+        PropertyBag repeated = point(3, 0.95, 0.0);
+        repeated.put("x", "7.5");
+        Table table = ratioTable(point(2, 1.0, 0.0), first, repeated);
+        Assert.assertEquals(1, table.point(3));
+        Assert.assertEquals(1.05, table.ratio(table.point(3)), 0.0);
+        Assert.assertEquals(2.5, table.x(table.point(3)), 0.0);
+        Assert.assertEquals(0.0, table.r(table.point(3)), 0.0);
+        Assert.assertEquals(-1, table.point(4));
+    }
+
+    // Steps spread over a large range are not held in arrays of that range
+    @Test
+    public void sparseStepsTest() {
+        PropertyBag repeated = point(0, 0.5, 0.0);
+        Table table = ratioTable(point(Integer.MAX_VALUE, 1.3, 0.0), point(0, 1.1, 0.0),
+                point(Integer.MIN_VALUE, 1.0, 0.0), point(1000, 1.2, 0.0), repeated);
+        assertSparseTable(table);
+
+        // Read back from a snapshot
+        PropertyBags points = new PropertyBags(Arrays.asList(point(Integer.MAX_VALUE, 1.3, 0.0),
+                point(0, 1.1, 0.0), point(Integer.MIN_VALUE, 1.0, 0.0), point(1000, 1.2, 0.0)));
+        points.forEach(p -> p.put("RatioTapChangerTable", "RTCT"));
+        assertSparseTable(readBack(TapChangerTables.of(points, new PropertyBags())).ratioTable("RTCT"));
+    }
+
+    // A table with a few missing steps is still dense
+    @Test
+    public void denseLimitTest() {
+        PropertyBag[] points = new PropertyBag[20];
+        for (int k = 0; k < points.length; k++) {
+            points[k] = point(k * 4, 1.0 + k * 0.01, 0.0);
+        }
+        Table table = ratioTable(points);
+        Assert.assertEquals(76, table.point(76));
+        Assert.assertEquals(-1, table.point(77));
+        Assert.assertEquals(1.19, table.ratio(table.point(76)), 0.0);
+    }
+
+    @Test
+    public void tablesTest() {
+        PropertyBags points = new PropertyBags(Arrays.asList(point(1, 1.0, 0.0)));
+        points.get(0).put("RatioTapChangerTable", "http://example.com#_RTCT1");
+        TapChangerTables tables = TapChangerTables.of(points, new PropertyBags());
+        Assert.assertEquals(1, tables.size());
+        Assert.assertNull(tables.ratioTable(null));
+        Assert.assertFalse(tables.ratioTable("RTCT1").isEmpty());
+        // A referenced table without points is empty
+        Assert.assertTrue(tables.ratioTable("RTCT2").isEmpty());
+        Assert.assertTrue(tables.phaseTable("RTCT1").isEmpty());
+        Assert.assertEquals(-1, tables.phaseTable("RTCT1").point(1));
+    }
+
+    private static void assertSparseTable(Table table) {
+        Assert.assertEquals(0, table.point(Integer.MIN_VALUE));
+        Assert.assertEquals(1, table.point(0));
+        Assert.assertEquals(2, table.point(1000));
+        Assert.assertEquals(3, table.point(Integer.MAX_VALUE));
+        Assert.assertEquals(1.0, table.ratio(table.point(Integer.MIN_VALUE)), 0.0);
+        Assert.assertEquals(1.1, table.ratio(table.point(0)), 0.0);
+        Assert.assertEquals(1.2, table.ratio(table.point(1000)), 0.0);
+        Assert.assertEquals(1.3, table.ratio(table.point(Integer.MAX_VALUE)), 0.0);
+        Assert.assertEquals(-1, table.point(1));
+        Assert.assertEquals(-1, table.point(999));
+        Assert.assertEquals(-1, table.point(0.5));
+        Assert.assertEquals(-1, table.point(1.0e10));
+        Assert.assertEquals(-1, table.point(-1.0e10));
+        Assert.assertEquals(-1, table.point(Double.NaN));
+        Assert.assertTrue(table.differentRatios());
+    }
+
+    private static TapChangerTables readBack(TapChangerTables tables) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                tables.write(out);
+            }
+            return TapChangerTables.read(ByteBuffer.wrap(bytes.toByteArray()));
+        } catch (IOException x) {
+            throw new UncheckedIOException(x);
+        }
+    }
+
+    private static Table ratioTable(PropertyBag... points) {
+        for (PropertyBag point : points) {
+            point.put("RatioTapChangerTable", "RTCT");
+        }
+        return TapChangerTables.of(new PropertyBags(Arrays.asList(points)), new PropertyBags()).ratioTable("RTCT");
+    }
+
+    private static Table phaseTable(PropertyBag... points) {
+        for (PropertyBag point : points) {
+            point.put("PhaseTapChangerTable", "PTCT");
+        }
+        return TapChangerTables.of(new PropertyBags(), new PropertyBags(Arrays.asList(points))).phaseTable("PTCT");
+    }
+
+    private static PropertyBag point(int step, double ratio, double angle) {
+        PropertyBag point = new PropertyBag(Arrays.asList("step", "ratio", "angle", "r", "x", "g", "b"));
+        point.put("step", Integer.toString(step));
+        point.put("ratio", Double.toString(ratio));
+        point.put("angle", Double.toString(angle));
+        return point;
+    }
+}
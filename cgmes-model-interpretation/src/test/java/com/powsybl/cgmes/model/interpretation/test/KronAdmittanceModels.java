@@ -0,0 +1,541 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.powsybl.cgmes.model.CgmesModel;
+import com.powsybl.cgmes.model.interpretation.InterpretedModel;
+import com.powsybl.triplestore.api.PropertyBag;
+
+/**
+ * Small networks with a line, a two winding or a three winding transformer
+ * between the Kron reduced nodes of a known load flow solution.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public final class KronAdmittanceModels {
+
+    private KronAdmittanceModels() {
+    }
+
+    private static Map<String, PropertyBag> nodeModel(double vbase) {
+
+        Map<String, PropertyBag> nodeParameters = new HashMap<>();
+        String id = "Slack";
+        propertyNames = new ArrayList<>(Arrays.asList("v", "nominalV", "angle", "p", "q"));
+        PropertyBag node = nodeParameters.computeIfAbsent(id, x -> new PropertyBag(propertyNames));
+        node.put("v", Double.toString(1.0 * vbase));
+        node.put("angle", Double.toString(0.0));
+        node.put("p", "-37.685531");
+        node.put("q", "13.094454");
+        node.put("nominalV", "400.0");
+
+        id = "1";
+        node = nodeParameters.computeIfAbsent(id, x -> new PropertyBag(propertyNames));
+        node.put("v", Double.toString(1.00982854 * vbase));
+        node.put("angle", Double.toString(Math.toDegrees(-0.03386869)));
+        node.put("p", "24.0");
+        node.put("q", "102.0");
+        node.put("nominalV", "400.0");
+
+        id = "2";
+        node = nodeParameters.computeIfAbsent(id, x -> new PropertyBag(propertyNames));
+        node.put("v", Double.toString(1.08423359 * vbase));
+        node.put("angle", Double.toString(Math.toDegrees(-0.04845154)));
+        node.put("p", "0.0");
+        node.put("q", "0.0");
+        node.put("nominalV", "400.0");
+
+        id = "3";
+        node = nodeParameters.computeIfAbsent(id, x -> new PropertyBag(propertyNames));
+        node.put("v", Double.toString(1.06519040 * vbase));
+        node.put("angle", Double.toString(Math.toDegrees(-0.04950536)));
+        node.put("p", "13.0");
+        node.put("q", "5.0");
+        node.put("nominalV", "400.0");
+
+        return nodeParameters;
+    }
+
+    private static Map<String, PropertyBag> lineModel(double sbase, double vbase) {
+
+        // Impedances are expressed in per-unit values,
+        // we convert to engineering units when adding elements to IIDM
+        double zpu = sbase / Math.pow(vbase, 2);
+
+        Map<String, PropertyBag> lineParameters = new HashMap<>();
+
+        String id = "LSlack1";
+        PropertyBag line = lineParameters.computeIfAbsent(id, z -> new PropertyBag(propertyNames));
+        line.put("r", Double.toString(0.0052 / zpu));
+        line.put("x", Double.toString(0.089 / zpu));
+        line.put("bch", Double.toString(0.01 * zpu));
+        String nodeId1 = "Slack";
+        boolean t1connected = true;
+        line.put("terminal1", nodeId1);
+        line.put("connected1", Boolean.toString(t1connected));
+        String nodeId2 = "1";
+        boolean t2connected = true;
+        line.put("terminal2", nodeId2);
+        line.put("connected2", Boolean.toString(t2connected));
+
+        return lineParameters;
+    }
+
+    private static Map<String, List<String>> equipmentsInNodeModel(
+            Map<String, PropertyBag> lineParameters) {
+        Map<String, List<String>> equipmentsInNode = new HashMap<>();
+        propertyNames = new ArrayList<>(
+                Arrays.asList("r", "x", "bch", "terminal1", "terminal2", "connected1", "connected2"));
+
+        lineParameters.keySet().forEach(id -> {
+            PropertyBag line = lineParameters.get(id);
+            String nodeId1 = line.get("terminal1");
+            boolean t1connected = line.asBoolean("connected1", true);
+            if (t1connected) {
+                List<String> idLines = equipmentsInNode.computeIfAbsent(nodeId1, z -> new ArrayList<>());
+                idLines.add(id);
+            }
+            String nodeId2 = line.get("terminal2");
+            boolean t2connected = line.asBoolean("connected2", true);
+            if (t2connected) {
+                List<String> idLines = equipmentsInNode.computeIfAbsent(nodeId2, z -> new ArrayList<>());
+                idLines.add(id);
+            }
+        });
+        return equipmentsInNode;
+    }
+
+    public static InterpretedModel line(CgmesModel cgmes, boolean lineT2Connected) {
+        double sbase = 100.0;
+        double vbase = 400.0;
+        // Impedances are expressed in per-unit values,
+        // we convert to engineering units when adding elements to IIDM
+        double zpu = sbase / Math.pow(vbase, 2);
+
+        Map<String, PropertyBag> nodeParameters = nodeModel(vbase);
+
+        String id = "T";
+        PropertyBag node = nodeParameters.computeIfAbsent(id, x -> new PropertyBag(propertyNames));
+        node.put("v", Double.toString(1.06499392 * vbase));
+        node.put("angle", Double.toString(Math.toDegrees(-0.04813391)));
+        node.put("p", "0.0");
+        node.put("q", "0.0");
+        node.put("nominalV", "400.0");
+
+        List<List<String>> joinedNodes = new ArrayList<>();
+        nodeParameters.keySet().forEach(k -> {
+            List<String> joinNodes = new ArrayList<>();
+            joinNodes.add(k);
+            joinedNodes.add(joinNodes);
+        });
+
+        Map<String, PropertyBag> lineParameters = lineModel(sbase, vbase);
+
+        id = "1T";
+        PropertyBag line = lineParameters.computeIfAbsent(id, z -> new PropertyBag(propertyNames));
+        line.put("r", Double.toString(0.0075 / zpu));
+        line.put("x", Double.toString(0.064 / zpu));
+        line.put("bch", Double.toString(0.53 * zpu));
+        String nodeId1 = "1";
+        boolean t1connected = true;
+        line.put("terminal1", nodeId1);
+        line.put("connected1", Boolean.toString(t1connected));
+        String nodeId2 = "T";
+        boolean t2connected = true;
+        line.put("terminal2", nodeId2);
+        line.put("connected2", Boolean.toString(t2connected));
+
+        id = "T3";
+        line = lineParameters.computeIfAbsent(id, z -> new PropertyBag(propertyNames));
+        line.put("r", Double.toString(0.0037 / zpu));
+        line.put("x", Double.toString(0.01 / zpu));
+        line.put("bch", Double.toString(0.21 * zpu));
+        nodeId1 = "T";
+        t1connected = true;
+        line.put("terminal1", nodeId1);
+        line.put("connected1", Boolean.toString(t1connected));
+        nodeId2 = "3";
+        t2connected = true;
+        line.put("terminal2", nodeId2);
+        line.put("connected2", Boolean.toString(t2connected));
+
+        id = "T2";
+        line = lineParameters.computeIfAbsent(id, z -> new PropertyBag(propertyNames));
+        line.put("r", Double.toString(0.0016 / zpu));
+        line.put("x", Double.toString(0.091 / zpu));
+        line.put("bch", Double.toString(0.39 * zpu));
+        nodeId1 = "T";
+        t1connected = true;
+        line.put("terminal1", nodeId1);
+        line.put("connected1", Boolean.toString(t1connected));
+        nodeId2 = "2";
+        t2connected = lineT2Connected;
+        line.put("terminal2", nodeId2);
+        line.put("connected2", Boolean.toString(t2connected));
+
+        Map<String, List<String>> equipmentsInNode = equipmentsInNodeModel(lineParameters);
+
+        Map<String, PropertyBag> transformerParameters = new HashMap<>();
+        Map<List<String>, Boolean> isolatedNodes = new HashMap<>();
+        joinedNodes.forEach(joinNodes -> {
+            isolatedNodes.put(joinNodes, Boolean.valueOf("true"));
+            for (String n : joinNodes) {
+                if (equipmentsInNode.containsKey(n)) {
+                    isolatedNodes.put(joinNodes, Boolean.valueOf("false"));
+                    return;
+                }
+            }
+        });
+
+        InterpretedModel model = new InterpretedModel(cgmes);
+        model.setNodeParameters(nodeParameters);
+        model.setJoinedNodes(joinedNodes);
+        model.setLineParameters(lineParameters);
+        model.setTransformerParameters(transformerParameters);
+        model.setEquipmentsInNode(equipmentsInNode);
+        model.setIsolatedNodes(isolatedNodes);
+
+        return model;
+    }
+
+    public static InterpretedModel xfmr2(CgmesModel cgmes, boolean xfmr2T2Connected) {
+        double sbase = 100.0;
+        double vbase = 400.0;
+        // Impedances are expressed in per-unit values,
+        // we convert to engineering units when adding elements to IIDM
+        double zpu = sbase / Math.pow(vbase, 2);
+
+        Map<String, PropertyBag> nodeParameters = nodeModel(vbase);
+
+        String id = "T";
+        PropertyBag node = nodeParameters.computeIfAbsent(id, x -> new PropertyBag(propertyNames));
+        node.put("v", Double.toString(1.06499392 * vbase));
+        node.put("angle", Double.toString(Math.toDegrees(-0.04813391)));
+        node.put("p", "0.0");
+        node.put("q", "0.0");
+        node.put("nominalV", "400.0");
+
+        List<List<String>> joinedNodes = new ArrayList<>();
+        nodeParameters.keySet().forEach(k -> {
+            List<String> joinNodes = new ArrayList<>();
+            joinNodes.add(k);
+            joinedNodes.add(joinNodes);
+        });
+
+        Map<String, PropertyBag> lineParameters = lineModel(sbase, vbase);
+
+        id = "1T";
+        PropertyBag line = lineParameters.computeIfAbsent(id, z -> new PropertyBag(propertyNames));
+        line.put("r", Double.toString(0.0075 / zpu));
+        line.put("x", Double.toString(0.064 / zpu));
+        line.put("bch", Double.toString(0.53 * zpu));
+        String nodeId1 = "1";
+        boolean t1connected = true;
+        line.put("terminal1", nodeId1);
+        line.put("connected1", Boolean.toString(t1connected));
+        String nodeId2 = "T";
+        boolean t2connected = true;
+        line.put("terminal2", nodeId2);
+        line.put("connected2", Boolean.toString(t2connected));
+
+        id = "T3";
+        line = lineParameters.computeIfAbsent(id, z -> new PropertyBag(propertyNames));
+        line.put("r", Double.toString(0.0037 / zpu));
+        line.put("x", Double.toString(0.01 / zpu));
+        line.put("bch", Double.toString(0.21 * zpu));
+        nodeId1 = "T";
+        t1connected = true;
+        line.put("terminal1", nodeId1);
+        line.put("connected1", Boolean.toString(t1connected));
+        nodeId2 = "3";
+        t2connected = true;
+        line.put("terminal2", nodeId2);
+        line.put("connected2", Boolean.toString(t2connected));
+
+        Map<String, List<String>> equipmentsInNode = equipmentsInNodeModel(lineParameters);
+
+        Map<String, PropertyBag> transformerParameters = new HashMap<>();
+
+        id = "T2";
+        PropertyBag xfmr2 = transformerParameters.computeIfAbsent(id, z -> new PropertyBag(propertyNames));
+        xfmr2.put("r1", Double.toString(0.0016 / zpu));
+        xfmr2.put("x1", Double.toString(0.091 / zpu));
+        xfmr2.put("b1", Double.toString(0.39 * zpu));
+        xfmr2.put("g1", Double.toString(0.0));
+        xfmr2.put("ratedU1", Double.toString(400.0));
+        xfmr2.put("r2", Double.toString(0.0));
+        xfmr2.put("x2", Double.toString(0.0));
+        xfmr2.put("b2", Double.toString(0.0));
+        xfmr2.put("g2", Double.toString(0.0));
+        xfmr2.put("ratedU2", Double.toString(400.0));
+        nodeId1 = "T";
+        t1connected = true;
+        xfmr2.put("terminal1", nodeId1);
+        xfmr2.put("connected1", Boolean.toString(t1connected));
+        if (t1connected) {
+            List<String> idXfmr2 = equipmentsInNode.computeIfAbsent(nodeId1, z -> new ArrayList<>());
+            idXfmr2.add(id);
+        }
+        nodeId2 = "2";
+        t2connected = xfmr2T2Connected;
+        xfmr2.put("terminal2", nodeId2);
+        xfmr2.put("connected2", Boolean.toString(t2connected));
+        if (t2connected) {
+            List<String> idXfmr2 = equipmentsInNode.computeIfAbsent(nodeId2, z -> new ArrayList<>());
+            idXfmr2.add(id);
+        }
+
+        Map<List<String>, Boolean> isolatedNodes = new HashMap<>();
+        joinedNodes.forEach(joinNodes -> {
+            isolatedNodes.put(joinNodes, Boolean.valueOf("true"));
+            for (String n : joinNodes) {
+                if (equipmentsInNode.containsKey(n)) {
+                    isolatedNodes.put(joinNodes, Boolean.valueOf("false"));
+                    return;
+                }
+            }
+        });
+
+        InterpretedModel model = new InterpretedModel(cgmes);
+        model.setNodeParameters(nodeParameters);
+        model.setJoinedNodes(joinedNodes);
+        model.setLineParameters(lineParameters);
+        model.setTransformerParameters(transformerParameters);
+        model.setEquipmentsInNode(equipmentsInNode);
+        model.setIsolatedNodes(isolatedNodes);
+
+        return model;
+    }
+
+    public static InterpretedModel xfmr3(CgmesModel cgmes, boolean xfmr3T2Connected) {
+        double sbase = 100.0;
+        double vbase = 400.0;
+        // Impedances are expressed in per-unit values,
+        // we convert to engineering units when adding elements to IIDM
+        double zpu = sbase / Math.pow(vbase, 2);
+
+        Map<String, PropertyBag> nodeParameters = nodeModel(vbase);
+        List<List<String>> joinedNodes = new ArrayList<>();
+        nodeParameters.keySet().forEach(k -> {
+            List<String> joinNodes = new ArrayList<>();
+            joinNodes.add(k);
+            joinedNodes.add(joinNodes);
+        });
+
+        Map<String, PropertyBag> lineParameters = lineModel(sbase, vbase);
+        Map<String, List<String>> equipmentsInNode = equipmentsInNodeModel(lineParameters);
+
+        Map<String, PropertyBag> transformerParameters = new HashMap<>();
+
+        String id = "123";
+        PropertyBag xfmr3 = transformerParameters.computeIfAbsent(id, z -> new PropertyBag(propertyNames));
+        xfmr3.put("r1", Double.toString(0.0016 / zpu));
+        xfmr3.put("x1", Double.toString(0.091 / zpu));
+        xfmr3.put("b1", Double.toString(0.39 * zpu));
+        xfmr3.put("g1", Double.toString(0.0));
+        xfmr3.put("ratedU1", Double.toString(400.0));
+        xfmr3.put("r2", Double.toString(0.0));
+        xfmr3.put("x2", Double.toString(0.0));
+        xfmr3.put("b2", Double.toString(0.0));
+        xfmr3.put("g2", Double.toString(0.0));
+        xfmr3.put("ratedU2", Double.toString(400.0));
+        xfmr3.put("r3", Double.toString(0.0));
+        xfmr3.put("x3", Double.toString(0.0));
+        xfmr3.put("b3", Double.toString(0.0));
+        xfmr3.put("g3", Double.toString(0.0));
+        xfmr3.put("ratedU3", Double.toString(400.0));
+        String nodeId1 = "1";
+        boolean t1connected = true;
+        xfmr3.put("terminal1", nodeId1);
+        xfmr3.put("connected1", Boolean.toString(t1connected));
+        if (t1connected) {
+            List<String> idXfmr3 = equipmentsInNode.computeIfAbsent(nodeId1, z -> new ArrayList<>());
+            idXfmr3.add(id);
+        }
+        String nodeId2 = "2";
+        boolean t2connected = xfmr3T2Connected;
+        xfmr3.put("terminal2", nodeId2);
+        xfmr3.put("connected2", Boolean.toString(t2connected));
+        if (t2connected) {
+            List<String> idXfmr3 = equipmentsInNode.computeIfAbsent(nodeId2, z -> new ArrayList<>());
+            idXfmr3.add(id);
+        }
+        String nodeId3 = "3";
+        boolean t3connected = true;
+        xfmr3.put("terminal3", nodeId3);
+        xfmr3.put("connected3", Boolean.toString(t3connected));
+        if (t3connected) {
+            List<String> idXfmr3 = equipmentsInNode.computeIfAbsent(nodeId3, z -> new ArrayList<>());
+            idXfmr3.add(id);
+        }
+
+        Map<List<String>, Boolean> isolatedNodes = new HashMap<>();
+        joinedNodes.forEach(joinNodes -> {
+            isolatedNodes.put(joinNodes, Boolean.valueOf("true"));
+            for (String n : joinNodes) {
+                if (equipmentsInNode.containsKey(n)) {
+                    isolatedNodes.put(joinNodes, Boolean.valueOf("false"));
+                    return;
+                }
+            }
+        });
+
+        InterpretedModel model = new InterpretedModel(cgmes);
+        model.setNodeParameters(nodeParameters);
+        model.setJoinedNodes(joinedNodes);
+        model.setLineParameters(lineParameters);
+        model.setTransformerParameters(transformerParameters);
+        model.setEquipmentsInNode(equipmentsInNode);
+        model.setIsolatedNodes(isolatedNodes);
+
+        return model;
+    }
+
+    /**
+     * Three winding transformer with impedance at its three ends and the third
+     * end open, the only equipment between nodes without injections.
+     */
+    public static InterpretedModel xfmr3OpenEnd(CgmesModel cgmes) {
+        double vbase = 400.0;
+
+        Map<String, PropertyBag> nodeParameters = new HashMap<>();
+        propertyNames = new ArrayList<>(Arrays.asList("v", "nominalV", "angle", "p", "q"));
+        double[] v = {1.01, 1.0, 0.99};
+        double[] angle = {-1.0, -2.0, -3.0};
+        for (int k = 0; k < 3; k++) {
+            PropertyBag node = nodeParameters.computeIfAbsent(Integer.toString(k + 1),
+                    x -> new PropertyBag(propertyNames));
+            node.put("v", Double.toString(v[k] * vbase));
+            node.put("angle", Double.toString(angle[k]));
+            node.put("p", "0.0");
+            node.put("q", "0.0");
+            node.put("nominalV", "400.0");
+        }
+        List<List<String>> joinedNodes = new ArrayList<>();
+        nodeParameters.keySet().forEach(k -> joinedNodes.add(new ArrayList<>(Arrays.asList(k))));
+
+        Map<String, PropertyBag> transformerParameters = new HashMap<>();
+        Map<String, List<String>> equipmentsInNode = new HashMap<>();
+        String id = "123";
+        PropertyBag xfmr3 = transformerParameters.computeIfAbsent(id, z -> new PropertyBag(propertyNames));
+        for (int end = 1; end <= 3; end++) {
+            xfmr3.put("r" + end, Double.toString(0.5));
+            xfmr3.put("x" + end, Double.toString(10.0));
+            xfmr3.put("b" + end, Double.toString(0.0));
+            xfmr3.put("g" + end, Double.toString(0.0));
+            xfmr3.put("ratedU" + end, Double.toString(vbase));
+            xfmr3.put("terminal" + end, Integer.toString(end));
+            boolean connected = end != 3;
+            xfmr3.put("connected" + end, Boolean.toString(connected));
+            if (connected) {
+                equipmentsInNode.computeIfAbsent(Integer.toString(end), z -> new ArrayList<>()).add(id);
+            }
+        }
+
+        Map<List<String>, Boolean> isolatedNodes = new HashMap<>();
+        joinedNodes.forEach(joinNodes -> isolatedNodes.put(joinNodes,
+                !equipmentsInNode.containsKey(joinNodes.get(0))));
+
+        InterpretedModel model = new InterpretedModel(cgmes);
+        model.setNodeParameters(nodeParameters);
+        model.setJoinedNodes(joinedNodes);
+        model.setLineParameters(new HashMap<>());
+        model.setTransformerParameters(transformerParameters);
+        model.setEquipmentsInNode(equipmentsInNode);
+        model.setIsolatedNodes(isolatedNodes);
+
+        return model;
+    }
+
+    /**
+     * Branches between nodes without injections: a line open at one end, a
+     * line to a node without voltage, and a line and a two winding
+     * transformer with both ends connected to the same node.
+     */
+    public static InterpretedModel openAndLoopBranches(CgmesModel cgmes) {
+        double vbase = 400.0;
+
+        Map<String, PropertyBag> nodeParameters = new HashMap<>();
+        propertyNames = new ArrayList<>(Arrays.asList("v", "nominalV", "angle", "p", "q"));
+        double[] v = {1.01, 1.0, 0.99, 0.0};
+        double[] angle = {-1.0, -2.0, -3.0, 0.0};
+        for (int k = 0; k < 4; k++) {
+            PropertyBag node = nodeParameters.computeIfAbsent(Integer.toString(k + 1),
+                    x -> new PropertyBag(propertyNames));
+            node.put("v", Double.toString(v[k] * vbase));
+            node.put("angle", Double.toString(angle[k]));
+            node.put("p", "0.0");
+            node.put("q", "0.0");
+            node.put("nominalV", "400.0");
+        }
+        List<List<String>> joinedNodes = new ArrayList<>();
+        nodeParameters.keySet().forEach(k -> joinedNodes.add(new ArrayList<>(Arrays.asList(k))));
+
+        Map<String, PropertyBag> lineParameters = new HashMap<>();
+        Map<String, List<String>> equipmentsInNode = new HashMap<>();
+        String[][] lines = {{"12", "1", "2"}, {"13", "1", "3"}, {"24", "2", "4"}, {"11", "1", "1"}};
+        for (String[] l : lines) {
+            PropertyBag line = lineParameters.computeIfAbsent(l[0], z -> new PropertyBag(propertyNames));
+            line.put("r", Double.toString(1.0));
+            line.put("x", Double.toString(20.0));
+            line.put("bch", Double.toString(1e-4));
+            for (int end = 1; end <= 2; end++) {
+                // The line to node 3 is open at that end
+                boolean connected = !(l[0].equals("13") && end == 2);
+                line.put("terminal" + end, l[end]);
+                line.put("connected" + end, Boolean.toString(connected));
+                if (connected) {
+                    equipmentsInNode.computeIfAbsent(l[end], z -> new ArrayList<>()).add(l[0]);
+                }
+            }
+        }
+
+        // Different rated voltages, its admittance matrix is not symmetric
+        Map<String, PropertyBag> transformerParameters = new HashMap<>();
+        String id = "33";
+        PropertyBag xfmr2 = transformerParameters.computeIfAbsent(id, z -> new PropertyBag(propertyNames));
+        xfmr2.put("r1", Double.toString(1.0));
+        xfmr2.put("x1", Double.toString(20.0));
+        xfmr2.put("b1", Double.toString(1e-4));
+        xfmr2.put("g1", Double.toString(0.0));
+        xfmr2.put("ratedU1", Double.toString(vbase));
+        xfmr2.put("r2", Double.toString(0.0));
+        xfmr2.put("x2", Double.toString(0.0));
+        xfmr2.put("b2", Double.toString(0.0));
+        xfmr2.put("g2", Double.toString(0.0));
+        xfmr2.put("ratedU2", Double.toString(0.95 * vbase));
+        for (int end = 1; end <= 2; end++) {
+            xfmr2.put("terminal" + end, "3");
+            xfmr2.put("connected" + end, Boolean.toString(true));
+            equipmentsInNode.computeIfAbsent("3", z -> new ArrayList<>()).add(id);
+        }
+
+        Map<List<String>, Boolean> isolatedNodes = new HashMap<>();
+        joinedNodes.forEach(joinNodes -> isolatedNodes.put(joinNodes,
+                !equipmentsInNode.containsKey(joinNodes.get(0))));
+
+        InterpretedModel model = new InterpretedModel(cgmes);
+        model.setNodeParameters(nodeParameters);
+        model.setJoinedNodes(joinedNodes);
+        model.setLineParameters(lineParameters);
+        model.setTransformerParameters(transformerParameters);
+        model.setEquipmentsInNode(equipmentsInNode);
+        model.setIsolatedNodes(isolatedNodes);
+
+        return model;
+    }
+
+    private static List<String> propertyNames;
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.model.interpretation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.powsybl.cgmes.model.interpretation.InterpretationResult.ValidationData;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestJfrEvents {
+
+    private static final String PREFIX = "com.powsybl.cgmes.interpretation.";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordedEventsTest() throws IOException {
+        Path report = folder.newFile("report.csv").toPath();
+        Files.write(report, new byte[] {1, 2, 3, 4, 5});
+        ValidationData validationData = new ValidationData();
+        validationData.balance = 2.5;
+        validationData.pruned = true;
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(PREFIX + "ModelLoadStarted");
+            recording.enable(PREFIX + "ModelLoaded");
+            recording.enable(PREFIX + "ConfigurationEvaluated");
+            recording.enable(PREFIX + "ReportWritten");
+            recording.enable(PREFIX + "ModelFailed");
+            recording.start();
+            Object loaded = InterpretationEvents.beginModelLoad("model");
+            InterpretationEvents.modelLoaded(loaded, "model", 10, () -> 42L);
+            Object evaluated = InterpretationEvents.beginConfiguration();
+            InterpretationEvents.configurationEvaluated(evaluated, "model", new CgmesEquipmentModelMapping(),
+                    validationData);
+            Object written = InterpretationEvents.beginReport();
+            InterpretationEvents.reportWritten(written, "interpretations", report, 3);
+            InterpretationEvents.modelFailed("model", new IOException("failed"));
+            recording.stop();
+            Path dump = folder.newFile("events.jfr").toPath();
+            recording.dump(dump);
+            events = RecordingFile.readAllEvents(dump);
+        }
+
+        Assert.assertEquals(1, events(events, "ModelLoadStarted").size());
+        RecordedEvent modelLoaded = event(events, "ModelLoaded");
+        Assert.assertEquals("model", modelLoaded.getString("model"));
+        Assert.assertEquals(10, modelLoaded.getInt("nodes"));
+        Assert.assertEquals(42L, modelLoaded.getLong("triples"));
+        RecordedEvent configurationEvaluated = event(events, "ConfigurationEvaluated");
+        Assert.assertEquals(2.5, configurationEvaluated.getDouble("balance"), 0.0);
+        Assert.assertTrue(configurationEvaluated.getBoolean("pruned"));
+        RecordedEvent reportWritten = event(events, "ReportWritten");
+        Assert.assertEquals("interpretations", reportWritten.getString("report"));
+        Assert.assertEquals(3, reportWritten.getInt("models"));
+        Assert.assertEquals(5L, reportWritten.getLong("size"));
+        RecordedEvent modelFailed = event(events, "ModelFailed");
+        Assert.assertEquals(IOException.class.getName(), modelFailed.getString("exception"));
+        Assert.assertEquals("failed", modelFailed.getString("message"));
+    }
+
+    @Test
+    public void disabledEventsTest() throws IOException {
+        // Without a recording the triples are not counted
+        List<String> calculated = new ArrayList<>();
+        Object loaded = InterpretationEvents.beginModelLoad("model");
+        Assert.assertNotNull(loaded);
+        InterpretationEvents.modelLoaded(loaded, "model", 10, () -> {
+            calculated.add("triples");
+            return 42L;
+        });
+        Assert.assertTrue(calculated.isEmpty());
+    }
+
+    private static List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals(PREFIX + name))
+                .collect(Collectors.toList());
+    }
+
+    private static RecordedEvent event(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> named = events(events, name);
+        Assert.assertEquals(name, 1, named.size());
+        return named.get(0);
+    }
+}
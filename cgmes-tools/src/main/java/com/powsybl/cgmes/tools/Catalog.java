@@ -1,15 +1,27 @@
 package com.powsybl.cgmes.tools;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public class Catalog extends Model {
 
     public Catalog(String sdata) {
@@ -46,18 +58,62 @@ public class Catalog extends Model {
         // a single "*" is any sequence of characters inside the same folder
         PathMatcher pathMatcher = FileSystems.getDefault().getPathMatcher(pattern);
 
-        // What could possibly go wrong
-        Map<Path, Exception> wrong = new HashMap<>();
+        // What could possibly go wrong, reported sorted by path
+        Map<Path, Exception> wrong = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(this.data)) {
+            paths.filter(pathMatcher::matches).sorted().forEach(path -> review(path, consumer, wrong));
+        }
+        return wrong;
+    }
+
+    public Map<Path, Exception> reviewAll(String pattern, Consumer<Path> consumer, int threads)
+            throws IOException {
+        // Review the matching files or folders in the given number of threads,
+        // they are submitted sorted by path and each one is reviewed on its own:
+        // a failure only concerns the file or folder where it happened
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads " + threads);
+        }
+        if (threads == 1) {
+            return reviewAll(pattern, consumer);
+        }
+        PathMatcher pathMatcher = FileSystems.getDefault().getPathMatcher(pattern);
+        List<Path> matching;
         try (Stream<Path> paths = Files.walk(this.data)) {
-            paths.filter(pathMatcher::matches).forEach(path -> {
+            matching = paths.filter(pathMatcher::matches).sorted().collect(Collectors.toList());
+        }
+
+        Map<Path, Exception> wrong = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(matching.size(), 1)));
+        try {
+            List<Future<?>> futures = new ArrayList<>(matching.size());
+            for (Path path : matching) {
+                futures.add(executor.submit(() -> review(path, consumer, wrong)));
+            }
+            for (int k = 0; k < matching.size(); k++) {
                 try {
-                    System.err.println(path);
-                    consumer.accept(path);
-                } catch (Exception x) {
-                    wrong.put(path, x);
+                    futures.get(k).get();
+                } catch (ExecutionException x) {
+                    wrong.put(matching.get(k), x);
                 }
-            });
+            }
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reviewing " + this.data);
+        } finally {
+            executor.shutdownNow();
         }
-        return wrong;
+        return new TreeMap<>(wrong);
     }
+
+    private static void review(Path path, Consumer<Path> consumer, Map<Path, Exception> wrong) {
+        try {
+            LOG.info("review {}", path);
+            consumer.accept(path);
+        } catch (Exception x) {
+            wrong.put(path, x);
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(Catalog.class);
 }
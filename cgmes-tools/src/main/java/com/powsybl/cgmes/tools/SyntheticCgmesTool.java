@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.tools;
+
+import java.nio.file.Paths;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import com.google.auto.service.AutoService;
+import com.powsybl.tools.Command;
+import com.powsybl.tools.Tool;
+import com.powsybl.tools.ToolRunningContext;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+@AutoService(Tool.class)
+public class SyntheticCgmesTool implements Tool {
+
+    private static final String OUTPUT_PATH    = "output-path";
+    private static final String SUBSTATIONS    = "substations";
+    private static final String MESHED_LINES   = "meshed-lines";
+    private static final String XFMR3S         = "xfmr3s";
+    private static final String BOUNDARY_LINES = "boundary-lines";
+    private static final String SEED           = "seed";
+
+    @Override
+    public Command getCommand() {
+        return new Command() {
+
+            @Override
+            public String getDescription() {
+                return "Writes a synthetic CGMES model of the given size";
+            }
+
+            @Override
+            public String getName() {
+                return "cgmes-synthetic";
+            }
+
+            @Override
+            public Options getOptions() {
+                Options options = new Options();
+                options.addOption(Option.builder().longOpt(OUTPUT_PATH)
+                        .desc("the output folder, or zip file if it ends with .zip").hasArg()
+                        .argName("OUTPUT_PATH").required().build());
+                options.addOption(Option.builder().longOpt(SUBSTATIONS).desc("number of substations").hasArg()
+                        .argName("SUBSTATIONS").required().build());
+                options.addOption(Option.builder().longOpt(MESHED_LINES)
+                        .desc("lines added to the spanning tree for each substation").hasArg()
+                        .argName("MESHED_LINES").build());
+                options.addOption(Option.builder().longOpt(XFMR3S)
+                        .desc("fraction of three voltage level substations with a three winding transformer")
+                        .hasArg().argName("XFMR3S").build());
+                options.addOption(Option.builder().longOpt(BOUNDARY_LINES)
+                        .desc("number of lines to the boundary, a boundary set is written if there are any")
+                        .hasArg().argName("BOUNDARY_LINES").build());
+                options.addOption(Option.builder().longOpt(SEED).desc("seed of the random generator").hasArg()
+                        .argName("SEED").build());
+                return options;
+            }
+
+            @Override
+            public String getTheme() {
+                return "Data conversion";
+            }
+
+            @Override
+            public String getUsageFooter() {
+                return null;
+            }
+        };
+    }
+
+    @Override
+    public void run(CommandLine line, ToolRunningContext context) throws Exception {
+        SyntheticCgmesWriter writer = new SyntheticCgmesWriter(Long.parseLong(line.getOptionValue(SEED, "1")));
+        writer.setSubstations(Integer.parseInt(line.getOptionValue(SUBSTATIONS)));
+        if (line.hasOption(MESHED_LINES)) {
+            writer.setMeshedLines(Double.parseDouble(line.getOptionValue(MESHED_LINES)));
+        }
+        if (line.hasOption(XFMR3S)) {
+            writer.setXfmr3s(Double.parseDouble(line.getOptionValue(XFMR3S)));
+        }
+        writer.setBoundaryLines(Integer.parseInt(line.getOptionValue(BOUNDARY_LINES, "0")));
+        writer.write(Paths.get(line.getOptionValue(OUTPUT_PATH)));
+    }
+}
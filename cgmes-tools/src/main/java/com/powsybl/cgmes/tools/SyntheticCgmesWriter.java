@@ -0,0 +1,1019 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a synthetic CGMES bus-branch model of any size, with EQ, TP, SSH and
+ * SV profiles and optionally a boundary set (EQ_BD and TP_BD) with lines
+ * connected to it. The same seed and parameters always give the same files.
+ * <p>
+ * Substations have voltage levels of 400, 220 and 110 kV with one topological
+ * node each, joined by two or three winding transformers with a ratio tap
+ * changer at neutral step. Substations are connected in a random tree of
+ * lines and then meshed with more lines. State variables are consistent:
+ * every node has one load or generator that closes its balance with the flows
+ * of the lines and transformers calculated from the node voltages.
+ * <p>
+ * Profiles are streamed to the output as they are written, to a folder when
+ * the output path does not end with .zip, or to a zip file otherwise. In both
+ * cases the files are prefixed with the name of the output, so it can be read
+ * directly as a CGMES data source.
+ *
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class SyntheticCgmesWriter {
+
+    public SyntheticCgmesWriter(long seed) {
+        this.seed = seed;
+        substations = 100;
+        meshedLines = 0.2;
+        xfmr3s = 0.5;
+        boundaryLines = 0;
+    }
+
+    public void setSubstations(int substations) {
+        if (substations < 1) {
+            throw new IllegalArgumentException("Invalid number of substations " + substations);
+        }
+        this.substations = substations;
+    }
+
+    // Lines added to the tree for each substation
+    public void setMeshedLines(double meshedLines) {
+        this.meshedLines = meshedLines;
+    }
+
+    // Fraction of the substations with three voltage levels that join them with a three winding transformer
+    public void setXfmr3s(double xfmr3s) {
+        this.xfmr3s = xfmr3s;
+    }
+
+    // Lines from the model to the boundary, the boundary set is written only if there are any
+    public void setBoundaryLines(int boundaryLines) {
+        if (boundaryLines < 0) {
+            throw new IllegalArgumentException("Invalid number of boundary lines " + boundaryLines);
+        }
+        this.boundaryLines = boundaryLines;
+    }
+
+    public void write(Path output) throws IOException {
+        generate();
+        String name = output.getFileName().toString();
+        if (name.endsWith(ZIP_EXTENSION)) {
+            String basename = name.substring(0, name.length() - ZIP_EXTENSION.length());
+            try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+                for (Profile profile : profiles()) {
+                    zip.putNextEntry(new ZipEntry(fileName(basename, profile)));
+                    writeProfile(zip, basename, profile);
+                    zip.closeEntry();
+                }
+            }
+        } else {
+            Files.createDirectories(output);
+            for (Profile profile : profiles()) {
+                Path file = output.resolve(fileName(name, profile));
+                try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(file))) {
+                    writeProfile(os, name, profile);
+                }
+            }
+        }
+    }
+
+    private List<Profile> profiles() {
+        List<Profile> profiles = new ArrayList<>();
+        if (boundaryLines > 0) {
+            profiles.add(Profile.EQ_BD);
+            profiles.add(Profile.TP_BD);
+        }
+        profiles.add(Profile.EQ);
+        profiles.add(Profile.TP);
+        profiles.add(Profile.SSH);
+        profiles.add(Profile.SV);
+        return profiles;
+    }
+
+    private static String fileName(String basename, Profile profile) {
+        return basename + "_" + profile + ".xml";
+    }
+
+    private void writeProfile(OutputStream os, String basename, Profile profile) throws IOException {
+        try {
+            RdfWriter w = new RdfWriter(os);
+            List<String> dependentOn = new ArrayList<>();
+            switch (profile) {
+                case EQ:
+                    if (boundaryLines > 0) {
+                        dependentOn.add(modelId(basename, Profile.EQ_BD));
+                    }
+                    break;
+                case TP:
+                    dependentOn.add(modelId(basename, Profile.EQ));
+                    if (boundaryLines > 0) {
+                        dependentOn.add(modelId(basename, Profile.TP_BD));
+                    }
+                    break;
+                case SSH:
+                    dependentOn.add(modelId(basename, Profile.EQ));
+                    break;
+                case SV:
+                    dependentOn.add(modelId(basename, Profile.TP));
+                    dependentOn.add(modelId(basename, Profile.SSH));
+                    break;
+                default:
+                    break;
+            }
+            w.header(modelId(basename, profile), profile.uri, dependentOn);
+            switch (profile) {
+                case EQ_BD:
+                    writeEquipmentBoundary(w);
+                    break;
+                case TP_BD:
+                    writeTopologyBoundary(w);
+                    break;
+                case EQ:
+                    writeEquipment(w);
+                    break;
+                case TP:
+                    writeTopology(w);
+                    break;
+                case SSH:
+                    writeSteadyStateHypothesis(w);
+                    break;
+                case SV:
+                    writeStateVariables(w);
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+            w.close();
+        } catch (XMLStreamException x) {
+            throw new IOException(x);
+        }
+    }
+
+    // Valid and stable identifiers, the same model name and profile always give the same UUID
+    private static String modelId(String basename, Profile profile) {
+        return "urn:uuid:" + UUID.nameUUIDFromBytes((basename + "_" + profile).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Grid
+
+    private void generate() {
+        Random random = new Random(seed);
+        int[] levels = new int[substations];
+        int[] parent = new int[substations];
+        int[] treeLevel = new int[substations];
+        for (int s = 0; s < substations; s++) {
+            levels[s] = substationLevels(random);
+            if (s > 0) {
+                // Substations share a voltage level with their parent in the tree
+                parent[s] = random.nextInt(s);
+                int common = levels[s] & levels[parent[s]];
+                if (common == 0) {
+                    common = Integer.lowestOneBit(levels[parent[s]]);
+                    levels[s] |= common;
+                }
+                treeLevel[s] = randomLevel(random, common);
+            }
+        }
+
+        generateBuses(random, levels, parent);
+        lines = new Branches(substations + (int) (substations * meshedLines) + boundaryLines);
+        for (int s = 1; s < substations; s++) {
+            line(random, bus(s, treeLevel[s]), bus(parent[s], treeLevel[s]));
+        }
+        generateMeshedLines(random);
+        generateBoundaryLines(random);
+        generateTransformers(random, levels);
+        balanceBuses();
+    }
+
+    private int substationLevels(Random random) {
+        double r = random.nextDouble();
+        if (r < THREE_LEVELS) {
+            return ALL_LEVELS;
+        } else if (r < THREE_LEVELS + TWO_LEVELS) {
+            int excluded = random.nextInt(NOMINAL_VOLTAGES.length);
+            return ALL_LEVELS & ~(1 << excluded);
+        }
+        return 1 << random.nextInt(NOMINAL_VOLTAGES.length);
+    }
+
+    private static int randomLevel(Random random, int levels) {
+        int count = Integer.bitCount(levels);
+        int k = random.nextInt(count);
+        for (int l = 0; l < NOMINAL_VOLTAGES.length; l++) {
+            if ((levels & (1 << l)) != 0 && k-- == 0) {
+                return l;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    private void generateBuses(Random random, int[] levels, int[] parent) {
+        substationBus = new int[substations * NOMINAL_VOLTAGES.length];
+        int numBuses = 0;
+        for (int s = 0; s < substations; s++) {
+            numBuses += Integer.bitCount(levels[s]);
+        }
+        busSubstation = new int[numBuses];
+        busLevel = new int[numBuses];
+        busV = new double[numBuses];
+        busAngle = new double[numBuses];
+        busP = new double[numBuses];
+        busQ = new double[numBuses];
+        busesOfLevel = new int[NOMINAL_VOLTAGES.length][];
+        int[] levelCount = new int[NOMINAL_VOLTAGES.length];
+        double[] substationAngle = new double[substations];
+        int b = 0;
+        for (int s = 0; s < substations; s++) {
+            // Angles change a few degrees along the tree, the first node is the angle reference
+            substationAngle[s] = s == 0 ? 0.0 : substationAngle[parent[s]] + random.nextDouble() * 4.0 - 2.0;
+            for (int l = 0; l < NOMINAL_VOLTAGES.length; l++) {
+                if ((levels[s] & (1 << l)) == 0) {
+                    substationBus[s * NOMINAL_VOLTAGES.length + l] = NO_BUS;
+                    continue;
+                }
+                substationBus[s * NOMINAL_VOLTAGES.length + l] = b;
+                busSubstation[b] = s;
+                busLevel[b] = l;
+                busV[b] = NOMINAL_VOLTAGES[l] * (0.95 + 0.1 * random.nextDouble());
+                busAngle[b] = b == 0 ? 0.0 : substationAngle[s] + random.nextDouble() - 0.5;
+                levelCount[l]++;
+                b++;
+            }
+        }
+        for (int l = 0; l < NOMINAL_VOLTAGES.length; l++) {
+            busesOfLevel[l] = new int[levelCount[l]];
+            levelCount[l] = 0;
+        }
+        for (b = 0; b < numBuses; b++) {
+            busesOfLevel[busLevel[b]][levelCount[busLevel[b]]++] = b;
+        }
+    }
+
+    private int bus(int substation, int level) {
+        return substationBus[substation * NOMINAL_VOLTAGES.length + level];
+    }
+
+    private void generateMeshedLines(Random random) {
+        int meshed = (int) (substations * meshedLines);
+        for (int k = 0; k < meshed; k++) {
+            int[] buses = busesOfLevel[random.nextInt(NOMINAL_VOLTAGES.length)];
+            if (buses.length < 2) {
+                continue;
+            }
+            int bus1 = buses[random.nextInt(buses.length)];
+            int bus2 = buses[random.nextInt(buses.length)];
+            if (busSubstation[bus1] != busSubstation[bus2]) {
+                line(random, bus1, bus2);
+            }
+        }
+    }
+
+    private void generateBoundaryLines(Random random) {
+        boundaryV = new double[boundaryLines];
+        boundaryAngle = new double[boundaryLines];
+        boundaryP = new double[boundaryLines];
+        boundaryQ = new double[boundaryLines];
+        for (int k = 0; k < boundaryLines; k++) {
+            // Boundary lines leave from the highest voltage level available
+            int[] buses = busesOfLevel[0].length > 0 ? busesOfLevel[0]
+                    : busesOfLevel[1].length > 0 ? busesOfLevel[1] : busesOfLevel[2];
+            int bus = buses[random.nextInt(buses.length)];
+            boundaryV[k] = busV[bus] * (0.99 + 0.02 * random.nextDouble());
+            boundaryAngle[k] = busAngle[bus] + random.nextDouble() * 2.0 - 1.0;
+            line(random, bus, boundaryNode(k));
+        }
+    }
+
+    // Boundary nodes are numbered after the buses with negative indexes
+    private static int boundaryNode(int k) {
+        return -2 - k;
+    }
+
+    private static int boundaryIndex(int node) {
+        return -2 - node;
+    }
+
+    private void generateTransformers(Random random, int[] levels) {
+        xfmrs = new Branches(substations * 2);
+        for (int s = 0; s < substations; s++) {
+            if (levels[s] == ALL_LEVELS && random.nextDouble() < xfmr3s) {
+                xfmr3(random, bus(s, 0), bus(s, 1), bus(s, 2));
+                continue;
+            }
+            // Two winding transformers from each level to the next lower one
+            int previous = NO_BUS;
+            for (int l = 0; l < NOMINAL_VOLTAGES.length; l++) {
+                int bus = bus(s, l);
+                if (bus == NO_BUS) {
+                    continue;
+                }
+                if (previous != NO_BUS) {
+                    xfmr2(random, previous, bus);
+                }
+                previous = bus;
+            }
+        }
+    }
+
+    private void line(Random random, int bus1, int bus2) {
+        double nominalV = NOMINAL_VOLTAGES[busLevel[bus1]];
+        double zbase = nominalV * nominalV / SBASE;
+        int k = lines.add(bus1, bus2, NO_BUS);
+        lines.r[k * 3] = (0.001 + 0.009 * random.nextDouble()) * zbase;
+        lines.x[k * 3] = (0.01 + 0.09 * random.nextDouble()) * zbase;
+        lines.b[k * 3] = (0.01 + 0.5 * random.nextDouble()) / zbase;
+        lines.ratedU[k * 3] = nominalV;
+    }
+
+    private void xfmr2(Random random, int bus1, int bus2) {
+        int t = xfmrs.add(bus1, bus2, NO_BUS);
+        transformerEnd(random, t, 0, bus1, true);
+        transformerEnd(random, t, 1, bus2, false);
+    }
+
+    private void xfmr3(Random random, int bus1, int bus2, int bus3) {
+        int t = xfmrs.add(bus1, bus2, bus3);
+        transformerEnd(random, t, 0, bus1, false);
+        transformerEnd(random, t, 1, bus2, false);
+        transformerEnd(random, t, 2, bus3, false);
+        // The three ends have impedance, only the star bus has magnetizing admittance
+        for (int e = 0; e < 3; e++) {
+            double ratedU = xfmrs.ratedU[t * 3 + e];
+            double zbase = ratedU * ratedU / SBASE;
+            xfmrs.r[t * 3 + e] = 0.001 * zbase;
+            xfmrs.x[t * 3 + e] = (0.02 + 0.05 * random.nextDouble()) * zbase;
+        }
+    }
+
+    private void transformerEnd(Random random, int t, int e, int bus, boolean shunt) {
+        double ratedU = NOMINAL_VOLTAGES[busLevel[bus]];
+        double zbase = ratedU * ratedU / SBASE;
+        xfmrs.ratedU[t * 3 + e] = ratedU;
+        if (shunt) {
+            xfmrs.r[t * 3 + e] = 0.002 * zbase;
+            xfmrs.x[t * 3 + e] = (0.05 + 0.1 * random.nextDouble()) * zbase;
+            xfmrs.b[t * 3 + e] = -0.001 / zbase;
+            xfmrs.g[t * 3 + e] = 0.0002 / zbase;
+        }
+    }
+
+    // Flows of all branches, and injections that close the balance of each node
+
+    private void balanceBuses() {
+        for (int k = 0; k < lines.size; k++) {
+            lineFlows(k);
+        }
+        for (int t = 0; t < xfmrs.size; t++) {
+            if (xfmrs.node[t * 3 + 2] == NO_BUS) {
+                xfmr2Flows(t);
+            } else {
+                xfmr3Flows(t);
+            }
+        }
+        for (int b = 0; b < busP.length; b++) {
+            busP[b] = -busP[b];
+            busQ[b] = -busQ[b];
+        }
+        for (int k = 0; k < boundaryLines; k++) {
+            boundaryP[k] = -boundaryP[k];
+            boundaryQ[k] = -boundaryQ[k];
+        }
+    }
+
+    private void lineFlows(int k) {
+        int node1 = lines.node[k * 3];
+        int node2 = lines.node[k * 3 + 1];
+        double v1 = nodeV(node1);
+        double a1 = Math.toRadians(nodeAngle(node1));
+        double v2 = nodeV(node2);
+        double a2 = Math.toRadians(nodeAngle(node2));
+        double v1Re = v1 * Math.cos(a1);
+        double v1Im = v1 * Math.sin(a1);
+        double v2Re = v2 * Math.cos(a2);
+        double v2Im = v2 * Math.sin(a2);
+        double z2 = lines.r[k * 3] * lines.r[k * 3] + lines.x[k * 3] * lines.x[k * 3];
+        double yRe = lines.r[k * 3] / z2;
+        double yIm = -lines.x[k * 3] / z2;
+        double yshIm = lines.b[k * 3] / 2.0;
+        flow(node1, v1Re, v1Im, v2Re, v2Im, yRe, yIm, 0.0, yshIm);
+        flow(node2, v2Re, v2Im, v1Re, v1Im, yRe, yIm, 0.0, yshIm);
+    }
+
+    // Impedance and magnetizing admittance at end 1, ratio given by the rated voltages
+    private void xfmr2Flows(int t) {
+        int node1 = xfmrs.node[t * 3];
+        int node2 = xfmrs.node[t * 3 + 1];
+        double ratio = xfmrs.ratedU[t * 3] / xfmrs.ratedU[t * 3 + 1];
+        double v1 = nodeV(node1);
+        double a1 = Math.toRadians(nodeAngle(node1));
+        double v2 = nodeV(node2) * ratio;
+        double a2 = Math.toRadians(nodeAngle(node2));
+        double v1Re = v1 * Math.cos(a1);
+        double v1Im = v1 * Math.sin(a1);
+        double v2Re = v2 * Math.cos(a2);
+        double v2Im = v2 * Math.sin(a2);
+        double z2 = xfmrs.r[t * 3] * xfmrs.r[t * 3] + xfmrs.x[t * 3] * xfmrs.x[t * 3];
+        double yRe = xfmrs.r[t * 3] / z2;
+        double yIm = -xfmrs.x[t * 3] / z2;
+        flow(node1, v1Re, v1Im, v2Re, v2Im, yRe, yIm, xfmrs.g[t * 3], xfmrs.b[t * 3]);
+        flow(node2, v2Re, v2Im, v1Re, v1Im, yRe, yIm, 0.0, 0.0);
+    }
+
+    // Star bus voltage from the voltages of the ends referred to the rated voltage of end 1
+    private void xfmr3Flows(int t) {
+        double[] vRe = new double[3];
+        double[] vIm = new double[3];
+        double[] yRe = new double[3];
+        double[] yIm = new double[3];
+        double sumYRe = 0.0;
+        double sumYIm = 0.0;
+        double sumIRe = 0.0;
+        double sumIIm = 0.0;
+        for (int e = 0; e < 3; e++) {
+            int node = xfmrs.node[t * 3 + e];
+            double ratio = xfmrs.ratedU[t * 3] / xfmrs.ratedU[t * 3 + e];
+            double v = nodeV(node) * ratio;
+            double a = Math.toRadians(nodeAngle(node));
+            vRe[e] = v * Math.cos(a);
+            vIm[e] = v * Math.sin(a);
+            double r = xfmrs.r[t * 3 + e] * ratio * ratio;
+            double x = xfmrs.x[t * 3 + e] * ratio * ratio;
+            double z2 = r * r + x * x;
+            yRe[e] = r / z2;
+            yIm[e] = -x / z2;
+            sumYRe += yRe[e];
+            sumYIm += yIm[e];
+            sumIRe += vRe[e] * yRe[e] - vIm[e] * yIm[e];
+            sumIIm += vRe[e] * yIm[e] + vIm[e] * yRe[e];
+        }
+        double sumY2 = sumYRe * sumYRe + sumYIm * sumYIm;
+        double v0Re = (sumIRe * sumYRe + sumIIm * sumYIm) / sumY2;
+        double v0Im = (sumIIm * sumYRe - sumIRe * sumYIm) / sumY2;
+        for (int e = 0; e < 3; e++) {
+            flow(xfmrs.node[t * 3 + e], vRe[e], vIm[e], v0Re, v0Im, yRe[e], yIm[e], 0.0, 0.0);
+        }
+    }
+
+    // Power leaving the node through a series admittance y and a shunt admittance ysh
+    private void flow(int node, double vRe, double vIm, double vOtherRe, double vOtherIm,
+            double yRe, double yIm, double yshRe, double yshIm) {
+        double dRe = vRe - vOtherRe;
+        double dIm = vIm - vOtherIm;
+        double iRe = dRe * yRe - dIm * yIm + vRe * yshRe - vIm * yshIm;
+        double iIm = dRe * yIm + dIm * yRe + vRe * yshIm + vIm * yshRe;
+        double p = vRe * iRe + vIm * iIm;
+        double q = vIm * iRe - vRe * iIm;
+        if (node >= 0) {
+            busP[node] += p;
+            busQ[node] += q;
+        } else {
+            boundaryP[boundaryIndex(node)] += p;
+            boundaryQ[boundaryIndex(node)] += q;
+        }
+    }
+
+    private double nodeV(int node) {
+        return node >= 0 ? busV[node] : boundaryV[boundaryIndex(node)];
+    }
+
+    private double nodeAngle(int node) {
+        return node >= 0 ? busAngle[node] : boundaryAngle[boundaryIndex(node)];
+    }
+
+    // Profiles
+
+    private void writeEquipmentBoundary(RdfWriter w) throws XMLStreamException {
+        w.begin("Line", BOUNDARY_CONTAINER);
+        w.property("IdentifiedObject.name", "Boundary");
+        w.end();
+        baseVoltage(w, 0);
+        for (int k = 0; k < boundaryLines; k++) {
+            w.begin("ConnectivityNode", "BCN" + k);
+            w.property("IdentifiedObject.name", "XNODE" + k);
+            w.reference("ConnectivityNode.ConnectivityNodeContainer", BOUNDARY_CONTAINER);
+            w.end();
+        }
+    }
+
+    private void writeTopologyBoundary(RdfWriter w) throws XMLStreamException {
+        for (int k = 0; k < boundaryLines; k++) {
+            w.begin("TopologicalNode", "BTN" + k);
+            w.property("IdentifiedObject.name", "XNODE" + k);
+            w.reference("TopologicalNode.BaseVoltage", baseVoltageId(0));
+            w.reference("TopologicalNode.ConnectivityNodeContainer", BOUNDARY_CONTAINER);
+            w.entsoeProperty("TopologicalNode.boundaryPoint", Boolean.toString(true));
+            w.end();
+            w.about("ConnectivityNode", "BCN" + k);
+            w.reference("ConnectivityNode.TopologicalNode", "BTN" + k);
+            w.end();
+        }
+    }
+
+    private void writeEquipment(RdfWriter w) throws XMLStreamException {
+        w.begin("GeographicalRegion", "GR");
+        w.property("IdentifiedObject.name", "Synthetic");
+        w.end();
+        w.begin("SubGeographicalRegion", "SGR");
+        w.property("IdentifiedObject.name", "Synthetic");
+        w.reference("SubGeographicalRegion.Region", "GR");
+        w.end();
+        for (int l = 0; l < NOMINAL_VOLTAGES.length; l++) {
+            // The boundary set has its own base voltage for the highest level
+            if (l > 0 || boundaryLines == 0) {
+                baseVoltage(w, l);
+            }
+        }
+        for (int s = 0; s < substations; s++) {
+            w.begin("Substation", "S" + s);
+            w.property("IdentifiedObject.name", "S" + s);
+            w.reference("Substation.Region", "SGR");
+            w.end();
+        }
+        for (int b = 0; b < busV.length; b++) {
+            w.begin("VoltageLevel", "VL" + b);
+            w.property("IdentifiedObject.name", "VL" + b);
+            w.reference("VoltageLevel.Substation", "S" + busSubstation[b]);
+            w.reference("VoltageLevel.BaseVoltage", baseVoltageId(busLevel[b]));
+            w.end();
+            if (busP[b] >= 0.0) {
+                w.begin("EnergyConsumer", "EC" + b);
+                w.property("IdentifiedObject.name", "EC" + b);
+                w.reference("Equipment.EquipmentContainer", "VL" + b);
+                w.end();
+                terminal(w, "EC" + b, 1);
+            } else {
+                generator(w, b);
+            }
+        }
+        for (int k = 0; k < lines.size; k++) {
+            w.begin("ACLineSegment", "L" + k);
+            w.property("IdentifiedObject.name", "L" + k);
+            w.property("ACLineSegment.r", lines.r[k * 3]);
+            w.property("ACLineSegment.x", lines.x[k * 3]);
+            w.property("ACLineSegment.bch", lines.b[k * 3]);
+            w.property("ACLineSegment.gch", 0.0);
+            w.property("Conductor.length", LINE_LENGTH);
+            w.reference("ConductingEquipment.BaseVoltage", baseVoltageId(busLevel[lines.node[k * 3]]));
+            w.end();
+            terminal(w, "L" + k, 1);
+            terminal(w, "L" + k, 2);
+        }
+        for (int k = 0; k < boundaryLines; k++) {
+            w.begin("EquivalentInjection", "EI" + k);
+            w.property("IdentifiedObject.name", "EI" + k);
+            w.property("EquivalentInjection.regulationCapability", Boolean.toString(false));
+            w.reference("ConductingEquipment.BaseVoltage", baseVoltageId(0));
+            w.reference("Equipment.EquipmentContainer", BOUNDARY_CONTAINER);
+            w.end();
+            terminal(w, "EI" + k, 1);
+        }
+        for (int t = 0; t < xfmrs.size; t++) {
+            writeTransformer(w, t);
+        }
+    }
+
+    private void generator(RdfWriter w, int b) throws XMLStreamException {
+        double maxP = 2.0 * Math.abs(busP[b]) + 100.0;
+        double maxQ = 2.0 * Math.abs(busQ[b]) + 100.0;
+        w.begin("ThermalGeneratingUnit", "GU" + b);
+        w.property("IdentifiedObject.name", "GU" + b);
+        w.property("GeneratingUnit.minOperatingP", 0.0);
+        w.property("GeneratingUnit.maxOperatingP", maxP);
+        w.property("GeneratingUnit.initialP", -busP[b]);
+        w.reference("Equipment.EquipmentContainer", "S" + busSubstation[b]);
+        w.end();
+        w.begin("SynchronousMachine", "SM" + b);
+        w.property("IdentifiedObject.name", "SM" + b);
+        w.property("RotatingMachine.ratedS", Math.hypot(maxP, maxQ));
+        w.property("SynchronousMachine.minQ", -maxQ);
+        w.property("SynchronousMachine.maxQ", maxQ);
+        w.enumeration("SynchronousMachine.type", "SynchronousMachineKind.generator");
+        w.reference("RotatingMachine.GeneratingUnit", "GU" + b);
+        w.reference("Equipment.EquipmentContainer", "VL" + b);
+        w.end();
+        terminal(w, "SM" + b, 1);
+    }
+
+    private void writeTransformer(RdfWriter w, int t) throws XMLStreamException {
+        int ends = xfmrs.node[t * 3 + 2] == NO_BUS ? 2 : 3;
+        w.begin("PowerTransformer", "T" + t);
+        w.property("IdentifiedObject.name", "T" + t);
+        w.reference("Equipment.EquipmentContainer", "S" + busSubstation[xfmrs.node[t * 3]]);
+        w.end();
+        for (int e = 0; e < ends; e++) {
+            String end = "T" + t + "_E" + (e + 1);
+            terminal(w, "T" + t, e + 1);
+            w.begin("PowerTransformerEnd", end);
+            w.property("IdentifiedObject.name", end);
+            w.property("PowerTransformerEnd.r", xfmrs.r[t * 3 + e]);
+            w.property("PowerTransformerEnd.x", xfmrs.x[t * 3 + e]);
+            w.property("PowerTransformerEnd.b", xfmrs.b[t * 3 + e]);
+            w.property("PowerTransformerEnd.g", xfmrs.g[t * 3 + e]);
+            w.property("PowerTransformerEnd.ratedU", xfmrs.ratedU[t * 3 + e]);
+            w.property("TransformerEnd.endNumber", Integer.toString(e + 1));
+            w.reference("PowerTransformerEnd.PowerTransformer", "T" + t);
+            w.reference("TransformerEnd.Terminal", terminalId("T" + t, e + 1));
+            w.reference("TransformerEnd.BaseVoltage", baseVoltageId(busLevel[xfmrs.node[t * 3 + e]]));
+            w.end();
+        }
+        w.begin("RatioTapChanger", "T" + t + "_RTC");
+        w.property("IdentifiedObject.name", "T" + t + "_RTC");
+        w.property("TapChanger.lowStep", Integer.toString(LOW_STEP));
+        w.property("TapChanger.highStep", Integer.toString(HIGH_STEP));
+        w.property("TapChanger.neutralStep", Integer.toString(NEUTRAL_STEP));
+        w.property("TapChanger.normalStep", Integer.toString(NEUTRAL_STEP));
+        w.property("TapChanger.neutralU", xfmrs.ratedU[t * 3]);
+        w.property("TapChanger.ltcFlag", Boolean.toString(true));
+        w.property("RatioTapChanger.stepVoltageIncrement", STEP_VOLTAGE_INCREMENT);
+        w.enumeration("RatioTapChanger.tculControlMode", "TransformerControlMode.volt");
+        w.reference("RatioTapChanger.TransformerEnd", "T" + t + "_E1");
+        w.end();
+    }
+
+    private static void terminal(RdfWriter w, String equipment, int sequenceNumber) throws XMLStreamException {
+        w.begin("Terminal", terminalId(equipment, sequenceNumber));
+        w.property("IdentifiedObject.name", terminalId(equipment, sequenceNumber));
+        w.property("ACDCTerminal.sequenceNumber", Integer.toString(sequenceNumber));
+        w.reference("Terminal.ConductingEquipment", equipment);
+        w.end();
+    }
+
+    private static String terminalId(String equipment, int sequenceNumber) {
+        return equipment + "_T" + sequenceNumber;
+    }
+
+    private static void baseVoltage(RdfWriter w, int level) throws XMLStreamException {
+        w.begin("BaseVoltage", baseVoltageId(level));
+        w.property("IdentifiedObject.name", baseVoltageId(level));
+        w.property("BaseVoltage.nominalVoltage", NOMINAL_VOLTAGES[level]);
+        w.end();
+    }
+
+    private static String baseVoltageId(int level) {
+        return "BV" + (int) NOMINAL_VOLTAGES[level];
+    }
+
+    private void writeTopology(RdfWriter w) throws XMLStreamException {
+        for (int b = 0; b < busV.length; b++) {
+            w.begin("TopologicalNode", "TN" + b);
+            w.property("IdentifiedObject.name", "TN" + b);
+            w.reference("TopologicalNode.BaseVoltage", baseVoltageId(busLevel[b]));
+            w.reference("TopologicalNode.ConnectivityNodeContainer", "VL" + b);
+            w.end();
+            terminalTopologicalNode(w, injectionId(b), 1, b);
+        }
+        for (int k = 0; k < lines.size; k++) {
+            terminalTopologicalNode(w, "L" + k, 1, lines.node[k * 3]);
+            terminalTopologicalNode(w, "L" + k, 2, lines.node[k * 3 + 1]);
+        }
+        for (int k = 0; k < boundaryLines; k++) {
+            terminalTopologicalNode(w, "EI" + k, 1, boundaryNode(k));
+        }
+        for (int t = 0; t < xfmrs.size; t++) {
+            for (int e = 0; e < 3 && xfmrs.node[t * 3 + e] != NO_BUS; e++) {
+                terminalTopologicalNode(w, "T" + t, e + 1, xfmrs.node[t * 3 + e]);
+            }
+        }
+    }
+
+    private static void terminalTopologicalNode(RdfWriter w, String equipment, int sequenceNumber, int node)
+            throws XMLStreamException {
+        w.about("Terminal", terminalId(equipment, sequenceNumber));
+        w.reference("Terminal.TopologicalNode", topologicalNodeId(node));
+        w.end();
+    }
+
+    private static String topologicalNodeId(int node) {
+        return node >= 0 ? "TN" + node : "BTN" + boundaryIndex(node);
+    }
+
+    private String injectionId(int b) {
+        return busP[b] >= 0.0 ? "EC" + b : "SM" + b;
+    }
+
+    private void writeSteadyStateHypothesis(RdfWriter w) throws XMLStreamException {
+        for (int b = 0; b < busV.length; b++) {
+            if (busP[b] >= 0.0) {
+                w.about("EnergyConsumer", "EC" + b);
+                w.property("EnergyConsumer.p", busP[b]);
+                w.property("EnergyConsumer.q", busQ[b]);
+                w.end();
+            } else {
+                w.about("SynchronousMachine", "SM" + b);
+                w.property("RotatingMachine.p", busP[b]);
+                w.property("RotatingMachine.q", busQ[b]);
+                w.property("RegulatingCondEq.controlEnabled", Boolean.toString(false));
+                w.property("SynchronousMachine.referencePriority", Integer.toString(b == 0 ? 1 : 0));
+                w.enumeration("SynchronousMachine.operatingMode", "SynchronousMachineOperatingMode.generator");
+                w.end();
+            }
+            terminalConnected(w, injectionId(b), 1);
+        }
+        for (int k = 0; k < lines.size; k++) {
+            terminalConnected(w, "L" + k, 1);
+            terminalConnected(w, "L" + k, 2);
+        }
+        for (int k = 0; k < boundaryLines; k++) {
+            w.about("EquivalentInjection", "EI" + k);
+            w.property("EquivalentInjection.p", boundaryP[k]);
+            w.property("EquivalentInjection.q", boundaryQ[k]);
+            w.property("EquivalentInjection.regulationStatus", Boolean.toString(false));
+            w.end();
+            terminalConnected(w, "EI" + k, 1);
+        }
+        for (int t = 0; t < xfmrs.size; t++) {
+            for (int e = 0; e < 3 && xfmrs.node[t * 3 + e] != NO_BUS; e++) {
+                terminalConnected(w, "T" + t, e + 1);
+            }
+            w.about("RatioTapChanger", "T" + t + "_RTC");
+            w.property("TapChanger.step", Integer.toString(NEUTRAL_STEP));
+            w.property("TapChanger.controlEnabled", Boolean.toString(false));
+            w.end();
+        }
+    }
+
+    private static void terminalConnected(RdfWriter w, String equipment, int sequenceNumber)
+            throws XMLStreamException {
+        w.about("Terminal", terminalId(equipment, sequenceNumber));
+        w.property("ACDCTerminal.connected", Boolean.toString(true));
+        w.end();
+    }
+
+    private void writeStateVariables(RdfWriter w) throws XMLStreamException {
+        for (int b = 0; b < busV.length; b++) {
+            svVoltage(w, b);
+            svPowerFlow(w, injectionId(b), busP[b], busQ[b]);
+        }
+        for (int k = 0; k < boundaryLines; k++) {
+            svVoltage(w, boundaryNode(k));
+            svPowerFlow(w, "EI" + k, boundaryP[k], boundaryQ[k]);
+        }
+        for (int t = 0; t < xfmrs.size; t++) {
+            w.begin("SvTapStep", "T" + t + "_RTC_SV");
+            w.property("SvTapStep.position", Integer.toString(NEUTRAL_STEP));
+            w.reference("SvTapStep.TapChanger", "T" + t + "_RTC");
+            w.end();
+        }
+        w.begin("TopologicalIsland", "TI");
+        w.property("IdentifiedObject.name", "TI");
+        for (int b = 0; b < busV.length; b++) {
+            w.reference("TopologicalIsland.TopologicalNodes", topologicalNodeId(b));
+        }
+        w.reference("TopologicalIsland.AngleRefTopologicalNode", topologicalNodeId(0));
+        w.end();
+    }
+
+    private void svVoltage(RdfWriter w, int node) throws XMLStreamException {
+        w.begin("SvVoltage", topologicalNodeId(node) + "_SV");
+        w.property("SvVoltage.v", nodeV(node));
+        w.property("SvVoltage.angle", nodeAngle(node));
+        w.reference("SvVoltage.TopologicalNode", topologicalNodeId(node));
+        w.end();
+    }
+
+    private static void svPowerFlow(RdfWriter w, String equipment, double p, double q) throws XMLStreamException {
+        w.begin("SvPowerFlow", terminalId(equipment, 1) + "_SV");
+        w.property("SvPowerFlow.p", p);
+        w.property("SvPowerFlow.q", q);
+        w.reference("SvPowerFlow.Terminal", terminalId(equipment, 1));
+        w.end();
+    }
+
+    enum Profile {
+        EQ("http://entsoe.eu/CIM/EquipmentCore/3/1"),
+        TP("http://entsoe.eu/CIM/Topology/4/1"),
+        SSH("http://entsoe.eu/CIM/SteadyStateHypothesis/1/1"),
+        SV("http://entsoe.eu/CIM/StateVariables/4/1"),
+        EQ_BD("http://entsoe.eu/CIM/EquipmentBoundary/3/1"),
+        TP_BD("http://entsoe.eu/CIM/TopologyBoundary/3/1");
+
+        Profile(String uri) {
+            this.uri = uri;
+        }
+
+        private final String uri;
+    }
+
+    // Lines and transformers, with the nodes and parameters of up to three ends each
+    private static final class Branches {
+
+        Branches(int capacity) {
+            grow(Math.max(capacity, 1));
+        }
+
+        int add(int node1, int node2, int node3) {
+            if (size == node.length / 3) {
+                grow(size * 2);
+            }
+            node[size * 3] = node1;
+            node[size * 3 + 1] = node2;
+            node[size * 3 + 2] = node3;
+            return size++;
+        }
+
+        private void grow(int capacity) {
+            node = copyOf(node, capacity * 3);
+            r = copyOf(r, capacity * 3);
+            x = copyOf(x, capacity * 3);
+            b = copyOf(b, capacity * 3);
+            g = copyOf(g, capacity * 3);
+            ratedU = copyOf(ratedU, capacity * 3);
+        }
+
+        private static int[] copyOf(int[] a, int length) {
+            return a == null ? new int[length] : Arrays.copyOf(a, length);
+        }
+
+        private static double[] copyOf(double[] a, int length) {
+            return a == null ? new double[length] : Arrays.copyOf(a, length);
+        }
+
+        int      size;
+        int[]    node;
+        double[] r;
+        double[] x;
+        double[] b;
+        double[] g;
+        double[] ratedU;
+    }
+
+    // Streams one profile as RDF/XML, one element per line. The XML writer
+    // writes byte by byte, so it is always buffered, also over a zip stream
+    private static final class RdfWriter {
+
+        RdfWriter(OutputStream os) throws XMLStreamException {
+            this.os = new BufferedOutputStream(os);
+            writer = XMLOutputFactory.newInstance().createXMLStreamWriter(this.os, "UTF-8");
+        }
+
+        void header(String modelId, String profile, List<String> dependentOn) throws XMLStreamException {
+            writer.writeStartDocument("UTF-8", "1.0");
+            newLine();
+            writer.writeStartElement("rdf", "RDF", RDF_NAMESPACE);
+            writer.writeNamespace("rdf", RDF_NAMESPACE);
+            writer.writeNamespace("cim", CIM_NAMESPACE);
+            writer.writeNamespace("entsoe", ENTSOE_NAMESPACE);
+            writer.writeNamespace("md", MD_NAMESPACE);
+            newLine();
+            writer.writeStartElement("md", "FullModel", MD_NAMESPACE);
+            writer.writeAttribute("rdf", RDF_NAMESPACE, "about", modelId);
+            newLine();
+            mdProperty("Model.scenarioTime", SCENARIO_TIME);
+            mdProperty("Model.created", SCENARIO_TIME);
+            mdProperty("Model.description", "Synthetic model");
+            mdProperty("Model.version", "1");
+            mdProperty("Model.profile", profile);
+            for (String model : dependentOn) {
+                writer.writeEmptyElement("md", "Model.DependentOn", MD_NAMESPACE);
+                writer.writeAttribute("rdf", RDF_NAMESPACE, "resource", model);
+                newLine();
+            }
+            mdProperty("Model.modelingAuthoritySet", "http://powsybl.org/Synthetic");
+            writer.writeEndElement();
+            newLine();
+        }
+
+        private void mdProperty(String name, String value) throws XMLStreamException {
+            writer.writeStartElement("md", name, MD_NAMESPACE);
+            writer.writeCharacters(value);
+            writer.writeEndElement();
+            newLine();
+        }
+
+        void begin(String type, String id) throws XMLStreamException {
+            writer.writeStartElement("cim", type, CIM_NAMESPACE);
+            writer.writeAttribute("rdf", RDF_NAMESPACE, "ID", "_" + id);
+            newLine();
+        }
+
+        void about(String type, String id) throws XMLStreamException {
+            writer.writeStartElement("cim", type, CIM_NAMESPACE);
+            writer.writeAttribute("rdf", RDF_NAMESPACE, "about", "#_" + id);
+            newLine();
+        }
+
+        void property(String name, double value) throws XMLStreamException {
+            property(name, Double.toString(value));
+        }
+
+        void property(String name, String value) throws XMLStreamException {
+            writer.writeCharacters("\t");
+            writer.writeStartElement("cim", name, CIM_NAMESPACE);
+            writer.writeCharacters(value);
+            writer.writeEndElement();
+            newLine();
+        }
+
+        void entsoeProperty(String name, String value) throws XMLStreamException {
+            writer.writeCharacters("\t");
+            writer.writeStartElement("entsoe", name, ENTSOE_NAMESPACE);
+            writer.writeCharacters(value);
+            writer.writeEndElement();
+            newLine();
+        }
+
+        void reference(String name, String id) throws XMLStreamException {
+            resource(name, "#_" + id);
+        }
+
+        void enumeration(String name, String value) throws XMLStreamException {
+            resource(name, CIM_NAMESPACE + value);
+        }
+
+        private void resource(String name, String resource) throws XMLStreamException {
+            writer.writeCharacters("\t");
+            writer.writeEmptyElement("cim", name, CIM_NAMESPACE);
+            writer.writeAttribute("rdf", RDF_NAMESPACE, "resource", resource);
+            newLine();
+        }
+
+        void end() throws XMLStreamException {
+            writer.writeEndElement();
+            newLine();
+        }
+
+        // Closes the document but not the underlying stream, that may have more zip entries
+        void close() throws XMLStreamException, IOException {
+            writer.writeEndElement();
+            newLine();
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+            os.flush();
+        }
+
+        private void newLine() throws XMLStreamException {
+            writer.writeCharacters("\n");
+        }
+
+        private final OutputStream    os;
+        private final XMLStreamWriter writer;
+    }
+
+    private final long seed;
+    private int        substations;
+    private double     meshedLines;
+    private double     xfmr3s;
+    private int        boundaryLines;
+
+    private int[]      substationBus;
+    private int[]      busSubstation;
+    private int[]      busLevel;
+    private double[]   busV;
+    private double[]   busAngle;
+    private double[]   busP;
+    private double[]   busQ;
+    private int[][]    busesOfLevel;
+    private Branches   lines;
+    private Branches   xfmrs;
+    private double[]   boundaryV;
+    private double[]   boundaryAngle;
+    private double[]   boundaryP;
+    private double[]   boundaryQ;
+
+    private static final double[] NOMINAL_VOLTAGES       = {400.0, 220.0, 110.0};
+    private static final int      ALL_LEVELS             = 0b111;
+    private static final double   THREE_LEVELS           = 0.1;
+    private static final double   TWO_LEVELS             = 0.3;
+    private static final int      NO_BUS                 = -1;
+    private static final double   SBASE                  = 100.0;
+    private static final double   LINE_LENGTH            = 50.0;
+    private static final int      LOW_STEP               = 1;
+    private static final int      HIGH_STEP              = 33;
+    private static final int      NEUTRAL_STEP           = 17;
+    private static final double   STEP_VOLTAGE_INCREMENT = 1.25;
+    private static final String   BOUNDARY_CONTAINER     = "BoundaryLine";
+    private static final String   ZIP_EXTENSION          = ".zip";
+    private static final String   SCENARIO_TIME          = "2018-01-01T00:00:00Z";
+    private static final String   RDF_NAMESPACE          = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private static final String   CIM_NAMESPACE          = "http://iec.ch/TC57/2013/CIM-schema-cim16#";
+    private static final String   ENTSOE_NAMESPACE       = "http://entsoe.eu/CIM/SchemaExtension/3/1#";
+    private static final String   MD_NAMESPACE           = "http://iec.ch/TC57/61970-552/ModelDescription/1#";
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2017, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package com.powsybl.cgmes.tools;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author José Antonio Marqués <marquesja at aia.es>
+ * @author Marcos de Miguel <demiguelm at aia.es>
+ */
+public class TestCatalog {
+
+    private static final String PATTERN = "glob:**/*.zip";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws IOException {
+        for (String name : new String[] {"model3.zip", "model1.zip", "model5.zip", "model2.zip", "model4.zip"}) {
+            folder.newFile(name);
+        }
+        folder.newFile("model0.txt");
+        catalog = new Catalog(folder.getRoot().toString());
+    }
+
+    @Test
+    public void sortedTest() throws IOException {
+        for (int threads : new int[] {1, 2, 4, 8}) {
+            List<String> reviewed = Collections.synchronizedList(new ArrayList<>());
+            Map<Path, Exception> wrong = catalog.reviewAll(PATTERN, p -> {
+                reviewed.add(catalog.modelName(p));
+                throw new IllegalStateException(catalog.modelName(p));
+            }, threads);
+            List<String> expected = new ArrayList<>();
+            for (int k = 1; k <= 5; k++) {
+                expected.add("model" + k + ".zip");
+            }
+            // All the paths are reported, sorted whatever the order they were reviewed in
+            Assert.assertEquals(expected, names(wrong));
+            if (threads == 1) {
+                Assert.assertEquals(expected, reviewed);
+            } else {
+                Collections.sort(reviewed);
+                Assert.assertEquals(expected, reviewed);
+            }
+        }
+    }
+
+    // A failing path does not stop the review of the others
+    @Test
+    public void failureTest() throws IOException {
+        for (int threads : new int[] {1, 4}) {
+            List<String> reviewed = Collections.synchronizedList(new ArrayList<>());
+            Map<Path, Exception> wrong = catalog.reviewAll(PATTERN, p -> {
+                if (catalog.modelName(p).equals("model2.zip")) {
+                    throw new IllegalStateException("failed");
+                }
+                reviewed.add(catalog.modelName(p));
+            }, threads);
+            Assert.assertEquals(Collections.singletonList("model2.zip"), names(wrong));
+            Assert.assertEquals("failed", wrong.values().iterator().next().getMessage());
+            Collections.sort(reviewed);
+            Assert.assertEquals(4, reviewed.size());
+            Assert.assertFalse(reviewed.contains("model2.zip"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidThreadsTest() throws IOException {
+        catalog.reviewAll(PATTERN, p -> {
+        }, 0);
+    }
+
+    private List<String> names(Map<Path, Exception> wrong) {
+        List<String> names = new ArrayList<>();
+        wrong.keySet().forEach(p -> names.add(catalog.modelName(p)));
+        return names;
+    }
+
+    private Catalog catalog;
+}